@@ -0,0 +1,109 @@
+package org.usfirst.frc.team2339.Barracuda.benchmark;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Minimal micro benchmark harness for running robot math on a development machine.
+ *
+ * Each benchmark is warmed up so the JIT compiles it, then timed over several batches.
+ * Reports time per operation and bytes allocated per operation
+ * (from the HotSpot per-thread allocation counter).
+ *
+ * @author emiller
+ *
+ */
+public class BenchmarkRunner {
+
+	/**
+	 * One benchmark operation
+	 */
+	public interface Benchmark {
+		/**
+		 * Run one operation
+		 * @param iteration iteration number. Use to pick input data.
+		 * @return any result of the operation, so the JIT can not remove it
+		 */
+		double run(int iteration);
+	}
+
+	// Results are written here so that the JIT can not eliminate benchmark code
+	public static volatile double sink;
+
+	private final int warmupIterations;
+	private final int measureIterations;
+	private final int batches;
+	private final String filter;
+	private final com.sun.management.ThreadMXBean threadBean;
+
+	/**
+	 * @param warmupIterations operations run before measurement
+	 * @param measureIterations operations per measured batch
+	 * @param batches measured batches
+	 * @param filter only run benchmarks whose name contains this text. null runs all.
+	 */
+	public BenchmarkRunner(int warmupIterations, int measureIterations, int batches, String filter) {
+		this.warmupIterations = warmupIterations;
+		this.measureIterations = measureIterations;
+		this.batches = batches;
+		this.filter = filter;
+		this.threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		if (threadBean.isThreadAllocatedMemorySupported()) {
+			threadBean.setThreadAllocatedMemoryEnabled(true);
+		}
+	}
+
+	/**
+	 * Create runner from command line arguments: [filter]
+	 * @param args command line arguments
+	 * @return runner with default iteration counts
+	 */
+	public static BenchmarkRunner fromArgs(String args[]) {
+		return new BenchmarkRunner(2000000, 1000000, 5, args.length > 0 ? args[0] : null);
+	}
+
+	public void printHeader() {
+		System.out.printf("%-50s %12s %12s %12s%n", "Benchmark", "ns/op", "min ns/op", "B/op");
+	}
+
+	/**
+	 * Run a benchmark and print its results
+	 * @param name benchmark name
+	 * @param benchmark operation to run
+	 * @return mean time per operation in nanoseconds, or NaN if filtered out
+	 */
+	public double run(String name, Benchmark benchmark) {
+		if (filter != null && !name.contains(filter)) {
+			return Double.NaN;
+		}
+
+		double result = 0;
+		for (int ii = 0; ii < warmupIterations; ii++) {
+			result += benchmark.run(ii);
+		}
+
+		long threadId = Thread.currentThread().getId();
+		long totalNanos = 0;
+		long minNanos = Long.MAX_VALUE;
+		long totalBytes = 0;
+		for (int iiBatch = 0; iiBatch < batches; iiBatch++) {
+			long startBytes = threadBean.getThreadAllocatedBytes(threadId);
+			long start = System.nanoTime();
+			for (int ii = 0; ii < measureIterations; ii++) {
+				result += benchmark.run(ii);
+			}
+			long nanos = System.nanoTime() - start;
+			totalBytes += threadBean.getThreadAllocatedBytes(threadId) - startBytes;
+			totalNanos += nanos;
+			minNanos = Math.min(minNanos, nanos);
+		}
+		sink = result;
+
+		double nsPerOp = (double) totalNanos / ((double) batches * measureIterations);
+		System.out.printf("%-50s %12.2f %12.2f %12.2f%n", name,
+				nsPerOp,
+				(double) minNanos / measureIterations,
+				(double) totalBytes / ((double) batches * measureIterations));
+		return nsPerOp;
+	}
+
+}
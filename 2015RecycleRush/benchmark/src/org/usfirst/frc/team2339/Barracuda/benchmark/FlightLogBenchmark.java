@@ -0,0 +1,131 @@
+package org.usfirst.frc.team2339.Barracuda.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.usfirst.frc.team2339.Barracuda.benchmark.BenchmarkRunner.Benchmark;
+import org.usfirst.frc.team2339.Barracuda.telemetry.FlightLog;
+import org.usfirst.frc.team2339.Barracuda.telemetry.FlightRecorder.Record;
+
+/**
+ * Cost of writing a flight log record, and recovery of the log after an interrupted write.
+ *
+ * The recovery check writes more records than the ring holds, starts one more without committing it
+ * (as if power was lost), then reads the log back. Exits with status 1 unless the reader finds exactly the
+ * newest ring full of records in order with their payloads intact, one partial record, and a reopened log
+ * continues the sequence.
+ * Run with "ant benchmark -Dbenchmark.class=org.usfirst.frc.team2339.Barracuda.benchmark.FlightLogBenchmark".
+ *
+ * @author emiller
+ *
+ */
+public class FlightLogBenchmark {
+
+	private static final int WHEELS = 4;
+	private static final int RECORDS_PER_SEGMENT = 1000;
+	private static final int SEGMENTS = 3;
+
+	private static void fill(Record record, long sequence) {
+		record.timestamp = sequence * 5000000;
+		record.strafe = Math.sin(sequence * 0.01);
+		record.frontBack = Math.cos(sequence * 0.01);
+		record.rotate = 0.5;
+		record.buttons = (int) (sequence & 0xfff);
+		record.gyroAngle = sequence * 0.1;
+		record.pivotY = 32.25;
+		for (int iiWheel = 0; iiWheel < WHEELS; iiWheel++) {
+			record.rawSpeeds[iiWheel] = iiWheel + sequence;
+			record.encoderAngles[iiWheel] = -sequence;
+		}
+		record.liftOutput = -0.25;
+	}
+
+	private static boolean matches(Record record, long sequence) {
+		Record expected = new Record(WHEELS);
+		fill(expected, sequence);
+		boolean same = record.timestamp == expected.timestamp && record.strafe == expected.strafe &&
+				record.buttons == expected.buttons && record.gyroAngle == expected.gyroAngle &&
+				record.liftOutput == expected.liftOutput;
+		for (int iiWheel = 0; iiWheel < WHEELS; iiWheel++) {
+			same &= record.rawSpeeds[iiWheel] == expected.rawSpeeds[iiWheel] &&
+					record.encoderAngles[iiWheel] == expected.encoderAngles[iiWheel];
+		}
+		return same;
+	}
+
+	private static void delete(File directory) {
+		File files[] = directory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		directory.delete();
+	}
+
+	static boolean checkRecovery(File directory) throws IOException {
+		int total = RECORDS_PER_SEGMENT * SEGMENTS;
+		int written = total * 2 + 123;
+		FlightLog log = new FlightLog(directory, "check", Record.FORMAT_VERSION, Record.payloadSize(WHEELS),
+				RECORDS_PER_SEGMENT, SEGMENTS);
+		Record record = new Record(WHEELS);
+		for (int iiRecord = 0; iiRecord < written; iiRecord++) {
+			fill(record, iiRecord);
+			record.write(log.begin());
+			log.commit();
+		}
+		// Power lost part way through the next record
+		ByteBuffer torn = log.begin();
+		torn.putLong(-1);
+		log.force();
+
+		FlightLog.Reader reader = new FlightLog.Reader(directory, "check");
+		boolean pass = reader.size() == total - 1 && reader.getPartialRecords() == 1 &&
+				Record.numberOfWheels(reader.getPayloadSize()) == WHEELS;
+		int bad = 0;
+		for (int iiRecord = 0; iiRecord < reader.size(); iiRecord++) {
+			long expected = written - total + 1 + iiRecord;
+			record.read(reader.getPayload(iiRecord));
+			if (reader.getSequence(iiRecord) != expected || !matches(record, expected)) {
+				bad++;
+			}
+		}
+		FlightLog reopened = new FlightLog(directory, "check", Record.FORMAT_VERSION, Record.payloadSize(WHEELS),
+				RECORDS_PER_SEGMENT, SEGMENTS);
+		pass &= bad == 0 && reopened.getSequence() == written;
+		System.out.printf("Wrote %d records to a %d record ring, read back %d committed (%d bad), %d partial, " +
+				"reopened at sequence %d%n", written, total, reader.size(), bad, reader.getPartialRecords(),
+				reopened.getSequence());
+		System.out.println(pass ? "PASS" : "FAIL");
+		return pass;
+	}
+
+	public static void main(String args[]) throws IOException {
+		File directory = new File(System.getProperty("java.io.tmpdir"), "flightlog-benchmark");
+		delete(directory);
+		boolean pass = checkRecovery(directory);
+		delete(directory);
+
+		final FlightLog log = new FlightLog(directory, "benchmark", Record.FORMAT_VERSION, Record.payloadSize(WHEELS),
+				RECORDS_PER_SEGMENT * 10, SEGMENTS);
+		final Record record = new Record(WHEELS);
+		fill(record, 1);
+		BenchmarkRunner runner = BenchmarkRunner.fromArgs(args);
+		runner.printHeader();
+		runner.run("Record.write + FlightLog commit", new Benchmark() {
+			public double run(int iteration) {
+				record.gyroAngle = iteration;
+				record.write(log.begin());
+				log.commit();
+				return iteration;
+			}
+		});
+		delete(directory);
+
+		if (!pass) {
+			System.exit(1);
+		}
+	}
+
+}
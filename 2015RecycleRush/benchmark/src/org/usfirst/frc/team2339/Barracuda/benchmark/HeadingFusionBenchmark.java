@@ -0,0 +1,178 @@
+package org.usfirst.frc.team2339.Barracuda.benchmark;
+
+import java.util.Random;
+
+import org.usfirst.frc.team2339.Barracuda.RobotMap;
+import org.usfirst.frc.team2339.Barracuda.benchmark.BenchmarkRunner.Benchmark;
+import org.usfirst.frc.team2339.Barracuda.components.FusedGyro;
+import org.usfirst.frc.team2339.Barracuda.hal.GyroInput;
+import org.usfirst.frc.team2339.Barracuda.hal.SimulatedHardware;
+import org.usfirst.frc.team2339.Barracuda.simulation.SwerveRobotSimulation;
+import org.usfirst.frc.team2339.Barracuda.subsystems.SwerveDrive;
+import org.usfirst.frc.team2339.Barracuda.swervemath.SwervePoseEstimator;
+import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveWheel.RobotMotion;
+
+/**
+ * Drives a match on {@link SwerveRobotSimulation} with a drifting gyro and compares heading from the raw gyro,
+ * wheel odometry and {@link FusedGyro} (RobotMap HEADING_ constants) with the simulated heading.
+ *
+ * The gyro's bias ramps from {@link #START_BIAS} to {@link #END_BIAS} over the match, as when it warms up,
+ * with white rate noise. The robot sits disabled for {@link #DISABLED_TIME}, then drives field oriented on
+ * the fused heading: random velocities and turns, stopping between them, as a driver does.
+ * Partway through it is pushed round {@link #PUSH_ANGLE} while stopped, which the gyro sees and the wheels do not.
+ *
+ * Checks, exit status 1 if any fails:
+ * fused heading ends at most {@link #MAX_ERROR_RATIO} of the raw gyro's error from the simulated heading,
+ * never strays further than {@link #MAX_FUSED_ERROR} from it during the match, and follows the push.
+ * Run with "ant benchmark -Dbenchmark.class=org.usfirst.frc.team2339.Barracuda.benchmark.HeadingFusionBenchmark".
+ *
+ * @author emiller
+ *
+ */
+public class HeadingFusionBenchmark {
+
+	private static final double PERIOD = 1.0 / RobotMap.Constants.CONTROL_LOOP_FREQUENCY;
+	// Degrees per second
+	private static final double START_BIAS = 0.05;
+	private static final double END_BIAS = 0.15;
+	private static final double RATE_NOISE = 0.3;
+	private static final double DISABLED_TIME = 5.0;
+	private static final double MATCH_TIME = 150.0;
+	private static final double SEGMENT_TIME = 3.0;
+	private static final double STOP_TIME = 1.0;
+	private static final double PUSH_TIME = 100.0;
+	private static final double PUSH_ANGLE = 30.0;
+	private static final double MAX_FUSED_ERROR = 2.0;
+	private static final double MAX_ERROR_RATIO = 0.1;
+
+	/**
+	 * Simulated gyro plus integrated bias and noise
+	 */
+	private static class DriftingGyro implements GyroInput {
+		private final GyroInput gyro;
+		private final Random random = new Random(2339);
+		private double drift = 0;
+		private double offset = 0;
+
+		DriftingGyro(GyroInput gyro) {
+			this.gyro = gyro;
+		}
+
+		void step(double bias, double dt) {
+			drift += (bias + RATE_NOISE * random.nextGaussian()) * dt;
+		}
+
+		public double getAngle() {
+			return gyro.getAngle() + drift - offset;
+		}
+
+		public double getRate() {
+			return gyro.getRate();
+		}
+
+		public void reset() {
+			gyro.reset();
+			offset = drift;
+		}
+	}
+
+	public static void main(String args[]) {
+		SimulatedHardware hardware = new SimulatedHardware();
+		RobotMap.init(hardware);
+		SwerveDrive drive = RobotMap.Subsystem.robotDrive;
+		drive.enableSteering(true);
+		SwerveRobotSimulation simulation = new SwerveRobotSimulation(hardware, RobotMap.Control.steering);
+		DriftingGyro gyro = new DriftingGyro(RobotMap.Sensor.gyro);
+		FusedGyro fused = RobotMap.createFusedGyro(gyro, RobotMap.Subsystem.robotDrive);
+		RobotMotion motion = new RobotMotion(0.0, 0.0, 0.0);
+		RobotMotion stop = new RobotMotion(0.0, 0.0, 0.0);
+		Random random = new Random(1);
+
+		double time = 0;
+		for (; time < DISABLED_TIME; time += PERIOD) {
+			gyro.step(START_BIAS, PERIOD);
+			fused.update(time);
+			drive.swerveDriveRobot(stop);
+			simulation.run(PERIOD);
+		}
+		System.out.printf("After %.0f s disabled bias estimate %.3f deg/s (gyro %.3f)%n", DISABLED_TIME,
+				fused.getEstimator().getBias(), START_BIAS);
+
+		// Teleop init
+		fused.reset();
+		double trueStart = simulation.getHeading();
+		double odometryStart = drive.getOdometry().getHeading();
+		double maxError = 0;
+		double pushError = Double.NaN;
+		boolean pushed = false;
+		int rejected = 0;
+		double segmentStart = time;
+		double end = DISABLED_TIME + MATCH_TIME;
+		for (; time < end; time += PERIOD) {
+			double elapsed = time - DISABLED_TIME;
+			gyro.step(START_BIAS + (END_BIAS - START_BIAS) * elapsed / MATCH_TIME, PERIOD);
+			fused.update(time);
+			if (fused.getEstimator().isWheelRateRejected()) {
+				rejected++;
+			}
+			double error = Math.abs(fused.getAngle() - (simulation.getHeading() - trueStart));
+			if (pushError == Double.POSITIVE_INFINITY) {
+				pushError = error;
+			}
+			maxError = Math.max(maxError, error);
+			if (time - segmentStart >= SEGMENT_TIME) {
+				segmentStart = time;
+				motion.strafe = 0.8 * random.nextDouble() - 0.4;
+				motion.frontBack = 0.8 * random.nextDouble() - 0.4;
+				motion.rotate = random.nextDouble() - 0.5;
+			}
+			boolean stopped = time - segmentStart >= SEGMENT_TIME - STOP_TIME;
+			if (stopped) {
+				drive.swerveDriveRobot(stop);
+			} else {
+				drive.swerveDriveAbsolute(motion, fused.getAngle());
+			}
+			if (!pushed && stopped && elapsed >= PUSH_TIME) {
+				pushed = true;
+				simulation.reset(simulation.getX(), simulation.getY(), simulation.getHeading() + PUSH_ANGLE, 0.0);
+				// Measured after the next update
+				pushError = Double.POSITIVE_INFINITY;
+			}
+			simulation.run(PERIOD);
+		}
+
+		double trueHeading = simulation.getHeading() - trueStart;
+		double rawError = Math.abs(gyro.getAngle() - trueHeading);
+		double wheelError = Math.abs(drive.getOdometry().getHeading() - odometryStart - trueHeading);
+		double fusedError = Math.abs(fused.getAngle() - trueHeading);
+		System.out.printf("After %.0f s match: raw gyro %.2f deg off, wheel odometry %.2f deg off, fused %.2f deg off " +
+				"(bias estimate %.3f deg/s, gyro %.3f), %d wheel rates skipped%n", MATCH_TIME, rawError, wheelError,
+				fusedError, fused.getEstimator().getBias(), END_BIAS, rejected);
+		boolean endOk = fusedError < MAX_ERROR_RATIO * rawError;
+		System.out.println("Fused heading at end " + (endOk ? "ok" : "FAILED"));
+		boolean maxOk = maxError < MAX_FUSED_ERROR;
+		System.out.printf("Fused heading up to %.2f deg off during match  %s%n", maxError, maxOk ? "ok" : "FAILED");
+		boolean pushOk = pushError < MAX_FUSED_ERROR;
+		System.out.printf("Pushed %.0f deg: fused heading %.2f deg off after  %s%n", PUSH_ANGLE, pushError,
+				pushOk ? "ok" : "FAILED");
+		boolean pass = endOk && maxOk && pushOk;
+
+		BenchmarkRunner runner = BenchmarkRunner.fromArgs(args);
+		runner.printHeader();
+		final SwervePoseEstimator estimator = fused.getEstimator();
+		final double speeds[] = {0.5, 0.5, 0.5, 0.5};
+		final double angles[] = {10.0, 20.0, 30.0, 40.0};
+		runner.run("SwervePoseEstimator.update", new Benchmark() {
+			public double run(int iteration) {
+				estimator.update(speeds, angles, 0.01 * (iteration & 1023), PERIOD);
+				return estimator.getHeading();
+			}
+		});
+
+		System.out.println(pass ? "PASS" : "FAIL");
+		if (!pass) {
+			System.exit(1);
+		}
+	}
+
+}
@@ -0,0 +1,144 @@
+package org.usfirst.frc.team2339.Barracuda.benchmark;
+
+import org.usfirst.frc.team2339.Barracuda.RobotMap;
+import org.usfirst.frc.team2339.Barracuda.benchmark.BenchmarkRunner.Benchmark;
+import org.usfirst.frc.team2339.Barracuda.commands.TeleopDrive;
+import org.usfirst.frc.team2339.Barracuda.components.HeadingPredictor;
+import org.usfirst.frc.team2339.Barracuda.hal.GyroInput;
+import org.usfirst.frc.team2339.Barracuda.hal.SimulatedHardware;
+import org.usfirst.frc.team2339.Barracuda.simulation.SwerveRobotSimulation;
+
+/**
+ * Drives field oriented straight ahead while spinning on {@link SwerveRobotSimulation}, with {@link TeleopDrive}
+ * reading heading from RobotMap's {@link HeadingPredictor}, and compares how far the robot's course strays from
+ * straight ahead with no lead and with {@link #LEAD}. Motor outputs reach the simulated modules
+ * {@link #OUTPUT_DELAY} late, an estimate of PWM and motor controller latency on the robot.
+ * RobotMap HEADING_LEAD_TIME ships at zero until that latency is measured; this is the check to run before
+ * turning it on. Also sweeps lead times and times sampling.
+ *
+ * Course error is the angle between the simulated field velocity and straight ahead, RMS over the run after
+ * {@link #SPIN_UP_TIME}. Drift is how far the robot ends to the side.
+ * Course error keeps falling with leads well past {@link #OUTPUT_DELAY}, since lead also makes up for steering
+ * lag, so the sweep can not pick the lead: set it from measured latency.
+ *
+ * Checks, exit status 1 if any fails:
+ * at every spin rate either way ({@link #ROTATES}), course error and drift are lower with {@link #LEAD}
+ * than with no lead, and driving without spinning is the same with and without lead.
+ * Run with "ant benchmark -Dbenchmark.class=org.usfirst.frc.team2339.Barracuda.benchmark.HeadingLeadBenchmark".
+ *
+ * @author emiller
+ *
+ */
+public class HeadingLeadBenchmark {
+
+	private static final double PERIOD = 1.0 / RobotMap.Constants.CONTROL_LOOP_FREQUENCY;
+	private static final double DRIVE_TIME = 6.0;
+	private static final double SPIN_UP_TIME = 1.0;
+	// Joystick axes
+	private static final double FRONT_BACK = 0.6;
+	private static final double ROTATES[] = {1.0, -1.0, 0.85, -0.85, 0.7, -0.7, 0.5, -0.5, 0.2, -0.2};
+	private static final double SWEEP_LEADS[] = {0.0, 0.01, 0.02, 0.03, 0.04, 0.06, 0.08};
+	private static final double OUTPUT_DELAY = 0.02;
+	// Lead checked, seconds: the simulated output latency
+	private static final double LEAD = OUTPUT_DELAY;
+
+	/**
+	 * @return RMS course error in degrees, sideways drift at end, spin rate in degrees per second
+	 */
+	private static double[] drive(double lead, double rotate) {
+		SimulatedHardware hardware = new SimulatedHardware();
+		RobotMap.init(hardware);
+		RobotMap.Subsystem.robotDrive.enableSteering(true);
+		SwerveRobotSimulation simulation = new SwerveRobotSimulation(hardware, RobotMap.Control.steering);
+		simulation.setOutputDelay(OUTPUT_DELAY);
+		HeadingPredictor predictor = RobotMap.Sensor.headingPredictor;
+		predictor.setLead(lead);
+		TeleopDrive teleopDrive = new TeleopDrive("Spin drive", RobotMap.Subsystem.robotDrive, null, predictor);
+
+		int ticks = (int) Math.round(DRIVE_TIME / PERIOD);
+		double sumSquares = 0;
+		int count = 0;
+		double startX = 0;
+		double startHeading = 0;
+		for (int iiTick = 0; iiTick < ticks; iiTick++) {
+			double time = iiTick * PERIOD;
+			RobotMap.Sensor.fusedGyro.update(time);
+			predictor.sample(time);
+			teleopDrive.drive(0.0, FRONT_BACK, rotate, false, true, predictor.getAngle());
+			simulation.run(PERIOD);
+			if (time < SPIN_UP_TIME) {
+				startX = simulation.getX();
+				startHeading = simulation.getHeading();
+				continue;
+			}
+			double error = Math.toDegrees(Math.atan2(simulation.getVelocityX(), simulation.getVelocityY()));
+			sumSquares += error * error;
+			count++;
+		}
+		return new double[] {Math.sqrt(sumSquares / count), Math.abs(simulation.getX() - startX),
+				(simulation.getHeading() - startHeading) / (DRIVE_TIME - SPIN_UP_TIME)};
+	}
+
+	/**
+	 * @return true if lead lowers course error and drift
+	 */
+	private static boolean compare(double rotate, double lead) {
+		double plain[] = drive(0.0, rotate);
+		double led[] = drive(lead, rotate);
+		boolean ok = led[0] < plain[0] && led[1] < plain[1];
+		System.out.printf("Rotate %5.2f (%6.1f deg/s): no lead course error %5.2f deg drift %5.2f in, " +
+				"lead %.3f s course error %5.2f deg drift %5.2f in  %s%n", rotate, plain[2], plain[0], plain[1],
+				lead, led[0], led[1], ok ? "ok" : "FAILED");
+		return ok;
+	}
+
+	public static void main(String args[]) {
+		double lead = LEAD;
+		boolean pass = true;
+		for (int iiRotate = 0; iiRotate < ROTATES.length; iiRotate++) {
+			pass &= compare(ROTATES[iiRotate], lead);
+		}
+		double straightPlain[] = drive(0.0, 0.0);
+		double straightLed[] = drive(lead, 0.0);
+		boolean straightOk = straightLed[0] == straightPlain[0] && straightLed[1] == straightPlain[1];
+		System.out.printf("No spin: course error %.2f deg drift %.2f in, same with lead  %s%n", straightPlain[0],
+				straightPlain[1], straightOk ? "ok" : "FAILED");
+		pass &= straightOk;
+
+		System.out.println("Lead sweep, course error and drift at rotate 1.0 and 0.5:");
+		for (int iiLead = 0; iiLead < SWEEP_LEADS.length; iiLead++) {
+			double fast[] = drive(SWEEP_LEADS[iiLead], 1.0);
+			double slow[] = drive(SWEEP_LEADS[iiLead], 0.5);
+			System.out.printf("  lead %.3f s  %5.2f deg %5.2f in   %5.2f deg %5.2f in%n", SWEEP_LEADS[iiLead],
+					fast[0], fast[1], slow[0], slow[1]);
+		}
+
+		BenchmarkRunner runner = BenchmarkRunner.fromArgs(args);
+		runner.printHeader();
+		final HeadingPredictor predictor = new HeadingPredictor(new GyroInput() {
+			private double angle = 0;
+			public double getAngle() {
+				angle += 0.5;
+				return angle;
+			}
+			public double getRate() {
+				return 0;
+			}
+			public void reset() {
+				angle = 0;
+			}
+		}, RobotMap.Constants.HEADING_LEAD_WINDOW, lead);
+		runner.run("HeadingPredictor.sample", new Benchmark() {
+			public double run(int iteration) {
+				predictor.sample(iteration * PERIOD);
+				return predictor.getAngle();
+			}
+		});
+
+		System.out.println(pass ? "PASS" : "FAIL");
+		if (!pass) {
+			System.exit(1);
+		}
+	}
+
+}
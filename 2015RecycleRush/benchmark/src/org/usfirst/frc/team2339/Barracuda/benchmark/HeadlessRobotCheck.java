@@ -0,0 +1,137 @@
+package org.usfirst.frc.team2339.Barracuda.benchmark;
+
+import org.usfirst.frc.team2339.Barracuda.OI;
+import org.usfirst.frc.team2339.Barracuda.RobotMap;
+import org.usfirst.frc.team2339.Barracuda.benchmark.BenchmarkRunner.Benchmark;
+import org.usfirst.frc.team2339.Barracuda.components.SwerveSteeringLoop;
+import org.usfirst.frc.team2339.Barracuda.control.InputSampler;
+import org.usfirst.frc.team2339.Barracuda.control.InputSnapshot;
+import org.usfirst.frc.team2339.Barracuda.hal.SimulatedHardware;
+import org.usfirst.frc.team2339.Barracuda.hal.SimulatedHardware.SimulatedJoystick;
+import org.usfirst.frc.team2339.Barracuda.subsystems.Lift;
+import org.usfirst.frc.team2339.Barracuda.subsystems.SwerveDrive;
+import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveWheel;
+
+/**
+ * Builds the robot's subsystems and operator interface on {@link SimulatedHardware}, as robotInit does
+ * on the robot, checks they drive the simulated devices, and times a control tick of the drive and steering.
+ *
+ * Checks, exit status 1 if any fails:
+ * the lift will not drive down with its lower limit switch closed but will drive up,
+ * a gyro reset through RobotMap zeroes the simulated gyro,
+ * driving forward sets every drive motor,
+ * each wheel's steering output is the PID output for its setpoint and encoder,
+ * with a steering profile each wheel's profile starts toward its setpoint within the acceleration limit,
+ * and joystick samples (and the joystick views built on them) only change when sampled.
+ * Run with "ant benchmark -Dbenchmark.class=org.usfirst.frc.team2339.Barracuda.benchmark.HeadlessRobotCheck".
+ *
+ * @author emiller
+ *
+ */
+public class HeadlessRobotCheck {
+
+	private static final int WHEELS = RobotMap.Constants.NUMBER_OF_WHEELS;
+
+	private static boolean check(String name, boolean pass) {
+		System.out.printf("%-40s %s%n", name, pass ? "ok" : "FAILED");
+		return pass;
+	}
+
+	public static void main(String args[]) {
+		final SimulatedHardware hardware = new SimulatedHardware();
+		RobotMap.init(hardware);
+		OI oi = new OI(hardware);
+		Lift lift = RobotMap.Subsystem.lift;
+		final SwerveDrive drive = RobotMap.Subsystem.robotDrive;
+		final SwerveSteeringLoop steering = RobotMap.Control.steering;
+		boolean pass = true;
+
+		hardware.getSwitch(RobotMap.DIO.LIFT_LOWER_LIMIT_SWITCH).set(false);
+		lift.setLiftMotor(-0.5);
+		boolean stopped = hardware.getMotor(RobotMap.PWM.LIFT_WINCH).get() == 0.0;
+		lift.setLiftMotor(0.5);
+		pass &= check("Lift lower limit", stopped && hardware.getMotor(RobotMap.PWM.LIFT_WINCH).get() == 0.5);
+
+		hardware.getGyro(RobotMap.Analog.GYRO).setAngle(30.0);
+		RobotMap.Sensor.gyro.reset();
+		pass &= check("Gyro reset", hardware.getGyro(RobotMap.Analog.GYRO).getAngle() == 0.0);
+
+		drive.enableSteering(true);
+		drive.swerveDriveRobot(0.0, 0.5, 0.0);
+		boolean driving = true;
+		for (int iiWheel = 0; iiWheel < WHEELS; iiWheel++) {
+			driving &= Math.abs(hardware.getMotor(RobotMap.PWM.DRIVE_CONTROLLERS[iiWheel]).get()) > 0.1;
+		}
+		pass &= check("Drive motors forward", driving);
+
+		hardware.getEncoder(RobotMap.DIO.STEERING_ENCODERS_A[0]).setDistance(10.0);
+		drive.swerveDriveRobot(0.5, 0.0, 0.3);
+		steering.clearProfile();
+		steering.update(0.0);
+		boolean steered = true;
+		for (int iiWheel = 0; iiWheel < WHEELS; iiWheel++) {
+			SwerveSteeringLoop.Module controller = steering.getModule(iiWheel);
+			double error = SwerveWheel.wrapAngle(controller.getSetpoint() - controller.getSteeringAngle());
+			double expected = Math.max(-1.0, Math.min(1.0, RobotMap.Constants.STEERING_PID_P * error));
+			steered &= Math.abs(hardware.getMotor(RobotMap.PWM.STEERING_CONTROLLERS[iiWheel]).get() - expected) < 1e-9;
+		}
+		pass &= check("Steering PID output", steered);
+
+		// Checked whether or not RobotMap turns profiles on
+		steering.setProfile(RobotMap.Constants.STEERING_MAX_VELOCITY, RobotMap.Constants.STEERING_MAX_ACCELERATION,
+				RobotMap.Constants.STEERING_FF_S, RobotMap.Constants.STEERING_FF_V, RobotMap.Constants.STEERING_FF_A);
+		double period = steering.getNominalPeriod();
+		steering.update(period);
+		boolean profiling = true;
+		for (int iiWheel = 0; iiWheel < WHEELS; iiWheel++) {
+			SwerveSteeringLoop.Module controller = steering.getModule(iiWheel);
+			double distance = SwerveWheel.wrapAngle(controller.getSetpoint() - controller.getSteeringAngle());
+			double velocity = controller.getProfileVelocity();
+			profiling &= velocity * distance > 0 && controller.getOutput() * distance > 0 &&
+					Math.abs(velocity) <= RobotMap.Constants.STEERING_MAX_ACCELERATION * period + 1e-9;
+		}
+		pass &= check("Steering profile start", profiling);
+
+		final InputSampler inputs = oi.getInputSampler();
+		SimulatedJoystick driveStick = hardware.getJoystick(0);
+		driveStick.setRawAxis(0, 0.5);
+		driveStick.setRawButton(OI.DRIVE_BUTTON_ABSOLUTE_GYRO_MODE, true);
+		boolean unchanged = inputs.get().getStrafe() == 0.0 && !inputs.get().getGyro();
+		InputSnapshot sample = inputs.sample();
+		driveStick.setRawAxis(0, -0.5);
+		pass &= check("Joystick sample", unchanged && sample.getStrafe() == 0.5 && sample.getGyro() &&
+				inputs.get() == sample && oi.getJoystickDrive().getStrafe() == 0.5 &&
+				hardware.getJoystick(0).getRawAxis(0) == -0.5);
+
+		final JoystickSamples samples = new JoystickSamples(2339);
+		BenchmarkRunner runner = BenchmarkRunner.fromArgs(args);
+		runner.printHeader();
+		runner.run("Drive tick on simulated hardware", new Benchmark() {
+			public double run(int iteration) {
+				int sample = JoystickSamples.index(iteration);
+				drive.swerveDriveRobot(samples.strafe[sample], samples.frontBack[sample], samples.rotate[sample]);
+				steering.update(iteration * steering.getNominalPeriod());
+				return hardware.getMotor(RobotMap.PWM.DRIVE_CONTROLLERS[0]).get();
+			}
+		});
+
+		runner.run("Steering update, all wheels", new Benchmark() {
+			public double run(int iteration) {
+				steering.update(iteration * steering.getNominalPeriod());
+				return steering.getModule(0).getOutput();
+			}
+		});
+
+		runner.run("InputSampler.sample", new Benchmark() {
+			public double run(int iteration) {
+				return inputs.sample().getStrafe();
+			}
+		});
+
+		System.out.println(pass ? "PASS" : "FAIL");
+		if (!pass) {
+			System.exit(1);
+		}
+	}
+
+}
@@ -0,0 +1,73 @@
+package org.usfirst.frc.team2339.Barracuda.benchmark;
+
+import java.util.Random;
+
+import org.usfirst.frc.team2339.Barracuda.OI;
+
+/**
+ * Realistic joystick inputs for benchmarks.
+ *
+ * Mix is roughly what a driver does during a match:
+ * sitting in the dead band, straight driving, driving with some rotation, and spinning in place.
+ * Samples are generated once from a fixed seed so every run sees the same inputs.
+ *
+ * @author emiller
+ *
+ */
+public class JoystickSamples {
+
+	// Power of two so the index can be masked
+	public static final int SAMPLE_COUNT = 4096;
+	private static final int SAMPLE_MASK = SAMPLE_COUNT - 1;
+
+	public final double strafe[] = new double[SAMPLE_COUNT];
+	public final double frontBack[] = new double[SAMPLE_COUNT];
+	public final double rotate[] = new double[SAMPLE_COUNT];
+	public final double gyroAngle[] = new double[SAMPLE_COUNT];
+
+	public JoystickSamples(long seed) {
+		Random random = new Random(seed);
+		double angle = 0;
+		for (int ii = 0; ii < SAMPLE_COUNT; ii++) {
+			double kind = random.nextDouble();
+			if (kind < 0.25) {
+				// Dead band
+				strafe[ii] = noise(random, OI.DRIVE_STICK_DEAD_BAND);
+				frontBack[ii] = noise(random, OI.DRIVE_STICK_DEAD_BAND);
+				rotate[ii] = noise(random, OI.DRIVE_STICK_DEAD_BAND);
+			} else if (kind < 0.65) {
+				// Translate only
+				double direction = 2 * Math.PI * random.nextDouble();
+				double magnitude = 0.3 + 0.7 * random.nextDouble();
+				strafe[ii] = magnitude * Math.sin(direction);
+				frontBack[ii] = magnitude * Math.cos(direction);
+				rotate[ii] = noise(random, OI.DRIVE_STICK_DEAD_BAND);
+			} else if (kind < 0.9) {
+				// Translate and rotate
+				strafe[ii] = 2 * random.nextDouble() - 1;
+				frontBack[ii] = 2 * random.nextDouble() - 1;
+				rotate[ii] = 2 * random.nextDouble() - 1;
+			} else {
+				// Spin in place
+				strafe[ii] = noise(random, OI.DRIVE_STICK_DEAD_BAND);
+				frontBack[ii] = noise(random, OI.DRIVE_STICK_DEAD_BAND);
+				rotate[ii] = random.nextBoolean() ? 1.0 : -1.0;
+			}
+			angle += 5 * random.nextGaussian();
+			gyroAngle[ii] = angle;
+		}
+	}
+
+	private static double noise(Random random, double amplitude) {
+		return amplitude * (2 * random.nextDouble() - 1);
+	}
+
+	/**
+	 * @param iteration benchmark iteration
+	 * @return sample index for iteration
+	 */
+	public static int index(int iteration) {
+		return iteration & SAMPLE_MASK;
+	}
+
+}
@@ -0,0 +1,77 @@
+package org.usfirst.frc.team2339.Barracuda.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.usfirst.frc.team2339.Barracuda.benchmark.BenchmarkRunner.Benchmark;
+import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveKinematics;
+import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveKinematicsTable;
+import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveKinematicsTable.Verification;
+import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveTrig;
+import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveWheel;
+
+/**
+ * Verification report and speed of {@link SwerveKinematicsTable} at several grid sizes.
+ *
+ * For each size the table is generated, saved, memory mapped back in,
+ * and compared against {@link SwerveWheel#calculateWheelVelocity} between grid points.
+ * Run with "ant benchmark -Dbenchmark.class=org.usfirst.frc.team2339.Barracuda.benchmark.KinematicsTableBenchmark".
+ *
+ * @author emiller
+ *
+ */
+public class KinematicsTableBenchmark {
+
+	private static final int GRID_SIZES[] = {21, 41, 81};
+	private static final int VERIFY_SAMPLES_PER_AXIS = 60;
+	// Wheel angle is not meaningful when the wheel is barely moving
+	private static final double ANGLE_SPEED_THRESHOLD = 0.1;
+
+	public static void main(String args[]) throws IOException {
+		final JoystickSamples samples = new JoystickSamples(2339);
+		final SwerveKinematics kinematics = new SwerveKinematics(SwerveMathBenchmark.rectangleWheels(),
+				SwerveTrig.FAST);
+		final double speeds[] = new double[4];
+		final double angles[] = new double[4];
+
+		BenchmarkRunner runner = BenchmarkRunner.fromArgs(args);
+		for (int iiSize = 0; iiSize < GRID_SIZES.length; iiSize++) {
+			int points = GRID_SIZES[iiSize];
+			long start = System.nanoTime();
+			SwerveKinematicsTable generated = SwerveKinematicsTable.generate(kinematics, points, Math.sqrt(2), 1.0);
+			long generateTime = System.nanoTime() - start;
+
+			File file = File.createTempFile("swerve_kinematics", ".table");
+			file.deleteOnExit();
+			generated.save(file);
+			start = System.nanoTime();
+			SwerveKinematicsTable loaded = SwerveKinematicsTable.load(file, kinematics);
+			long loadTime = System.nanoTime() - start;
+
+			Verification verification = loaded.verify(VERIFY_SAMPLES_PER_AXIS, ANGLE_SPEED_THRESHOLD);
+			System.out.printf("%d points per axis, %d bytes: generate %.1f ms, load %.2f ms%n",
+					points, file.length(), generateTime / 1e6, loadTime / 1e6);
+			System.out.println("  " + verification);
+		}
+
+		final SwerveKinematicsTable table = SwerveKinematicsTable.generate(kinematics, 41, Math.sqrt(2), 1.0);
+		runner.printHeader();
+		runner.run("SwerveKinematics FAST + normalize", new Benchmark() {
+			public double run(int iteration) {
+				int ii = JoystickSamples.index(iteration);
+				kinematics.calculateWheelVelocities(
+						samples.strafe[ii], samples.frontBack[ii], samples.rotate[ii], speeds, angles);
+				SwerveKinematics.normalize(speeds, 4);
+				return angles[0] + speeds[3];
+			}
+		});
+		runner.run("SwerveKinematicsTable.lookup 41", new Benchmark() {
+			public double run(int iteration) {
+				int ii = JoystickSamples.index(iteration);
+				table.lookup(samples.strafe[ii], samples.frontBack[ii], samples.rotate[ii], speeds, angles);
+				return angles[0] + speeds[3];
+			}
+		});
+	}
+
+}
@@ -0,0 +1,71 @@
+package org.usfirst.frc.team2339.Barracuda.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.usfirst.frc.team2339.Barracuda.replay.ReplayEngine;
+import org.usfirst.frc.team2339.Barracuda.telemetry.FlightLog;
+
+/**
+ * Replay flight logs copied off the robot through the current drive code and report differences.
+ *
+ * Arguments: log directory [name [start seconds [end seconds]]]. Name defaults to "flight".
+ * If the directory has subdirectories, each one is replayed as a separate log, so a season of
+ * logs can be checked in one run.
+ * Exits with status 1 if any record does not match, so it can drive "git bisect run".
+ * Run with "ant benchmark -Dbenchmark.class=org.usfirst.frc.team2339.Barracuda.benchmark.LogReplay
+ * -Dbenchmark.args=logs".
+ *
+ * @author emiller
+ *
+ */
+public class LogReplay {
+
+	private static int replay(File directory, String name, double start, double end) throws IOException {
+		ReplayEngine engine = new ReplayEngine(new FlightLog.Reader(directory, name));
+		engine.seek(start);
+		long startNanos = System.nanoTime();
+		ReplayEngine.Result result = engine.run(end);
+		double seconds = (System.nanoTime() - startNanos) * 1e-9;
+		System.out.printf("%s: %d records, %d compared, %d mismatches", directory, result.records,
+				result.compared, result.mismatches);
+		if (result.firstMismatch >= 0) {
+			System.out.printf(", first at %.3f s", engine.getTime(result.firstMismatch));
+		}
+		System.out.printf(", max error speed %.3g angle %.3g motion %.3g, replayed in %.2f s%n",
+				result.maxSpeedError, result.maxAngleError, result.maxMotionError, seconds);
+		return result.mismatches;
+	}
+
+	public static void main(String args[]) throws IOException {
+		if (args.length < 1) {
+			System.out.println("Usage: LogReplay directory [name [start [end]]]");
+			System.exit(2);
+		}
+		File directory = new File(args[0]);
+		String name = args.length > 1 ? args[1] : "flight";
+		double start = args.length > 2 ? Double.parseDouble(args[2]) : 0;
+		double end = args.length > 3 ? Double.parseDouble(args[3]) : Double.MAX_VALUE;
+
+		int mismatches = 0;
+		File logs[] = directory.listFiles();
+		boolean hasSubdirectories = false;
+		if (logs != null) {
+			Arrays.sort(logs);
+			for (File log : logs) {
+				if (log.isDirectory()) {
+					hasSubdirectories = true;
+					mismatches += replay(log, name, start, end);
+				}
+			}
+		}
+		if (!hasSubdirectories) {
+			mismatches += replay(directory, name, start, end);
+		}
+		if (mismatches > 0) {
+			System.exit(1);
+		}
+	}
+
+}
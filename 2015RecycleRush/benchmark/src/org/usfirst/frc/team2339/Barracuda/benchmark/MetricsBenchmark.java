@@ -0,0 +1,100 @@
+package org.usfirst.frc.team2339.Barracuda.benchmark;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.usfirst.frc.team2339.Barracuda.benchmark.BenchmarkRunner.Benchmark;
+import org.usfirst.frc.team2339.Barracuda.telemetry.Counter;
+import org.usfirst.frc.team2339.Barracuda.telemetry.DashboardPublisher;
+import org.usfirst.frc.team2339.Barracuda.telemetry.LatencyHistogram;
+import org.usfirst.frc.team2339.Barracuda.telemetry.MetricsRegistry;
+
+/**
+ * Cost of recording metrics and dashboard values, and accuracy of histogram percentiles against exact ones.
+ *
+ * Exits with status 1 if a percentile is under the exact value or more than one bucket (25%) over it.
+ * Run with "ant benchmark -Dbenchmark.class=org.usfirst.frc.team2339.Barracuda.benchmark.MetricsBenchmark".
+ *
+ * @author emiller
+ *
+ */
+public class MetricsBenchmark {
+
+	private static final int ACCURACY_SAMPLES = 100000;
+
+	static boolean checkPercentiles() {
+		Random random = new Random(2339);
+		LatencyHistogram histogram = MetricsRegistry.histogram("Accuracy check");
+		long samples[] = new long[ACCURACY_SAMPLES];
+		for (int ii = 0; ii < ACCURACY_SAMPLES; ii++) {
+			// Mostly 20-200 us with a long tail, like a control loop
+			samples[ii] = (long) (20000 * Math.exp(random.nextGaussian()) + (random.nextInt(100) == 0 ? 5000000 * random.nextDouble() : 0));
+			histogram.record(samples[ii]);
+		}
+		LatencyHistogram.Summary summary = new LatencyHistogram.Summary();
+		histogram.drain(summary);
+		Arrays.sort(samples);
+		long exactP50 = samples[(int) Math.ceil(0.50 * ACCURACY_SAMPLES) - 1];
+		long exactP99 = samples[(int) Math.ceil(0.99 * ACCURACY_SAMPLES) - 1];
+		long exactMax = samples[ACCURACY_SAMPLES - 1];
+		System.out.printf("p50 %d ns (exact %d), p99 %d ns (exact %d), max %d ns (exact %d), count %d%n",
+				summary.p50, exactP50, summary.p99, exactP99, summary.max, exactMax, summary.count);
+		boolean pass = summary.count == ACCURACY_SAMPLES && summary.max == exactMax &&
+				summary.p50 >= exactP50 && summary.p50 <= 1.25 * exactP50 &&
+				summary.p99 >= exactP99 && summary.p99 <= 1.25 * exactP99;
+		System.out.println(pass ? "PASS" : "FAIL");
+		return pass;
+	}
+
+	public static void main(String args[]) {
+		boolean pass = checkPercentiles();
+
+		final LatencyHistogram histogram = MetricsRegistry.histogram("Benchmark");
+		final Counter counter = MetricsRegistry.counter("Benchmark");
+		final DashboardPublisher.IndexedKeys wheelKeys = new DashboardPublisher.IndexedKeys("Benchmark wheel ", " angle ");
+		wheelKeys.slot(3);
+		BenchmarkRunner runner = BenchmarkRunner.fromArgs(args);
+		runner.printHeader();
+		runner.run("System.nanoTime", new Benchmark() {
+			public double run(int iteration) {
+				return System.nanoTime();
+			}
+		});
+		runner.run("LatencyHistogram.record", new Benchmark() {
+			public double run(int iteration) {
+				histogram.record(1000 + (iteration & 0xffff));
+				return iteration;
+			}
+		});
+		runner.run("LatencyHistogram.recordSince", new Benchmark() {
+			public double run(int iteration) {
+				long start = System.nanoTime();
+				histogram.recordSince(start);
+				return iteration;
+			}
+		});
+		runner.run("Counter.increment", new Benchmark() {
+			public double run(int iteration) {
+				counter.increment();
+				return iteration;
+			}
+		});
+		runner.run("Key concatenation", new Benchmark() {
+			public double run(int iteration) {
+				// What each SmartDashboard.putNumber with a built key paid before sending
+				return ("Wheel " + (iteration & 3) + " encoder angle ").length();
+			}
+		});
+		runner.run("DashboardPublisher.put", new Benchmark() {
+			public double run(int iteration) {
+				wheelKeys.put(iteration & 3, iteration);
+				return iteration;
+			}
+		});
+
+		if (!pass) {
+			System.exit(1);
+		}
+	}
+
+}
@@ -0,0 +1,297 @@
+package org.usfirst.frc.team2339.Barracuda.benchmark;
+
+import java.util.Random;
+
+import org.usfirst.frc.team2339.Barracuda.RobotMap;
+import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveKinematics;
+import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveModuleOptimizer;
+import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveWheel;
+
+/**
+ * Simulated comparison of module flip and speed scaling strategies on a noisy stick script.
+ *
+ * Each module has a steering motor under continuous P control, like {@link RobotMap.Constants#STEERING_PID_P},
+ * with a top turn rate, and a drive wheel that follows commanded speed with a first order lag.
+ * Steering rate lags the motor output, so a wheel does not move away from the flip boundary at once.
+ * Two driver scripts are run, both with noise on every reading:
+ *   mixed - random stick positions, half of them turned about 90 degrees from the last one
+ *   boundary - slow stick held 90 degrees from where the wheels point
+ * Each script is run from {@link #SEEDS} random seeds and the results summed, since where the wheels end up
+ * feeds back into the boundary script, so a single run swings a few percent either way.
+ *
+ * Reported per strategy:
+ *   steering travel - total degrees turned by all steering motors
+ *   reversals - times a steering motor swinging faster than 60 deg/s changed direction
+ *   flips - times a wheel changed between driving forwards and backwards
+ *   time to motion - mean time after a stick change until a module pushes at 90% of its commanded speed
+ *                    in its commanded direction
+ *   missed - module stick changes that never reached that
+ *   wrong way - distance modules pushed against their commanded direction
+ * and, for the default optimizer, the largest turn asked of a wheel already settled within the default
+ * hysteresis of its last setpoint.
+ *
+ * The baseline is what the robot ran before the optimizer: flip at exactly 90 degrees, no speed scaling.
+ * The 45 degree cut off was only in the unused SwerveDrive and WorkingPalmdale code and is shown for reference.
+ * Exits with status 1 if, in either script, the default optimizer does not flip less, reach commanded motion
+ * sooner and turn the steering less than the baseline, or if it asks a settled wheel to turn more than 90 degrees.
+ * Steering travel is mostly the turns the script asks for, so hysteresis can only save the few degrees spent
+ * swinging back and forth near the boundary, and costs a few where a wheel keeps its flip state mid turn.
+ * Run with "ant benchmark -Dbenchmark.class=org.usfirst.frc.team2339.Barracuda.benchmark.ModuleOptimizerSimulation".
+ *
+ * @author emiller
+ *
+ */
+public class ModuleOptimizerSimulation {
+
+	private static final int WHEELS = 4;
+	private static final double CONTROL_PERIOD = 0.02;
+	private static final int SUBSTEPS = 10;
+	private static final double STEERING_P = RobotMap.Constants.STEERING_PID_P;
+	private static final double MAX_STEERING_RATE = 600; // degrees per second at full output
+	private static final double STEERING_TIME_CONSTANT = 0.08;
+	// Only count reversals of real swings, not jitter around the setpoint
+	private static final double REVERSAL_RATE = 60;
+	private static final double DRIVE_TIME_CONSTANT = 0.1;
+	private static final double STICK_NOISE = 0.03;
+	private static final int SEGMENTS = 1000;
+	private static final int SEEDS = 10;
+	private static final double MOTION_FRACTION = 0.9;
+	private static final double MOTION_MIN_SPEED = 0.2;
+
+	interface Strategy {
+		void reset();
+		void apply(double currentAngles[], double rawSpeeds[], double rawAngles[],
+				double speeds[], double angles[]);
+	}
+
+	/**
+	 * Flip and scaling from the old SwerveDrive and WorkingPalmdale driveScale:
+	 * flip past exactly 90 degrees, full speed under 45 degrees of turn, otherwise stop.
+	 */
+	static class CutOffStrategy implements Strategy {
+		public void reset() {
+		}
+
+		public void apply(double currentAngles[], double rawSpeeds[], double rawAngles[],
+				double speeds[], double angles[]) {
+			for (int iiWheel = 0; iiWheel < WHEELS; iiWheel++) {
+				double turnAngle = SwerveWheel.normalizeAngle(rawAngles[iiWheel] - currentAngles[iiWheel]);
+				double scale = 1;
+				if (Math.abs(turnAngle) > 90) {
+					turnAngle = SwerveWheel.normalizeAngle(turnAngle + 180);
+					scale = -1;
+				}
+				if (Math.abs(turnAngle) >= 45) {
+					scale = 0;
+				}
+				speeds[iiWheel] = scale * Math.cos(Math.toRadians(turnAngle)) * rawSpeeds[iiWheel];
+				angles[iiWheel] = SwerveWheel.normalizeAngle(currentAngles[iiWheel] + turnAngle);
+			}
+		}
+	}
+
+	static class OptimizerStrategy implements Strategy {
+		private final SwerveModuleOptimizer optimizer;
+
+		OptimizerStrategy(double flipHysteresis, boolean scaleSpeed) {
+			optimizer = new SwerveModuleOptimizer(WHEELS, flipHysteresis, scaleSpeed);
+		}
+
+		public void reset() {
+			optimizer.reset();
+		}
+
+		public void apply(double currentAngles[], double rawSpeeds[], double rawAngles[],
+				double speeds[], double angles[]) {
+			optimizer.optimize(WHEELS, currentAngles, rawSpeeds, rawAngles, speeds, angles);
+		}
+	}
+
+	static class Result {
+		double steeringTravel = 0;
+		int reversals = 0;
+		int flips = 0;
+		double motionTimeTotal = 0;
+		int motionCount = 0;
+		int neverMoved = 0;
+		double wrongWay = 0;
+		double maxSettledTurn = 0;
+
+		double meanTimeToMotion() {
+			return motionCount > 0 ? motionTimeTotal / motionCount : Double.NaN;
+		}
+	}
+
+	/**
+	 * @param strategy strategy to simulate
+	 * @param boundary true to hold every stick position 90 degrees from where wheel 0 points,
+	 *                 at low speed so noise is a large part of the reading
+	 * @return result summed over all seeds
+	 */
+	static Result simulate(Strategy strategy, boolean boundary) {
+		Result result = new Result();
+		for (int iiSeed = 0; iiSeed < SEEDS; iiSeed++) {
+			strategy.reset();
+			simulate(strategy, boundary, new Random(2339 + iiSeed), result);
+		}
+		return result;
+	}
+
+	static void simulate(Strategy strategy, boolean boundary, Random random, Result result) {
+		SwerveKinematics kinematics = new SwerveKinematics(SwerveMathBenchmark.rectangleWheels());
+		double steeringAngles[] = new double[WHEELS];
+		double steeringRates[] = new double[WHEELS];
+		double swingDirections[] = new double[WHEELS];
+		double wheelSpeeds[] = new double[WHEELS];
+		boolean reversed[] = new boolean[WHEELS];
+		double rawSpeeds[] = new double[WHEELS];
+		double rawAngles[] = new double[WHEELS];
+		double speeds[] = new double[WHEELS];
+		double angles[] = new double[WHEELS];
+		boolean settled[] = new boolean[WHEELS];
+
+		double strafe = 0;
+		double frontBack = 1;
+		double rotate = 0;
+		double dt = CONTROL_PERIOD / SUBSTEPS;
+		for (int iiSegment = 0; iiSegment < SEGMENTS; iiSegment++) {
+			double noise = STICK_NOISE;
+			if (boundary) {
+				// Wheel angle is clockwise from front, stick direction is counter-clockwise from right
+				double direction = Math.toRadians(90 - steeringAngles[0]) + Math.PI / 2 * (random.nextBoolean() ? 1 : -1);
+				strafe = 0.3 * Math.cos(direction);
+				frontBack = 0.3 * Math.sin(direction);
+				rotate = 0;
+				noise = 2 * STICK_NOISE;
+			} else if ((iiSegment & 1) == 0) {
+				// About 90 degrees from last direction, right at the flip boundary
+				double direction = Math.atan2(frontBack, strafe) + Math.PI / 2 * (random.nextBoolean() ? 1 : -1);
+				double magnitude = 0.5 + 0.5 * random.nextDouble();
+				strafe = magnitude * Math.cos(direction);
+				frontBack = magnitude * Math.sin(direction);
+				rotate = 0;
+			} else {
+				strafe = 2 * random.nextDouble() - 1;
+				frontBack = 2 * random.nextDouble() - 1;
+				rotate = 0.5 * (2 * random.nextDouble() - 1);
+			}
+			int ticks = 15 + random.nextInt(60);
+			boolean moving[] = new boolean[WHEELS];
+			for (int iiTick = 0; iiTick < ticks; iiTick++) {
+				kinematics.calculateWheelVelocities(
+						strafe + noise * random.nextGaussian(),
+						frontBack + noise * random.nextGaussian(),
+						rotate + noise * random.nextGaussian(),
+						rawSpeeds, rawAngles);
+				SwerveKinematics.normalize(rawSpeeds, WHEELS);
+				for (int iiWheel = 0; iiWheel < WHEELS; iiWheel++) {
+					settled[iiWheel] = Math.abs(SwerveWheel.normalizeAngle(angles[iiWheel] - steeringAngles[iiWheel])) <=
+							SwerveModuleOptimizer.DEFAULT_FLIP_HYSTERESIS;
+				}
+				strategy.apply(steeringAngles, rawSpeeds, rawAngles, speeds, angles);
+				for (int iiWheel = 0; iiWheel < WHEELS; iiWheel++) {
+					if (settled[iiWheel]) {
+						result.maxSettledTurn = Math.max(result.maxSettledTurn,
+								Math.abs(SwerveWheel.normalizeAngle(angles[iiWheel] - steeringAngles[iiWheel])));
+					}
+				}
+				for (int iiWheel = 0; iiWheel < WHEELS; iiWheel++) {
+					boolean reverse = Math.abs(SwerveWheel.normalizeAngle(angles[iiWheel] - rawAngles[iiWheel])) > 90;
+					if (reverse != reversed[iiWheel]) {
+						result.flips++;
+						reversed[iiWheel] = reverse;
+					}
+				}
+
+				for (int iiStep = 0; iiStep < SUBSTEPS; iiStep++) {
+					for (int iiWheel = 0; iiWheel < WHEELS; iiWheel++) {
+						double error = SwerveWheel.normalizeAngle(angles[iiWheel] - steeringAngles[iiWheel]);
+						double output = Math.max(-1, Math.min(1, STEERING_P * error));
+						double rate = steeringRates[iiWheel] +
+								(output * MAX_STEERING_RATE - steeringRates[iiWheel]) * dt / STEERING_TIME_CONSTANT;
+						if (Math.abs(rate) > REVERSAL_RATE && rate * swingDirections[iiWheel] < 0) {
+							result.reversals++;
+						}
+						if (Math.abs(rate) > REVERSAL_RATE) {
+							swingDirections[iiWheel] = Math.signum(rate);
+						}
+						steeringRates[iiWheel] = rate;
+						steeringAngles[iiWheel] = SwerveWheel.normalizeAngle(steeringAngles[iiWheel] + rate * dt);
+						result.steeringTravel += Math.abs(rate * dt);
+						wheelSpeeds[iiWheel] += (speeds[iiWheel] - wheelSpeeds[iiWheel]) * dt / DRIVE_TIME_CONSTANT;
+
+						// Push along commanded direction
+						double along = wheelSpeeds[iiWheel] *
+								Math.cos(Math.toRadians(steeringAngles[iiWheel] - rawAngles[iiWheel]));
+						if (along < 0) {
+							result.wrongWay -= along * dt;
+						}
+						if (!moving[iiWheel] && rawSpeeds[iiWheel] > MOTION_MIN_SPEED &&
+								along >= MOTION_FRACTION * rawSpeeds[iiWheel]) {
+							moving[iiWheel] = true;
+							result.motionTimeTotal += (iiTick * SUBSTEPS + iiStep + 1) * dt;
+							result.motionCount++;
+						}
+					}
+				}
+			}
+			for (int iiWheel = 0; iiWheel < WHEELS; iiWheel++) {
+				if (!moving[iiWheel]) {
+					result.neverMoved++;
+				}
+			}
+		}
+	}
+
+	static Result report(String name, Strategy strategy, boolean boundary) {
+		Result result = simulate(strategy, boundary);
+		System.out.printf("%-44s %12.0f %10d %8d %12.3f %8d %10.2f%n", name, result.steeringTravel, result.reversals,
+				result.flips, result.meanTimeToMotion(), result.neverMoved, result.wrongWay);
+		return result;
+	}
+
+	public static void main(String args[]) {
+		boolean pass = true;
+		double defaultHysteresis = SwerveModuleOptimizer.DEFAULT_FLIP_HYSTERESIS;
+		boolean defaultScaleSpeed = SwerveModuleOptimizer.DEFAULT_SCALE_SPEED;
+		for (int iiScenario = 0; iiScenario < 2; iiScenario++) {
+			boolean boundary = iiScenario == 1;
+			System.out.println(boundary ? "Stick held at flip boundary" : "Mixed stick script");
+			System.out.printf("%-44s %12s %10s %8s %12s %8s %10s%n", "Strategy", "travel deg", "reversals", "flips",
+					"to motion s", "missed", "wrong way");
+			Result flip90 = report("Flip at 90, no scaling (robot baseline)", new OptimizerStrategy(0, false), boundary);
+			report("Flip at 90, cut off at 45 (unused)", new CutOffStrategy(), boundary);
+			report("Flip at 90, cosine scaling", new OptimizerStrategy(0, true), boundary);
+			Result defaultResult = null;
+			for (int iiScale = 0; iiScale < 2; iiScale++) {
+				boolean scaleSpeed = iiScale == 1;
+				for (double hysteresis = 5; hysteresis <= 20; hysteresis += 5) {
+					boolean isDefault = hysteresis == defaultHysteresis && scaleSpeed == defaultScaleSpeed;
+					Result result = report("Hysteresis " + hysteresis + (scaleSpeed ? ", cosine scaling" : ", no scaling") +
+							(isDefault ? " (default)" : ""), new OptimizerStrategy(hysteresis, scaleSpeed), boundary);
+					if (isDefault) {
+						defaultResult = result;
+					}
+				}
+			}
+			boolean flipsOk = defaultResult.flips < flip90.flips;
+			double motionChange = defaultResult.meanTimeToMotion() - flip90.meanTimeToMotion();
+			boolean motionOk = motionChange < 0;
+			double travelChange = defaultResult.steeringTravel / flip90.steeringTravel - 1;
+			boolean travelOk = travelChange < 0;
+			boolean settledOk = defaultResult.maxSettledTurn <= 90;
+			System.out.printf("Default against baseline: flips %+.0f%% %s, time to motion %+.3f s %s, " +
+					"steering travel %+.2f%% %s, largest settled turn %.1f deg %s%n",
+					100.0 * defaultResult.flips / flip90.flips - 100, flipsOk ? "ok" : "FAILED",
+					motionChange, motionOk ? "ok" : "FAILED", 100 * travelChange, travelOk ? "ok" : "FAILED",
+					defaultResult.maxSettledTurn, settledOk ? "ok" : "FAILED");
+			pass &= flipsOk && motionOk && travelOk && settledOk;
+			System.out.println();
+		}
+		System.out.println(pass ? "PASS" : "FAIL");
+		if (!pass) {
+			System.exit(1);
+		}
+	}
+
+}
@@ -0,0 +1,138 @@
+package org.usfirst.frc.team2339.Barracuda.benchmark;
+
+import org.usfirst.frc.team2339.Barracuda.RobotMap;
+import org.usfirst.frc.team2339.Barracuda.benchmark.BenchmarkRunner.Benchmark;
+import org.usfirst.frc.team2339.Barracuda.commands.ProfiledDrive;
+import org.usfirst.frc.team2339.Barracuda.control.MotionProfile;
+import org.usfirst.frc.team2339.Barracuda.hal.SimulatedHardware;
+import org.usfirst.frc.team2339.Barracuda.simulation.SwerveRobotSimulation;
+import org.usfirst.frc.team2339.Barracuda.subsystems.SwerveDrive;
+import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveWheel.VelocityPolar;
+
+/**
+ * Checks {@link MotionProfile} limits, times profile generation, and drives the default autonomous segment
+ * (0.5 speed for 2.25 s, to the left) on {@link SwerveRobotSimulation}: as TimedDrive does, and as
+ * {@link ProfiledDrive} does with the RobotMap AUTO_DRIVE_ limits.
+ *
+ * Checks, exit status 1 if any fails:
+ * trapezoidal and S-curve profiles, long and short, end exactly at their distance at rest,
+ * and never exceed their velocity, acceleration or jerk limits,
+ * and the profiled drive stops within 2% of the distance with less peak acceleration than the timed drive.
+ * Run with "ant benchmark -Dbenchmark.class=org.usfirst.frc.team2339.Barracuda.benchmark.MotionProfileBenchmark".
+ *
+ * @author emiller
+ *
+ */
+public class MotionProfileBenchmark {
+
+	private static final double PERIOD = 1.0 / RobotMap.Constants.CONTROL_LOOP_FREQUENCY;
+	private static final double SPEED = 0.5;
+	private static final double TIME = 2.25;
+	private static final double DIRECTION = 90;
+	// Robot is at rest below this speed, inches per second
+	private static final double REST_SPEED = 0.5;
+	private static final double RUN_TIME = 5.0;
+
+	private static boolean checkProfile(String name, double distance, double maxVelocity, double maxAcceleration,
+			double maxJerk) {
+		MotionProfile profile = new MotionProfile(distance, maxVelocity, maxAcceleration, maxJerk, PERIOD);
+		double peakVelocity = 0;
+		double peakAcceleration = 0;
+		double peakJerk = 0;
+		double sum = 0;
+		for (int iiTick = 0; iiTick <= profile.size(); iiTick++) {
+			sum += profile.getVelocity(iiTick) * PERIOD;
+			peakVelocity = Math.max(peakVelocity, Math.abs(profile.getVelocity(iiTick)));
+			double acceleration = (profile.getVelocity(iiTick) - profile.getVelocity(iiTick - 1)) / PERIOD;
+			double previous = (profile.getVelocity(iiTick - 1) - profile.getVelocity(iiTick - 2)) / PERIOD;
+			peakAcceleration = Math.max(peakAcceleration, Math.abs(acceleration));
+			peakJerk = Math.max(peakJerk, Math.abs(acceleration - previous) / PERIOD);
+		}
+		double tolerance = 1e-9;
+		boolean pass = Math.abs(sum - distance) < tolerance && profile.getPosition(profile.size() - 1) == distance &&
+				profile.getVelocity(profile.size()) == 0 && peakVelocity <= maxVelocity + tolerance &&
+				peakAcceleration <= maxAcceleration * (1 + tolerance) &&
+				(Double.isInfinite(maxJerk) || peakJerk <= maxJerk * (1 + tolerance));
+		System.out.printf("%-28s %-6s %.2f s, peak velocity %.1f acceleration %.1f jerk %s%n", name,
+				pass ? "ok" : "FAILED", profile.getDuration(), peakVelocity, peakAcceleration,
+				Double.isInfinite(maxJerk) ? "unlimited" : String.format("%.0f", peakJerk));
+		return pass;
+	}
+
+	/**
+	 * @param profiled drive with ProfiledDrive, else constant speed for TIME
+	 * @return distance when stopped, seconds to stop, peak acceleration
+	 */
+	private static double[] driveSegment(boolean profiled) {
+		SimulatedHardware hardware = new SimulatedHardware();
+		RobotMap.init(hardware);
+		SwerveDrive drive = RobotMap.Subsystem.robotDrive;
+		drive.enableSteering(true);
+		SwerveRobotSimulation simulation = new SwerveRobotSimulation(hardware, RobotMap.Control.steering);
+		double maxVelocity = SPEED * RobotMap.Constants.MAX_WHEEL_SPEED;
+		ProfiledDrive profiledDrive = new ProfiledDrive("Profiled", drive,
+				new MotionProfile(maxVelocity * TIME, maxVelocity, RobotMap.Constants.AUTO_DRIVE_MAX_ACCELERATION,
+						RobotMap.Constants.AUTO_DRIVE_MAX_JERK, PERIOD),
+				DIRECTION, RobotMap.Constants.MAX_WHEEL_SPEED);
+		VelocityPolar timed = new VelocityPolar(SPEED, DIRECTION);
+		VelocityPolar stop = new VelocityPolar(0.0, 0.0);
+
+		int ticks = (int) Math.round(RUN_TIME / PERIOD);
+		double previousX = 0;
+		double previousY = 0;
+		double peakAcceleration = 0;
+		double stopped = 0;
+		for (int iiTick = 0; iiTick < ticks; iiTick++) {
+			double time = iiTick * PERIOD;
+			if (profiled) {
+				profiledDrive.drive(time);
+			} else {
+				drive.swerveDriveRobot(time < TIME ? timed : stop);
+			}
+			simulation.run(PERIOD);
+			double vx = simulation.getVelocityX();
+			double vy = simulation.getVelocityY();
+			peakAcceleration = Math.max(peakAcceleration, Math.hypot(vx - previousX, vy - previousY) / PERIOD);
+			previousX = vx;
+			previousY = vy;
+			if (Math.hypot(vx, vy) >= REST_SPEED) {
+				stopped = time + PERIOD;
+			}
+		}
+		return new double[] {Math.hypot(simulation.getX(), simulation.getY()), stopped, peakAcceleration};
+	}
+
+	public static void main(String args[]) {
+		double maxAcceleration = RobotMap.Constants.AUTO_DRIVE_MAX_ACCELERATION;
+		double maxJerk = RobotMap.Constants.AUTO_DRIVE_MAX_JERK;
+		boolean pass = checkProfile("Trapezoid 135 in", 135, 60, maxAcceleration, Double.POSITIVE_INFINITY);
+		pass &= checkProfile("Trapezoid 10 in (triangle)", 10, 60, maxAcceleration, Double.POSITIVE_INFINITY);
+		pass &= checkProfile("S-curve 135 in", 135, 60, maxAcceleration, maxJerk);
+		pass &= checkProfile("S-curve -10 in", -10, 60, maxAcceleration, maxJerk);
+
+		double target = SPEED * RobotMap.Constants.MAX_WHEEL_SPEED * TIME;
+		double timed[] = driveSegment(false);
+		double profiled[] = driveSegment(true);
+		System.out.printf("Timed drive    %.1f in (target %.1f), at rest after %.2f s, peak acceleration %.0f in/s^2%n",
+				timed[0], target, timed[1], timed[2]);
+		System.out.printf("Profiled drive %.1f in (target %.1f), at rest after %.2f s, peak acceleration %.0f in/s^2%n",
+				profiled[0], target, profiled[1], profiled[2]);
+		boolean driveOk = Math.abs(profiled[0] - target) < 0.02 * target && profiled[2] < timed[2];
+		System.out.println("Profiled drive " + (driveOk ? "ok" : "FAILED"));
+		pass &= driveOk;
+
+		BenchmarkRunner runner = BenchmarkRunner.fromArgs(args);
+		runner.printHeader();
+		runner.run("S-curve profile, 135 in", new Benchmark() {
+			public double run(int iteration) {
+				return new MotionProfile(135 + (iteration & 7), 60, 120, 1200, PERIOD).getDuration();
+			}
+		});
+
+		System.out.println(pass ? "PASS" : "FAIL");
+		if (!pass) {
+			System.exit(1);
+		}
+	}
+
+}
@@ -0,0 +1,224 @@
+package org.usfirst.frc.team2339.Barracuda.benchmark;
+
+import org.usfirst.frc.team2339.Barracuda.RobotMap;
+import org.usfirst.frc.team2339.Barracuda.benchmark.BenchmarkRunner.Benchmark;
+import org.usfirst.frc.team2339.Barracuda.commands.PursuitDrive;
+import org.usfirst.frc.team2339.Barracuda.control.PurePursuit;
+import org.usfirst.frc.team2339.Barracuda.control.Trajectory;
+import org.usfirst.frc.team2339.Barracuda.control.TrajectoryPlanner;
+import org.usfirst.frc.team2339.Barracuda.control.TrajectoryPlanner.Waypoint;
+import org.usfirst.frc.team2339.Barracuda.hal.SimulatedHardware;
+import org.usfirst.frc.team2339.Barracuda.simulation.SwerveRobotSimulation;
+import org.usfirst.frc.team2339.Barracuda.subsystems.SwerveDrive;
+
+/**
+ * Drives trajectories on {@link SwerveRobotSimulation} with {@link PursuitDrive} (wheel odometry pose, RobotMap
+ * PURSUIT_ constants) and open loop with {@link TrajectoryDrive}, and times {@link PurePursuit} updates on a short
+ * and a long trajectory against a nearest point search over every segment.
+ *
+ * Checks, exit status 1 if any fails:
+ * pursuit ends within RobotMap PURSUIT_END_TOLERANCE of the end of each trajectory by its pose estimate,
+ * and closer to the end than open loop by true simulated position (which includes odometry error),
+ * the windowed nearest point search finds the same point as a search over every segment while moving along
+ * a path {@link #PATH_OFFSET} to one side of it,
+ * and an update on the long trajectory costs less than {@link #MAX_COST_RATIO} times one on the short trajectory.
+ * Run with "ant benchmark -Dbenchmark.class=org.usfirst.frc.team2339.Barracuda.benchmark.PursuitBenchmark".
+ *
+ * @author emiller
+ *
+ */
+public class PursuitBenchmark {
+
+	private static final double PERIOD = 1.0 / RobotMap.Constants.CONTROL_LOOP_FREQUENCY;
+	private static final double PATH_OFFSET = 4.0;
+	private static final double MAX_COST_RATIO = 2.0;
+	// Longest time to wait after the trajectory for the command to finish
+	private static final double MAX_EXTRA_TIME = 2.0;
+
+	private static final Waypoint CURVE_PATH[] = {
+		new Waypoint(0.0, 0.0, 0.0),
+		new Waypoint(60.0, 60.0, 90.0),
+		new Waypoint(120.0, 60.0, 90.0, 90.0)
+	};
+
+	private static TrajectoryPlanner createPlanner() {
+		return new TrajectoryPlanner(RobotMap.Constants.TRAJECTORY_MAX_VELOCITY,
+				RobotMap.Constants.TRAJECTORY_MAX_ACCELERATION, RobotMap.Constants.MAX_WHEEL_SPEED,
+				0.5 * Math.hypot(RobotMap.Constants.WHEEL_BASE_LENGTH, RobotMap.Constants.WHEEL_BASE_WIDTH), PERIOD);
+	}
+
+	/**
+	 * Zig zag across the field, thousands of samples
+	 */
+	private static Waypoint[] longPath() {
+		Waypoint waypoints[] = new Waypoint[24];
+		for (int iiPoint = 0; iiPoint < waypoints.length; iiPoint++) {
+			waypoints[iiPoint] = new Waypoint(60.0 * iiPoint, (iiPoint % 2) * 60.0, (iiPoint % 4) * 45.0);
+		}
+		return waypoints;
+	}
+
+	/**
+	 * @return distance of a point from the nearest segment, searching every segment
+	 */
+	private static double distanceFromPath(Trajectory trajectory, double x, double y) {
+		double best = Double.POSITIVE_INFINITY;
+		for (int iiSegment = 0; iiSegment < trajectory.size() - 1; iiSegment++) {
+			double x0 = trajectory.getX(iiSegment);
+			double y0 = trajectory.getY(iiSegment);
+			double sx = trajectory.getX(iiSegment + 1) - x0;
+			double sy = trajectory.getY(iiSegment + 1) - y0;
+			double lengthSquared = sx * sx + sy * sy;
+			double fraction = lengthSquared > 0 ? ((x - x0) * sx + (y - y0) * sy) / lengthSquared : 0;
+			fraction = Math.max(0, Math.min(1, fraction));
+			best = Math.min(best, Math.hypot(x0 + fraction * sx - x, y0 + fraction * sy - y));
+		}
+		return best;
+	}
+
+	/**
+	 * @param pursuit drive with PursuitDrive, else TrajectoryDrive
+	 * @return largest distance from the path, distance from end when finished, seconds to finish,
+	 *         distance of the odometry pose from end when finished
+	 */
+	private static double[] drive(Trajectory trajectory, boolean pursuit) {
+		SimulatedHardware hardware = new SimulatedHardware();
+		RobotMap.init(hardware);
+		SwerveDrive drive = RobotMap.Subsystem.robotDrive;
+		drive.enableSteering(true);
+		SwerveRobotSimulation simulation = new SwerveRobotSimulation(hardware, RobotMap.Control.steering);
+		PursuitDrive pursuitDrive = new PursuitDrive("Pursuit", drive, drive.getOdometry(),
+				RobotMap.createPursuit(trajectory), RobotMap.Constants.MAX_WHEEL_SPEED,
+				RobotMap.Constants.PURSUIT_END_TOLERANCE, RobotMap.Constants.PURSUIT_SETTLE_TIME);
+		TrajectoryDrive trajectoryDrive = new TrajectoryDrive("Open loop", drive, RobotMap.Sensor.gyro,
+				trajectory, RobotMap.Constants.MAX_WHEEL_SPEED);
+		pursuitDrive.startPursuit();
+
+		int ticks = (int) Math.round((trajectory.getDuration() + MAX_EXTRA_TIME) / PERIOD);
+		double maxError = 0;
+		double finished = Double.POSITIVE_INFINITY;
+		for (int iiTick = 0; iiTick < ticks; iiTick++) {
+			double time = iiTick * PERIOD;
+			boolean running = pursuit ? pursuitDrive.drive(time) : trajectoryDrive.drive(time);
+			if (!running && time < finished) {
+				finished = time;
+			}
+			simulation.run(PERIOD);
+			maxError = Math.max(maxError, distanceFromPath(trajectory, simulation.getX(), simulation.getY()));
+		}
+		int last = trajectory.size() - 1;
+		return new double[] {maxError,
+				Math.hypot(simulation.getX() - trajectory.getX(last), simulation.getY() - trajectory.getY(last)),
+				finished,
+				Math.hypot(drive.getOdometry().getX() - trajectory.getX(last),
+						drive.getOdometry().getY() - trajectory.getY(last))};
+	}
+
+	private static boolean checkDrive(String name, Trajectory trajectory) {
+		double openLoop[] = drive(trajectory, false);
+		double pursuit[] = drive(trajectory, true);
+		boolean pass = pursuit[3] < RobotMap.Constants.PURSUIT_END_TOLERANCE && pursuit[1] < openLoop[1];
+		System.out.printf("%-10s open loop: up to %5.2f in off path, ends %5.2f in from end%n", name,
+				openLoop[0], openLoop[1]);
+		System.out.printf("%-10s pursuit:   up to %5.2f in off path, ends %5.2f in from end (odometry %.2f in), " +
+				"done %.2f s (trajectory %.2f s)  %s%n", name, pursuit[0], pursuit[1], pursuit[3], pursuit[2],
+				trajectory.getDuration(), pass ? "ok" : "FAILED");
+		return pass;
+	}
+
+	/**
+	 * Move along the path offset to one side and compare pursuit's nearest point with a search of every segment
+	 */
+	private static boolean checkSearch(String name, Trajectory trajectory) {
+		PurePursuit pursuit = RobotMap.createPursuit(trajectory);
+		double maxDifference = 0;
+		for (int iiTick = 0; iiTick < trajectory.size(); iiTick++) {
+			double x = offsetX(trajectory, iiTick);
+			double y = offsetY(trajectory, iiTick);
+			pursuit.update(iiTick * PERIOD, x, y, trajectory.getHeading(iiTick));
+			maxDifference = Math.max(maxDifference,
+					Math.abs(pursuit.getCrossTrackError() - distanceFromPath(trajectory, x, y)));
+		}
+		boolean pass = maxDifference < 1e-6;
+		System.out.printf("%-10s %d samples, nearest point differs from full search by %.1e in  %s%n", name,
+				trajectory.size(), maxDifference, pass ? "ok" : "FAILED");
+		return pass;
+	}
+
+	/**
+	 * Robot PATH_OFFSET to the right of the path at a sample
+	 */
+	private static double offsetX(Trajectory trajectory, int sample) {
+		int tick = Math.min(sample, trajectory.size() - 2);
+		double vx = trajectory.getVelocityX(tick);
+		double vy = trajectory.getVelocityY(tick);
+		double speed = Math.hypot(vx, vy);
+		return trajectory.getX(sample) + (speed > 0 ? PATH_OFFSET * vy / speed : 0);
+	}
+
+	private static double offsetY(Trajectory trajectory, int sample) {
+		int tick = Math.min(sample, trajectory.size() - 2);
+		double vx = trajectory.getVelocityX(tick);
+		double vy = trajectory.getVelocityY(tick);
+		double speed = Math.hypot(vx, vy);
+		return trajectory.getY(sample) - (speed > 0 ? PATH_OFFSET * vx / speed : 0);
+	}
+
+	private static double timeUpdates(BenchmarkRunner runner, String name, final Trajectory trajectory) {
+		final PurePursuit pursuit = RobotMap.createPursuit(trajectory);
+		final int size = trajectory.size();
+		final double x[] = new double[size];
+		final double y[] = new double[size];
+		for (int iiSample = 0; iiSample < size; iiSample++) {
+			x[iiSample] = offsetX(trajectory, iiSample);
+			y[iiSample] = offsetY(trajectory, iiSample);
+		}
+		return runner.run(name, new Benchmark() {
+			public double run(int iteration) {
+				int sample = iteration % size;
+				if (sample == 0) {
+					pursuit.reset();
+				}
+				pursuit.update(sample * PERIOD, x[sample], y[sample], 0.0);
+				return pursuit.getVelocityX();
+			}
+		});
+	}
+
+	public static void main(String args[]) {
+		TrajectoryPlanner planner = createPlanner();
+		Trajectory curve = planner.plan(CURVE_PATH);
+		Trajectory autoZone = planner.plan(RobotMap.Autonomous.AUTO_ZONE_PATH);
+		final Trajectory longTrajectory = planner.plan(longPath());
+
+		boolean pass = checkDrive("Auto zone", autoZone);
+		pass &= checkDrive("Curve", curve);
+		pass &= checkSearch("Curve", curve);
+		pass &= checkSearch("Long", longTrajectory);
+
+		BenchmarkRunner runner = BenchmarkRunner.fromArgs(args);
+		runner.printHeader();
+		double shortCost = timeUpdates(runner, "PurePursuit.update, " + curve.size() + " samples", curve);
+		double longCost = timeUpdates(runner, "PurePursuit.update, " + longTrajectory.size() + " samples",
+				longTrajectory);
+		// Too slow for the runner's iteration count
+		long start = System.nanoTime();
+		double sum = 0;
+		for (int iiSample = 0; iiSample < longTrajectory.size(); iiSample++) {
+			sum += distanceFromPath(longTrajectory, offsetX(longTrajectory, iiSample), offsetY(longTrajectory, iiSample));
+		}
+		System.out.printf("%-50s %12.0f   (checksum %.0f)%n", "Full nearest search, " + longTrajectory.size() + " samples",
+				(double) (System.nanoTime() - start) / longTrajectory.size(), sum);
+		if (!Double.isNaN(shortCost) && !Double.isNaN(longCost)) {
+			boolean costOk = longCost < MAX_COST_RATIO * shortCost;
+			System.out.printf("Long / short update cost %.2f  %s%n", longCost / shortCost, costOk ? "ok" : "FAILED");
+			pass &= costOk;
+		}
+
+		System.out.println(pass ? "PASS" : "FAIL");
+		if (!pass) {
+			System.exit(1);
+		}
+	}
+
+}
@@ -0,0 +1,208 @@
+package org.usfirst.frc.team2339.Barracuda.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import org.usfirst.frc.team2339.Barracuda.OI;
+import org.usfirst.frc.team2339.Barracuda.RobotMap;
+import org.usfirst.frc.team2339.Barracuda.commands.TeleopDrive;
+import org.usfirst.frc.team2339.Barracuda.components.SwerveSteeringLoop;
+import org.usfirst.frc.team2339.Barracuda.hal.SimulatedHardware;
+import org.usfirst.frc.team2339.Barracuda.hal.SimulatedHardware.SimulatedEncoder;
+import org.usfirst.frc.team2339.Barracuda.replay.ReplayEngine;
+import org.usfirst.frc.team2339.Barracuda.subsystems.SwerveDrive;
+import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveWheel;
+import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveWheel.RectangularCoordinates;
+import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveWheel.RobotMotion;
+import org.usfirst.frc.team2339.Barracuda.telemetry.FlightLog;
+import org.usfirst.frc.team2339.Barracuda.telemetry.FlightRecorder.Record;
+
+/**
+ * Replay speed and correctness on a synthetic match log.
+ *
+ * The log is recorded the way FlightRecorder does on the robot, from the robot drive on simulated hardware.
+ * Steering encoders follow their setpoints at a limited rate. The match is 15 s of autonomous
+ * (not replayed) then 135 s of teleop, with joystick samples held for a quarter second each.
+ *
+ * Checks, exit status 1 if any fails:
+ * the whole log replays with no mismatches,
+ * replay after a seek into the middle of teleop matches,
+ * and outputs altered in a window of the log (standing in for a behavior change) are all caught,
+ * with the first mismatch at the start of the window.
+ * Run with "ant benchmark -Dbenchmark.class=org.usfirst.frc.team2339.Barracuda.benchmark.ReplayBenchmark".
+ *
+ * @author emiller
+ *
+ */
+public class ReplayBenchmark {
+
+	private static final double PERIOD = 1.0 / RobotMap.Constants.CONTROL_LOOP_FREQUENCY;
+	private static final double AUTONOMOUS_TIME = 15;
+	private static final double MATCH_TIME = 150;
+	private static final int HOLD_TICKS = 50;
+	// Degrees per second the steering follows its setpoint
+	private static final double STEERING_RATE = 720;
+	private static final int WHEELS = RobotMap.Constants.NUMBER_OF_WHEELS;
+	// Window of records whose outputs are altered, seconds
+	private static final double ALTERED_START = 80;
+	private static final double ALTERED_END = 81;
+
+	/**
+	 * Record a synthetic match.
+	 * @param log log to write
+	 * @param alter add 5 degrees to logged wheel angles between ALTERED_START and ALTERED_END
+	 * @return number of teleop records
+	 */
+	static int recordMatch(FlightLog log, boolean alter) {
+		SimulatedHardware hardware = new SimulatedHardware();
+		SwerveSteeringLoop steeringLoop = RobotMap.createSteeringLoop(hardware);
+		SwerveDrive drive = RobotMap.createRobotDrive(hardware, steeringLoop);
+		SwerveSteeringLoop.Module steering[] = new SwerveSteeringLoop.Module[WHEELS];
+		SimulatedEncoder steeringEncoders[] = new SimulatedEncoder[WHEELS];
+		for (int iiWheel = 0; iiWheel < WHEELS; iiWheel++) {
+			steering[iiWheel] = steeringLoop.getModule(iiWheel);
+			steeringEncoders[iiWheel] = hardware.getEncoder(RobotMap.DIO.STEERING_ENCODERS_A[iiWheel]);
+		}
+		drive.enableSteering(true);
+		TeleopDrive teleopDrive = new TeleopDrive("Recording drive", drive, null, null);
+		JoystickSamples samples = new JoystickSamples(2339);
+		Random random = new Random(2339);
+
+		Record record = new Record(WHEELS);
+		int ticks = (int) Math.round(MATCH_TIME / PERIOD);
+		int teleopRecords = 0;
+		boolean speedShift = false;
+		boolean useGyro = true;
+		boolean containerPivot = false;
+		for (int iiTick = 0; iiTick < ticks; iiTick++) {
+			double time = iiTick * PERIOD;
+			int sample = JoystickSamples.index(iiTick / HOLD_TICKS);
+			if (iiTick % HOLD_TICKS == 0) {
+				speedShift = random.nextInt(4) == 0;
+				useGyro = random.nextInt(5) != 0;
+				boolean pivot = random.nextInt(10) == 0;
+				if (pivot != containerPivot) {
+					drive.setPivot(pivot ? RobotMap.Pivot.container : RobotMap.Pivot.CENTER);
+					containerPivot = pivot;
+				}
+			}
+			record.timestamp = 1000000000L + Math.round(time * 1e9);
+			record.strafe = samples.strafe[sample];
+			record.frontBack = samples.frontBack[sample];
+			record.rotate = samples.rotate[sample];
+			record.buttons = (speedShift ? 1 << (OI.DRIVE_BUTTON_SPEED_SHIFT - 1) : 0) |
+					(useGyro ? 1 << (OI.DRIVE_BUTTON_ABSOLUTE_GYRO_MODE - 1) : 0);
+			record.gyroAngle = samples.gyroAngle[sample] + time * 10;
+			if (time < AUTONOMOUS_TIME) {
+				record.mode = Record.MODE_AUTONOMOUS;
+				drive.swerveDriveRobot(0.0, 0.5, 0.0);
+			} else {
+				record.mode = Record.MODE_TELEOP;
+				teleopDrive.drive(record.strafe, record.frontBack, record.rotate,
+						speedShift, useGyro, record.gyroAngle);
+				teleopRecords++;
+			}
+
+			RectangularCoordinates pivot = drive.getPivot();
+			record.pivotX = pivot.x;
+			record.pivotY = pivot.y;
+			RobotMotion motion = drive.getCommandedMotion();
+			record.motionStrafe = motion.strafe;
+			record.motionFrontBack = motion.frontBack;
+			record.motionRotate = motion.rotate;
+			drive.getWheelState(record.rawSpeeds, record.rawAngles,
+					record.deltaSpeeds, record.deltaAngles, record.encoderAngles);
+			if (alter && time >= ALTERED_START && time < ALTERED_END) {
+				for (int iiWheel = 0; iiWheel < WHEELS; iiWheel++) {
+					record.deltaAngles[iiWheel] += 5;
+					record.deltaSpeeds[iiWheel] = Math.max(record.deltaSpeeds[iiWheel], 0.5);
+				}
+			}
+			record.write(log.begin());
+			log.commit();
+
+			// Steering moves toward setpoint before next tick
+			for (int iiWheel = 0; iiWheel < WHEELS; iiWheel++) {
+				double angle = steering[iiWheel].getSteeringAngle();
+				double error = SwerveWheel.wrapAngle(steering[iiWheel].getSetpoint() - angle);
+				double step = Math.max(-STEERING_RATE * PERIOD, Math.min(STEERING_RATE * PERIOD, error));
+				angle = SwerveWheel.wrapAngle(angle + step);
+				steeringEncoders[iiWheel].setDistance(angle);
+			}
+		}
+		return teleopRecords;
+	}
+
+	private static FlightLog.Reader createLog(File directory, String name, boolean alter, int teleop[])
+			throws IOException {
+		int records = (int) Math.round(MATCH_TIME / PERIOD);
+		FlightLog log = new FlightLog(directory, name, Record.FORMAT_VERSION, Record.payloadSize(WHEELS),
+				records / 4 + 1, 4);
+		teleop[0] = recordMatch(log, alter);
+		return new FlightLog.Reader(directory, name);
+	}
+
+	private static void print(String name, ReplayEngine.Result result) {
+		System.out.printf("%-22s records %6d compared %6d mismatches %5d first %6d " +
+				"max error speed %.2g angle %.2g motion %.2g%n",
+				name, result.records, result.compared, result.mismatches, result.firstMismatch,
+				result.maxSpeedError, result.maxAngleError, result.maxMotionError);
+	}
+
+	private static void delete(File directory) {
+		File files[] = directory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		directory.delete();
+	}
+
+	public static void main(String args[]) throws IOException {
+		File directory = new File(System.getProperty("java.io.tmpdir"), "replay-benchmark");
+		delete(directory);
+		int teleop[] = new int[1];
+		FlightLog.Reader reader = createLog(directory, "match", false, teleop);
+		FlightLog.Reader altered = createLog(directory, "altered", true, new int[1]);
+
+		// Full replay, repeated so the JIT has compiled it for the timed runs
+		ReplayEngine full = null;
+		long bestNanos = Long.MAX_VALUE;
+		for (int iiRun = 0; iiRun < 5; iiRun++) {
+			long start = System.nanoTime();
+			full = new ReplayEngine(reader);
+			full.runToEnd();
+			bestNanos = Math.min(bestNanos, System.nanoTime() - start);
+		}
+		ReplayEngine.Result fullResult = full.getResult();
+		print("Full log", fullResult);
+		boolean pass = fullResult.mismatches == 0 && fullResult.compared == teleop[0] &&
+				fullResult.records == reader.size();
+
+		ReplayEngine seek = new ReplayEngine(reader);
+		seek.seek(100.0);
+		ReplayEngine.Result seekResult = seek.run(110.0);
+		print("Seek 100 s, run 10 s", seekResult);
+		pass &= seekResult.mismatches == 0 && seekResult.compared > 0;
+
+		ReplayEngine bisect = new ReplayEngine(altered);
+		ReplayEngine.Result bisectResult = bisect.runToEnd();
+		print("Altered 80-81 s", bisectResult);
+		// Half a period either side, log times are accumulated from rounded timestamps
+		int alteredStart = bisect.indexAt(ALTERED_START - PERIOD / 2);
+		int alteredRecords = bisect.indexAt(ALTERED_END - PERIOD / 2) - alteredStart;
+		pass &= bisectResult.mismatches == alteredRecords && bisectResult.firstMismatch == alteredStart;
+
+		double seconds = bestNanos * 1e-9;
+		System.out.printf("Replayed %.0f s of log in %.3f s, %.0fx real time, %.1f us per record%n",
+				full.getDuration(), seconds, full.getDuration() / seconds, bestNanos * 1e-3 / reader.size());
+		System.out.println(pass ? "PASS" : "FAIL");
+		delete(directory);
+		if (!pass) {
+			System.exit(1);
+		}
+	}
+
+}
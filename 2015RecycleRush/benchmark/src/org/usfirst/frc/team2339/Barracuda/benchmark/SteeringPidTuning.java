@@ -0,0 +1,60 @@
+package org.usfirst.frc.team2339.Barracuda.benchmark;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.usfirst.frc.team2339.Barracuda.RobotMap;
+import org.usfirst.frc.team2339.Barracuda.simulation.SteeringPidTuner;
+import org.usfirst.frc.team2339.Barracuda.simulation.SteeringPidTuner.Score;
+import org.usfirst.frc.team2339.Barracuda.simulation.SwerveRobotSimulation;
+
+/**
+ * Tune steering PID gains in simulation and print recommended RobotMap constants.
+ *
+ * Scores the current RobotMap gains, runs {@link SteeringPidTuner#tune()} on all cores,
+ * and times the coarse grid on one thread to show the parallel speedup.
+ * Gains are only as good as the module model, so check recommended gains on the robot before committing them.
+ * Run with "ant benchmark -Dbenchmark.class=org.usfirst.frc.team2339.Barracuda.benchmark.SteeringPidTuning".
+ *
+ * @author emiller
+ *
+ */
+public class SteeringPidTuning {
+
+	private static final int SHOWN = 5;
+
+	public static void main(String args[]) {
+		int cores = Runtime.getRuntime().availableProcessors();
+		SteeringPidTuner tuner = new SteeringPidTuner();
+		System.out.println("Current: " + tuner.evaluate(RobotMap.Constants.STEERING_PID_P,
+				RobotMap.Constants.STEERING_PID_I, RobotMap.Constants.STEERING_PID_D));
+
+		// Warm up the JIT, then time the same grid on one thread and on all cores
+		double pValues[] = SteeringPidTuner.logSpace(0.005, 0.2, 12, false);
+		double iValues[] = SteeringPidTuner.logSpace(0.0002, 0.01, 6, true);
+		double dValues[] = SteeringPidTuner.logSpace(0.005, 0.2, 6, true);
+		tuner.search(pValues, iValues, dValues);
+		SteeringPidTuner serial = new SteeringPidTuner(SwerveRobotSimulation.DEFAULT_TIME_STEP,
+				tuner.getControllerPeriod(), new ForkJoinPool(1));
+		long start = System.nanoTime();
+		serial.search(pValues, iValues, dValues);
+		double serialSeconds = (System.nanoTime() - start) * 1e-9;
+		start = System.nanoTime();
+		int candidates = tuner.search(pValues, iValues, dValues).length;
+		double parallelSeconds = (System.nanoTime() - start) * 1e-9;
+		System.out.printf("Coarse grid of %d candidates: %.2f s on 1 thread, %.2f s on %d cores, %.1fx%n",
+				candidates, serialSeconds, parallelSeconds, cores, serialSeconds / parallelSeconds);
+
+		start = System.nanoTime();
+		Score scores[] = tuner.tune();
+		System.out.printf("Tuned in %.2f s. Best of fine grid:%n", (System.nanoTime() - start) * 1e-9);
+		for (int iiScore = 0; iiScore < Math.min(SHOWN, scores.length); iiScore++) {
+			System.out.println("  " + scores[iiScore]);
+		}
+		Score best = scores[0];
+		System.out.printf("Recommended, for a %.0f ms PID period:%n", tuner.getControllerPeriod() * 1000);
+		System.out.printf("\t\tpublic static final double STEERING_PID_P = %.4f;%n", best.p);
+		System.out.printf("\t\tpublic static final double STEERING_PID_I = %.5f;%n", best.i);
+		System.out.printf("\t\tpublic static final double STEERING_PID_D = %.4f;%n", best.d);
+	}
+
+}
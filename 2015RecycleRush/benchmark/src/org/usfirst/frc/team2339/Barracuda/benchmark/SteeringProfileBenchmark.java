@@ -0,0 +1,152 @@
+package org.usfirst.frc.team2339.Barracuda.benchmark;
+
+import org.usfirst.frc.team2339.Barracuda.RobotMap;
+import org.usfirst.frc.team2339.Barracuda.components.SwerveSteeringLoop;
+import org.usfirst.frc.team2339.Barracuda.hal.EncoderInput;
+import org.usfirst.frc.team2339.Barracuda.hal.SimulatedHardware.SimulatedEncoder;
+import org.usfirst.frc.team2339.Barracuda.hal.SimulatedHardware.SimulatedMotor;
+import org.usfirst.frc.team2339.Barracuda.simulation.SwerveModuleSimulation;
+import org.usfirst.frc.team2339.Barracuda.simulation.SwerveRobotSimulation;
+import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveWheel;
+
+import edu.wpi.first.wpilibj.SpeedController;
+
+/**
+ * Steering step response on a simulated module, jumping to the setpoint with the P-only RobotMap gains
+ * against following a trapezoidal profile with feedforward (RobotMap STEERING_ profile constants, same PID gains).
+ *
+ * The steering loop runs at the control loop period, physics at 1 ms.
+ *
+ * Checks, exit status 1 if any fails:
+ * the profiled steering settles within {@link #SETTLE_BAND} and within {@link #COARSE_BAND} degrees sooner
+ * than P-only on every step of 45 degrees or more (P-only, held short by friction, may never get within
+ * the fine band), and overshoots less than the fine band,
+ * and the encoder velocity estimate is within 5% of the module's rate while turning at a steady speed.
+ * Run with "ant benchmark -Dbenchmark.class=org.usfirst.frc.team2339.Barracuda.benchmark.SteeringProfileBenchmark".
+ *
+ * @author emiller
+ *
+ */
+public class SteeringProfileBenchmark {
+
+	private static final double SETTLE_BAND = 2.0;
+	private static final double COARSE_BAND = 6.0;
+	private static final double STEP_TIME = 2.0;
+	private static final double DT = SwerveRobotSimulation.DEFAULT_TIME_STEP;
+	private static final double STEP_STARTS[] = {0.0, 0.0, 0.0, 0.0, 170.0};
+	private static final double STEP_TARGETS[] = {10.0, 45.0, 90.0, 150.0, -170.0};
+
+	/**
+	 * Module, encoder and one wheel steering loop
+	 */
+	private static class Rig {
+		final SwerveModuleSimulation module = new SwerveModuleSimulation(DT, RobotMap.Constants.MAX_WHEEL_SPEED);
+		final SimulatedEncoder encoder = new SimulatedEncoder(RobotMap.Constants.STEERING_ENC_DEGREES_PER_PULSE);
+		final SimulatedMotor motor = new SimulatedMotor(0);
+		final SwerveSteeringLoop steering = new SwerveSteeringLoop(new EncoderInput[] {encoder},
+				new SpeedController[] {motor}, RobotMap.Constants.STEERING_PID_P, RobotMap.Constants.STEERING_PID_I,
+				RobotMap.Constants.STEERING_PID_D, SwerveRobotSimulation.CONTROLLER_PERIOD);
+		final SwerveSteeringLoop.Module controller = steering.getModule(0);
+		final int stepsPerUpdate = (int) Math.round(SwerveRobotSimulation.CONTROLLER_PERIOD / DT);
+
+		Rig(boolean profiled) {
+			if (profiled) {
+				steering.setProfile(RobotMap.Constants.STEERING_MAX_VELOCITY,
+						RobotMap.Constants.STEERING_MAX_ACCELERATION, RobotMap.Constants.STEERING_FF_S,
+						RobotMap.Constants.STEERING_FF_V, RobotMap.Constants.STEERING_FF_A);
+			}
+		}
+
+		void start(double angle, double setpoint) {
+			controller.reset();
+			module.reset(angle);
+			encoder.setPosition(angle);
+			controller.setSetpoint(setpoint);
+			controller.enable();
+		}
+
+		double step(int iiStep) {
+			if (iiStep % stepsPerUpdate == 0) {
+				steering.update(iiStep * DT);
+			}
+			module.step(motor.get(), 0.0);
+			encoder.setPosition(module.getSteeringAngle());
+			return module.getSteeringAngle();
+		}
+	}
+
+	/**
+	 * @return settling times in seconds (fine band, coarse band), overshoot and final error in degrees
+	 */
+	private static double[] stepResponse(Rig rig, double start, double target) {
+		double distance = SwerveWheel.wrapAngle(target - start);
+		double end = start + distance;
+		double direction = Math.signum(distance);
+		rig.start(start, target);
+		int steps = (int) Math.round(STEP_TIME / DT);
+		int lastOutside = -1;
+		int lastOutsideCoarse = -1;
+		double overshoot = 0;
+		double error = 0;
+		for (int iiStep = 0; iiStep < steps; iiStep++) {
+			error = end - rig.step(iiStep);
+			if (Math.abs(error) > SETTLE_BAND) {
+				lastOutside = iiStep;
+			}
+			if (Math.abs(error) > COARSE_BAND) {
+				lastOutsideCoarse = iiStep;
+			}
+			overshoot = Math.max(overshoot, -error * direction);
+		}
+		return new double[] {settlingTime(lastOutside, steps), settlingTime(lastOutsideCoarse, steps), overshoot, error};
+	}
+
+	private static double settlingTime(int lastOutside, int steps) {
+		return lastOutside == steps - 1 ? Double.POSITIVE_INFINITY : (lastOutside + 1) * DT;
+	}
+
+	public static void main(String args[]) {
+		Rig plain = new Rig(false);
+		Rig profiled = new Rig(true);
+		boolean pass = true;
+
+		System.out.printf("%-14s %-38s %-38s%n", "Step", "P only: settle 2/6 deg, overshoot, error",
+				"Profiled: settle 2/6 deg, overshoot, error");
+		for (int iiTest = 0; iiTest < STEP_STARTS.length; iiTest++) {
+			double plainResult[] = stepResponse(plain, STEP_STARTS[iiTest], STEP_TARGETS[iiTest]);
+			double profiledResult[] = stepResponse(profiled, STEP_STARTS[iiTest], STEP_TARGETS[iiTest]);
+			double size = Math.abs(STEP_TARGETS[iiTest] - STEP_STARTS[iiTest]);
+			size = Math.min(size, 360.0 - size);
+			boolean ok = profiledResult[2] < SETTLE_BAND && (size < 45.0 ||
+					(profiledResult[0] < plainResult[0] && profiledResult[1] < plainResult[1]));
+			pass &= ok;
+			System.out.printf("%-14s %5.2f/%4.2f s %5.1f deg %5.1f deg       %5.2f/%4.2f s %5.1f deg %5.1f deg      %s%n",
+					String.format("%.0f to %.0f", STEP_STARTS[iiTest], STEP_TARGETS[iiTest]),
+					plainResult[0], plainResult[1], plainResult[2], plainResult[3],
+					profiledResult[0], profiledResult[1], profiledResult[2], profiledResult[3], ok ? "ok" : "FAILED");
+		}
+
+		// Steady turn at constant output, encoder velocity estimate against true rate
+		Rig turning = new Rig(false);
+		turning.start(0.0, 0.0);
+		turning.controller.disable();
+		int steps = (int) Math.round(1.0 / DT);
+		for (int iiStep = 0; iiStep < steps; iiStep++) {
+			turning.motor.set(0.6);
+			// Disabled, so the loop only samples the encoder
+			turning.step(iiStep);
+		}
+		double estimate = turning.controller.getVelocity();
+		double rate = turning.module.getSteeringRate();
+		boolean velocityOk = Math.abs(estimate - rate) < 0.05 * Math.abs(rate);
+		pass &= velocityOk;
+		System.out.printf("Velocity estimate at 0.6 output: %.1f deg/s, module %.1f deg/s  %s%n",
+				estimate, rate, velocityOk ? "ok" : "FAILED");
+
+		System.out.println(pass ? "PASS" : "FAIL");
+		if (!pass) {
+			System.exit(1);
+		}
+	}
+
+}
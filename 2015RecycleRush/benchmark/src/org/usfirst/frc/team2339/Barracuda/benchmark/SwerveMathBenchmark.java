@@ -0,0 +1,190 @@
+package org.usfirst.frc.team2339.Barracuda.benchmark;
+
+import org.usfirst.frc.team2339.Barracuda.RobotMap;
+import org.usfirst.frc.team2339.Barracuda.benchmark.BenchmarkRunner.Benchmark;
+import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveKinematics;
+import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveModuleLayout;
+import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveModuleOptimizer;
+import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveTrig;
+import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveWheel;
+import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveWheel.RectangularCoordinates;
+import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveWheel.RobotMotion;
+import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveWheel.VelocityPolar;
+import org.usfirst.frc.team2339.Barracuda.swervemath.WorkingPalmdale;
+import org.usfirst.frc.team2339.Barracuda.swervemath.WorkingPalmdale.WheelData;
+
+/**
+ * Benchmarks for every swerve inverse kinematics implementation in the repository,
+ * plus the angle helpers used on the control path.
+ *
+ * Run with "ant benchmark" on a development machine.
+ * Pass -Dbenchmark.args=text to only run benchmarks whose name contains text.
+ *
+ * @author emiller
+ *
+ */
+public class SwerveMathBenchmark {
+
+	private static final double LENGTH = RobotMap.Constants.WHEEL_BASE_LENGTH;
+	private static final double WIDTH = RobotMap.Constants.WHEEL_BASE_WIDTH;
+
+	/**
+	 * Four wheel positions in standard order: front right, front left, rear left, rear right
+	 * @return wheel positions
+	 */
+	static RectangularCoordinates[] rectangleWheels() {
+		return SwerveModuleLayout.rectangle(LENGTH, WIDTH);
+	}
+
+	/**
+	 * Swerve math from SwerveApples000/Swerve.java (Chief Delphi thread 117099).
+	 * Copied here because the original is in the default package and uses the Squawk MathUtils.atan2.
+	 * Math.atan2 is used instead. Wheel order is front right, front left, rear left, rear right.
+	 */
+	static void chiefDelphiWheelData(double x, double y, double rotate, double speeds[], double angles[]) {
+		double L = LENGTH, W = WIDTH;
+		double R = Math.sqrt((L * L) + (W * W));
+		double A = x - rotate * (L / R);
+		double B = x + rotate * (L / R);
+		double C = y - rotate * (W / R);
+		double D = y + rotate * (W / R);
+		speeds[0] = Math.sqrt((B * B) + (C * C));
+		speeds[1] = Math.sqrt((B * B) + (D * D));
+		speeds[2] = Math.sqrt((A * A) + (D * D));
+		speeds[3] = Math.sqrt((A * A) + (C * C));
+		double max = speeds[0];
+		for (int iiWheel = 1; iiWheel < 4; iiWheel++) {
+			if (speeds[iiWheel] > max) {
+				max = speeds[iiWheel];
+			}
+		}
+		if (max > 1) {
+			for (int iiWheel = 0; iiWheel < 4; iiWheel++) {
+				speeds[iiWheel] /= max;
+			}
+		}
+		angles[0] = Math.atan2(B, C) * 180 / Math.PI;
+		angles[1] = Math.atan2(B, D) * 180 / Math.PI;
+		angles[2] = Math.atan2(A, D) * 180 / Math.PI;
+		angles[3] = Math.atan2(A, C) * 180 / Math.PI;
+	}
+
+	public static void main(String args[]) {
+		final JoystickSamples samples = new JoystickSamples(2339);
+		final int count = JoystickSamples.SAMPLE_COUNT;
+
+		// Inputs in object form for the APIs that take objects. Built here so they are not measured.
+		final RobotMotion motions[] = new RobotMotion[count];
+		final VelocityPolar current[] = new VelocityPolar[count];
+		final VelocityPolar target[] = new VelocityPolar[count];
+		for (int ii = 0; ii < count; ii++) {
+			motions[ii] = new RobotMotion(samples.strafe[ii], samples.frontBack[ii], samples.rotate[ii]);
+			current[ii] = new VelocityPolar(0, samples.gyroAngle[ii] % 180);
+			target[ii] = new VelocityPolar(Math.abs(samples.frontBack[ii]),
+					Math.toDegrees(Math.atan2(samples.strafe[ii], samples.frontBack[ii])));
+		}
+
+		final SwerveKinematics kinematics = new SwerveKinematics(rectangleWheels());
+		final double speeds[] = new double[4];
+		final double angles[] = new double[4];
+		final double currentAngles[] = new double[4];
+		final double deltaSpeeds[] = new double[4];
+		final double deltaAngles[] = new double[4];
+		final SwerveModuleOptimizer optimizer = new SwerveModuleOptimizer(4);
+
+		BenchmarkRunner runner = BenchmarkRunner.fromArgs(args);
+		runner.printHeader();
+
+		runner.run("SwerveWheel.calculateRectangularWheelVelocities", new Benchmark() {
+			public double run(int iteration) {
+				VelocityPolar velocities[] = SwerveWheel.calculateRectangularWheelVelocities(
+						LENGTH, WIDTH, motions[JoystickSamples.index(iteration)]);
+				return velocities[0].angle + velocities[3].speed;
+			}
+		});
+
+		runner.run("WorkingPalmdale.calculateRawWheelData", new Benchmark() {
+			public double run(int iteration) {
+				int ii = JoystickSamples.index(iteration);
+				WheelData data = WorkingPalmdale.calculateRawWheelData(
+						samples.strafe[ii], samples.frontBack[ii], samples.rotate[ii]);
+				return data.wheelAngles[0] + data.wheelSpeeds[3];
+			}
+		});
+
+		runner.run("WorkingPalmdale.calculateRawWheelDataGeneral", new Benchmark() {
+			public double run(int iteration) {
+				int ii = JoystickSamples.index(iteration);
+				WheelData data = WorkingPalmdale.calculateRawWheelDataGeneral(
+						samples.strafe[ii], samples.frontBack[ii], samples.rotate[ii], 0, 0);
+				return data.wheelAngles[0] + data.wheelSpeeds[3];
+			}
+		});
+
+		runner.run("ChiefDelphi Swerve.teleopDrive math", new Benchmark() {
+			public double run(int iteration) {
+				int ii = JoystickSamples.index(iteration);
+				chiefDelphiWheelData(samples.strafe[ii], samples.frontBack[ii], samples.rotate[ii],
+						speeds, angles);
+				return angles[0] + speeds[3];
+			}
+		});
+
+		runner.run("SwerveKinematics.calculateWheelVelocities", new Benchmark() {
+			public double run(int iteration) {
+				int ii = JoystickSamples.index(iteration);
+				kinematics.calculateWheelVelocities(
+						samples.strafe[ii], samples.frontBack[ii], samples.rotate[ii], speeds, angles);
+				SwerveKinematics.normalize(speeds, 4);
+				return angles[0] + speeds[3];
+			}
+		});
+
+		// Cost per tick should scale linearly with number of wheels
+		final int moduleCounts[] = {3, 4, 6, 8};
+		for (int iiLayout = 0; iiLayout < moduleCounts.length; iiLayout++) {
+			final int modules = moduleCounts[iiLayout];
+			final SwerveKinematics polygon = new SwerveKinematics(
+					SwerveModuleLayout.regularPolygon(modules, Math.hypot(LENGTH, WIDTH) / 2, -45), SwerveTrig.FAST);
+			final double polygonSpeeds[] = new double[modules];
+			final double polygonAngles[] = new double[modules];
+			runner.run("SwerveKinematics FAST " + modules + " modules", new Benchmark() {
+				public double run(int iteration) {
+					int ii = JoystickSamples.index(iteration);
+					polygon.calculateWheelVelocities(samples.strafe[ii], samples.frontBack[ii], samples.rotate[ii],
+							polygonSpeeds, polygonAngles);
+					SwerveKinematics.normalize(polygonSpeeds, modules);
+					return polygonAngles[0] + polygonSpeeds[modules - 1];
+				}
+			});
+		}
+
+		runner.run("SwerveWheel.normalizeAngle", new Benchmark() {
+			public double run(int iteration) {
+				return SwerveWheel.normalizeAngle(samples.gyroAngle[JoystickSamples.index(iteration)]);
+			}
+		});
+
+		runner.run("SwerveWheel.calculateDeltaWheelData", new Benchmark() {
+			public double run(int iteration) {
+				int ii = JoystickSamples.index(iteration);
+				VelocityPolar delta = SwerveWheel.calculateDeltaWheelData(current[ii], target[ii]);
+				return delta.angle + delta.speed;
+			}
+		});
+
+		runner.run("SwerveModuleOptimizer.optimize", new Benchmark() {
+			public double run(int iteration) {
+				int ii = JoystickSamples.index(iteration);
+				for (int iiWheel = 0; iiWheel < 4; iiWheel++) {
+					currentAngles[iiWheel] = current[(ii + iiWheel) & (count - 1)].angle;
+					speeds[iiWheel] = target[(ii + iiWheel) & (count - 1)].speed;
+					angles[iiWheel] = target[(ii + iiWheel) & (count - 1)].angle;
+				}
+				optimizer.optimize(4, currentAngles, speeds, angles, deltaSpeeds, deltaAngles);
+				return deltaAngles[0] + deltaSpeeds[3];
+			}
+		});
+	}
+
+}
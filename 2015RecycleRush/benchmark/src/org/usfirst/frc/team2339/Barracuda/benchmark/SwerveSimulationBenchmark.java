@@ -0,0 +1,146 @@
+package org.usfirst.frc.team2339.Barracuda.benchmark;
+
+import org.usfirst.frc.team2339.Barracuda.RobotMap;
+import org.usfirst.frc.team2339.Barracuda.commands.TeleopDrive;
+import org.usfirst.frc.team2339.Barracuda.hal.SimulatedHardware;
+import org.usfirst.frc.team2339.Barracuda.simulation.SwerveModuleSimulation;
+import org.usfirst.frc.team2339.Barracuda.simulation.SwerveRobotSimulation;
+import org.usfirst.frc.team2339.Barracuda.subsystems.SwerveDrive;
+
+/**
+ * Sanity checks and speed of {@link SwerveRobotSimulation} driven by the robot's drive code.
+ *
+ * The robot is built by RobotMap on simulated hardware, the drive runs at the control loop rate
+ * and the physics at its default 1 ms step.
+ *
+ * Checks, exit status 1 if any fails:
+ * driving forward at half speed for 3 s covers the distance the drive lag allows, without turning or drifting,
+ * rotating in place reaches the turn rate kinematics predicts without wandering off,
+ * and a 150 s match of random teleop driving simulates at least 100 times faster than real time.
+ * Steering step response with the robot's PID gains is reported.
+ * Run with "ant benchmark -Dbenchmark.class=org.usfirst.frc.team2339.Barracuda.benchmark.SwerveSimulationBenchmark".
+ *
+ * @author emiller
+ *
+ */
+public class SwerveSimulationBenchmark {
+
+	private static final double PERIOD = 1.0 / RobotMap.Constants.CONTROL_LOOP_FREQUENCY;
+	private static final double MATCH_TIME = 150;
+	private static final int HOLD_TICKS = 50;
+	private static final double MIN_REAL_TIME_FACTOR = 100;
+
+	private static SimulatedHardware hardware;
+	private static SwerveDrive drive;
+	private static SwerveRobotSimulation simulation;
+
+	private static void build() {
+		hardware = new SimulatedHardware();
+		RobotMap.init(hardware);
+		drive = RobotMap.Subsystem.robotDrive;
+		drive.enableSteering(true);
+		simulation = new SwerveRobotSimulation(hardware, RobotMap.Control.steering);
+	}
+
+	private static boolean check(String name, boolean pass, String format, Object... values) {
+		System.out.printf("%-26s %-6s %s%n", name, pass ? "ok" : "FAILED", String.format(format, values));
+		return pass;
+	}
+
+	private static boolean checkStraight() {
+		build();
+		double seconds = 3.0;
+		int ticks = (int) Math.round(seconds / PERIOD);
+		for (int iiTick = 0; iiTick < ticks; iiTick++) {
+			drive.swerveDriveRobot(0.0, 0.5, 0.0);
+			simulation.run(PERIOD);
+		}
+		double tau = SwerveModuleSimulation.DRIVE_TIME_CONSTANT;
+		double expected = 0.5 * RobotMap.Constants.MAX_WHEEL_SPEED * (seconds - tau * (1 - Math.exp(-seconds / tau)));
+		return check("Forward 0.5 for 3 s", Math.abs(simulation.getY() - expected) < 0.02 * expected &&
+				Math.abs(simulation.getX()) < 1.0 && Math.abs(simulation.getHeading()) < 1.0,
+				"x %.2f y %.1f (expected %.1f) heading %.2f", simulation.getX(), simulation.getY(), expected,
+				simulation.getHeading());
+	}
+
+	private static boolean checkRotate() {
+		build();
+		double rotate = 0.5;
+		int ticks = (int) Math.round(3.0 / PERIOD);
+		for (int iiTick = 0; iiTick < ticks; iiTick++) {
+			drive.swerveDriveRobot(0.0, 0.0, rotate);
+			simulation.run(PERIOD);
+		}
+		double radius = 0.5 * Math.hypot(RobotMap.Constants.WHEEL_BASE_LENGTH, RobotMap.Constants.WHEEL_BASE_WIDTH);
+		// Positive rotate is counter-clockwise, heading is clockwise
+		double expected = -Math.toDegrees(rotate * RobotMap.Constants.MAX_WHEEL_SPEED / radius);
+		double rate = simulation.getHeadingRate();
+		return check("Rotate 0.5 for 3 s", Math.abs(rate - expected) < 0.05 * Math.abs(expected) &&
+				Math.hypot(simulation.getX(), simulation.getY()) < 6.0,
+				"rate %.1f deg/s (expected %.1f) moved %.2f", rate, expected,
+				Math.hypot(simulation.getX(), simulation.getY()));
+	}
+
+	private static void reportSteeringStep() {
+		build();
+		drive.swerveDriveRobot(0.0, 0.5, 0.0);
+		simulation.run(0.5);
+		// 90 degree step to the left, at low speed so wheels are not flipped instead
+		double target = 90.0;
+		double settle = -1;
+		int ticks = (int) Math.round(2.0 / PERIOD);
+		for (int iiTick = 0; iiTick < ticks; iiTick++) {
+			drive.swerveDriveRobot(-0.1, 0.0, 0.0);
+			simulation.run(PERIOD);
+			double error = Math.abs(target - simulation.getModule(0).getSteeringAngle());
+			if (error > 10.0) {
+				settle = -1;
+			} else if (settle < 0) {
+				settle = (iiTick + 1) * PERIOD;
+			}
+		}
+		System.out.printf("Steering 90 degree step with P %.3f%s: within 10 degrees after %.2f s, final error %.1f degrees%n",
+				RobotMap.Constants.STEERING_PID_P, RobotMap.Constants.STEERING_PROFILED ? ", profiled" : "", settle,
+				target - simulation.getModule(0).getSteeringAngle());
+	}
+
+	private static double simulateMatch() {
+		build();
+		TeleopDrive teleopDrive = new TeleopDrive("Simulated drive", drive, null, null);
+		JoystickSamples samples = new JoystickSamples(2339);
+		int ticks = (int) Math.round(MATCH_TIME / PERIOD);
+		long start = System.nanoTime();
+		for (int iiTick = 0; iiTick < ticks; iiTick++) {
+			int sample = JoystickSamples.index(iiTick / HOLD_TICKS);
+			teleopDrive.drive(samples.strafe[sample], samples.frontBack[sample], samples.rotate[sample],
+					false, true, RobotMap.Sensor.gyro.getAngle());
+			simulation.run(PERIOD);
+		}
+		return (System.nanoTime() - start) * 1e-9;
+	}
+
+	public static void main(String args[]) {
+		boolean pass = checkStraight();
+		pass &= checkRotate();
+		reportSteeringStep();
+
+		// First runs warm up the JIT
+		double best = Double.MAX_VALUE;
+		for (int iiRun = 0; iiRun < 5; iiRun++) {
+			best = Math.min(best, simulateMatch());
+		}
+		double steps = MATCH_TIME / simulation.getTimeStep();
+		double factor = MATCH_TIME / best;
+		pass &= check("Real time factor", factor >= MIN_REAL_TIME_FACTOR,
+				"%.0f s match in %.3f s, %.0fx real time, %.0f ns per physics step (drive included), " +
+				"ended at x %.0f y %.0f heading %.0f",
+				MATCH_TIME, best, factor, best * 1e9 / steps,
+				simulation.getX(), simulation.getY(), simulation.getHeading());
+
+		System.out.println(pass ? "PASS" : "FAIL");
+		if (!pass) {
+			System.exit(1);
+		}
+	}
+
+}
@@ -0,0 +1,128 @@
+package org.usfirst.frc.team2339.Barracuda.benchmark;
+
+import java.util.Random;
+
+import org.usfirst.frc.team2339.Barracuda.benchmark.BenchmarkRunner.Benchmark;
+import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveKinematics;
+import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveTrig;
+import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveWheel;
+
+/**
+ * Check the documented error bounds of {@link SwerveTrig#FAST} against java.lang.Math,
+ * then compare speed of standard and fast trigonometry.
+ *
+ * Exits with status 1 if any error bound is exceeded.
+ * Run with "ant benchmark -Dbenchmark.class=org.usfirst.frc.team2339.Barracuda.benchmark.SwerveTrigBenchmark".
+ *
+ * @author emiller
+ *
+ */
+public class SwerveTrigBenchmark {
+
+	private static final int ERROR_SAMPLES = 10000000;
+
+	/**
+	 * Measure maximum errors of trig against java.lang.Math and compare with its documented bounds.
+	 * @param trig trigonometry to check
+	 * @return true if all errors are within bounds
+	 */
+	static boolean checkErrorBounds(SwerveTrig trig) {
+		Random random = new Random(2339);
+		double maxAngleError = 0;
+		double maxSinCosError = 0;
+		double maxMagnitudeError = 0;
+		for (int ii = 0; ii < ERROR_SAMPLES; ii++) {
+			// Mix of joystick sized vectors and axis aligned edge cases
+			double x = 2 * random.nextDouble() - 1;
+			double y = 2 * random.nextDouble() - 1;
+			switch (ii & 7) {
+			case 0:
+				x = 0;
+				break;
+			case 1:
+				y = 0;
+				break;
+			case 2:
+				y = x;
+				break;
+			default:
+				break;
+			}
+			if (x != 0 || y != 0) {
+				double angleError = Math.abs(SwerveWheel.normalizeAngle(
+						trig.atan2Degrees(y, x) - Math.toDegrees(Math.atan2(y, x))));
+				maxAngleError = Math.max(maxAngleError, angleError);
+				double exact = Math.hypot(x, y);
+				maxMagnitudeError = Math.max(maxMagnitudeError, Math.abs(trig.magnitude(x, y) - exact) / exact);
+			}
+
+			// Gyro angles can wind up well past one turn
+			double degrees = 1440 * (2 * random.nextDouble() - 1);
+			maxSinCosError = Math.max(maxSinCosError,
+					Math.abs(trig.sinDegrees(degrees) - Math.sin(Math.toRadians(degrees))));
+			maxSinCosError = Math.max(maxSinCosError,
+					Math.abs(trig.cosDegrees(degrees) - Math.cos(Math.toRadians(degrees))));
+		}
+
+		boolean pass = maxAngleError <= trig.getMaxAngleError() &&
+				maxSinCosError <= trig.getMaxSinCosError() &&
+				maxMagnitudeError <= trig.getMaxMagnitudeError();
+		String name = trig.getClass().getSimpleName();
+		System.out.printf("%-12s atan2 error %.3g deg (bound %.3g)%n", name, maxAngleError, trig.getMaxAngleError());
+		System.out.printf("%-12s sin/cos error %.3g (bound %.3g)%n", name, maxSinCosError, trig.getMaxSinCosError());
+		System.out.printf("%-12s magnitude relative error %.3g (bound %.3g)%n", name, maxMagnitudeError,
+				trig.getMaxMagnitudeError());
+		System.out.println(name + (pass ? " PASS" : " FAIL"));
+		return pass;
+	}
+
+	static void runSpeed(BenchmarkRunner runner, final SwerveTrig trig, final JoystickSamples samples) {
+		String name = trig.getClass().getSimpleName();
+		runner.run(name + ".atan2Degrees", new Benchmark() {
+			public double run(int iteration) {
+				int ii = JoystickSamples.index(iteration);
+				return trig.atan2Degrees(samples.strafe[ii], samples.frontBack[ii]);
+			}
+		});
+		runner.run(name + ".sinDegrees+cosDegrees", new Benchmark() {
+			public double run(int iteration) {
+				double angle = samples.gyroAngle[JoystickSamples.index(iteration)];
+				return trig.sinDegrees(angle) + trig.cosDegrees(angle);
+			}
+		});
+		runner.run(name + ".magnitude", new Benchmark() {
+			public double run(int iteration) {
+				int ii = JoystickSamples.index(iteration);
+				return trig.magnitude(samples.strafe[ii], samples.frontBack[ii]);
+			}
+		});
+
+		final SwerveKinematics kinematics = new SwerveKinematics(SwerveMathBenchmark.rectangleWheels(), trig);
+		final double speeds[] = new double[4];
+		final double angles[] = new double[4];
+		runner.run(name + " SwerveKinematics.calculateWheelVelocities", new Benchmark() {
+			public double run(int iteration) {
+				int ii = JoystickSamples.index(iteration);
+				kinematics.calculateWheelVelocities(
+						samples.strafe[ii], samples.frontBack[ii], samples.rotate[ii], speeds, angles);
+				return angles[0] + speeds[3];
+			}
+		});
+	}
+
+	public static void main(String args[]) {
+		boolean pass = checkErrorBounds(SwerveTrig.STANDARD);
+		pass &= checkErrorBounds(SwerveTrig.FAST);
+
+		JoystickSamples samples = new JoystickSamples(2339);
+		BenchmarkRunner runner = BenchmarkRunner.fromArgs(args);
+		runner.printHeader();
+		runSpeed(runner, SwerveTrig.STANDARD, samples);
+		runSpeed(runner, SwerveTrig.FAST, samples);
+
+		if (!pass) {
+			System.exit(1);
+		}
+	}
+
+}
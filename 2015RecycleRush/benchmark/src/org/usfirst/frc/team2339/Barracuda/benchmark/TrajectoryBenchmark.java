@@ -0,0 +1,213 @@
+package org.usfirst.frc.team2339.Barracuda.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.usfirst.frc.team2339.Barracuda.RobotMap;
+import org.usfirst.frc.team2339.Barracuda.control.Trajectory;
+import org.usfirst.frc.team2339.Barracuda.control.TrajectoryPlanner;
+import org.usfirst.frc.team2339.Barracuda.control.TrajectoryPlanner.Waypoint;
+import org.usfirst.frc.team2339.Barracuda.hal.SimulatedHardware;
+import org.usfirst.frc.team2339.Barracuda.simulation.SwerveRobotSimulation;
+import org.usfirst.frc.team2339.Barracuda.subsystems.SwerveDrive;
+
+/**
+ * Checks {@link TrajectoryPlanner} limits, times planning against loading from the cache, and drives
+ * a curved trajectory with {@link TrajectoryDrive} on {@link SwerveRobotSimulation}.
+ * Planner limits are the RobotMap TRAJECTORY_ constants.
+ * The simulated drive is open loop, so its error from the trajectory is reported, not checked.
+ *
+ * Checks, exit status 1 if any fails:
+ * the auto zone path and a curved path that turns the robot end exactly at their last waypoint, pass within
+ * {@link #WAYPOINT_TOLERANCE} of the waypoints in between, and never exceed the velocity, acceleration and
+ * wheel speed limits (acceleration with {@link #ACCELERATION_MARGIN} for sampling),
+ * and a cached trajectory loads with the same samples, and a changed waypoint or a damaged file is planned again.
+ * Run with "ant benchmark -Dbenchmark.class=org.usfirst.frc.team2339.Barracuda.benchmark.TrajectoryBenchmark".
+ *
+ * @author emiller
+ *
+ */
+public class TrajectoryBenchmark {
+
+	private static final double PERIOD = 1.0 / RobotMap.Constants.CONTROL_LOOP_FREQUENCY;
+	private static final double WAYPOINT_TOLERANCE = 0.5;
+	private static final double ACCELERATION_MARGIN = 1.05;
+	private static final int TIMING_RUNS = 20;
+	private static final double MAX_WHEEL_RADIUS = 0.5 * Math.hypot(RobotMap.Constants.WHEEL_BASE_LENGTH,
+			RobotMap.Constants.WHEEL_BASE_WIDTH);
+
+	// Forward and across to the right while turning to face right, then straight on
+	private static final Waypoint CURVE_PATH[] = {
+		new Waypoint(0.0, 0.0, 0.0),
+		new Waypoint(60.0, 60.0, 90.0),
+		new Waypoint(120.0, 60.0, 90.0, 90.0)
+	};
+
+	private static TrajectoryPlanner createPlanner() {
+		return new TrajectoryPlanner(RobotMap.Constants.TRAJECTORY_MAX_VELOCITY,
+				RobotMap.Constants.TRAJECTORY_MAX_ACCELERATION, RobotMap.Constants.MAX_WHEEL_SPEED,
+				MAX_WHEEL_RADIUS, PERIOD);
+	}
+
+	private static boolean checkTrajectory(String name, Trajectory trajectory, Waypoint waypoints[]) {
+		double maxVelocity = RobotMap.Constants.TRAJECTORY_MAX_VELOCITY;
+		double maxAcceleration = RobotMap.Constants.TRAJECTORY_MAX_ACCELERATION;
+		double maxWheelSpeed = RobotMap.Constants.MAX_WHEEL_SPEED;
+		double peakVelocity = 0;
+		double peakAcceleration = 0;
+		double peakWheelSpeed = 0;
+		int last = trajectory.size() - 1;
+		for (int iiTick = 0; iiTick <= last; iiTick++) {
+			double vx = trajectory.getVelocityX(iiTick);
+			double vy = trajectory.getVelocityY(iiTick);
+			double speed = Math.hypot(vx, vy);
+			peakVelocity = Math.max(peakVelocity, speed);
+			peakWheelSpeed = Math.max(peakWheelSpeed,
+					speed + Math.abs(Math.toRadians(trajectory.getHeadingRate(iiTick))) * MAX_WHEEL_RADIUS);
+			peakAcceleration = Math.max(peakAcceleration, Math.hypot(vx - trajectory.getVelocityX(iiTick - 1),
+					vy - trajectory.getVelocityY(iiTick - 1)) / PERIOD);
+		}
+		double waypointError = 0;
+		for (int iiPoint = 1; iiPoint < waypoints.length - 1; iiPoint++) {
+			double closest = Double.POSITIVE_INFINITY;
+			for (int iiTick = 0; iiTick <= last; iiTick++) {
+				closest = Math.min(closest, Math.hypot(trajectory.getX(iiTick) - waypoints[iiPoint].x,
+						trajectory.getY(iiTick) - waypoints[iiPoint].y));
+			}
+			waypointError = Math.max(waypointError, closest);
+		}
+		Waypoint end = waypoints[waypoints.length - 1];
+		double endError = Math.hypot(trajectory.getX(last) - end.x, trajectory.getY(last) - end.y);
+		double tolerance = 1e-3;
+		boolean pass = endError < tolerance && Math.abs(trajectory.getHeading(last) - end.heading) < tolerance &&
+				waypointError < WAYPOINT_TOLERANCE && trajectory.getVelocityX(last) == 0 &&
+				peakVelocity <= maxVelocity * (1 + tolerance) &&
+				peakWheelSpeed <= maxWheelSpeed * (1 + tolerance) &&
+				peakAcceleration <= maxAcceleration * ACCELERATION_MARGIN;
+		System.out.printf("%-18s %-6s %.2f s, %d samples, waypoint error %.3f in, peak velocity %.1f " +
+				"wheel speed %.1f acceleration %.1f%n", name, pass ? "ok" : "FAILED", trajectory.getDuration(),
+				trajectory.size(), waypointError, peakVelocity, peakWheelSpeed, peakAcceleration);
+		return pass;
+	}
+
+	private static boolean sameSamples(Trajectory a, Trajectory b) {
+		if (a.size() != b.size() || a.getPeriod() != b.getPeriod() || a.getHash() != b.getHash()) {
+			return false;
+		}
+		for (int iiSample = 0; iiSample < a.size(); iiSample++) {
+			if (a.getX(iiSample) != b.getX(iiSample) || a.getY(iiSample) != b.getY(iiSample) ||
+					a.getHeading(iiSample) != b.getHeading(iiSample) ||
+					a.getVelocityX(iiSample) != b.getVelocityX(iiSample) ||
+					a.getVelocityY(iiSample) != b.getVelocityY(iiSample) ||
+					a.getHeadingRate(iiSample) != b.getHeadingRate(iiSample)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static File createCacheDirectory() throws IOException {
+		File directory = File.createTempFile("trajectories", "");
+		if (!directory.delete() || !directory.mkdir()) {
+			throw new IOException("Can not create " + directory);
+		}
+		directory.deleteOnExit();
+		return directory;
+	}
+
+	private static boolean checkCache(TrajectoryPlanner planner) throws IOException {
+		File directory = createCacheDirectory();
+		Trajectory planned = planner.plan(CURVE_PATH);
+		long start = System.nanoTime();
+		for (int iiRun = 0; iiRun < TIMING_RUNS; iiRun++) {
+			planner.plan(CURVE_PATH);
+		}
+		long planTime = (System.nanoTime() - start) / TIMING_RUNS;
+		Trajectory first = planner.loadOrPlan(directory, CURVE_PATH);
+		File file = planner.cacheFile(directory, CURVE_PATH);
+		file.deleteOnExit();
+		start = System.nanoTime();
+		Trajectory loaded = planner.loadOrPlan(directory, CURVE_PATH);
+		long coldLoadTime = System.nanoTime() - start;
+		start = System.nanoTime();
+		for (int iiRun = 0; iiRun < TIMING_RUNS; iiRun++) {
+			planner.loadOrPlan(directory, CURVE_PATH);
+		}
+		long loadTime = (System.nanoTime() - start) / TIMING_RUNS;
+		boolean pass = file.exists() && sameSamples(planned, first) && sameSamples(planned, loaded);
+		System.out.printf("Curve %d bytes: plan %.2f ms, load from cache %.3f ms (first %.3f ms)  %s%n",
+				file.length(), planTime / 1e6, loadTime / 1e6, coldLoadTime / 1e6, pass ? "ok" : "FAILED");
+
+		// Moving a waypoint changes the hash, so the old file is not used
+		Waypoint moved[] = CURVE_PATH.clone();
+		moved[1] = new Waypoint(60.0, 66.0, 90.0);
+		File movedFile = planner.cacheFile(directory, moved);
+		movedFile.deleteOnExit();
+		Trajectory movedTrajectory = planner.loadOrPlan(directory, moved);
+		boolean movedOk = planner.hash(moved) != planner.hash(CURVE_PATH) && !movedFile.equals(file) &&
+				movedFile.exists() && sameSamples(movedTrajectory, planner.plan(moved));
+		System.out.println("Moved waypoint planned again " + (movedOk ? "ok" : "FAILED"));
+
+		// A truncated file is planned again and replaced
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.setLength(raf.length() / 2);
+		} finally {
+			raf.close();
+		}
+		Trajectory replanned = planner.loadOrPlan(directory, CURVE_PATH);
+		boolean damagedOk = sameSamples(planned, replanned) &&
+				sameSamples(planned, Trajectory.load(file, planner.hash(CURVE_PATH)));
+		System.out.println("Damaged file planned again " + (damagedOk ? "ok" : "FAILED"));
+		return pass && movedOk && damagedOk;
+	}
+
+	/**
+	 * @return largest distance from the trajectory while driving it, distance and heading error from its end
+	 *         one second after it finished
+	 */
+	private static double[] driveTrajectory(Trajectory trajectory) {
+		SimulatedHardware hardware = new SimulatedHardware();
+		RobotMap.init(hardware);
+		SwerveDrive drive = RobotMap.Subsystem.robotDrive;
+		drive.enableSteering(true);
+		SwerveRobotSimulation simulation = new SwerveRobotSimulation(hardware, RobotMap.Control.steering);
+		TrajectoryDrive trajectoryDrive = new TrajectoryDrive("Trajectory", drive, RobotMap.Sensor.gyro,
+				trajectory, RobotMap.Constants.MAX_WHEEL_SPEED);
+		int ticks = (int) Math.round((trajectory.getDuration() + 1.0) / PERIOD);
+		double maxError = 0;
+		for (int iiTick = 0; iiTick < ticks; iiTick++) {
+			trajectoryDrive.drive(iiTick * PERIOD);
+			simulation.run(PERIOD);
+			maxError = Math.max(maxError, Math.hypot(simulation.getX() - trajectory.getX(iiTick + 1),
+					simulation.getY() - trajectory.getY(iiTick + 1)));
+		}
+		int last = trajectory.size() - 1;
+		return new double[] {maxError,
+				Math.hypot(simulation.getX() - trajectory.getX(last), simulation.getY() - trajectory.getY(last)),
+				simulation.getHeading() - trajectory.getHeading(last)};
+	}
+
+	public static void main(String args[]) throws IOException {
+		TrajectoryPlanner planner = createPlanner();
+		// First plan includes class loading and interpreted code, as on the robot if nothing is cached
+		long start = System.nanoTime();
+		Trajectory autoZone = planner.plan(RobotMap.Autonomous.AUTO_ZONE_PATH);
+		System.out.printf("First plan (auto zone) %.2f ms%n", (System.nanoTime() - start) / 1e6);
+		boolean pass = checkTrajectory("Auto zone", autoZone, RobotMap.Autonomous.AUTO_ZONE_PATH);
+		Trajectory curve = planner.plan(CURVE_PATH);
+		pass &= checkTrajectory("Curve", curve, CURVE_PATH);
+		pass &= checkCache(planner);
+
+		double error[] = driveTrajectory(curve);
+		System.out.printf("Simulated open loop drive of curve: up to %.2f in off, ends %.2f in and %.1f deg from its end%n",
+				error[0], error[1], error[2]);
+
+		System.out.println(pass ? "PASS" : "FAIL");
+		if (!pass) {
+			System.exit(1);
+		}
+	}
+
+}
@@ -0,0 +1,101 @@
+package org.usfirst.frc.team2339.Barracuda.benchmark;
+
+import org.usfirst.frc.team2339.Barracuda.commands.MeasuredCommand;
+import org.usfirst.frc.team2339.Barracuda.control.Trajectory;
+import org.usfirst.frc.team2339.Barracuda.hal.GyroInput;
+import org.usfirst.frc.team2339.Barracuda.subsystems.SwerveDrive;
+import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveWheel.RobotMotion;
+import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveWheel.VelocityPolar;
+
+/**
+ * Drives a {@link Trajectory} planned before the command starts, field oriented using the gyro.
+ * Robot code drives trajectories closed loop with PursuitDrive; benchmarks use this open loop
+ * driver to compare against.
+ *
+ * Each execute sends the trajectory velocity and heading rate for the tick the command is in, by time since
+ * it started, as ProfiledDrive does. Open loop: the trajectory is relative to where the robot is
+ * when the command starts, and the robot ends as close to its end as the wheels follow their commands.
+ * Rotation is around the selected pivot, so center pivot should be selected.
+ *
+ * @author emiller
+ *
+ */
+public class TrajectoryDrive extends MeasuredCommand {
+
+	private final SwerveDrive robotDrive;
+	private final GyroInput gyro;
+	private final Trajectory trajectory;
+	private final double maxWheelSpeed;
+	private final RobotMotion motion = new RobotMotion(0.0, 0.0, 0.0);
+	private final VelocityPolar stop = new VelocityPolar(0.0, 0.0);
+
+	/**
+	 * @param name Name of command
+	 * @param robotDrive Robot drive subsystem
+	 * @param gyro gyro for field oriented driving, reset where the trajectory starts
+	 * @param trajectory Trajectory to drive, distances in the same units as maxWheelSpeed
+	 * @param maxWheelSpeed Wheel speed at full output, e.g. RobotMap MAX_WHEEL_SPEED
+	 */
+	public TrajectoryDrive(String name, SwerveDrive robotDrive, GyroInput gyro, Trajectory trajectory,
+			double maxWheelSpeed) {
+		super(name);
+		requires(robotDrive);
+		this.robotDrive = robotDrive;
+		this.gyro = gyro;
+		this.trajectory = trajectory;
+		this.maxWheelSpeed = maxWheelSpeed;
+		// Stop with wheels pointing the way the robot was last going, robot relative
+		int last = Math.max(0, trajectory.size() - 2);
+		double course = Math.toDegrees(Math.atan2(trajectory.getVelocityX(last), trajectory.getVelocityY(last)));
+		this.stop.angle = trajectory.getHeading(last + 1) - course;
+	}
+
+	/**
+	 * Drive the trajectory at a time
+	 * @param elapsed seconds since start
+	 * @return false once the trajectory has finished
+	 */
+	public boolean drive(double elapsed) {
+		int tick = (int) Math.floor(elapsed / trajectory.getPeriod());
+		if (tick >= trajectory.size() - 1) {
+			robotDrive.swerveDriveRobot(stop);
+			return false;
+		}
+		motion.strafe = trajectory.getVelocityX(tick) / maxWheelSpeed;
+		motion.frontBack = trajectory.getVelocityY(tick) / maxWheelSpeed;
+		// Positive rotate is counter-clockwise at full wheel speed on the farthest wheel, heading is clockwise
+		motion.rotate = -Math.toRadians(trajectory.getHeadingRate(tick)) * robotDrive.getMaxWheelRadius() /
+				maxWheelSpeed;
+		robotDrive.swerveDriveAbsolute(motion, gyro.getAngle());
+		return true;
+	}
+
+	public Trajectory getTrajectory() {
+		return trajectory;
+	}
+
+	@Override
+	protected void initialize() {
+	}
+
+	@Override
+	protected void measuredExecute() {
+		drive(timeSinceInitialized());
+	}
+
+	@Override
+	protected boolean isFinished() {
+		return timeSinceInitialized() >= trajectory.getDuration();
+	}
+
+	@Override
+	protected void end() {
+		robotDrive.swerveDriveRobot(stop);
+	}
+
+	@Override
+	protected void interrupted() {
+		robotDrive.swerveDriveRobot(stop);
+	}
+
+}
@@ -1,10 +1,23 @@
 
 package org.usfirst.frc.team2339.Barracuda;
 
+import java.io.File;
+import java.io.IOException;
+
 import org.usfirst.frc.team2339.Barracuda.commands.AutonomousCommand;
+import org.usfirst.frc.team2339.Barracuda.control.ControlLoop;
+import org.usfirst.frc.team2339.Barracuda.hal.Hardware;
+import org.usfirst.frc.team2339.Barracuda.hal.WpilibHardware;
 import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveWheel.VelocityPolar;
+import org.usfirst.frc.team2339.Barracuda.telemetry.Counter;
+import org.usfirst.frc.team2339.Barracuda.telemetry.DashboardPublisher;
+import org.usfirst.frc.team2339.Barracuda.telemetry.FlightLog;
+import org.usfirst.frc.team2339.Barracuda.telemetry.FlightRecorder;
+import org.usfirst.frc.team2339.Barracuda.telemetry.LatencyHistogram;
+import org.usfirst.frc.team2339.Barracuda.telemetry.MetricsRegistry;
 
 import edu.wpi.first.wpilibj.IterativeRobot;
+import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.command.Scheduler;
 import edu.wpi.first.wpilibj.livewindow.LiveWindow;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
@@ -27,6 +40,24 @@ public class Barracuda extends IterativeRobot {
     // Control operator interface
     public static OI oi;
 
+    /*
+     * Runs the scheduler (and so all commands) at a fixed rate.
+     * Periodic methods below only run when a driver station packet arrives,
+     * so they just note new inputs and report loop timing.
+     * Code here that touches commands or subsystems synchronizes on the loop.
+     */
+    public static ControlLoop controlLoop;
+    // Commands run in every mode but test, as when the periodic methods ran the scheduler
+    private volatile boolean commandsEnabled = true;
+    private final Counter staleInputTicks = MetricsRegistry.counter("Stale input ticks");
+
+    // Metrics are published once per this many driver station packets (about 2 Hz)
+    private static final int METRICS_PUBLISH_PERIOD = 25;
+    private final Counter driverStationPackets = MetricsRegistry.counter("Driver station packets");
+
+    // Records every control loop tick, null if the log could not be opened
+    private FlightRecorder flightRecorder = null;
+
     // Commands
     private AutonomousCommand autonomousCommand;
     
@@ -40,13 +71,59 @@ public class Barracuda extends IterativeRobot {
     	/*
     	 * Initialize robot components and subsystems
     	 */
-    	RobotMap.init();
+        Hardware hardware = new WpilibHardware();
+        RobotMap.init(hardware);
     	
         // OI must be constructed after subsystems. If the OI creates Commands 
         //(which it very likely will), subsystems are not guaranteed to be 
         // constructed yet. Thus, their requires() statements may grab null 
         // pointers. Bad news. Don't move it.
-        oi = new OI();
+        oi = new OI(hardware);
+
+        // Plan or map trajectories now, so autonomous starts without planning
+        if (RobotMap.Constants.USE_AUTO_TRAJECTORY) {
+            RobotMap.loadTrajectories();
+        }
+
+        if (RobotMap.Constants.USE_FLIGHT_LOG) {
+            openFlightLog();
+        }
+
+        final LatencyHistogram schedulerLatency = MetricsRegistry.histogram("Scheduler run");
+        controlLoop = new ControlLoop("Control loop", RobotMap.Constants.CONTROL_LOOP_FREQUENCY, new Runnable() {
+            public void run() {
+                // Every command this tick sees the same joystick values
+                oi.getInputSampler().sample();
+                // Heading from gyro and the wheel speeds commanded last tick, timestamped before commands use it
+                double now = Timer.getFPGATimestamp();
+                RobotMap.Sensor.fusedGyro.update(now);
+                RobotMap.Sensor.headingPredictor.sample(now);
+                long start = System.nanoTime();
+                if (commandsEnabled) {
+                    if (controlLoop.getInputAge() > RobotMap.Constants.MAX_INPUT_AGE) {
+                        // Driver station has gone quiet, so do not keep driving on its last inputs
+                        staleInputTicks.increment();
+                        RobotMap.Subsystem.robotDrive.stopRobot();
+                    } else {
+                        Scheduler.getInstance().run();
+                    }
+                }
+                schedulerLatency.recordSince(start);
+                // Steer every wheel to the setpoints commands just set, all from one encoder sample
+                RobotMap.Control.steering.update(Timer.getFPGATimestamp());
+                if (flightRecorder != null) {
+                    flightRecorder.record();
+                }
+            }
+        }, new Runnable() {
+            public void run() {
+                // Steering motors have no motor safety, so they would hold their last output
+                RobotMap.Subsystem.robotDrive.enableSteering(false);
+                RobotMap.Subsystem.robotDrive.stopRobot();
+            }
+        });
+        controlLoop.start();
+        DashboardPublisher.start(RobotMap.Constants.DASHBOARD_PUBLISH_FREQUENCY);
 
         // Autonomous dashboard values
         try {
@@ -55,12 +132,14 @@ public class Barracuda extends IterativeRobot {
             SmartDashboard.getNumber("Auto drive time ");
             SmartDashboard.getNumber("Auto drive speed ");
             SmartDashboard.getNumber("Auto drive direction ");
+            SmartDashboard.getBoolean("Auto drive path ");
         } catch (TableKeyNotDefinedException e) {
             SmartDashboard.putNumber("Auto lift time ", 1);
             SmartDashboard.putNumber("Auto lift speed ", 0.5);
             SmartDashboard.putNumber("Auto drive time ", 0.0);
             SmartDashboard.putNumber("Auto drive speed ", 0.5);
             SmartDashboard.putNumber("Auto drive direction ", 90);
+            SmartDashboard.putBoolean("Auto drive path ", false);
         }
         
     }
@@ -71,32 +150,41 @@ public class Barracuda extends IterativeRobot {
      * You can use it to reset subsystems before shutting down.
      */
     public void disabledInit(){
-    	// Zero wheels
-       	RobotMap.Subsystem.robotDrive.swerveDriveRobot(new VelocityPolar(0.0, 0.0));
+        setFlightLogMode(FlightRecorder.Record.MODE_DISABLED);
+        commandsEnabled = true;
+        synchronized (controlLoop) {
+            // Zero wheels
+            RobotMap.Subsystem.robotDrive.swerveDriveRobot(new VelocityPolar(0.0, 0.0));
+        }
     }
 
     public void disabledPeriodic() {
-        Scheduler.getInstance().run();
+        operatorInputsUpdated();
     }
 
     /**
      * This method is called at the beginning of autonomous period
      */
     public void autonomousInit() {
-       	RobotMap.Analog.GYRO.reset();
-       	//RobotMap.Subsystem.robotDrive.resetSteering();
-       	RobotMap.Subsystem.robotDrive.enableSteering(true);
-        
-        // Autonomous command
-        autonomousCommand = new AutonomousCommand(RobotMap.Subsystem.robotDrive, RobotMap.Subsystem.lift);
-        if (autonomousCommand != null) autonomousCommand.start();
+        setFlightLogMode(FlightRecorder.Record.MODE_AUTONOMOUS);
+        commandsEnabled = true;
+        synchronized (controlLoop) {
+            RobotMap.Sensor.heading.reset();
+            //RobotMap.Subsystem.robotDrive.resetSteering();
+            RobotMap.Subsystem.robotDrive.enableSteering(true);
+
+            // Autonomous command
+            autonomousCommand = new AutonomousCommand(RobotMap.Subsystem.robotDrive, RobotMap.Subsystem.lift,
+                    RobotMap.Sensor.pose, RobotMap.Autonomous.autoZone);
+            if (autonomousCommand != null) autonomousCommand.start();
+        }
     }
 
     /**
      * This function is called periodically during autonomous
      */
     public void autonomousPeriodic() {
-        Scheduler.getInstance().run();
+        operatorInputsUpdated();
     }
 
     /**
@@ -109,11 +197,15 @@ public class Barracuda extends IterativeRobot {
         // this line or comment it out.
         //if (autonomousCommand != null) autonomousCommand.cancel();
         
-    	RobotMap.Analog.GYRO.reset();
-    	//RobotMap.Subsystem.robotDrive.resetSteering();
-    	RobotMap.Subsystem.robotDrive.enableSteering(true);
-        oi.getTeleopDrive().start();
-        oi.getTeleopLift().start();
+        setFlightLogMode(FlightRecorder.Record.MODE_TELEOP);
+        commandsEnabled = true;
+        synchronized (controlLoop) {
+            RobotMap.Sensor.heading.reset();
+            //RobotMap.Subsystem.robotDrive.resetSteering();
+            RobotMap.Subsystem.robotDrive.enableSteering(true);
+            oi.getTeleopDrive().start();
+            oi.getTeleopLift().start();
+        }
     }
 
  
@@ -122,14 +214,69 @@ public class Barracuda extends IterativeRobot {
      * This function is called periodically during operator control
      */
     public void teleopPeriodic() {
-        Scheduler.getInstance().run();
+        operatorInputsUpdated();
+    }
+
+    /**
+     * This method is called at the beginning of test mode
+     */
+    public void testInit() {
+        setFlightLogMode(FlightRecorder.Record.MODE_TEST);
+        // Test mode only runs LiveWindow
+        commandsEnabled = false;
     }
 
     /**
      * This function is called periodically during test mode
      */
     public void testPeriodic() {
-        LiveWindow.run();
+        operatorInputsUpdated();
+        synchronized (controlLoop) {
+            LiveWindow.run();
+        }
+    }
+
+    /**
+     * Open flight log and recorder. The robot still runs without them if the log can not be opened.
+     */
+    private void openFlightLog() {
+        try {
+            FlightLog log = new FlightLog(new File(RobotMap.Constants.FLIGHT_LOG_DIRECTORY), "flight",
+                    FlightRecorder.Record.FORMAT_VERSION, FlightRecorder.Record.payloadSize(RobotMap.Constants.NUMBER_OF_WHEELS),
+                    RobotMap.Constants.FLIGHT_LOG_RECORDS_PER_SEGMENT,
+                    RobotMap.Constants.FLIGHT_LOG_SEGMENTS);
+            log.startFlusher(RobotMap.Constants.FLIGHT_LOG_FLUSH_PERIOD);
+            flightRecorder = new FlightRecorder(log, oi.getInputSampler(), RobotMap.Sensor.heading,
+                    RobotMap.Subsystem.robotDrive, RobotMap.Subsystem.lift);
+        } catch (IOException e) {
+            System.out.println("Flight log disabled: " + e.getMessage());
+        }
+    }
+
+    private void setFlightLogMode(int mode) {
+        if (flightRecorder != null) {
+            flightRecorder.setMode(mode);
+        }
+    }
+
+    /**
+     * Tell control loop new operator inputs have arrived.
+     * Put loop timing and metrics on dashboard every so often.
+     * Rethrows an exception that stopped the control loop, so it ends the robot program.
+     */
+    private void operatorInputsUpdated() {
+        controlLoop.checkFailure();
+        controlLoop.inputsUpdated();
+        driverStationPackets.increment();
+        if (driverStationPackets.get() % METRICS_PUBLISH_PERIOD == 0) {
+            SmartDashboard.putNumber("Control loop ticks ", controlLoop.getTicks());
+            SmartDashboard.putNumber("Control loop overruns ", controlLoop.getOverruns());
+            SmartDashboard.putNumber("Control loop max jitter ms ", controlLoop.getMaxJitter() * 1000);
+            SmartDashboard.putNumber("Control loop max run ms ", controlLoop.getMaxRunTime() * 1000);
+            // Fraction of loop period used by worst tick
+            SmartDashboard.putNumber("Control loop budget used ", controlLoop.getMaxRunTime() / controlLoop.getPeriod());
+            MetricsRegistry.publish();
+        }
     }
     
 }
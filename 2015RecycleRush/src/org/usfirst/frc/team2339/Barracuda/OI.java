@@ -9,9 +9,9 @@ import org.usfirst.frc.team2339.Barracuda.commands.TeleopDrive;
 import org.usfirst.frc.team2339.Barracuda.commands.TeleopLift;
 import org.usfirst.frc.team2339.Barracuda.components.OperatorJoystick;
 import org.usfirst.frc.team2339.Barracuda.components.SwerveJoystick;
-import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveWheel.RectangularCoordinates;
-
-import edu.wpi.first.wpilibj.buttons.JoystickButton;
+import org.usfirst.frc.team2339.Barracuda.control.InputSampler;
+import org.usfirst.frc.team2339.Barracuda.hal.Hardware;
+import org.usfirst.frc.team2339.Barracuda.hal.InputButton;
 
 /**
  * This class is the glue that binds the controls on the physical operator
@@ -27,37 +27,46 @@ public class OI {
 	private static final int DRIVE_BUTTON_ROTATE_AROUND_CONTAINER = 7;
 	private static final int GYRO_BUTTON_RESET = 1;
     
+    // Joysticks are read once per control loop tick, everything else reads the samples
+    private InputSampler inputSampler;
+    
     private SwerveJoystick joystickDrive;
-    private JoystickButton containerPivotButton;
+    private InputButton containerPivotButton;
     
     private OperatorJoystick joystickOperator;
-    private JoystickButton gyroResetButton;
+    private InputButton gyroResetButton;
     
     private TeleopDrive teleopDrive;
     private TeleopLift teleopLift;
 
 	/**
-	 * 
+	 * @param hardware device factory the joysticks are created from
 	 */
-	public OI() {
-        setJoystickOperator(new OperatorJoystick(1));
-        setJoystickDrive(new SwerveJoystick(0));
-        setTeleopDrive(new TeleopDrive("Teleop drive", RobotMap.Subsystem.robotDrive, getJoystickDrive(), RobotMap.Analog.GYRO));
-        setTeleopLift(new TeleopLift("Teleop lift", RobotMap.Subsystem.lift, getJoystickOperator()));
+	public OI(Hardware hardware) {
+        inputSampler = new InputSampler(hardware.createJoystick(0), hardware.createJoystick(1));
+        setJoystickOperator(new OperatorJoystick(inputSampler.getOperatorStick()));
+        setJoystickDrive(new SwerveJoystick(inputSampler.getDriveStick()));
+        setTeleopDrive(new TeleopDrive("Teleop drive", RobotMap.Subsystem.robotDrive, inputSampler, RobotMap.Sensor.heading));
+        setTeleopLift(new TeleopLift("Teleop lift", RobotMap.Subsystem.lift, inputSampler));
         
-        containerPivotButton = new JoystickButton(getJoystickDrive(), DRIVE_BUTTON_ROTATE_AROUND_CONTAINER);
+        containerPivotButton = new InputButton(getJoystickDrive(), DRIVE_BUTTON_ROTATE_AROUND_CONTAINER);
         containerPivotButton.whenPressed(new SetSwervePivotPoint("Container Pivot", RobotMap.Subsystem.robotDrive, 
-        		new RectangularCoordinates(0.0, 
-        				RobotMap.Constants.CONTAINER_CENTER_DISTANCE_FORWARD + 
-        				0.5 * RobotMap.Constants.WHEEL_BASE_LENGTH)));
+        		RobotMap.Pivot.container));
         containerPivotButton.whenReleased(new SetSwervePivotPoint("Container Pivot", RobotMap.Subsystem.robotDrive, 
-        		new RectangularCoordinates(0.0, 0.0)));
+        		RobotMap.Pivot.CENTER));
         
-        gyroResetButton = new JoystickButton(getJoystickOperator(), GYRO_BUTTON_RESET);
-        gyroResetButton.whenPressed(new GyroReset(RobotMap.Analog.GYRO));
+        gyroResetButton = new InputButton(getJoystickOperator(), GYRO_BUTTON_RESET);
+        gyroResetButton.whenPressed(new GyroReset(RobotMap.Sensor.heading));
         
 	}
 
+	/**
+	 * @return joystick sampler. Call {@link InputSampler#sample()} at the start of each control loop tick.
+	 */
+	public InputSampler getInputSampler() {
+		return inputSampler;
+	}
+
 	/**
 	 * @return the joystickDrive
 	 */
@@ -1,18 +1,34 @@
 package org.usfirst.frc.team2339.Barracuda;
 
-import org.usfirst.frc.team2339.Barracuda.components.SwerveSteeringEncoder;
-import org.usfirst.frc.team2339.Barracuda.components.SwerveSteeringPidController;
+import java.io.File;
+
+import org.usfirst.frc.team2339.Barracuda.components.FusedGyro;
+import org.usfirst.frc.team2339.Barracuda.components.HeadingPredictor;
+import org.usfirst.frc.team2339.Barracuda.components.SwerveSteeringLoop;
+import org.usfirst.frc.team2339.Barracuda.control.PurePursuit;
+import org.usfirst.frc.team2339.Barracuda.control.Trajectory;
+import org.usfirst.frc.team2339.Barracuda.control.TrajectoryPlanner;
+import org.usfirst.frc.team2339.Barracuda.control.TrajectoryPlanner.Waypoint;
+import org.usfirst.frc.team2339.Barracuda.hal.EncoderInput;
+import org.usfirst.frc.team2339.Barracuda.hal.GyroInput;
+import org.usfirst.frc.team2339.Barracuda.hal.Hardware;
 import org.usfirst.frc.team2339.Barracuda.subsystems.Lift;
 import org.usfirst.frc.team2339.Barracuda.subsystems.SwerveDriveRectangle;
+import org.usfirst.frc.team2339.Barracuda.swervemath.PoseEstimator;
+import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveKinematics;
+import org.usfirst.frc.team2339.Barracuda.swervemath.SwervePoseEstimator;
+import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveSetpointCache;
+import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveTrig;
+import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveWheel.RectangularCoordinates;
 
-import edu.wpi.first.wpilibj.Gyro;
-import edu.wpi.first.wpilibj.Talon;
+import edu.wpi.first.wpilibj.SpeedController;
 
 public class RobotMap {
 	
 	public static class Constants {
 		
-		public static final int NUMBER_OF_WHEELS = 4;
+		// One wheel per drive controller. See PWM below.
+		public static final int NUMBER_OF_WHEELS = PWM.DRIVE_CONTROLLERS.length;
 		
 		// These should be set to actual robot dimensions. 
 		// The units do not matter as long as they are consistent. Numbers below are in inches.
@@ -20,6 +36,70 @@ public class RobotMap {
 		public static final double WHEEL_BASE_WIDTH = 25.0;
 		// Distance of center of container in front of front wheels. (Negative if behind front wheel line.)
 		public static final double CONTAINER_CENTER_DISTANCE_FORWARD = 18.0;
+		// Drive wheel surface speed at full motor output in inches per second. Used for odometry.
+		// Estimated, not measured. Measure by driving a known distance at full speed.
+		public static final double MAX_WHEEL_SPEED = 120.0;
+		
+		// Autonomous drive segment limits, see MotionProfile. Inches per second squared and cubed.
+		public static final double AUTO_DRIVE_MAX_ACCELERATION = 120.0;
+		public static final double AUTO_DRIVE_MAX_JERK = 1200.0;
+		
+		/*
+		 * Autonomous trajectories, see TrajectoryPlanner. Planned on first boot, cached in the directory
+		 * by a hash of their waypoints and limits, and memory mapped at robot init after that.
+		 * Speed leaves wheel speed headroom for following corrections.
+		 * Autonomous only follows them when "Auto drive path " is checked on the dashboard.
+		 */
+		public static final boolean USE_AUTO_TRAJECTORY = true;
+		public static final String TRAJECTORY_DIRECTORY = "/home/lvuser/trajectories";
+		public static final double TRAJECTORY_MAX_VELOCITY = 90.0;
+		public static final double TRAJECTORY_MAX_ACCELERATION = AUTO_DRIVE_MAX_ACCELERATION;
+		/*
+		 * Trajectory following, see PurePursuit. Lookahead in inches, search window in trajectory samples
+		 * (64 samples is 0.32 s of path). Gains are per second: inches per second per inch behind schedule,
+		 * degrees per second per degree of heading error. End tolerance in inches, settle time in seconds.
+		 */
+		public static final double PURSUIT_LOOKAHEAD = 12.0;
+		public static final int PURSUIT_SEARCH_WINDOW = 64;
+		public static final double PURSUIT_DISTANCE_GAIN = 2.0;
+		public static final double PURSUIT_HEADING_GAIN = 4.0;
+		public static final double PURSUIT_END_TOLERANCE = 1.0;
+		public static final double PURSUIT_SETTLE_TIME = 1.0;
+		/*
+		 * Heading fused from gyro and wheels, see SwervePoseEstimator. When on, field oriented drive and
+		 * autonomous use it instead of the raw gyro and wheel odometry. Noise is in degrees per second:
+		 * gyro noise per root Hz, bias drift per root second, and wheel heading rate while driving and stopped.
+		 * Wheel rates further than the gate (standard deviations) from the gyro are skipped.
+		 * Tuned in simulation (HeadingFusionBenchmark), not measured: log gyro angle with the robot disabled to check.
+		 * Wheel speeds are commanded, not measured (no drive encoders), so the wheel check can not see slip.
+		 * Off until the noise is measured on the robot.
+		 */
+		public static final boolean USE_HEADING_FUSION = false;
+		public static final double HEADING_GYRO_NOISE = 0.05;
+		public static final double HEADING_BIAS_DRIFT = 0.002;
+		public static final double HEADING_INITIAL_BIAS = 1.0;
+		public static final double HEADING_WHEEL_RATE_NOISE = 50.0;
+		public static final double HEADING_STOPPED_RATE_NOISE = 0.5;
+		// Seconds the wheels must be stopped before the robot is taken to have stopped turning.
+		// Covers drive spin down, which is longer now wheel speed is not scaled while steering.
+		public static final double HEADING_STOPPED_TIME = 0.6;
+		public static final double HEADING_GATE = 3.0;
+		/*
+		 * Field oriented drive uses heading extrapolated this many seconds past when it was sampled, to when
+		 * outputs take effect, see HeadingPredictor. Rate is over the last HEADING_LEAD_WINDOW samples.
+		 * Should be PWM and motor controller latency, which is not measured yet, so it is off (zero).
+		 * Check a measured value with HeadingLeadBenchmark before turning it on.
+		 */
+		public static final double HEADING_LEAD_TIME = 0.0;
+		public static final int HEADING_LEAD_WINDOW = 4;
+		
+		// Commands and subsystems run at this rate (Hz), independent of driver station packets
+		public static final double CONTROL_LOOP_FREQUENCY = 200;
+		// Driver station packets arrive every 20 ms. With none for this many seconds commands stop and the
+		// drive stops, as when the periodic methods ran the scheduler.
+		public static final double MAX_INPUT_AGE = 0.1;
+		// Changed dashboard values are sent at this rate (Hz) from a background thread
+		public static final double DASHBOARD_PUBLISH_FREQUENCY = 10;
 		
 		/*
 		 * AndyMark Gearmotor am-2971. See http://www.andymark.com/product-p/am-2971.htm
@@ -34,14 +114,53 @@ public class RobotMap {
 		 * 2015-02-15: Testing revealed the need to divide by two, thus the extra "2.0"
 		 */
 		public static final double STEERING_ENC_DEGREES_PER_PULSE = (32.0 * 360.0) / (7.0 * 71.0 * 22.0 * 2.0);
+		// Steering PID gains in PIDController form for a 50 ms period, see SwerveSteeringLoop
 		public static final double STEERING_PID_P = 0.02;
 		public static final double STEERING_PID_I = 0;
 		public static final double STEERING_PID_D = 0;
+		/*
+		 * Trapezoidal steering profile and its feedforward, see SwerveSteeringLoop.setProfile.
+		 * Limits leave headroom under the am-2971's roughly 310 degrees per second free speed.
+		 * Feedforward is estimated from the gearmotor's specs, not measured: characterize by driving
+		 * the steering at constant outputs and fitting output against velocity.
+		 * Off until then, since an unmeasured Ks pushes the steering on its own.
+		 */
+		public static final boolean STEERING_PROFILED = false;
+		public static final double STEERING_MAX_VELOCITY = 240.0;
+		public static final double STEERING_MAX_ACCELERATION = 1800.0;
+		public static final double STEERING_FF_S = 0.1;
+		public static final double STEERING_FF_V = 1.0 / 310.0;
+		public static final double STEERING_FF_A = 0.000116;
+		
+		// Drive setpoint cache. Stick inputs are quantized to SETPOINT_CACHE_RESOLUTION, gyro to degrees below.
+		public static final int SETPOINT_CACHE_SIZE = 32;
+		public static final double SETPOINT_CACHE_RESOLUTION = 0.01;
+		public static final double SETPOINT_CACHE_ANGLE_RESOLUTION = 0.5;
+		
+		/*
+		 * Precomputed drive setpoints for center pivot. Generated on first boot if missing or stale.
+		 * Off: with FAST trig the four wheel kinematics is cheaper than the table's eight scattered corner reads.
+		 * See KinematicsTableBenchmark.
+		 */
+		public static final boolean USE_KINEMATICS_TABLE = false;
+		public static final String KINEMATICS_TABLE_FILE = "/home/lvuser/swerve_kinematics.table";
+		public static final int KINEMATICS_TABLE_POINTS = 41;
+		
+		/*
+		 * Binary log of every control loop tick for post match analysis, see FlightRecorder.
+		 * Four segments of 15000 records hold the last 5 minutes at 200 Hz (about 16 MB).
+		 */
+		public static final boolean USE_FLIGHT_LOG = true;
+		public static final String FLIGHT_LOG_DIRECTORY = "/home/lvuser/flightlog";
+		public static final int FLIGHT_LOG_SEGMENTS = 4;
+		public static final int FLIGHT_LOG_RECORDS_PER_SEGMENT = 15000;
+		// Seconds between writes of the log to flash. At most this much is lost at power off.
+		public static final double FLIGHT_LOG_FLUSH_PERIOD = 1.0;
 	};
 	
 	
 	public static class Analog {
-		public static final Gyro GYRO = new Gyro(0);
+		public static final int GYRO = 0;
 	};
 	
 	public static class PWM {
@@ -69,74 +188,222 @@ public class RobotMap {
 		public static final int LIFT_LOWER_LIMIT_SWITCH = 8;
 	};
 	
+	public static class Sensor {
+		// Raw gyro
+		public static GyroInput gyro;
+		// Gyro corrected by the wheels, updated by the control loop
+		public static FusedGyro fusedGyro;
+		// Fused or raw gyro per USE_HEADING_FUSION, extrapolated to actuation, sampled by the control loop
+		public static HeadingPredictor headingPredictor;
+		// Heading for field oriented drive, the predictor
+		public static GyroInput heading;
+		// Pose for autonomous, fused or wheel odometry per USE_HEADING_FUSION
+		public static PoseEstimator pose;
+	};
+	
+	/*
+	 * Closed loop controllers run by the control loop after the scheduler
+	 */
+	public static class Control {
+		public static SwerveSteeringLoop steering;
+	};
+	
+	/*
+	 * Autonomous paths. Field x is right and y forward from where the robot starts, angles degrees clockwise.
+	 */
+	public static class Autonomous {
+		// Into the auto zone, 135 inches to the left
+		public static final Waypoint AUTO_ZONE_PATH[] = {
+			new Waypoint(0.0, 0.0, 0.0, -90.0), 
+			new Waypoint(-135.0, 0.0, 0.0, -90.0)
+		};
+		public static Trajectory autoZone;
+	};
+	
 	public static class Subsystem {
 	    public static SwerveDriveRectangle robotDrive; 
 	    public static Lift lift;
 	};
+	
+	/*
+	 * Pivot ids registered with robot drive
+	 */
+	public static class Pivot {
+		public static final int CENTER = SwerveKinematics.PIVOT_CENTER;
+		public static int container;
+	};
     
     /**
-	 * Create a swerve steering controller
+	 * Create the steering controller for all wheels
 	 * 
-     * @param steeringEncoderChannelA First steering encoder DIO channel 
-     * @param steeringEncoderChannelB Second steering encoder DIO channel
-     * @param steeringMotorControllerPwm Steering motor controller PWM channel
-     * @return new swerve steering controller
+	 * @param hardware device factory
+     * @return steering loop, every wheel disabled
      */
-    public static SwerveSteeringPidController newSwerveSteeringController(
-    		int steeringEncoderChannelA, 
-    		int steeringEncoderChannelB, 
-    		int steeringMotorControllerPwm) {
-    	
-    	return new SwerveSteeringPidController(
+    public static SwerveSteeringLoop createSteeringLoop(Hardware hardware) {
+    	EncoderInput steeringEncoders[] = new EncoderInput[Constants.NUMBER_OF_WHEELS];
+    	SpeedController steeringMotors[] = new SpeedController[Constants.NUMBER_OF_WHEELS];
+    	for (int iiWheel = 0; iiWheel < Constants.NUMBER_OF_WHEELS; iiWheel++) {
+    		steeringEncoders[iiWheel] = hardware.createEncoder(DIO.STEERING_ENCODERS_A[iiWheel], 
+    				DIO.STEERING_ENCODERS_B[iiWheel], 
+    				Constants.STEERING_ENC_DEGREES_PER_PULSE);
+    		steeringMotors[iiWheel] = hardware.createMotor(PWM.STEERING_CONTROLLERS[iiWheel]);
+    	}
+    	SwerveSteeringLoop steering = new SwerveSteeringLoop(steeringEncoders, steeringMotors, 
     			Constants.STEERING_PID_P, 
     			Constants.STEERING_PID_I, 
     			Constants.STEERING_PID_D, 
-    			new SwerveSteeringEncoder(steeringEncoderChannelA, 
-    					steeringEncoderChannelB, 
-    					Constants.STEERING_ENC_DEGREES_PER_PULSE), 
-    			new Talon(steeringMotorControllerPwm));
+    			1.0 / Constants.CONTROL_LOOP_FREQUENCY);
+    	if (Constants.STEERING_PROFILED) {
+    		steering.setProfile(Constants.STEERING_MAX_VELOCITY, 
+    				Constants.STEERING_MAX_ACCELERATION, 
+    				Constants.STEERING_FF_S, 
+    				Constants.STEERING_FF_V, 
+    				Constants.STEERING_FF_A);
+    	}
+    	return steering;
     }
 
-	/**
-	 * Initialize subsystems and components based on RobotMap values
-	 */
-    public static void init() {
-    	
-    	/*
-    	 * Initialize wheel steering controllers
-    	 */
-		SwerveSteeringPidController steeringPidControllers[] = 
-				new SwerveSteeringPidController[Constants.NUMBER_OF_WHEELS];
-    	for (int iiWheel = 0; iiWheel < Constants.NUMBER_OF_WHEELS; iiWheel++) {
-    		steeringPidControllers[iiWheel] = newSwerveSteeringController(
-        			DIO.STEERING_ENCODERS_A[iiWheel],
-        			DIO.STEERING_ENCODERS_B[iiWheel],
-        			PWM.STEERING_CONTROLLERS[iiWheel]);
-    	}
+    /**
+     * Create robot drive subsystem configured from RobotMap values, and register its pivots.
+     * Used by {@link #init(Hardware)}, and by simulation and log replay with simulated hardware.
+     * 
+     * @param hardware device factory
+     * @param steering steering loop for the wheels, see {@link #createSteeringLoop(Hardware)}
+     * @return robot drive
+     */
+    public static SwerveDriveRectangle createRobotDrive(Hardware hardware, SwerveSteeringLoop steering) {
     	
     	/*
     	 * Initialize wheel drive controllers
     	 */
-		Talon driveControllers[] = new Talon[Constants.NUMBER_OF_WHEELS];
+		SpeedController driveControllers[] = new SpeedController[Constants.NUMBER_OF_WHEELS];
     	for (int iiWheel = 0; iiWheel < Constants.NUMBER_OF_WHEELS; iiWheel++) {
-    		driveControllers[iiWheel] = new Talon(PWM.DRIVE_CONTROLLERS[iiWheel]);
+    		driveControllers[iiWheel] = hardware.createMotor(PWM.DRIVE_CONTROLLERS[iiWheel]);
     	}
     	
-    	/*
-    	 * Initialize robot drive subsystem
-    	 */
-        Subsystem.robotDrive = new SwerveDriveRectangle(SwerveDriveRectangle.createWheels(
+    	SwerveDriveRectangle robotDrive = new SwerveDriveRectangle(SwerveDriveRectangle.createWheels(
         		Constants.WHEEL_BASE_LENGTH, 
         		Constants.WHEEL_BASE_WIDTH, 
         		driveControllers, 
-        		steeringPidControllers));
-        Subsystem.robotDrive.resetSteering();
+        		steering.getModules()), 
+        		SwerveTrig.FAST, 
+        		Constants.MAX_WHEEL_SPEED);
+    	robotDrive.resetSteering();
+    	robotDrive.setSetpointCache(new SwerveSetpointCache(
+        		Constants.SETPOINT_CACHE_SIZE, 
+        		Constants.NUMBER_OF_WHEELS, 
+        		Constants.SETPOINT_CACHE_RESOLUTION, 
+        		Constants.SETPOINT_CACHE_ANGLE_RESOLUTION));
+        if (Constants.USE_KINEMATICS_TABLE) {
+            // Table is for the pivot selected now, which is center
+        	robotDrive.loadKinematicsTable(new File(Constants.KINEMATICS_TABLE_FILE), 
+            		Constants.KINEMATICS_TABLE_POINTS);
+        }
+        Pivot.container = robotDrive.registerPivot(new RectangularCoordinates(0.0, 
+        		Constants.CONTAINER_CENTER_DISTANCE_FORWARD + 0.5 * Constants.WHEEL_BASE_LENGTH));
+        return robotDrive;
+    }
+
+	/**
+	 * Initialize subsystems and components based on RobotMap values
+	 * 
+	 * @param hardware device factory, {@link org.usfirst.frc.team2339.Barracuda.hal.WpilibHardware} on the robot
+	 */
+    public static void init(Hardware hardware) {
+    	
+    	Sensor.gyro = hardware.createGyro(Analog.GYRO);
+    	
+    	/*
+    	 * Initialize robot drive subsystem
+    	 */
+        Control.steering = createSteeringLoop(hardware);
+        Subsystem.robotDrive = createRobotDrive(hardware, Control.steering);
+        
+        Sensor.fusedGyro = createFusedGyro(Sensor.gyro, Subsystem.robotDrive);
+        if (Constants.USE_HEADING_FUSION) {
+        	Sensor.headingPredictor = createHeadingPredictor(Sensor.fusedGyro);
+        	Sensor.pose = Sensor.fusedGyro.getEstimator();
+        } else {
+        	Sensor.headingPredictor = createHeadingPredictor(Sensor.gyro);
+        	Sensor.pose = Subsystem.robotDrive.getOdometry();
+        }
+        Sensor.heading = Sensor.headingPredictor;
 
         /*
          * Initialize lift subsystem
          */
-        Subsystem.lift = new Lift(PWM.LIFT_WINCH, DIO.LIFT_LOWER_LIMIT_SWITCH);
+        Subsystem.lift = new Lift(hardware.createMotor(PWM.LIFT_WINCH), 
+        		hardware.createSwitch(DIO.LIFT_LOWER_LIMIT_SWITCH));
         
     }
 
+    /**
+     * Create gyro fused with wheel odometry from RobotMap values
+     * 
+     * @param gyro raw gyro
+     * @param robotDrive robot drive, for its wheels
+     * @return fused gyro
+     */
+    public static FusedGyro createFusedGyro(GyroInput gyro, SwerveDriveRectangle robotDrive) {
+    	return new FusedGyro(gyro, robotDrive, new SwervePoseEstimator(
+    			robotDrive.getOdometry().getForwardKinematics(), 
+    			Constants.MAX_WHEEL_SPEED, 
+    			Constants.HEADING_GYRO_NOISE, 
+    			Constants.HEADING_BIAS_DRIFT, 
+    			Constants.HEADING_INITIAL_BIAS, 
+    			Constants.HEADING_WHEEL_RATE_NOISE, 
+    			Constants.HEADING_STOPPED_RATE_NOISE, 
+    			Constants.HEADING_STOPPED_TIME, 
+    			Constants.HEADING_GATE));
+    }
+    
+    /**
+     * Create heading extrapolation for field oriented drive from RobotMap values
+     * 
+     * @param gyro heading source
+     * @return predictor
+     */
+    public static HeadingPredictor createHeadingPredictor(GyroInput gyro) {
+    	return new HeadingPredictor(gyro, Constants.HEADING_LEAD_WINDOW, Constants.HEADING_LEAD_TIME);
+    }
+    
+    /**
+     * Create the planner for autonomous trajectories from RobotMap limits
+     * 
+     * @param robotDrive robot drive, for its wheel geometry
+     * @return planner
+     */
+    public static TrajectoryPlanner createTrajectoryPlanner(SwerveDriveRectangle robotDrive) {
+    	return new TrajectoryPlanner(Constants.TRAJECTORY_MAX_VELOCITY, 
+    			Constants.TRAJECTORY_MAX_ACCELERATION, 
+    			Constants.MAX_WHEEL_SPEED, 
+    			robotDrive.getMaxWheelRadius(), 
+    			1.0 / Constants.CONTROL_LOOP_FREQUENCY);
+    }
+    
+    /**
+     * Create pursuit of a trajectory from RobotMap values
+     * 
+     * @param trajectory trajectory to follow
+     * @return pursuit
+     */
+    public static PurePursuit createPursuit(Trajectory trajectory) {
+    	return new PurePursuit(trajectory, 
+    			Constants.PURSUIT_LOOKAHEAD, 
+    			Constants.PURSUIT_SEARCH_WINDOW, 
+    			Constants.PURSUIT_DISTANCE_GAIN, 
+    			Constants.PURSUIT_HEADING_GAIN, 
+    			Constants.MAX_WHEEL_SPEED);
+    }
+    
+    /**
+     * Load autonomous trajectories from the cache, planning any that are missing or stale. 
+     * Call after {@link #init(Hardware)}, on the robot only since it writes the cache.
+     */
+    public static void loadTrajectories() {
+    	TrajectoryPlanner planner = createTrajectoryPlanner(Subsystem.robotDrive);
+    	Autonomous.autoZone = planner.loadOrPlan(new File(Constants.TRAJECTORY_DIRECTORY), 
+    			Autonomous.AUTO_ZONE_PATH);
+    }
+
 }
@@ -1,17 +1,31 @@
 package org.usfirst.frc.team2339.Barracuda.commands;
 
+import org.usfirst.frc.team2339.Barracuda.RobotMap;
+import org.usfirst.frc.team2339.Barracuda.control.MotionProfile;
+import org.usfirst.frc.team2339.Barracuda.control.Trajectory;
 import org.usfirst.frc.team2339.Barracuda.subsystems.Lift;
 import org.usfirst.frc.team2339.Barracuda.subsystems.SwerveDriveRectangle;
+import org.usfirst.frc.team2339.Barracuda.swervemath.PoseEstimator;
 
 import edu.wpi.first.wpilibj.command.CommandGroup;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 
 /**
  * Commands to run in autonomous mode
+ *
+ * The dashboard decides the drive: none if "Auto drive time " is zero, otherwise the planned trajectory
+ * if "Auto drive path " is checked and one was planned, otherwise the dashboard time, speed and direction.
  */
 public class AutonomousCommand extends CommandGroup {
     
-    public  AutonomousCommand(SwerveDriveRectangle robotDrive, Lift lift) {
+    /**
+     * @param robotDrive Robot drive subsystem
+     * @param lift Lift subsystem
+     * @param pose pose estimate to follow the trajectory with, reset at the start of the trajectory
+     * @param trajectory trajectory into the auto zone, planned before autonomous, 
+     *                   followed when chosen on the dashboard. Null if none was planned.
+     */
+    public  AutonomousCommand(SwerveDriveRectangle robotDrive, Lift lift, PoseEstimator pose, Trajectory trajectory) {
     	super("Autonomous Commands");
     	
         // Add Commands here:
@@ -34,9 +48,32 @@ public class AutonomousCommand extends CommandGroup {
     	addSequential(new TimedLift("Pick up RC", lift, 
     			SmartDashboard.getNumber("Auto lift time ", 1), 
     			SmartDashboard.getNumber("Auto lift speed ", 0.5))); 
-    	addSequential(new TimedDrive("Drive to auto zone", robotDrive, 
-    			SmartDashboard.getNumber("Auto drive time ", 2.25), 
-    			SmartDashboard.getNumber("Auto drive speed ", 0.5), 
-    			SmartDashboard.getNumber("Auto drive direction ", 90))); 
+    	
+    	double driveTime = SmartDashboard.getNumber("Auto drive time ", 2.25);
+    	if (driveTime <= 0) {
+    		return;
+    	}
+    	
+    	if (trajectory != null && SmartDashboard.getBoolean("Auto drive path ", false)) {
+    		addSequential(new PursuitDrive("Drive to auto zone", robotDrive, pose, 
+    				RobotMap.createPursuit(trajectory), 
+    				RobotMap.Constants.MAX_WHEEL_SPEED, 
+    				RobotMap.Constants.PURSUIT_END_TOLERANCE, 
+    				RobotMap.Constants.PURSUIT_SETTLE_TIME));
+    		return;
+    	}
+    	
+    	// Same distance a constant speed for the dashboard time would cover, but ramped up and down
+    	double driveSpeed = SmartDashboard.getNumber("Auto drive speed ", 0.5);
+    	double maxVelocity = Math.abs(driveSpeed) * RobotMap.Constants.MAX_WHEEL_SPEED;
+    	MotionProfile driveProfile = new MotionProfile(
+    			Math.signum(driveSpeed) * maxVelocity * driveTime, 
+    			Math.max(maxVelocity, 1.0), 
+    			RobotMap.Constants.AUTO_DRIVE_MAX_ACCELERATION, 
+    			RobotMap.Constants.AUTO_DRIVE_MAX_JERK, 
+    			1.0 / RobotMap.Constants.CONTROL_LOOP_FREQUENCY);
+    	addSequential(new ProfiledDrive("Drive to auto zone", robotDrive, driveProfile, 
+    			SmartDashboard.getNumber("Auto drive direction ", 90), 
+    			RobotMap.Constants.MAX_WHEEL_SPEED)); 
     }
 }
@@ -1,17 +1,16 @@
 package org.usfirst.frc.team2339.Barracuda.commands;
 
-import edu.wpi.first.wpilibj.Gyro;
-import edu.wpi.first.wpilibj.command.Command;
+import org.usfirst.frc.team2339.Barracuda.hal.GyroInput;
 
 /**
  *
  */
-public class GyroReset extends Command {
+public class GyroReset extends MeasuredCommand {
 
 	private boolean isFinished;
-	private final Gyro gyro;
+	private final GyroInput gyro;
 	
-    public GyroReset(Gyro gyro) {
+    public GyroReset(GyroInput gyro) {
     	isFinished = false;
     	this.gyro = gyro;
     }
@@ -21,7 +20,7 @@ public class GyroReset extends Command {
     }
 
     // Called repeatedly when this Command is scheduled to run
-    protected void execute() {
+    protected void measuredExecute() {
     	gyro.reset();
     	isFinished = true;
     }
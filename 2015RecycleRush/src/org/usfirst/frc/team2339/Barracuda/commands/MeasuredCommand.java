@@ -0,0 +1,42 @@
+package org.usfirst.frc.team2339.Barracuda.commands;
+
+import org.usfirst.frc.team2339.Barracuda.telemetry.LatencyHistogram;
+import org.usfirst.frc.team2339.Barracuda.telemetry.MetricsRegistry;
+
+import edu.wpi.first.wpilibj.command.Command;
+
+/**
+ * Command that records how long each execute takes.
+ * Subclasses implement {@link #measuredExecute()} instead of execute().
+ * All instances of a class share the histogram "(class name) execute".
+ *
+ * @author emiller
+ *
+ */
+public abstract class MeasuredCommand extends Command {
+
+	private final LatencyHistogram executeLatency;
+
+	public MeasuredCommand() {
+		super();
+		executeLatency = MetricsRegistry.histogram(getClass().getSimpleName() + " execute");
+	}
+
+	public MeasuredCommand(String name) {
+		super(name);
+		executeLatency = MetricsRegistry.histogram(getClass().getSimpleName() + " execute");
+	}
+
+	@Override
+	protected final void execute() {
+		long start = System.nanoTime();
+		measuredExecute();
+		executeLatency.recordSince(start);
+	}
+
+	/**
+	 * Called repeatedly when this Command is scheduled to run
+	 */
+	protected abstract void measuredExecute();
+
+}
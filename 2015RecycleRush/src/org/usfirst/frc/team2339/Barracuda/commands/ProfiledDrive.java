@@ -0,0 +1,88 @@
+package org.usfirst.frc.team2339.Barracuda.commands;
+
+import org.usfirst.frc.team2339.Barracuda.control.MotionProfile;
+import org.usfirst.frc.team2339.Barracuda.subsystems.SwerveDrive;
+import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveWheel.VelocityPolar;
+
+/**
+ * Drives a distance in a fixed direction along a {@link MotionProfile} computed when the command is constructed,
+ * so the robot starts and stops smoothly rather than jumping to and from a constant speed.
+ *
+ * Each execute sends the profile velocity for the tick the command is in, by time since it started,
+ * so a late tick catches up rather than stretching the profile. Open loop: the distance is as good
+ * as max wheel speed is, but it no longer depends on how hard the robot stops.
+ *
+ * @author emiller
+ *
+ */
+public class ProfiledDrive extends MeasuredCommand {
+
+	private final SwerveDrive robotDrive;
+	private final MotionProfile profile;
+	private final double maxWheelSpeed;
+	private final VelocityPolar velocity;
+	private final VelocityPolar stop = new VelocityPolar(0.0, 0.0);
+
+	/**
+	 * @param name Name of command
+	 * @param robotDrive Robot drive subsystem
+	 * @param profile Profile to drive, distance in the same units as maxWheelSpeed
+	 * @param direction Direction to drive [-180, 180]. Zero is forward.
+	 * @param maxWheelSpeed Wheel speed at full output, e.g. RobotMap MAX_WHEEL_SPEED
+	 */
+	public ProfiledDrive(String name, SwerveDrive robotDrive, MotionProfile profile,
+			double direction, double maxWheelSpeed) {
+		super(name);
+		requires(robotDrive);
+		this.robotDrive = robotDrive;
+		this.profile = profile;
+		this.maxWheelSpeed = maxWheelSpeed;
+		this.velocity = new VelocityPolar(0.0, direction);
+		this.stop.angle = direction;
+	}
+
+	/**
+	 * Drive the profile at a time
+	 * @param elapsed seconds since start
+	 * @return false once the profile has finished
+	 */
+	public boolean drive(double elapsed) {
+		int tick = (int) Math.floor(elapsed / profile.getPeriod());
+		if (tick >= profile.size()) {
+			robotDrive.swerveDriveRobot(stop);
+			return false;
+		}
+		velocity.speed = profile.getVelocity(tick) / maxWheelSpeed;
+		robotDrive.swerveDriveRobot(velocity);
+		return true;
+	}
+
+	public MotionProfile getProfile() {
+		return profile;
+	}
+
+	@Override
+	protected void initialize() {
+	}
+
+	@Override
+	protected void measuredExecute() {
+		drive(timeSinceInitialized());
+	}
+
+	@Override
+	protected boolean isFinished() {
+		return timeSinceInitialized() >= profile.getDuration();
+	}
+
+	@Override
+	protected void end() {
+		robotDrive.swerveDriveRobot(stop);
+	}
+
+	@Override
+	protected void interrupted() {
+		robotDrive.swerveDriveRobot(stop);
+	}
+
+}
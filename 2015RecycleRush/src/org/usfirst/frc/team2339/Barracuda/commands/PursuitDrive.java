@@ -0,0 +1,135 @@
+package org.usfirst.frc.team2339.Barracuda.commands;
+
+import org.usfirst.frc.team2339.Barracuda.control.PurePursuit;
+import org.usfirst.frc.team2339.Barracuda.control.Trajectory;
+import org.usfirst.frc.team2339.Barracuda.subsystems.SwerveDrive;
+import org.usfirst.frc.team2339.Barracuda.swervemath.PoseEstimator;
+import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveWheel.RobotMotion;
+import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveWheel.VelocityPolar;
+import org.usfirst.frc.team2339.Barracuda.telemetry.DashboardPublisher;
+
+/**
+ * Follows a {@link Trajectory} closed loop with {@link PurePursuit}, field oriented using a pose estimate.
+ *
+ * The pose is reset to the start of the trajectory when the command starts, so the trajectory is relative to
+ * where the robot is then. Each execute updates pursuit from the pose and drives its velocity and heading rate.
+ * There are no drive encoders, so the pose (RobotMap pose, wheel odometry or fused) is built from commanded
+ * wheel speeds and steering encoder angles. Closing the loop on it corrects steering lag and integration error,
+ * not wheel slip or the robot being pushed, which the pose can not see.
+ * Finishes when the trajectory time is up and the robot is within a tolerance of its end,
+ * or a settle time after that if it can not get there.
+ * Rotation is around the selected pivot, so center pivot should be selected.
+ *
+ * @author emiller
+ *
+ */
+public class PursuitDrive extends MeasuredCommand {
+
+	private static final int crossTrackSlot = DashboardPublisher.register("Pursuit cross track ");
+	private static final int remainingSlot = DashboardPublisher.register("Pursuit remaining ");
+
+	private final SwerveDrive robotDrive;
+	private final PoseEstimator pose;
+	private final PurePursuit pursuit;
+	private final Trajectory trajectory;
+	private final double maxWheelSpeed;
+	private final double endTolerance;
+	private final double settleTime;
+	private final RobotMotion motion = new RobotMotion(0.0, 0.0, 0.0);
+	private final VelocityPolar stop = new VelocityPolar(0.0, 0.0);
+
+	/**
+	 * @param name Name of command
+	 * @param robotDrive Robot drive subsystem
+	 * @param pose pose estimate, reset to the start of the trajectory when the command starts
+	 * @param pursuit pursuit of the trajectory to drive, distances in the same units as maxWheelSpeed
+	 * @param maxWheelSpeed Wheel speed at full output, e.g. RobotMap MAX_WHEEL_SPEED
+	 * @param endTolerance distance from the end of the trajectory that counts as there
+	 * @param settleTime seconds after the trajectory time to keep trying to get within endTolerance
+	 */
+	public PursuitDrive(String name, SwerveDrive robotDrive, PoseEstimator pose, PurePursuit pursuit,
+			double maxWheelSpeed, double endTolerance, double settleTime) {
+		super(name);
+		requires(robotDrive);
+		this.robotDrive = robotDrive;
+		this.pose = pose;
+		this.pursuit = pursuit;
+		this.trajectory = pursuit.getTrajectory();
+		this.maxWheelSpeed = maxWheelSpeed;
+		this.endTolerance = endTolerance;
+		this.settleTime = settleTime;
+		// Stop with wheels pointing the way the robot was last going, robot relative
+		int last = Math.max(0, trajectory.size() - 2);
+		double course = Math.toDegrees(Math.atan2(trajectory.getVelocityX(last), trajectory.getVelocityY(last)));
+		this.stop.angle = trajectory.getHeading(last + 1) - course;
+	}
+
+	/**
+	 * Put the robot at the start of the trajectory and start pursuit
+	 */
+	public void startPursuit() {
+		pose.reset(trajectory.getX(0), trajectory.getY(0), trajectory.getHeading(0));
+		pursuit.reset();
+	}
+
+	/**
+	 * Drive toward the trajectory at a time
+	 * @param elapsed seconds since start
+	 * @return false once finished
+	 */
+	public boolean drive(double elapsed) {
+		double heading = pose.getHeading();
+		pursuit.update(elapsed, pose.getX(), pose.getY(), heading);
+		DashboardPublisher.put(crossTrackSlot, pursuit.getCrossTrackError());
+		DashboardPublisher.put(remainingSlot, pursuit.getRemainingDistance());
+		if (arrived(elapsed)) {
+			robotDrive.swerveDriveRobot(stop);
+			return false;
+		}
+		motion.strafe = pursuit.getVelocityX() / maxWheelSpeed;
+		motion.frontBack = pursuit.getVelocityY() / maxWheelSpeed;
+		// Positive rotate is counter-clockwise at full wheel speed on the farthest wheel, heading is clockwise
+		motion.rotate = -Math.toRadians(pursuit.getHeadingRate()) * robotDrive.getMaxWheelRadius() / maxWheelSpeed;
+		robotDrive.swerveDriveAbsolute(motion, heading);
+		return true;
+	}
+
+	private boolean arrived(double elapsed) {
+		if (elapsed < trajectory.getDuration()) {
+			return false;
+		}
+		int last = trajectory.size() - 1;
+		double toEnd = Math.hypot(trajectory.getX(last) - pose.getX(), trajectory.getY(last) - pose.getY());
+		return toEnd < endTolerance || elapsed >= trajectory.getDuration() + settleTime;
+	}
+
+	public PurePursuit getPursuit() {
+		return pursuit;
+	}
+
+	@Override
+	protected void initialize() {
+		startPursuit();
+	}
+
+	@Override
+	protected void measuredExecute() {
+		drive(timeSinceInitialized());
+	}
+
+	@Override
+	protected boolean isFinished() {
+		return arrived(timeSinceInitialized());
+	}
+
+	@Override
+	protected void end() {
+		robotDrive.swerveDriveRobot(stop);
+	}
+
+	@Override
+	protected void interrupted() {
+		robotDrive.swerveDriveRobot(stop);
+	}
+
+}
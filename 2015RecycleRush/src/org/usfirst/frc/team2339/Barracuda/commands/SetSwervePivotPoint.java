@@ -3,22 +3,30 @@ package org.usfirst.frc.team2339.Barracuda.commands;
 import org.usfirst.frc.team2339.Barracuda.subsystems.SwerveDrive;
 import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveWheel.RectangularCoordinates;
 
-import edu.wpi.first.wpilibj.command.Command;
-
 /**
  *
  */
-public class SetSwervePivotPoint extends Command {
+public class SetSwervePivotPoint extends MeasuredCommand {
 	
 	private boolean isFinished;
 	private final SwerveDrive robotDrive;
-	private final RectangularCoordinates pivot;
+	private final int pivotId;
 
     public SetSwervePivotPoint(String name, SwerveDrive robotDrive, RectangularCoordinates pivot) {
+    	this(name, robotDrive, robotDrive.registerPivot(pivot));
+    }
+
+    /**
+     * 
+     * @param name Name of command
+     * @param robotDrive Robot drive subsystem
+     * @param pivotId Id of pivot registered with robot drive
+     */
+    public SetSwervePivotPoint(String name, SwerveDrive robotDrive, int pivotId) {
 		super(name);
     	isFinished = false;
     	this.robotDrive = robotDrive;
-    	this.pivot = pivot;
+    	this.pivotId = pivotId;
     }
 
     // Called just before this Command runs the first time
@@ -26,8 +34,8 @@ public class SetSwervePivotPoint extends Command {
     }
 
     // Called repeatedly when this Command is scheduled to run
-    protected void execute() {
-    	robotDrive.setPivot(pivot);
+    protected void measuredExecute() {
+    	robotDrive.setPivot(pivotId);
     	isFinished = true;
     }
 
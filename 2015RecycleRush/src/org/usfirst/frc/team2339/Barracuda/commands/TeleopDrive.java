@@ -1,34 +1,39 @@
 package org.usfirst.frc.team2339.Barracuda.commands;
 
 import org.usfirst.frc.team2339.Barracuda.components.SwerveJoystick;
+import org.usfirst.frc.team2339.Barracuda.control.InputSampler;
+import org.usfirst.frc.team2339.Barracuda.control.InputSnapshot;
+import org.usfirst.frc.team2339.Barracuda.hal.GyroInput;
 import org.usfirst.frc.team2339.Barracuda.subsystems.SwerveDrive;
-import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveWheel.RobotMotion;
 import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveWheel.VelocityPolar;
+import org.usfirst.frc.team2339.Barracuda.telemetry.DashboardPublisher;
 
-import edu.wpi.first.wpilibj.Gyro;
-import edu.wpi.first.wpilibj.command.Command;
-import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
-
-public class TeleopDrive extends Command {
+public class TeleopDrive extends MeasuredCommand {
 	/**
 	 * Drives based on joystick input
 	 */
 	
+	private static final int forwardSlot = DashboardPublisher.register("Joystick forward ");
+	private static final int sidewaysSlot = DashboardPublisher.register("Joystick sideways ");
+	private static final int rotateSlot = DashboardPublisher.register("Joystick rotate ");
+	private static final int gyroAngleSlot = DashboardPublisher.register("Gyro angle ");
+
 	private final SwerveDrive robotDrive;
-	private final SwerveJoystick driveStick;
-	private final Gyro gyro;
+	private final InputSampler inputs;
+	private final GyroInput gyro;
 
 	/**
 	 * 
 	 * @param name Name of command
 	 * @param robotDrive Robot drive subsystem
-	 * @param driveStick joystick used to drive robot in teleop
+	 * @param inputs joystick samples, drive joystick is used to drive robot in teleop
+	 * @param gyro gyro for field oriented driving
 	 */
-	public TeleopDrive(String name, SwerveDrive robotDrive, SwerveJoystick driveStick, Gyro gyro) {
+	public TeleopDrive(String name, SwerveDrive robotDrive, InputSampler inputs, GyroInput gyro) {
 		super(name);
         requires(robotDrive);
         this.robotDrive = robotDrive;
-        this.driveStick = driveStick;
+        this.inputs = inputs;
         this.gyro = gyro;
 	}
 
@@ -37,39 +42,58 @@ public class TeleopDrive extends Command {
 	}
 
 	@Override
-	protected void execute() {
+	protected void measuredExecute() {
+		// One sample for the whole tick
+		InputSnapshot sample = inputs.get();
+		double strafe = sample.getStrafe();
+		double frontBack = sample.getFrontBack();
+		double rotate = sample.getRotate();
+		double gyroAngle = gyro.getAngle();
+		
 		/*
 		 * Print out significant changes in drive info
 		 */
-		SmartDashboard.putNumber("Joystick forward ", driveStick.getFrontBack());
-		SmartDashboard.putNumber("Joystick sideways ", driveStick.getStrafe());
-		SmartDashboard.putNumber("Joystick rotate ", driveStick.getRotate());
-		SmartDashboard.putNumber("Gyro angle ", gyro.getAngle());
+		DashboardPublisher.put(forwardSlot, frontBack);
+		DashboardPublisher.put(sidewaysSlot, strafe);
+		DashboardPublisher.put(rotateSlot, rotate);
+		DashboardPublisher.put(gyroAngleSlot, gyroAngle);
           
-    	if (driveStick.isInDeadband()) {
+		boolean useGyro = sample.getGyro();
+		drive(strafe, frontBack, rotate, sample.getSpeedShift(), useGyro, useGyro ? gyroAngle : 0.0);
+	}
+	
+	/**
+	 * Drive from operator inputs. Does not read the joystick or gyro, so inputs can come from elsewhere, 
+	 * e.g. a flight log.
+	 * 
+	 * @param strafe joystick strafe axis
+	 * @param frontBack joystick front-back axis
+	 * @param rotate joystick rotate axis
+	 * @param speedShift true if speed shift button pressed
+	 * @param useGyro true if gyro (field oriented) button pressed
+	 * @param gyroAngle gyro angle, used if useGyro
+	 */
+	public void drive(double strafe, double frontBack, double rotate, 
+			boolean speedShift, boolean useGyro, double gyroAngle) {
+    	if (SwerveJoystick.isInDeadband(strafe, frontBack, rotate)) {
     		// Joystick in dead band, set neutral values
     		robotDrive.setDeadBandValues();
     	} else {
     		
-        	RobotMotion robotMotion = new RobotMotion(
-        			driveStick.getStrafe(), 
-        			driveStick.getFrontBack(), 
-        			driveStick.getRotate());
-            
-    		robotMotion.rotate *= .5;
+    		rotate *= .5;
 
-            if (driveStick.getSpeedShift()) {
-        		robotMotion.rotate *= .5;
-        		robotMotion.strafe *= .5;
-        		robotMotion.frontBack *= .5;
+            if (speedShift) {
+        		rotate *= .5;
+        		strafe *= .5;
+        		frontBack *= .5;
         	}
             
             double robotAngle = 0.0;
-            if (driveStick.getGyro()) {
-                robotAngle = gyro.getAngle();
+            if (useGyro) {
+                robotAngle = gyroAngle;
             }
             
-            robotDrive.swerveDriveAbsolute(robotMotion, robotAngle);
+            robotDrive.swerveDriveAbsolute(strafe, frontBack, rotate, robotAngle);
             //robotDrive.swerveDriveRobot(new VelocityPolar(robotMotion.frontBack, driveStick.getRotate() * 180));
     	}
 	}
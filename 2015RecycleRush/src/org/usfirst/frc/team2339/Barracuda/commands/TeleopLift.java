@@ -1,28 +1,27 @@
 package org.usfirst.frc.team2339.Barracuda.commands;
 
-import org.usfirst.frc.team2339.Barracuda.components.OperatorJoystick;
+import org.usfirst.frc.team2339.Barracuda.control.InputSampler;
 import org.usfirst.frc.team2339.Barracuda.subsystems.Lift;
 
-import edu.wpi.first.wpilibj.command.Command;
-
-public class TeleopLift extends Command {
+public class TeleopLift extends MeasuredCommand {
 	/**
 	 * Runs lift based on operator input
 	 */
 	
 	private final Lift lift;
-	private final OperatorJoystick liftStick;
+	private final InputSampler inputs;
 
 	/**
 	 * 
 	 * @param name Name of command
 	 * @param lift lift subsystem
+	 * @param inputs joystick samples, operator joystick runs the lift
 	 */
-	public TeleopLift(String name, Lift lift, OperatorJoystick liftStick) {
+	public TeleopLift(String name, Lift lift, InputSampler inputs) {
 		super(name);
         requires(lift);
         this.lift = lift;
-        this.liftStick = liftStick;
+        this.inputs = inputs;
 	}
 
 	@Override
@@ -30,8 +29,8 @@ public class TeleopLift extends Command {
 	}
 
 	@Override
-	protected void execute() {
-    	lift.setLiftMotor(liftStick.getLift());
+	protected void measuredExecute() {
+    	lift.setLiftMotor(inputs.get().getLift());
 	}
 
 	@Override
@@ -3,9 +3,7 @@ package org.usfirst.frc.team2339.Barracuda.commands;
 import org.usfirst.frc.team2339.Barracuda.subsystems.SwerveDrive;
 import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveWheel.VelocityPolar;
 
-import edu.wpi.first.wpilibj.command.Command;
-
-public class TimedDrive extends Command {
+public class TimedDrive extends MeasuredCommand {
 	/**
 	 * Drives for a given time in at a given speed and direction
 	 */
@@ -14,6 +12,7 @@ public class TimedDrive extends Command {
 	private final double time;
 	private final double speed;
 	private final double direction;
+	private final VelocityPolar velocity;
 
 	/**
 	 * 
@@ -31,6 +30,7 @@ public class TimedDrive extends Command {
 		this.time = time;
 		this.speed = speed;
 		this.direction = direction;
+		this.velocity = new VelocityPolar(speed, direction);
 	}
 
 	@Override
@@ -38,8 +38,8 @@ public class TimedDrive extends Command {
 	}
 
 	@Override
-	protected void execute() {
-		robotDrive.swerveDriveRobot(new VelocityPolar(speed, direction));
+	protected void measuredExecute() {
+		robotDrive.swerveDriveRobot(velocity);
 	}
 
 	@Override
@@ -2,9 +2,7 @@ package org.usfirst.frc.team2339.Barracuda.commands;
 
 import org.usfirst.frc.team2339.Barracuda.subsystems.Lift;
 
-import edu.wpi.first.wpilibj.command.Command;
-
-public class TimedLift extends Command {
+public class TimedLift extends MeasuredCommand {
 	/**
 	 * Runs lift for a given time and speed
 	 */
@@ -34,7 +32,7 @@ public class TimedLift extends Command {
 	}
 
 	@Override
-	protected void execute() {
+	protected void measuredExecute() {
 		lift.setLiftMotor(speed);
 	}
 
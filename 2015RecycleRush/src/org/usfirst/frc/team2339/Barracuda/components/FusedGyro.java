@@ -0,0 +1,87 @@
+package org.usfirst.frc.team2339.Barracuda.components;
+
+import org.usfirst.frc.team2339.Barracuda.hal.GyroInput;
+import org.usfirst.frc.team2339.Barracuda.subsystems.SwerveDrive;
+import org.usfirst.frc.team2339.Barracuda.swervemath.SwervePoseEstimator;
+import org.usfirst.frc.team2339.Barracuda.telemetry.DashboardPublisher;
+
+/**
+ * Gyro corrected for drift by the wheels, see {@link SwervePoseEstimator}.
+ * Drop in for the raw gyro wherever field oriented drive reads heading.
+ *
+ * {@link #update(double)} reads the gyro and the wheels and updates the estimate. Call it once per
+ * control loop tick before the scheduler, so commands see heading for this tick. Run it while disabled too,
+ * since that is when the gyro bias is learned best. Reset zeroes heading and the raw gyro, keeping position
+ * and bias. Must be used from the control loop thread or code synchronized on the control loop.
+ *
+ * @author emiller
+ *
+ */
+public class FusedGyro implements GyroInput {
+
+	// Updates further apart than this (e.g. after a stall) only count the gyro's turn
+	public static final double MAX_UPDATE_PERIOD = 0.1;
+
+	private static final int headingSlot = DashboardPublisher.register("Fused heading ");
+	private static final int biasSlot = DashboardPublisher.register("Gyro bias ");
+
+	private final GyroInput gyro;
+	private final SwerveDrive robotDrive;
+	private final SwervePoseEstimator estimator;
+	private final double speeds[];
+	private final double angles[];
+	private double lastTime = Double.NaN;
+
+	/**
+	 * @param gyro raw gyro
+	 * @param robotDrive robot drive, for its commanded wheel speeds and steering angles
+	 * @param estimator estimator for the robot drive's wheels
+	 */
+	public FusedGyro(GyroInput gyro, SwerveDrive robotDrive, SwervePoseEstimator estimator) {
+		this.gyro = gyro;
+		this.robotDrive = robotDrive;
+		this.estimator = estimator;
+		this.speeds = new double[robotDrive.getNumberOfWheels()];
+		this.angles = new double[robotDrive.getNumberOfWheels()];
+	}
+
+	/**
+	 * Update heading and pose from the gyro and wheels
+	 * @param time time now in seconds, e.g. FPGA time
+	 */
+	public void update(double time) {
+		double dt = Double.isNaN(lastTime) ? 0 : time - lastTime;
+		lastTime = time;
+		if (dt > MAX_UPDATE_PERIOD || dt < 0) {
+			dt = 0;
+		}
+		robotDrive.getCommandedWheels(speeds, angles);
+		estimator.update(speeds, angles, gyro.getAngle(), dt);
+		DashboardPublisher.put(headingSlot, estimator.getHeading());
+		DashboardPublisher.put(biasSlot, estimator.getBias());
+	}
+
+	/**
+	 * @return pose estimate, also field position
+	 */
+	public SwervePoseEstimator getEstimator() {
+		return estimator;
+	}
+
+	@Override
+	public double getAngle() {
+		return estimator.getHeading();
+	}
+
+	@Override
+	public double getRate() {
+		return estimator.getHeadingRate();
+	}
+
+	@Override
+	public void reset() {
+		gyro.reset();
+		estimator.reset(estimator.getX(), estimator.getY(), 0.0);
+	}
+
+}
@@ -0,0 +1,123 @@
+package org.usfirst.frc.team2339.Barracuda.components;
+
+import org.usfirst.frc.team2339.Barracuda.hal.GyroInput;
+
+/**
+ * Heading extrapolated to when drive outputs take effect.
+ *
+ * Field oriented drive rotates the command by the heading sampled at the start of the tick, but the wheels
+ * only get there later (the rest of the tick, then motor and steering response), and a spinning robot keeps
+ * turning in between, so translation comes out rotated against the spin. {@link #sample(double)} keeps
+ * timestamped headings in a ring, and {@link #getAngle()} returns the newest extrapolated a lead time ahead
+ * at the rate over the ring. With no lead it returns the newest sample, as the source gyro would.
+ *
+ * Drop in for the gyro wherever field oriented drive reads heading. Call {@link #sample(double)} once per
+ * control loop tick before the scheduler. Must be used from the control loop thread or code synchronized
+ * on the control loop. No allocation after construction.
+ *
+ * @author emiller
+ *
+ */
+public class HeadingPredictor implements GyroInput {
+
+	// Samples further apart than this (e.g. after a stall) restart the ring
+	public static final double MAX_SAMPLE_PERIOD = 0.1;
+
+	private final GyroInput gyro;
+	private final int window;
+	// Ring of sample times and angles
+	private final double times[];
+	private final double angles[];
+	private int next = 0;
+	private int count = 0;
+	private double lead;
+	private double rate = 0;
+
+	/**
+	 * @param gyro heading source, e.g. the raw or fused gyro
+	 * @param window samples to estimate rate over, at least 2
+	 * @param lead seconds from sampling to when outputs take effect
+	 */
+	public HeadingPredictor(GyroInput gyro, int window, double lead) {
+		if (window < 2) {
+			throw new IllegalArgumentException("Need at least 2 samples to estimate rate");
+		}
+		this.gyro = gyro;
+		this.window = window;
+		this.times = new double[window];
+		this.angles = new double[window];
+		setLead(lead);
+	}
+
+	/**
+	 * Add the source heading now to the ring and estimate rate over it
+	 * @param time time now in seconds, e.g. FPGA time
+	 */
+	public void sample(double time) {
+		if (count > 0) {
+			double dt = time - times[(next - 1 + window) % window];
+			if (!(dt > 0) || dt > MAX_SAMPLE_PERIOD) {
+				count = 0;
+			}
+		}
+		int newest = next;
+		times[newest] = time;
+		angles[newest] = gyro.getAngle();
+		next = (next + 1) % window;
+		if (count < window) {
+			count++;
+		}
+		int oldest = (newest - count + 1 + window) % window;
+		double span = time - times[oldest];
+		// Angles are not wrapped, so no wrap
+		rate = span > 0 ? (angles[newest] - angles[oldest]) / span : 0;
+	}
+
+	/**
+	 * @param lead seconds from sampling to when outputs take effect, zero for no extrapolation
+	 */
+	public void setLead(double lead) {
+		if (lead < 0) {
+			throw new IllegalArgumentException("Lead can not be negative");
+		}
+		this.lead = lead;
+	}
+
+	public double getLead() {
+		return lead;
+	}
+
+	/**
+	 * @return newest sampled heading, not extrapolated, degrees clockwise
+	 */
+	public double getSampledAngle() {
+		return count > 0 ? angles[(next - 1 + window) % window] : gyro.getAngle();
+	}
+
+	/**
+	 * @return heading extrapolated to lead after the newest sample, degrees clockwise
+	 */
+	@Override
+	public double getAngle() {
+		return getSampledAngle() + rate * lead;
+	}
+
+	/**
+	 * @return rate over the ring, degrees per second clockwise
+	 */
+	@Override
+	public double getRate() {
+		return rate;
+	}
+
+	/**
+	 * Reset the source and empty the ring
+	 */
+	@Override
+	public void reset() {
+		gyro.reset();
+		count = 0;
+		rate = 0;
+	}
+
+}
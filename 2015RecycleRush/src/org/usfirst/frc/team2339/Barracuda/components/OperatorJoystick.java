@@ -3,32 +3,38 @@
  */
 package org.usfirst.frc.team2339.Barracuda.components;
 
-import edu.wpi.first.wpilibj.Joystick;
+import org.usfirst.frc.team2339.Barracuda.hal.JoystickInput;
 
 /**
  * @author emiller
  *
  */
-public class OperatorJoystick extends Joystick {
+public class OperatorJoystick implements JoystickInput {
+
+	// WPILib Joystick's default Y axis
+	public static final int LIFT_AXIS = 1;
+
+	private final JoystickInput joystick;
 
 	/**
-	 * @param port
+	 * @param joystick driver station joystick, e.g. from {@link org.usfirst.frc.team2339.Barracuda.hal.Hardware#createJoystick(int)}
 	 */
-	public OperatorJoystick(int port) {
-		super(port);
+	public OperatorJoystick(JoystickInput joystick) {
+		this.joystick = joystick;
 	}
 
-	/**
-	 * @param port
-	 * @param numAxisTypes
-	 * @param numButtonTypes
-	 */
-	public OperatorJoystick(int port, int numAxisTypes, int numButtonTypes) {
-		super(port, numAxisTypes, numButtonTypes);
+	@Override
+	public double getRawAxis(int axis) {
+		return joystick.getRawAxis(axis);
+	}
+
+	@Override
+	public boolean getRawButton(int button) {
+		return joystick.getRawButton(button);
 	}
 	
 	public double getLift() {
-		return getY();
+		return getRawAxis(LIFT_AXIS);
 	}
 
 }
@@ -4,47 +4,63 @@
 package org.usfirst.frc.team2339.Barracuda.components;
 
 import org.usfirst.frc.team2339.Barracuda.OI;
-
-import edu.wpi.first.wpilibj.Joystick;
+import org.usfirst.frc.team2339.Barracuda.hal.JoystickInput;
 
 /**
  * @author emiller
  *
  */
-public class SwerveJoystick extends Joystick {
+public class SwerveJoystick implements JoystickInput {
+
+	public static final int STRAFE_AXIS = 0;
+	public static final int FRONT_BACK_AXIS = 1;
+	public static final int ROTATE_AXIS = 3;
+
+	private final JoystickInput joystick;
 
 	/**
-	 * @param port
+	 * @param joystick driver station joystick, e.g. from {@link org.usfirst.frc.team2339.Barracuda.hal.Hardware#createJoystick(int)}
 	 */
-	public SwerveJoystick(int port) {
-		super(port);
+	public SwerveJoystick(JoystickInput joystick) {
+		this.joystick = joystick;
 	}
 
-	/**
-	 * @param port
-	 * @param numAxisTypes
-	 * @param numButtonTypes
-	 */
-	public SwerveJoystick(int port, int numAxisTypes, int numButtonTypes) {
-		super(port, numAxisTypes, numButtonTypes);
+	@Override
+	public double getRawAxis(int axis) {
+		return joystick.getRawAxis(axis);
+	}
+
+	@Override
+	public boolean getRawButton(int button) {
+		return joystick.getRawButton(button);
 	}
 	
 	public double getStrafe() {
-		return getRawAxis(0);
+		return getRawAxis(STRAFE_AXIS);
 	}
 
 	public double getFrontBack() {
-		return -getRawAxis(1);
+		return -getRawAxis(FRONT_BACK_AXIS);
 	}
 
 	public double getRotate() {
-		return -getRawAxis(3);
+		return -getRawAxis(ROTATE_AXIS);
 	}
 
 	public boolean isInDeadband() {
-		return  Math.abs(getStrafe()) < OI.DRIVE_STICK_DEAD_BAND && 
-    			Math.abs(getFrontBack()) < OI.DRIVE_STICK_DEAD_BAND && 
-    			Math.abs(getRotate()) < OI.DRIVE_STICK_DEAD_BAND;
+		return isInDeadband(getStrafe(), getFrontBack(), getRotate());
+	}
+	
+	/**
+	 * @param strafe strafe axis value
+	 * @param frontBack front-back axis value
+	 * @param rotate rotate axis value
+	 * @return true if all axes are in the drive dead band
+	 */
+	public static boolean isInDeadband(double strafe, double frontBack, double rotate) {
+		return  Math.abs(strafe) < OI.DRIVE_STICK_DEAD_BAND && 
+    			Math.abs(frontBack) < OI.DRIVE_STICK_DEAD_BAND && 
+    			Math.abs(rotate) < OI.DRIVE_STICK_DEAD_BAND;
 	}
     			
 	public boolean getSpeedShift() {
@@ -0,0 +1,33 @@
+package org.usfirst.frc.team2339.Barracuda.components;
+
+/**
+ * Closed loop control of one swerve wheel's steering angle.
+ * Angles are in degrees, in the range [-180, 180).
+ * 
+ * @author emiller
+ *
+ */
+public interface SwerveSteeringController {
+
+	/**
+	 * @param angle desired wheel angle
+	 */
+	void setSetpoint(double angle);
+
+	/**
+	 * @return wheel angle from steering encoder
+	 */
+	double getSteeringAngle();
+
+	void enable();
+
+	void disable();
+
+	boolean isEnable();
+
+	/**
+	 * Disable and clear controller state
+	 */
+	void reset();
+
+}
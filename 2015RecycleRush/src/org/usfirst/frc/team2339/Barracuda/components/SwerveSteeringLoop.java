@@ -0,0 +1,400 @@
+package org.usfirst.frc.team2339.Barracuda.components;
+
+import org.usfirst.frc.team2339.Barracuda.hal.EncoderInput;
+import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveWheel;
+import org.usfirst.frc.team2339.Barracuda.telemetry.LatencyHistogram;
+import org.usfirst.frc.team2339.Barracuda.telemetry.MetricsRegistry;
+
+import edu.wpi.first.wpilibj.SpeedController;
+
+/**
+ * Steering PID for every swerve module, calculated in one pass from the control loop.
+ *
+ * Replaces a WPILib PIDController per wheel, each of which ran on its own timer thread and
+ * synchronized every setpoint change with the drive. Here {@link #update(double)} reads all steering
+ * encoders, then calculates every module, then writes every steering motor, so all wheels are
+ * controlled from the same sample time. State is kept in primitive arrays indexed by wheel number.
+ *
+ * Angles are continuous: error is taken the shortest way round, so the encoder may wind past 180 degrees.
+ * Gains are in PIDController form for {@link #GAIN_PERIOD} (I sums error once per period, D is the
+ * change in error per period), and are scaled by the measured time between updates, so RobotMap gains
+ * mean the same at any loop rate. Anti-windup: the integral is held while the output is saturated in
+ * the direction of the error, and its contribution is limited to full output.
+ *
+ * Optionally ({@link #setProfile}) each module follows a trapezoidal angle profile to its setpoint rather
+ * than jumping to it: angular velocity and acceleration are limited, the PID tracks the profile's angle,
+ * and feedforward adds the output the profile's velocity and acceleration need. A profile starts from the
+ * wheel's measured angle and velocity, and is restarted from them if the wheel falls too far behind.
+ * Setpoint changes mid profile carry on from the profile's current angle and velocity.
+ * Steering velocity is estimated from encoder angles over the last {@link #VELOCITY_WINDOW} updates,
+ * kept with their update times in a ring.
+ *
+ * No locks. Setpoints, enable and update must all come from the control loop thread (commands run there)
+ * or code synchronized on the control loop. No allocation after construction.
+ *
+ * @author emiller
+ *
+ */
+public class SwerveSteeringLoop {
+
+	// WPILib PIDController default period, seconds. Gains are per this period.
+	public static final double GAIN_PERIOD = 0.05;
+	// Updates further apart than this (e.g. after being disabled) are treated as one nominal period
+	public static final double MAX_UPDATE_PERIOD = 0.1;
+	// Updates kept for velocity estimation. At 200 Hz spans 35 ms, about 0.5 degree per pulse gives 15 deg/s resolution.
+	public static final int VELOCITY_WINDOW = 8;
+	// Degrees. A profile this far from the measured angle restarts from the measured angle and velocity.
+	public static final double PROFILE_RESTART_ERROR = 45.0;
+
+	private final int numberOfModules;
+	private final EncoderInput encoders[];
+	private final SpeedController motors[];
+	private final Module modules[];
+	private final double nominalPeriod;
+	private double Kp;
+	private double Ki;
+	private double Kd;
+	// Profile limits and feedforward, profiled only if set
+	private boolean profiled = false;
+	private double maxVelocity;
+	private double maxAcceleration;
+	private double Ks;
+	private double Kv;
+	private double Ka;
+
+	private final double setpoints[];
+	private final boolean enabled[];
+	private final double angles[];
+	private final double errors[];
+	private final double previousErrors[];
+	private final double totalErrors[];
+	private final double outputs[];
+	private final double velocities[];
+	private final boolean profileRunning[];
+	private final double profileAngles[];
+	private final double profileVelocities[];
+	private final double profileAccelerations[];
+	// Velocity ring, angles stored VELOCITY_WINDOW per wheel
+	private final double historyTimes[] = new double[VELOCITY_WINDOW];
+	private final double historyAngles[];
+	private int historyNext = 0;
+	private int historyCount = 0;
+	private double lastUpdateTime = Double.NaN;
+	private final LatencyHistogram updateLatency = MetricsRegistry.histogram("Steering update");
+
+	/**
+	 * One module's view of the loop, for code that steers a single wheel
+	 */
+	public class Module implements SwerveSteeringController {
+		private final int wheel;
+
+		Module(int wheel) {
+			this.wheel = wheel;
+		}
+
+		/**
+		 * @param angle desired wheel angle, wrapped into [-180, 180)
+		 */
+		@Override
+		public void setSetpoint(double angle) {
+			setpoints[wheel] = SwerveWheel.wrapAngle(angle);
+		}
+
+		public double getSetpoint() {
+			return setpoints[wheel];
+		}
+
+		@Override
+		public double getSteeringAngle() {
+			return encoders[wheel].getDistance();
+		}
+
+		/**
+		 * @return last output written to the steering motor
+		 */
+		public double getOutput() {
+			return outputs[wheel];
+		}
+
+		/**
+		 * @return error at last update, degrees the shortest way round
+		 */
+		public double getError() {
+			return errors[wheel];
+		}
+
+		/**
+		 * @return steering velocity in degrees per second, estimated from encoder angles at recent updates
+		 */
+		public double getVelocity() {
+			return velocities[wheel];
+		}
+
+		/**
+		 * @return angle the PID is tracking: the profile's angle if profiled, else the setpoint
+		 */
+		public double getProfileAngle() {
+			return profiled ? profileAngles[wheel] : setpoints[wheel];
+		}
+
+		/**
+		 * @return profile velocity in degrees per second, zero if not profiled
+		 */
+		public double getProfileVelocity() {
+			return profiled ? profileVelocities[wheel] : 0;
+		}
+
+		@Override
+		public void enable() {
+			enabled[wheel] = true;
+		}
+
+		@Override
+		public void disable() {
+			enabled[wheel] = false;
+			profileRunning[wheel] = false;
+			outputs[wheel] = 0;
+			motors[wheel].set(0);
+		}
+
+		@Override
+		public boolean isEnable() {
+			return enabled[wheel];
+		}
+
+		@Override
+		public void reset() {
+			disable();
+			totalErrors[wheel] = 0;
+			previousErrors[wheel] = Double.NaN;
+			errors[wheel] = 0;
+			setpoints[wheel] = 0;
+		}
+	}
+
+	/**
+	 * @param encoders steering angle encoders, degrees, by wheel number
+	 * @param motors steering motors, by wheel number
+	 * @param Kp proportional gain
+	 * @param Ki integral gain, per {@link #GAIN_PERIOD}
+	 * @param Kd derivative gain, per {@link #GAIN_PERIOD}
+	 * @param nominalPeriod seconds between updates, used for the first update after a gap
+	 */
+	public SwerveSteeringLoop(EncoderInput encoders[], SpeedController motors[],
+			double Kp, double Ki, double Kd, double nominalPeriod) {
+		if (encoders.length != motors.length) {
+			throw new IllegalArgumentException("Need one steering encoder and motor per wheel");
+		}
+		this.numberOfModules = encoders.length;
+		this.encoders = encoders.clone();
+		this.motors = motors.clone();
+		this.nominalPeriod = nominalPeriod;
+		setPID(Kp, Ki, Kd);
+		setpoints = new double[numberOfModules];
+		enabled = new boolean[numberOfModules];
+		angles = new double[numberOfModules];
+		errors = new double[numberOfModules];
+		previousErrors = new double[numberOfModules];
+		totalErrors = new double[numberOfModules];
+		outputs = new double[numberOfModules];
+		velocities = new double[numberOfModules];
+		profileRunning = new boolean[numberOfModules];
+		profileAngles = new double[numberOfModules];
+		profileVelocities = new double[numberOfModules];
+		profileAccelerations = new double[numberOfModules];
+		historyAngles = new double[VELOCITY_WINDOW * numberOfModules];
+		modules = new Module[numberOfModules];
+		for (int iiWheel = 0; iiWheel < numberOfModules; iiWheel++) {
+			modules[iiWheel] = new Module(iiWheel);
+			previousErrors[iiWheel] = Double.NaN;
+		}
+	}
+
+	public void setPID(double Kp, double Ki, double Kd) {
+		this.Kp = Kp;
+		this.Ki = Ki;
+		this.Kd = Kd;
+	}
+
+	/**
+	 * Follow trapezoidal profiles to setpoints, with feedforward output
+	 * Ks * sign(velocity) + Kv * velocity + Ka * acceleration of the profile.
+	 * @param maxVelocity steering velocity limit, degrees per second
+	 * @param maxAcceleration steering acceleration limit, degrees per second squared
+	 * @param Ks output to overcome friction
+	 * @param Kv output per degree per second
+	 * @param Ka output per degree per second squared
+	 */
+	public void setProfile(double maxVelocity, double maxAcceleration, double Ks, double Kv, double Ka) {
+		this.maxVelocity = maxVelocity;
+		this.maxAcceleration = maxAcceleration;
+		this.Ks = Ks;
+		this.Kv = Kv;
+		this.Ka = Ka;
+		for (int iiWheel = 0; iiWheel < numberOfModules; iiWheel++) {
+			profileRunning[iiWheel] = false;
+		}
+		profiled = true;
+	}
+
+	/**
+	 * Jump straight to setpoints, with no feedforward
+	 */
+	public void clearProfile() {
+		profiled = false;
+	}
+
+	public boolean isProfiled() {
+		return profiled;
+	}
+
+	/**
+	 * Calculate and write every enabled module's steering output
+	 * @param time time of this update in seconds, e.g. Timer.getFPGATimestamp()
+	 */
+	public void update(double time) {
+		long start = System.nanoTime();
+		double dt = time - lastUpdateTime;
+		if (!(dt > 0) || dt > MAX_UPDATE_PERIOD) {
+			dt = nominalPeriod;
+			// Old samples say nothing about velocity now
+			historyCount = 0;
+		}
+		lastUpdateTime = time;
+		double scale = dt / GAIN_PERIOD;
+
+		// Sample every wheel before calculating any
+		for (int iiWheel = 0; iiWheel < numberOfModules; iiWheel++) {
+			angles[iiWheel] = encoders[iiWheel].getDistance();
+		}
+		estimateVelocities(time);
+
+		for (int iiWheel = 0; iiWheel < numberOfModules; iiWheel++) {
+			if (!enabled[iiWheel]) {
+				continue;
+			}
+			double target = setpoints[iiWheel];
+			double feedforward = 0;
+			if (profiled) {
+				stepProfile(iiWheel, dt);
+				target = profileAngles[iiWheel];
+				double velocity = profileVelocities[iiWheel];
+				feedforward = Ks * Math.signum(velocity) + Kv * velocity + Ka * profileAccelerations[iiWheel];
+			}
+			double error = SwerveWheel.wrapAngle(target - angles[iiWheel]);
+			double derivative = 0;
+			double previousError = previousErrors[iiWheel];
+			if (!Double.isNaN(previousError)) {
+				double change = SwerveWheel.wrapAngle(error - previousError);
+				derivative = change / scale;
+			}
+			double proportional = Kp * error + Kd * derivative + feedforward;
+
+			double totalError = totalErrors[iiWheel];
+			if (Ki != 0) {
+				double candidate = totalError + error * scale;
+				double candidateOutput = proportional + Ki * candidate;
+				boolean windingUp = (candidateOutput > 1.0 && error > 0) || (candidateOutput < -1.0 && error < 0);
+				if (!windingUp && Math.abs(Ki * candidate) <= 1.0) {
+					totalError = candidate;
+				}
+			}
+			double output = proportional + Ki * totalError;
+			outputs[iiWheel] = Math.max(-1.0, Math.min(1.0, output));
+			totalErrors[iiWheel] = totalError;
+			previousErrors[iiWheel] = error;
+			errors[iiWheel] = error;
+		}
+
+		for (int iiWheel = 0; iiWheel < numberOfModules; iiWheel++) {
+			if (enabled[iiWheel]) {
+				motors[iiWheel].set(outputs[iiWheel]);
+			}
+		}
+		updateLatency.recordSince(start);
+	}
+
+	/**
+	 * Add this update's angles to the ring and estimate each wheel's velocity over it
+	 */
+	private void estimateVelocities(double time) {
+		int newest = historyNext;
+		historyTimes[newest] = time;
+		for (int iiWheel = 0; iiWheel < numberOfModules; iiWheel++) {
+			historyAngles[iiWheel * VELOCITY_WINDOW + newest] = angles[iiWheel];
+		}
+		historyNext = (historyNext + 1) % VELOCITY_WINDOW;
+		if (historyCount < VELOCITY_WINDOW) {
+			historyCount++;
+		}
+		int oldest = (newest - historyCount + 1 + VELOCITY_WINDOW) % VELOCITY_WINDOW;
+		double span = time - historyTimes[oldest];
+		for (int iiWheel = 0; iiWheel < numberOfModules; iiWheel++) {
+			int base = iiWheel * VELOCITY_WINDOW;
+			// Encoder angles are continuous, so no wrap
+			velocities[iiWheel] = span > 0 ?
+					(historyAngles[base + newest] - historyAngles[base + oldest]) / span : 0;
+		}
+	}
+
+	/**
+	 * Advance a wheel's profile one update toward its setpoint, the shortest way round.
+	 * Each update moves velocity toward the fastest that can still stop at the setpoint.
+	 */
+	private void stepProfile(int wheel, double dt) {
+		double angle = angles[wheel];
+		if (profileRunning[wheel]) {
+			double lag = SwerveWheel.wrapAngle(profileAngles[wheel] - angle);
+			profileRunning[wheel] = Math.abs(lag) <= PROFILE_RESTART_ERROR;
+		}
+		if (!profileRunning[wheel]) {
+			profileAngles[wheel] = angle;
+			profileVelocities[wheel] = Math.max(-maxVelocity, Math.min(maxVelocity, velocities[wheel]));
+			profileRunning[wheel] = true;
+		}
+
+		double position = profileAngles[wheel];
+		double velocity = profileVelocities[wheel];
+		double distance = SwerveWheel.wrapAngle(setpoints[wheel] - position);
+		double maxChange = maxAcceleration * dt;
+		double stoppable = Math.signum(distance) *
+				Math.min(maxVelocity, Math.sqrt(2.0 * maxAcceleration * Math.abs(distance)));
+		double next = velocity + Math.max(-maxChange, Math.min(maxChange, stoppable - velocity));
+		double moved = 0.5 * (velocity + next) * dt;
+		if (distance == 0 || (distance - moved) * distance <= 0) {
+			// Arrives this update
+			moved = distance;
+			next = 0;
+		}
+		profileAngles[wheel] = position + moved;
+		profileAccelerations[wheel] = Math.max(-maxAcceleration, Math.min(maxAcceleration, (next - velocity) / dt));
+		profileVelocities[wheel] = next;
+	}
+
+	/**
+	 * @param wheelNumber wheel number
+	 * @return steering controller for that wheel
+	 */
+	public Module getModule(int wheelNumber) {
+		return modules[wheelNumber];
+	}
+
+	/**
+	 * @return steering controller for every wheel, by wheel number
+	 */
+	public SwerveSteeringController[] getModules() {
+		return modules.clone();
+	}
+
+	public int getNumberOfModules() {
+		return numberOfModules;
+	}
+
+	/**
+	 * @return seconds between updates the loop expects
+	 */
+	public double getNominalPeriod() {
+		return nominalPeriod;
+	}
+
+}
@@ -0,0 +1,212 @@
+package org.usfirst.frc.team2339.Barracuda.control;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.concurrent.locks.LockSupport;
+
+import org.usfirst.frc.team2339.Barracuda.telemetry.Counter;
+import org.usfirst.frc.team2339.Barracuda.telemetry.MetricsRegistry;
+
+import edu.wpi.first.wpilibj.DriverStation;
+
+/**
+ * Runs a task at a fixed rate on its own thread.
+ *
+ * Tick deadlines are multiples of the period from a System.nanoTime start, so the rate does not drift with
+ * task run time or wake up latency. A tick that starts after the next deadline has already passed is an overrun.
+ * Missed deadlines are skipped rather than run back to back.
+ *
+ * The task runs while holding this object's monitor. Code on other threads that touches
+ * the same state (e.g. starting commands from IterativeRobot init methods) should synchronize on it.
+ *
+ * A tick that throws stops the loop: the exception is reported to the driver station and counted,
+ * the failsafe runs to put outputs in a safe state, and {@link #checkFailure()} rethrows it on the
+ * calling thread, so the robot program still dies of it as it would have on the main thread.
+ *
+ * Jitter is how far a tick started from its deadline. Statistics can be read from any thread.
+ *
+ * @author emiller
+ *
+ */
+public class ControlLoop implements Runnable {
+
+	public static final double MIN_FREQUENCY = 100;
+	public static final double MAX_FREQUENCY = 500;
+
+	private final Runnable task;
+	private final Runnable failsafe;
+	private final long periodNanos;
+	private final Thread thread;
+	private volatile boolean running = false;
+	// Exception that stopped the loop, null if none
+	private volatile Throwable failure = null;
+	private final Counter failures = MetricsRegistry.counter("Control loop failures");
+
+	// Time operator inputs were last updated, see inputsUpdated()
+	private volatile long inputTime;
+
+	// Statistics, written only by loop thread
+	private volatile long ticks = 0;
+	private volatile long overruns = 0;
+	private volatile long maxJitter = 0;
+	private volatile long maxRunTime = 0;
+
+	/**
+	 * @param name thread name
+	 * @param frequency ticks per second, between {@link #MIN_FREQUENCY} and {@link #MAX_FREQUENCY}
+	 * @param task task to run each tick
+	 * @param failsafe run if a tick throws, e.g. to zero outputs that have no motor safety
+	 */
+	public ControlLoop(String name, double frequency, Runnable task, Runnable failsafe) {
+		if (frequency < MIN_FREQUENCY || frequency > MAX_FREQUENCY) {
+			throw new IllegalArgumentException("Control loop frequency must be between " +
+					MIN_FREQUENCY + " and " + MAX_FREQUENCY + " Hz");
+		}
+		this.task = task;
+		this.failsafe = failsafe;
+		this.periodNanos = Math.round(1e9 / frequency);
+		this.inputTime = System.nanoTime();
+		this.thread = new Thread(this, name);
+		thread.setDaemon(true);
+		// Above the IterativeRobot main thread, so driver station packets do not delay control
+		thread.setPriority(Thread.MAX_PRIORITY);
+	}
+
+	public void start() {
+		running = true;
+		thread.start();
+	}
+
+	/**
+	 * Stop after current tick
+	 */
+	public void stop() {
+		running = false;
+		LockSupport.unpark(thread);
+	}
+
+	@Override
+	public void run() {
+		long deadline = System.nanoTime();
+		while (running) {
+			long now = System.nanoTime();
+			while (now < deadline) {
+				LockSupport.parkNanos(deadline - now);
+				now = System.nanoTime();
+				if (!running) {
+					return;
+				}
+			}
+
+			long jitter = now - deadline;
+			try {
+				synchronized (this) {
+					task.run();
+				}
+			} catch (Throwable t) {
+				fail(t);
+				return;
+			}
+			long runTime = System.nanoTime() - now;
+			recordTick(jitter, runTime);
+
+			deadline += periodNanos;
+			now = System.nanoTime();
+			if (now - deadline >= periodNanos) {
+				// Skip missed deadlines, staying on the original phase
+				long missed = (now - deadline) / periodNanos;
+				deadline += missed * periodNanos;
+				overruns += missed;
+			}
+		}
+	}
+
+	private void fail(Throwable t) {
+		running = false;
+		failures.increment();
+		try {
+			synchronized (this) {
+				failsafe.run();
+			}
+		} catch (Throwable e) {
+			t.addSuppressed(e);
+		}
+		StringWriter trace = new StringWriter();
+		t.printStackTrace(new PrintWriter(trace));
+		DriverStation.reportError("Control loop " + thread.getName() + " stopped: " + trace, false);
+		failure = t;
+	}
+
+	/**
+	 * Rethrow the exception that stopped the loop, if any. Call from the robot's main thread.
+	 * @throws RuntimeException wrapping the tick's exception
+	 */
+	public void checkFailure() {
+		Throwable t = failure;
+		if (t != null) {
+			throw new RuntimeException("Control loop " + thread.getName() + " failed", t);
+		}
+	}
+
+	private void recordTick(long jitter, long runTime) {
+		ticks++;
+		if (jitter > maxJitter) {
+			maxJitter = jitter;
+		}
+		if (runTime > maxRunTime) {
+			maxRunTime = runTime;
+		}
+	}
+
+	/**
+	 * Called when new operator inputs are available, e.g. from IterativeRobot periodic methods
+	 * which run when a driver station packet arrives.
+	 */
+	public void inputsUpdated() {
+		inputTime = System.nanoTime();
+	}
+
+	/**
+	 * @return seconds since operator inputs were last updated
+	 */
+	public double getInputAge() {
+		return (System.nanoTime() - inputTime) * 1e-9;
+	}
+
+	public boolean isRunning() {
+		return running;
+	}
+
+	/**
+	 * @return period in seconds
+	 */
+	public double getPeriod() {
+		return periodNanos * 1e-9;
+	}
+
+	public long getTicks() {
+		return ticks;
+	}
+
+	/**
+	 * @return number of deadlines missed because a tick ran late
+	 */
+	public long getOverruns() {
+		return overruns;
+	}
+
+	/**
+	 * @return maximum seconds from deadline to start of tick
+	 */
+	public double getMaxJitter() {
+		return maxJitter * 1e-9;
+	}
+
+	/**
+	 * @return maximum seconds task took on a tick
+	 */
+	public double getMaxRunTime() {
+		return maxRunTime * 1e-9;
+	}
+
+}
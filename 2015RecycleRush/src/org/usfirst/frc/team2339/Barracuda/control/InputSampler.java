@@ -0,0 +1,125 @@
+package org.usfirst.frc.team2339.Barracuda.control;
+
+import org.usfirst.frc.team2339.Barracuda.hal.JoystickInput;
+import org.usfirst.frc.team2339.Barracuda.telemetry.LatencyHistogram;
+import org.usfirst.frc.team2339.Barracuda.telemetry.MetricsRegistry;
+
+/**
+ * Reads the drive and operator joysticks once per control loop tick into an {@link InputSnapshot},
+ * so every command in the tick sees the same driver station packet.
+ *
+ * Single writer: only the control loop calls {@link #sample()}, at the start of each tick.
+ * Snapshots come from a small ring and are handed over by a volatile write of the latest one,
+ * so readers on any thread get a whole sample without locks. A snapshot is not rewritten until
+ * {@link #RING_SIZE} - 1 more samples have been taken, so readers should call {@link #get()} each tick
+ * rather than keep one.
+ *
+ * {@link #getDriveStick()} and {@link #getOperatorStick()} read the latest snapshot as joysticks,
+ * for code such as buttons that only takes a {@link JoystickInput}.
+ * No allocation after construction.
+ *
+ * @author emiller
+ *
+ */
+public class InputSampler {
+
+	// Axes and buttons read from each joystick
+	public static final int SAMPLED_AXES = 4;
+	public static final int SAMPLED_BUTTONS = 12;
+	public static final int RING_SIZE = 4;
+
+	private final JoystickInput driveStick;
+	private final JoystickInput operatorStick;
+	private final InputSnapshot ring[] = new InputSnapshot[RING_SIZE];
+	private long sequence = 0;
+	private volatile InputSnapshot latest;
+	private final LatencyHistogram sampleLatency = MetricsRegistry.histogram("Input sample");
+
+	private final JoystickInput driveView = new JoystickInput() {
+		public double getRawAxis(int axis) {
+			return latest.getDriveAxis(axis);
+		}
+
+		public boolean getRawButton(int button) {
+			return latest.getDriveButton(button);
+		}
+	};
+
+	private final JoystickInput operatorView = new JoystickInput() {
+		public double getRawAxis(int axis) {
+			return latest.getOperatorAxis(axis);
+		}
+
+		public boolean getRawButton(int button) {
+			return latest.getOperatorButton(button);
+		}
+	};
+
+	/**
+	 * @param driveStick drive joystick, read directly
+	 * @param operatorStick operator joystick, read directly
+	 */
+	public InputSampler(JoystickInput driveStick, JoystickInput operatorStick) {
+		this.driveStick = driveStick;
+		this.operatorStick = operatorStick;
+		for (int iiSnapshot = 0; iiSnapshot < RING_SIZE; iiSnapshot++) {
+			ring[iiSnapshot] = new InputSnapshot();
+		}
+		// Neutral inputs until first sample
+		latest = ring[RING_SIZE - 1];
+	}
+
+	/**
+	 * Read both joysticks and publish the snapshot. Control loop thread only.
+	 * @return new snapshot
+	 */
+	public InputSnapshot sample() {
+		long start = System.nanoTime();
+		InputSnapshot snapshot = ring[(int) (sequence % RING_SIZE)];
+		snapshot.sequence = sequence++;
+		snapshot.timestamp = start;
+		snapshot.driveButtons = read(driveStick, snapshot.driveAxes);
+		snapshot.operatorButtons = read(operatorStick, snapshot.operatorAxes);
+		latest = snapshot;
+		sampleLatency.recordSince(start);
+		return snapshot;
+	}
+
+	/**
+	 * @return buttons, bit n - 1 is button n
+	 */
+	private static int read(JoystickInput stick, double axes[]) {
+		for (int iiAxis = 0; iiAxis < axes.length; iiAxis++) {
+			axes[iiAxis] = stick.getRawAxis(iiAxis);
+		}
+		int buttons = 0;
+		for (int iiButton = 1; iiButton <= SAMPLED_BUTTONS; iiButton++) {
+			if (stick.getRawButton(iiButton)) {
+				buttons |= 1 << (iiButton - 1);
+			}
+		}
+		return buttons;
+	}
+
+	/**
+	 * @return latest snapshot
+	 */
+	public InputSnapshot get() {
+		return latest;
+	}
+
+	/**
+	 * @return drive joystick as seen in latest snapshot
+	 */
+	public JoystickInput getDriveStick() {
+		return driveView;
+	}
+
+	/**
+	 * @return operator joystick as seen in latest snapshot
+	 */
+	public JoystickInput getOperatorStick() {
+		return operatorView;
+	}
+
+}
@@ -0,0 +1,122 @@
+package org.usfirst.frc.team2339.Barracuda.control;
+
+import org.usfirst.frc.team2339.Barracuda.OI;
+import org.usfirst.frc.team2339.Barracuda.components.OperatorJoystick;
+import org.usfirst.frc.team2339.Barracuda.components.SwerveJoystick;
+
+/**
+ * Drive and operator joystick values read once in one control loop tick, see {@link InputSampler}.
+ *
+ * Read only to everyone but the sampler. Axes past {@link InputSampler#SAMPLED_AXES} and buttons past
+ * {@link InputSampler#SAMPLED_BUTTONS} read as zero and not pressed.
+ *
+ * @author emiller
+ *
+ */
+public class InputSnapshot {
+
+	long sequence = -1;
+	long timestamp = 0;
+	final double driveAxes[] = new double[InputSampler.SAMPLED_AXES];
+	int driveButtons = 0;
+	final double operatorAxes[] = new double[InputSampler.SAMPLED_AXES];
+	int operatorButtons = 0;
+
+	InputSnapshot() {
+	}
+
+	/**
+	 * @return number of samples taken before this one, -1 if nothing has been sampled yet
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * @return System.nanoTime() when sampled
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	/**
+	 * @param axis axis number, starting at 0
+	 * @return drive joystick axis value
+	 */
+	public double getDriveAxis(int axis) {
+		return axis < driveAxes.length ? driveAxes[axis] : 0.0;
+	}
+
+	/**
+	 * @param button button number, starting at 1
+	 * @return true if drive joystick button pressed
+	 */
+	public boolean getDriveButton(int button) {
+		return (driveButtons & (1 << (button - 1))) != 0;
+	}
+
+	/**
+	 * @return drive joystick buttons, bit n - 1 is button n
+	 */
+	public int getDriveButtons() {
+		return driveButtons;
+	}
+
+	/**
+	 * @param axis axis number, starting at 0
+	 * @return operator joystick axis value
+	 */
+	public double getOperatorAxis(int axis) {
+		return axis < operatorAxes.length ? operatorAxes[axis] : 0.0;
+	}
+
+	/**
+	 * @param button button number, starting at 1
+	 * @return true if operator joystick button pressed
+	 */
+	public boolean getOperatorButton(int button) {
+		return (operatorButtons & (1 << (button - 1))) != 0;
+	}
+
+	/**
+	 * @return operator joystick buttons, bit n - 1 is button n
+	 */
+	public int getOperatorButtons() {
+		return operatorButtons;
+	}
+
+	/*
+	 * Drive values, mapped as SwerveJoystick does
+	 */
+	public double getStrafe() {
+		return driveAxes[SwerveJoystick.STRAFE_AXIS];
+	}
+
+	public double getFrontBack() {
+		return -driveAxes[SwerveJoystick.FRONT_BACK_AXIS];
+	}
+
+	public double getRotate() {
+		return -driveAxes[SwerveJoystick.ROTATE_AXIS];
+	}
+
+	public boolean isInDeadband() {
+		return SwerveJoystick.isInDeadband(getStrafe(), getFrontBack(), getRotate());
+	}
+
+	public boolean getSpeedShift() {
+		return getDriveButton(OI.DRIVE_BUTTON_SPEED_SHIFT);
+	}
+
+	public boolean getGyro() {
+		return getDriveButton(OI.DRIVE_BUTTON_ABSOLUTE_GYRO_MODE);
+	}
+
+	/**
+	 * @return lift value, mapped as OperatorJoystick does
+	 */
+	public double getLift() {
+		return operatorAxes[OperatorJoystick.LIFT_AXIS];
+	}
+
+}
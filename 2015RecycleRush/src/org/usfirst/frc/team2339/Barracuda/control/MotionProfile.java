@@ -0,0 +1,176 @@
+package org.usfirst.frc.team2339.Barracuda.control;
+
+/**
+ * Straight line motion profile sampled once per control loop tick, computed up front.
+ *
+ * Trapezoidal: accelerate at the acceleration limit to the velocity limit, cruise, and decelerate to a stop
+ * exactly at the distance (a triangle if the distance is too short to reach the velocity limit).
+ * S-curve: with a jerk limit, the trapezoid's velocity is averaged over a window of acceleration / jerk
+ * seconds, which ramps acceleration at the jerk limit rather than stepping it. If the trapezoid cruises for
+ * less than that, acceleration swings from full to full braking within a window, so the window is doubled.
+ * Velocity and acceleration limits still hold, the distance is unchanged, and the profile takes one window longer.
+ *
+ * Sample k is the average over tick k, from k * period to (k + 1) * period, so velocities sum to
+ * the distance exactly. Positions are at the end of each tick. No allocation after construction.
+ *
+ * @author emiller
+ *
+ */
+public class MotionProfile {
+
+	private final double distance;
+	private final double period;
+	private final double velocities[];
+	private final double accelerations[];
+	private final double positions[];
+
+	/**
+	 * Trapezoidal profile
+	 * @param distance distance to travel, same units as velocity per second. Negative to go backwards.
+	 * @param maxVelocity velocity limit
+	 * @param maxAcceleration acceleration limit
+	 * @param period seconds per sample, normally the control loop period
+	 */
+	public MotionProfile(double distance, double maxVelocity, double maxAcceleration, double period) {
+		this(distance, maxVelocity, maxAcceleration, Double.POSITIVE_INFINITY, period);
+	}
+
+	/**
+	 * S-curve profile
+	 * @param distance distance to travel, same units as velocity per second. Negative to go backwards.
+	 * @param maxVelocity velocity limit
+	 * @param maxAcceleration acceleration limit
+	 * @param maxJerk jerk limit, infinite (or zero) for a trapezoid
+	 * @param period seconds per sample, normally the control loop period
+	 */
+	public MotionProfile(double distance, double maxVelocity, double maxAcceleration, double maxJerk,
+			double period) {
+		if (!(maxVelocity > 0) || !(maxAcceleration > 0) || !(period > 0)) {
+			throw new IllegalArgumentException("Profile limits and period must be positive");
+		}
+		this.distance = distance;
+		this.period = period;
+		double length = Math.abs(distance);
+		double direction = Math.signum(distance);
+
+		// Trapezoid, or triangle if peak velocity is never reached
+		double peak = Math.min(maxVelocity, Math.sqrt(length * maxAcceleration));
+		double rampTime = peak / maxAcceleration;
+		double cruiseTime = peak > 0 ? (length - peak * rampTime) / peak : 0;
+		double totalTime = 2 * rampTime + cruiseTime;
+		int trapezoidTicks = (int) Math.ceil(totalTime / period - 1e-9);
+
+		// Moving average window for jerk limit, in ticks
+		int window = 1;
+		if (maxJerk > 0 && !Double.isInfinite(maxJerk)) {
+			double windowTime = maxAcceleration / maxJerk;
+			if (cruiseTime < windowTime) {
+				windowTime *= 2;
+			}
+			window = Math.max(1, (int) Math.ceil(windowTime / period - 1e-9));
+		}
+		int ticks = trapezoidTicks + window - 1;
+		velocities = new double[ticks];
+		accelerations = new double[ticks];
+		positions = new double[ticks];
+
+		// Trapezoid tick averages, then window average into velocities
+		double trapezoid[] = new double[trapezoidTicks];
+		double previous = 0;
+		for (int iiTick = 0; iiTick < trapezoidTicks; iiTick++) {
+			double next = trapezoidPosition(Math.min((iiTick + 1) * period, totalTime),
+					length, peak, maxAcceleration, rampTime, cruiseTime);
+			trapezoid[iiTick] = (next - previous) / period;
+			previous = next;
+		}
+		double sum = 0;
+		for (int iiTick = 0; iiTick < ticks; iiTick++) {
+			if (iiTick < trapezoidTicks) {
+				sum += trapezoid[iiTick];
+			}
+			if (iiTick >= window) {
+				sum -= trapezoid[iiTick - window];
+			}
+			velocities[iiTick] = direction * sum / window;
+		}
+
+		double position = 0;
+		double velocity = 0;
+		for (int iiTick = 0; iiTick < ticks; iiTick++) {
+			position += velocities[iiTick] * period;
+			positions[iiTick] = position;
+			accelerations[iiTick] = (velocities[iiTick] - velocity) / period;
+			velocity = velocities[iiTick];
+		}
+		if (ticks > 0) {
+			// Rounding, the profile ends exactly at the distance
+			positions[ticks - 1] = distance;
+		}
+	}
+
+	/**
+	 * @return distance along trapezoid at time t, unsigned
+	 */
+	private static double trapezoidPosition(double t, double length, double peak, double acceleration,
+			double rampTime, double cruiseTime) {
+		if (t <= rampTime) {
+			return 0.5 * acceleration * t * t;
+		}
+		double rampDistance = 0.5 * peak * rampTime;
+		if (t <= rampTime + cruiseTime) {
+			return rampDistance + peak * (t - rampTime);
+		}
+		double remaining = Math.max(0, 2 * rampTime + cruiseTime - t);
+		return length - 0.5 * acceleration * remaining * remaining;
+	}
+
+	/**
+	 * @return number of ticks, the robot is stopped after the last
+	 */
+	public int size() {
+		return velocities.length;
+	}
+
+	/**
+	 * @return seconds from start to stop
+	 */
+	public double getDuration() {
+		return velocities.length * period;
+	}
+
+	public double getDistance() {
+		return distance;
+	}
+
+	public double getPeriod() {
+		return period;
+	}
+
+	/**
+	 * @param tick tick number from start
+	 * @return average velocity over tick, zero after the end
+	 */
+	public double getVelocity(int tick) {
+		return tick >= 0 && tick < velocities.length ? velocities[tick] : 0;
+	}
+
+	/**
+	 * @param tick tick number from start
+	 * @return change of average velocity into tick per second, zero after the end
+	 */
+	public double getAcceleration(int tick) {
+		return tick >= 0 && tick < accelerations.length ? accelerations[tick] : 0;
+	}
+
+	/**
+	 * @param tick tick number from start
+	 * @return distance travelled by end of tick
+	 */
+	public double getPosition(int tick) {
+		if (tick < 0) {
+			return 0;
+		}
+		return tick < positions.length ? positions[tick] : distance;
+	}
+
+}
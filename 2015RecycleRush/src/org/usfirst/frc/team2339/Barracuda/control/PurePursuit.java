@@ -0,0 +1,226 @@
+package org.usfirst.frc.team2339.Barracuda.control;
+
+/**
+ * Pure pursuit for a holonomic robot following a {@link Trajectory}.
+ *
+ * Each update finds the point on the path nearest the robot, then drives toward the point a lookahead distance
+ * further along the path, which pulls the robot back onto the path without turning it: a swerve drive
+ * can move in any direction, so heading is controlled separately, toward the trajectory heading at the
+ * nearest point with its heading rate as feedforward.
+ * Speed is the trajectory speed for the time since start, plus a correction proportional to how far the
+ * robot is behind (or ahead of) where the trajectory is at that time, so the robot keeps to the schedule.
+ *
+ * The nearest point search starts at the segment found last update and looks at most a window of segments
+ * ahead, never behind, and the lookahead point only moves forward, so the cost per update does not depend on
+ * the length of the path. The robot can not get further ahead in one update than the window covers at
+ * trajectory speeds. No allocation after construction.
+ *
+ * @author emiller
+ *
+ */
+public class PurePursuit {
+
+	private final Trajectory trajectory;
+	private final double lookahead;
+	private final int searchWindow;
+	private final double distanceGain;
+	private final double headingGain;
+	private final double maxSpeed;
+	// Path distance at each sample
+	private final double distances[];
+	private final int lastSample;
+
+	private int segment = 0;
+	private int lookaheadSegment = 0;
+	private double nearestDistance = 0;
+	private double crossTrackError = 0;
+	private double lookaheadX = 0;
+	private double lookaheadY = 0;
+	private double velocityX = 0;
+	private double velocityY = 0;
+	private double headingRate = 0;
+
+	/**
+	 * @param trajectory trajectory to follow
+	 * @param lookahead distance along the path ahead of the nearest point to drive toward
+	 * @param searchWindow segments ahead of the last nearest segment to search for the nearest point
+	 * @param distanceGain speed correction per unit of distance behind schedule, per second
+	 * @param headingGain heading rate correction per degree of heading error, per second
+	 * @param maxSpeed speed limit of commanded velocity
+	 */
+	public PurePursuit(Trajectory trajectory, double lookahead, int searchWindow, double distanceGain,
+			double headingGain, double maxSpeed) {
+		if (!(lookahead > 0) || searchWindow < 1) {
+			throw new IllegalArgumentException("Lookahead and search window must be positive");
+		}
+		if (trajectory.size() < 2) {
+			throw new IllegalArgumentException("Trajectory needs at least 2 samples to follow");
+		}
+		this.trajectory = trajectory;
+		this.lookahead = lookahead;
+		this.searchWindow = searchWindow;
+		this.distanceGain = distanceGain;
+		this.headingGain = headingGain;
+		this.maxSpeed = maxSpeed;
+		this.lastSample = trajectory.size() - 1;
+		this.distances = new double[trajectory.size()];
+		for (int iiSample = 1; iiSample <= lastSample; iiSample++) {
+			distances[iiSample] = distances[iiSample - 1] + Math.hypot(
+					trajectory.getX(iiSample) - trajectory.getX(iiSample - 1),
+					trajectory.getY(iiSample) - trajectory.getY(iiSample - 1));
+		}
+	}
+
+	/**
+	 * Start following from the start of the trajectory
+	 */
+	public void reset() {
+		segment = 0;
+		lookaheadSegment = 0;
+		nearestDistance = 0;
+		crossTrackError = 0;
+		velocityX = 0;
+		velocityY = 0;
+		headingRate = 0;
+	}
+
+	/**
+	 * Calculate commanded velocity from the robot pose
+	 *
+	 * @param elapsed seconds since start of trajectory
+	 * @param x robot field x
+	 * @param y robot field y
+	 * @param heading robot heading, degrees clockwise
+	 */
+	public void update(double elapsed, double x, double y, double heading) {
+		findNearest(x, y);
+		findLookahead(nearestDistance + lookahead);
+
+		// Speed to keep to schedule, toward the lookahead point
+		int tick = (int) Math.floor(elapsed / trajectory.getPeriod());
+		int reference = Math.max(0, Math.min(tick, lastSample));
+		double speed = Math.hypot(trajectory.getVelocityX(tick), trajectory.getVelocityY(tick)) +
+				distanceGain * (distances[reference] - nearestDistance);
+		speed = Math.max(0, Math.min(maxSpeed, speed));
+		double dx = lookaheadX - x;
+		double dy = lookaheadY - y;
+		double toLookahead = Math.hypot(dx, dy);
+		if (toLookahead > 0) {
+			velocityX = speed * dx / toLookahead;
+			velocityY = speed * dy / toLookahead;
+		} else {
+			velocityX = 0;
+			velocityY = 0;
+		}
+
+		headingRate = trajectory.getHeadingRate(segment) + headingGain * (trajectory.getHeading(segment) - heading);
+	}
+
+	/**
+	 * Nearest point on the segments from the last nearest segment to the end of the search window
+	 */
+	private void findNearest(double x, double y) {
+		double best = Double.POSITIVE_INFINITY;
+		int bestSegment = segment;
+		double bestFraction = 0;
+		int end = Math.min(segment + searchWindow, lastSample - 1);
+		for (int iiSegment = segment; iiSegment <= end; iiSegment++) {
+			double x0 = trajectory.getX(iiSegment);
+			double y0 = trajectory.getY(iiSegment);
+			double sx = trajectory.getX(iiSegment + 1) - x0;
+			double sy = trajectory.getY(iiSegment + 1) - y0;
+			double lengthSquared = sx * sx + sy * sy;
+			double fraction = lengthSquared > 0 ? ((x - x0) * sx + (y - y0) * sy) / lengthSquared : 0;
+			fraction = Math.max(0, Math.min(1, fraction));
+			double ex = x0 + fraction * sx - x;
+			double ey = y0 + fraction * sy - y;
+			double distanceSquared = ex * ex + ey * ey;
+			if (distanceSquared < best) {
+				best = distanceSquared;
+				bestSegment = iiSegment;
+				bestFraction = fraction;
+			}
+		}
+		segment = bestSegment;
+		crossTrackError = Math.sqrt(best);
+		nearestDistance = distances[segment] + bestFraction * (distances[segment + 1] - distances[segment]);
+	}
+
+	/**
+	 * Point on the path at a distance, the end if beyond it. Walks forward from the last lookahead segment.
+	 */
+	private void findLookahead(double distance) {
+		if (lookaheadSegment < segment) {
+			lookaheadSegment = segment;
+		}
+		while (lookaheadSegment < lastSample - 1 && distances[lookaheadSegment + 1] < distance) {
+			lookaheadSegment++;
+		}
+		if (distance >= distances[lastSample]) {
+			lookaheadX = trajectory.getX(lastSample);
+			lookaheadY = trajectory.getY(lastSample);
+			return;
+		}
+		double segmentLength = distances[lookaheadSegment + 1] - distances[lookaheadSegment];
+		double fraction = segmentLength > 0 ?
+				Math.max(0, Math.min(1, (distance - distances[lookaheadSegment]) / segmentLength)) : 0;
+		lookaheadX = trajectory.getX(lookaheadSegment) +
+				fraction * (trajectory.getX(lookaheadSegment + 1) - trajectory.getX(lookaheadSegment));
+		lookaheadY = trajectory.getY(lookaheadSegment) +
+				fraction * (trajectory.getY(lookaheadSegment + 1) - trajectory.getY(lookaheadSegment));
+	}
+
+	public Trajectory getTrajectory() {
+		return trajectory;
+	}
+
+	/**
+	 * @return commanded field x velocity from last update
+	 */
+	public double getVelocityX() {
+		return velocityX;
+	}
+
+	/**
+	 * @return commanded field y velocity from last update
+	 */
+	public double getVelocityY() {
+		return velocityY;
+	}
+
+	/**
+	 * @return commanded heading rate from last update, degrees per second clockwise
+	 */
+	public double getHeadingRate() {
+		return headingRate;
+	}
+
+	/**
+	 * @return segment (sample at its start) nearest the robot at last update
+	 */
+	public int getNearestSegment() {
+		return segment;
+	}
+
+	/**
+	 * @return distance along the path of the nearest point at last update
+	 */
+	public double getNearestDistance() {
+		return nearestDistance;
+	}
+
+	/**
+	 * @return distance of the robot from the path at last update
+	 */
+	public double getCrossTrackError() {
+		return crossTrackError;
+	}
+
+	/**
+	 * @return distance along the path from the nearest point to the end at last update
+	 */
+	public double getRemainingDistance() {
+		return distances[lastSample] - nearestDistance;
+	}
+
+}
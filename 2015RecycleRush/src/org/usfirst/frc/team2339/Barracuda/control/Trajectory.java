@@ -0,0 +1,236 @@
+package org.usfirst.frc.team2339.Barracuda.control;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Holonomic path sampled once per control loop tick, made by {@link TrajectoryPlanner}.
+ *
+ * Sample k is the field pose at k * period: x and y (x is right, y is forward) and heading (degrees clockwise,
+ * not wrapped, like the gyro). Velocities of sample k are averages over tick k, from sample k to sample k + 1,
+ * so velocities sum to the path exactly. The last sample is the end of the path, at rest.
+ * The samples are a flat float buffer that can be saved to disk and memory mapped back in at robot init.
+ *
+ * File format (native byte order, checked on load): header described in {@link #writeHeader},
+ * then for each sample x, y, heading, velocity x, velocity y, heading rate as floats.
+ *
+ * @author emiller
+ *
+ */
+public class Trajectory {
+
+	private static final int MAGIC = 0x53575452; // "SWTR"
+	private static final int VERSION = 1;
+	// magic, version, samples (ints), hash (long), period (double)
+	private static final int HEADER_SIZE = 3 * 4 + 8 + 8;
+	private static final int FIELDS = 6;
+	private static final int X = 0;
+	private static final int Y = 1;
+	private static final int HEADING = 2;
+	private static final int VELOCITY_X = 3;
+	private static final int VELOCITY_Y = 4;
+	private static final int HEADING_RATE = 5;
+
+	private final long hash;
+	private final int samples;
+	private final double period;
+	private final ByteBuffer buffer;
+	private final FloatBuffer values;
+
+	private Trajectory(long hash, int samples, double period, ByteBuffer buffer) {
+		this.hash = hash;
+		this.samples = samples;
+		this.period = period;
+		this.buffer = buffer;
+		buffer.position(HEADER_SIZE);
+		this.values = buffer.slice().order(buffer.order()).asFloatBuffer();
+		buffer.position(0);
+	}
+
+	private static int dataSize(int samples) {
+		return samples * FIELDS * 4;
+	}
+
+	/**
+	 * Build a trajectory from poses. Velocities are calculated from the poses.
+	 *
+	 * @param hash hash of the planner inputs, see {@link TrajectoryPlanner#hash}
+	 * @param period seconds between samples
+	 * @param x field x of each sample
+	 * @param y field y of each sample
+	 * @param heading heading of each sample, degrees clockwise
+	 * @param samples number of samples, at least 1
+	 * @return new trajectory in memory
+	 */
+	static Trajectory fromPoses(long hash, double period, double x[], double y[], double heading[], int samples) {
+		ByteBuffer buffer = ByteBuffer.allocateDirect(HEADER_SIZE + dataSize(samples)).order(ByteOrder.nativeOrder());
+		Trajectory trajectory = new Trajectory(hash, samples, period, buffer);
+		trajectory.writeHeader();
+		FloatBuffer values = trajectory.values;
+		for (int iiSample = 0; iiSample < samples; iiSample++) {
+			int index = iiSample * FIELDS;
+			values.put(index + X, (float) x[iiSample]);
+			values.put(index + Y, (float) y[iiSample]);
+			values.put(index + HEADING, (float) heading[iiSample]);
+			if (iiSample + 1 < samples) {
+				values.put(index + VELOCITY_X, (float) ((x[iiSample + 1] - x[iiSample]) / period));
+				values.put(index + VELOCITY_Y, (float) ((y[iiSample + 1] - y[iiSample]) / period));
+				values.put(index + HEADING_RATE, (float) ((heading[iiSample + 1] - heading[iiSample]) / period));
+			}
+		}
+		return trajectory;
+	}
+
+	/**
+	 * Memory map a trajectory saved with {@link #save}. It must have been saved on a machine with
+	 * the same byte order.
+	 *
+	 * @param file trajectory file
+	 * @param hash hash of the planner inputs the trajectory must have been planned from
+	 * @return trajectory backed by the mapped file
+	 * @throws IOException if file can not be read or does not match
+	 */
+	public static Trajectory load(File file, long hash) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+					.order(ByteOrder.nativeOrder());
+			if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+				throw new IOException(file + " is not a trajectory");
+			}
+			int samples = buffer.getInt(8);
+			if (samples < 1 || buffer.capacity() != HEADER_SIZE + dataSize(samples)) {
+				throw new IOException(file + " has wrong size");
+			}
+			if (buffer.getLong(12) != hash) {
+				throw new IOException(file + " was planned from different waypoints or limits");
+			}
+			return new Trajectory(hash, samples, buffer.getDouble(20), buffer);
+		} finally {
+			// Mapping stays valid after the file is closed
+			raf.close();
+		}
+	}
+
+	/**
+	 * Write trajectory to disk.
+	 *
+	 * @param file file to write
+	 * @throws IOException if file can not be written
+	 */
+	public void save(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.setLength(0);
+			ByteBuffer out = buffer.duplicate();
+			out.clear();
+			FileChannel channel = raf.getChannel();
+			while (out.hasRemaining()) {
+				channel.write(out);
+			}
+			channel.force(true);
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Header: magic, version, number of samples (ints), hash of planner inputs (long), period (double).
+	 */
+	private void writeHeader() {
+		buffer.putInt(0, MAGIC);
+		buffer.putInt(4, VERSION);
+		buffer.putInt(8, samples);
+		buffer.putLong(12, hash);
+		buffer.putDouble(20, period);
+	}
+
+	/**
+	 * @return hash of the planner inputs
+	 */
+	public long getHash() {
+		return hash;
+	}
+
+	/**
+	 * @return number of samples, including the start and the end
+	 */
+	public int size() {
+		return samples;
+	}
+
+	public double getPeriod() {
+		return period;
+	}
+
+	/**
+	 * @return seconds from start to stop
+	 */
+	public double getDuration() {
+		return (samples - 1) * period;
+	}
+
+	private float get(int sample, int field) {
+		if (sample < 0) {
+			sample = 0;
+		} else if (sample >= samples) {
+			sample = samples - 1;
+		}
+		return values.get(sample * FIELDS + field);
+	}
+
+	/**
+	 * @param sample sample number from start
+	 * @return field x at sample, start or end pose outside the trajectory
+	 */
+	public double getX(int sample) {
+		return get(sample, X);
+	}
+
+	/**
+	 * @param sample sample number from start
+	 * @return field y at sample, start or end pose outside the trajectory
+	 */
+	public double getY(int sample) {
+		return get(sample, Y);
+	}
+
+	/**
+	 * @param sample sample number from start
+	 * @return heading in degrees clockwise at sample, start or end pose outside the trajectory
+	 */
+	public double getHeading(int sample) {
+		return get(sample, HEADING);
+	}
+
+	/**
+	 * @param tick tick number from start
+	 * @return average field x velocity over tick, zero outside the trajectory
+	 */
+	public double getVelocityX(int tick) {
+		return tick >= 0 && tick < samples ? get(tick, VELOCITY_X) : 0;
+	}
+
+	/**
+	 * @param tick tick number from start
+	 * @return average field y velocity over tick, zero outside the trajectory
+	 */
+	public double getVelocityY(int tick) {
+		return tick >= 0 && tick < samples ? get(tick, VELOCITY_Y) : 0;
+	}
+
+	/**
+	 * @param tick tick number from start
+	 * @return average heading rate over tick in degrees per second clockwise, zero outside the trajectory
+	 */
+	public double getHeadingRate(int tick) {
+		return tick >= 0 && tick < samples ? get(tick, HEADING_RATE) : 0;
+	}
+
+}
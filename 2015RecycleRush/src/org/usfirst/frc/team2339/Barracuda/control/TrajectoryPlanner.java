@@ -0,0 +1,406 @@
+package org.usfirst.frc.team2339.Barracuda.control;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Plans holonomic {@link Trajectory}s through field waypoints for a swerve drive.
+ *
+ * The path between each pair of waypoints is a quintic Hermite spline. Its direction at a waypoint is
+ * the waypoint's course, or if that is not given, the direction from the waypoint before to the one after.
+ * Its second derivative at waypoints is zero, so curvature is continuous. Heading is independent of the path:
+ * it turns from each waypoint's heading to the next along a quintic in distance, at rest at every waypoint.
+ *
+ * The splines are reparameterized by arc length on a grid of {@link #PATH_STEP}, then speed along the path is
+ * limited by the velocity limit, by wheel speed (path speed plus turning speed of the wheel farthest from center),
+ * and by the acceleration limit shared between speeding up and turning the corner (friction circle).
+ * A forward and a backward pass over the grid make the fastest speed profile that starts and ends at rest.
+ * The profile is sampled once per period.
+ *
+ * Planning is slow enough to matter at the start of autonomous, so {@link #loadOrPlan} caches trajectories on disk
+ * by a hash of everything they are planned from, and memory maps them back in.
+ *
+ * @author emiller
+ *
+ */
+public class TrajectoryPlanner {
+
+	// Bump when planning changes, so trajectories cached by an older planner are planned again
+	private static final int VERSION = 1;
+	// Arc length grid spacing, inches
+	private static final double PATH_STEP = 0.25;
+	// Spline parameter steps per segment for the arc length table
+	private static final int ARC_LENGTH_STEPS = 512;
+
+	private final double maxVelocity;
+	private final double maxAcceleration;
+	private final double maxWheelSpeed;
+	private final double maxWheelRadius;
+	private final double period;
+
+	/**
+	 * Field pose to pass through. x is right and y is forward, angles are degrees clockwise from forward.
+	 */
+	public static class Waypoint {
+		public final double x;
+		public final double y;
+		public final double heading;
+		// Direction of travel through the waypoint, NaN to pick one from the waypoints around it
+		public final double course;
+
+		public Waypoint(double x, double y, double heading) {
+			this(x, y, heading, Double.NaN);
+		}
+
+		public Waypoint(double x, double y, double heading, double course) {
+			this.x = x;
+			this.y = y;
+			this.heading = heading;
+			this.course = course;
+		}
+	}
+
+	/**
+	 * @param maxVelocity robot speed limit along the path, inches per second
+	 * @param maxAcceleration robot acceleration limit, along and across the path together, inches per second squared
+	 * @param maxWheelSpeed wheel speed limit, inches per second. Turning while driving uses some of it.
+	 * @param maxWheelRadius distance of the farthest wheel from robot center, inches
+	 * @param period seconds per sample, normally the control loop period
+	 */
+	public TrajectoryPlanner(double maxVelocity, double maxAcceleration, double maxWheelSpeed,
+			double maxWheelRadius, double period) {
+		if (!(maxVelocity > 0) || !(maxAcceleration > 0) || !(maxWheelSpeed > 0) || !(period > 0)) {
+			throw new IllegalArgumentException("Trajectory limits and period must be positive");
+		}
+		this.maxVelocity = maxVelocity;
+		this.maxAcceleration = maxAcceleration;
+		this.maxWheelSpeed = maxWheelSpeed;
+		this.maxWheelRadius = maxWheelRadius;
+		this.period = period;
+	}
+
+	public double getPeriod() {
+		return period;
+	}
+
+	/**
+	 * Hash of everything a trajectory is planned from: planner version, limits, period and waypoints.
+	 * 64 bit FNV-1a over the bits of each value.
+	 *
+	 * @param waypoints waypoints
+	 * @return hash
+	 */
+	public long hash(Waypoint waypoints[]) {
+		long hash = 0xcbf29ce484222325L;
+		hash = hashValue(hash, VERSION);
+		hash = hashValue(hash, Double.doubleToLongBits(maxVelocity));
+		hash = hashValue(hash, Double.doubleToLongBits(maxAcceleration));
+		hash = hashValue(hash, Double.doubleToLongBits(maxWheelSpeed));
+		hash = hashValue(hash, Double.doubleToLongBits(maxWheelRadius));
+		hash = hashValue(hash, Double.doubleToLongBits(period));
+		hash = hashValue(hash, waypoints.length);
+		for (Waypoint waypoint : waypoints) {
+			hash = hashValue(hash, Double.doubleToLongBits(waypoint.x));
+			hash = hashValue(hash, Double.doubleToLongBits(waypoint.y));
+			hash = hashValue(hash, Double.doubleToLongBits(waypoint.heading));
+			hash = hashValue(hash, Double.doubleToLongBits(waypoint.course));
+		}
+		return hash;
+	}
+
+	private static long hashValue(long hash, long value) {
+		for (int iiByte = 0; iiByte < 8; iiByte++) {
+			hash ^= (value >>> (8 * iiByte)) & 0xff;
+			hash *= 0x100000001b3L;
+		}
+		return hash;
+	}
+
+	/**
+	 * @param directory cache directory
+	 * @param waypoints waypoints
+	 * @return file a trajectory through waypoints is cached in
+	 */
+	public File cacheFile(File directory, Waypoint waypoints[]) {
+		return new File(directory, String.format("trajectory-%016x.bin", hash(waypoints)));
+	}
+
+	/**
+	 * Load a trajectory if one planned from the same inputs is cached, otherwise plan it
+	 * and try to save it for next time.
+	 *
+	 * @param directory cache directory, created if missing
+	 * @param waypoints waypoints
+	 * @return trajectory
+	 */
+	public Trajectory loadOrPlan(File directory, Waypoint waypoints[]) {
+		File file = cacheFile(directory, waypoints);
+		long hash = hash(waypoints);
+		if (file.exists()) {
+			try {
+				return Trajectory.load(file, hash);
+			} catch (IOException e) {
+				System.out.println("Replanning trajectory: " + e.getMessage());
+			}
+		}
+		Trajectory trajectory = plan(waypoints);
+		try {
+			if (!directory.isDirectory() && !directory.mkdirs()) {
+				throw new IOException("can not create " + directory);
+			}
+			trajectory.save(file);
+		} catch (IOException e) {
+			System.out.println("Could not save trajectory: " + e.getMessage());
+		}
+		return trajectory;
+	}
+
+	/**
+	 * Plan a trajectory through waypoints, starting and ending at rest.
+	 *
+	 * @param waypoints at least two waypoints, neighbors at different positions
+	 * @return new trajectory in memory
+	 */
+	public Trajectory plan(Waypoint waypoints[]) {
+		if (waypoints.length < 2) {
+			throw new IllegalArgumentException("Trajectory needs at least 2 waypoints");
+		}
+		int segments = waypoints.length - 1;
+
+		// Spline direction at each waypoint, unit vectors
+		double directionX[] = new double[waypoints.length];
+		double directionY[] = new double[waypoints.length];
+		for (int iiPoint = 0; iiPoint < waypoints.length; iiPoint++) {
+			double dx, dy;
+			if (!Double.isNaN(waypoints[iiPoint].course)) {
+				dx = Math.sin(Math.toRadians(waypoints[iiPoint].course));
+				dy = Math.cos(Math.toRadians(waypoints[iiPoint].course));
+			} else {
+				Waypoint before = waypoints[Math.max(0, iiPoint - 1)];
+				Waypoint after = waypoints[Math.min(segments, iiPoint + 1)];
+				dx = after.x - before.x;
+				dy = after.y - before.y;
+			}
+			double length = Math.hypot(dx, dy);
+			if (!(length > 0)) {
+				throw new IllegalArgumentException("Waypoint " + iiPoint + " has no direction");
+			}
+			directionX[iiPoint] = dx / length;
+			directionY[iiPoint] = dy / length;
+		}
+
+		// Polynomial coefficients of each segment, six for x then six for y, and arc length tables
+		double coefficients[] = new double[segments * 12];
+		double arcLengths[] = new double[segments * (ARC_LENGTH_STEPS + 1)];
+		double segmentStart[] = new double[segments + 1];
+		for (int iiSegment = 0; iiSegment < segments; iiSegment++) {
+			Waypoint start = waypoints[iiSegment];
+			Waypoint end = waypoints[iiSegment + 1];
+			double chord = Math.hypot(end.x - start.x, end.y - start.y);
+			if (!(chord > 0)) {
+				throw new IllegalArgumentException("Waypoints " + iiSegment + " and " + (iiSegment + 1) +
+						" are at the same position");
+			}
+			setQuintic(coefficients, iiSegment * 12, start.x, directionX[iiSegment] * chord,
+					end.x, directionX[iiSegment + 1] * chord);
+			setQuintic(coefficients, iiSegment * 12 + 6, start.y, directionY[iiSegment] * chord,
+					end.y, directionY[iiSegment + 1] * chord);
+			// Simpson's rule on each step
+			int table = iiSegment * (ARC_LENGTH_STEPS + 1);
+			double length = 0;
+			double step = 1.0 / ARC_LENGTH_STEPS;
+			arcLengths[table] = 0;
+			for (int iiStep = 0; iiStep < ARC_LENGTH_STEPS; iiStep++) {
+				double t = iiStep * step;
+				length += step / 6 * (speed(coefficients, iiSegment * 12, t) +
+						4 * speed(coefficients, iiSegment * 12, t + 0.5 * step) +
+						speed(coefficients, iiSegment * 12, t + step));
+				arcLengths[table + iiStep + 1] = length;
+			}
+			segmentStart[iiSegment + 1] = segmentStart[iiSegment] + length;
+		}
+
+		// Arc length grid: curvature and speed limit at each point
+		double totalLength = segmentStart[segments];
+		int points = (int) Math.ceil(totalLength / PATH_STEP - 1e-9) + 1;
+		double distance[] = new double[points];
+		double curvature[] = new double[points];
+		double speedLimit[] = new double[points];
+		for (int iiPoint = 0; iiPoint < points; iiPoint++) {
+			double s = Math.min(iiPoint * PATH_STEP, totalLength);
+			int segment = segmentAt(segmentStart, s);
+			double segmentLength = segmentStart[segment + 1] - segmentStart[segment];
+			double local = s - segmentStart[segment];
+			double t = parameterAt(coefficients, segment * 12, arcLengths, segment * (ARC_LENGTH_STEPS + 1), local);
+			int cx = segment * 12;
+			int cy = cx + 6;
+			distance[iiPoint] = s;
+			double dx = derivative(coefficients, cx, t);
+			double dy = derivative(coefficients, cy, t);
+			double ddx = secondDerivative(coefficients, cx, t);
+			double ddy = secondDerivative(coefficients, cy, t);
+			double speed = Math.hypot(dx, dy);
+			curvature[iiPoint] = speed > 0 ? Math.abs(dx * ddy - dy * ddx) / (speed * speed * speed) : 0;
+
+			// Turning rate per inch of the heading smoothstep, see pathPose, for the wheel speed limit
+			double u = local / segmentLength;
+			double turn = waypoints[segment + 1].heading - waypoints[segment].heading;
+			double turnRate = Math.toRadians(Math.abs(turn)) * 30 * u * u * (1 - u) * (1 - u) / segmentLength;
+
+			double limit = Math.min(maxVelocity, maxWheelSpeed / (1 + turnRate * maxWheelRadius));
+			if (curvature[iiPoint] > 0) {
+				limit = Math.min(limit, Math.sqrt(maxAcceleration / curvature[iiPoint]));
+			}
+			speedLimit[iiPoint] = limit;
+		}
+
+		// Fastest speeds that start and end at rest: forward pass speeds up, backward pass slows down
+		double speeds[] = new double[points];
+		speeds[0] = 0;
+		for (int iiPoint = 1; iiPoint < points; iiPoint++) {
+			double ds = distance[iiPoint] - distance[iiPoint - 1];
+			double v = speeds[iiPoint - 1];
+			speeds[iiPoint] = Math.min(speedLimit[iiPoint],
+					Math.sqrt(v * v + 2 * tangentialAcceleration(v, curvature[iiPoint - 1]) * ds));
+		}
+		speeds[points - 1] = 0;
+		for (int iiPoint = points - 2; iiPoint >= 0; iiPoint--) {
+			double ds = distance[iiPoint + 1] - distance[iiPoint];
+			double v = speeds[iiPoint + 1];
+			speeds[iiPoint] = Math.min(speeds[iiPoint],
+					Math.sqrt(v * v + 2 * tangentialAcceleration(v, curvature[iiPoint + 1]) * ds));
+		}
+
+		// Time at each grid point, constant acceleration between them
+		double times[] = new double[points];
+		for (int iiPoint = 1; iiPoint < points; iiPoint++) {
+			double ds = distance[iiPoint] - distance[iiPoint - 1];
+			double v = speeds[iiPoint - 1] + speeds[iiPoint];
+			times[iiPoint] = times[iiPoint - 1] + (v > 0 ? 2 * ds / v : 0);
+		}
+
+		// Sample once per period, poses from the splines at the distance reached
+		double duration = times[points - 1];
+		int samples = (int) Math.ceil(duration / period - 1e-9) + 1;
+		double x[] = new double[samples];
+		double y[] = new double[samples];
+		double heading[] = new double[samples];
+		double pose[] = new double[3];
+		int point = 0;
+		for (int iiSample = 0; iiSample < samples; iiSample++) {
+			double time = Math.min(iiSample * period, duration);
+			while (point < points - 2 && time > times[point + 1]) {
+				point++;
+			}
+			double ds = distance[point + 1] - distance[point];
+			double v0 = speeds[point];
+			double v1 = speeds[point + 1];
+			double tau = time - times[point];
+			double acceleration = ds > 0 ? (v1 * v1 - v0 * v0) / (2 * ds) : 0;
+			double fraction = ds > 0 ? Math.min(1, Math.max(0, (v0 * tau + 0.5 * acceleration * tau * tau) / ds)) : 0;
+			pathPose(waypoints, coefficients, arcLengths, segmentStart, distance[point] + fraction * ds, pose);
+			x[iiSample] = pose[0];
+			y[iiSample] = pose[1];
+			heading[iiSample] = pose[2];
+		}
+		// The trajectory ends exactly at the last waypoint
+		Waypoint last = waypoints[segments];
+		x[samples - 1] = last.x;
+		y[samples - 1] = last.y;
+		heading[samples - 1] = last.heading;
+		return Trajectory.fromPoses(hash(waypoints), period, x, y, heading, samples);
+	}
+
+	private static int segmentAt(double segmentStart[], double s) {
+		int segment = 0;
+		while (segment < segmentStart.length - 2 && s > segmentStart[segment + 1]) {
+			segment++;
+		}
+		return segment;
+	}
+
+	/**
+	 * Field x, y and heading at a distance along the path. Heading turns from one waypoint's heading to the next
+	 * along a quintic smoothstep in distance.
+	 */
+	private static void pathPose(Waypoint waypoints[], double coefficients[], double arcLengths[],
+			double segmentStart[], double s, double pose[]) {
+		int segment = segmentAt(segmentStart, s);
+		double local = s - segmentStart[segment];
+		double t = parameterAt(coefficients, segment * 12, arcLengths, segment * (ARC_LENGTH_STEPS + 1), local);
+		pose[0] = polynomial(coefficients, segment * 12, t);
+		pose[1] = polynomial(coefficients, segment * 12 + 6, t);
+		double u = Math.min(1, local / (segmentStart[segment + 1] - segmentStart[segment]));
+		double turn = waypoints[segment + 1].heading - waypoints[segment].heading;
+		pose[2] = waypoints[segment].heading + turn * u * u * u * (10 + u * (-15 + 6 * u));
+	}
+
+	/**
+	 * @return acceleration along the path left over from turning the corner at speed
+	 */
+	private double tangentialAcceleration(double speed, double curvature) {
+		double lateral = speed * speed * curvature;
+		return Math.sqrt(Math.max(0, maxAcceleration * maxAcceleration - lateral * lateral));
+	}
+
+	/**
+	 * Quintic Hermite with zero second derivative at both ends, as power series coefficients
+	 */
+	private static void setQuintic(double coefficients[], int offset, double p0, double v0, double p1, double v1) {
+		coefficients[offset] = p0;
+		coefficients[offset + 1] = v0;
+		coefficients[offset + 2] = 0;
+		coefficients[offset + 3] = -10 * p0 - 6 * v0 - 4 * v1 + 10 * p1;
+		coefficients[offset + 4] = 15 * p0 + 8 * v0 + 7 * v1 - 15 * p1;
+		coefficients[offset + 5] = -6 * p0 - 3 * v0 - 3 * v1 + 6 * p1;
+	}
+
+	private static double polynomial(double c[], int offset, double t) {
+		return c[offset] + t * (c[offset + 1] + t * (c[offset + 2] + t * (c[offset + 3] +
+				t * (c[offset + 4] + t * c[offset + 5]))));
+	}
+
+	private static double derivative(double c[], int offset, double t) {
+		return c[offset + 1] + t * (2 * c[offset + 2] + t * (3 * c[offset + 3] +
+				t * (4 * c[offset + 4] + t * 5 * c[offset + 5])));
+	}
+
+	private static double secondDerivative(double c[], int offset, double t) {
+		return 2 * c[offset + 2] + t * (6 * c[offset + 3] + t * (12 * c[offset + 4] + t * 20 * c[offset + 5]));
+	}
+
+	/**
+	 * @return distance along the spline per unit of parameter at t
+	 */
+	private static double speed(double c[], int offset, double t) {
+		return Math.hypot(derivative(c, offset, t), derivative(c, offset + 6, t));
+	}
+
+	/**
+	 * Spline parameter at a distance along a segment: interpolate the arc length table, then one Newton step.
+	 */
+	private static double parameterAt(double c[], int offset, double arcLengths[], int table, double length) {
+		int low = 0;
+		int high = ARC_LENGTH_STEPS;
+		while (high - low > 1) {
+			int middle = (low + high) >>> 1;
+			if (arcLengths[table + middle] <= length) {
+				low = middle;
+			} else {
+				high = middle;
+			}
+		}
+		double span = arcLengths[table + high] - arcLengths[table + low];
+		double fraction = span > 0 ? (length - arcLengths[table + low]) / span : 0;
+		double t = (low + fraction) / ARC_LENGTH_STEPS;
+		double speed = speed(c, offset, t);
+		if (speed > 0) {
+			// Arc length within the step by the trapezoid rule
+			double stepStart = (double) low / ARC_LENGTH_STEPS;
+			double s = arcLengths[table + low] + 0.5 * (t - stepStart) * (speed(c, offset, stepStart) + speed);
+			t += (length - s) / speed;
+		}
+		return Math.min(1, Math.max(0, t));
+	}
+
+}
@@ -0,0 +1,26 @@
+package org.usfirst.frc.team2339.Barracuda.hal;
+
+/**
+ * Quadrature encoder, scaled to distance units (degrees for steering encoders).
+ * 
+ * @author emiller
+ *
+ */
+public interface EncoderInput {
+
+	/**
+	 * @return distance since last reset
+	 */
+	public double getDistance();
+
+	/**
+	 * @return distance per second
+	 */
+	public double getRate();
+
+	/**
+	 * Make current position distance zero
+	 */
+	public void reset();
+
+}
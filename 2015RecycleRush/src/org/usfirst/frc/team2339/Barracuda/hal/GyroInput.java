@@ -0,0 +1,26 @@
+package org.usfirst.frc.team2339.Barracuda.hal;
+
+/**
+ * Yaw gyro. Angles are degrees, clockwise positive, and are not wrapped.
+ * 
+ * @author emiller
+ *
+ */
+public interface GyroInput {
+
+	/**
+	 * @return heading in degrees since last reset
+	 */
+	public double getAngle();
+
+	/**
+	 * @return degrees per second
+	 */
+	public double getRate();
+
+	/**
+	 * Make current heading zero
+	 */
+	public void reset();
+
+}
@@ -0,0 +1,47 @@
+package org.usfirst.frc.team2339.Barracuda.hal;
+
+import edu.wpi.first.wpilibj.SpeedController;
+
+/**
+ * Creates the robot's devices by channel number. {@link org.usfirst.frc.team2339.Barracuda.RobotMap} 
+ * builds everything through this, so the subsystems and commands above it do not know whether 
+ * they are running on the robot ({@link WpilibHardware}) or in a plain JVM ({@link SimulatedHardware}).
+ * 
+ * @author emiller
+ *
+ */
+public interface Hardware {
+
+	/**
+	 * @param pwm PWM channel
+	 * @return motor controller
+	 */
+	public SpeedController createMotor(int pwm);
+
+	/**
+	 * @param channelA first DIO channel
+	 * @param channelB second DIO channel
+	 * @param distancePerPulse distance units per encoder pulse
+	 * @return encoder
+	 */
+	public EncoderInput createEncoder(int channelA, int channelB, double distancePerPulse);
+
+	/**
+	 * @param channel analog input channel
+	 * @return gyro
+	 */
+	public GyroInput createGyro(int channel);
+
+	/**
+	 * @param channel DIO channel
+	 * @return digital input
+	 */
+	public SwitchInput createSwitch(int channel);
+
+	/**
+	 * @param port driver station USB port
+	 * @return joystick
+	 */
+	public JoystickInput createJoystick(int port);
+
+}
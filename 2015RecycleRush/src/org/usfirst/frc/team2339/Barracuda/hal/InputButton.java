@@ -0,0 +1,31 @@
+package org.usfirst.frc.team2339.Barracuda.hal;
+
+import edu.wpi.first.wpilibj.buttons.Button;
+
+/**
+ * Joystick button that commands can be bound to, for any {@link JoystickInput}.
+ * Replaces WPILib's JoystickButton, which only takes a WPILib joystick.
+ * 
+ * @author emiller
+ *
+ */
+public class InputButton extends Button {
+
+	private final JoystickInput joystick;
+	private final int button;
+
+	/**
+	 * @param joystick joystick the button is on
+	 * @param button button number, starting at 1
+	 */
+	public InputButton(JoystickInput joystick, int button) {
+		this.joystick = joystick;
+		this.button = button;
+	}
+
+	@Override
+	public boolean get() {
+		return joystick.getRawButton(button);
+	}
+
+}
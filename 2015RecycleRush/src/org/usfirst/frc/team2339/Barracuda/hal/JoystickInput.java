@@ -0,0 +1,23 @@
+package org.usfirst.frc.team2339.Barracuda.hal;
+
+/**
+ * Driver station joystick
+ * 
+ * @author emiller
+ *
+ */
+public interface JoystickInput {
+
+	/**
+	 * @param axis axis number, starting at 0
+	 * @return axis value from -1 to 1
+	 */
+	public double getRawAxis(int axis);
+
+	/**
+	 * @param button button number, starting at 1
+	 * @return true if pressed
+	 */
+	public boolean getRawButton(int button);
+
+}
@@ -0,0 +1,94 @@
+package org.usfirst.frc.team2339.Barracuda.hal;
+
+import edu.wpi.first.wpilibj.HLUsageReporting;
+import edu.wpi.first.wpilibj.Timer;
+
+/**
+ * WPILib time source set by a simulation or log replay, so code that reads the FPGA clock 
+ * (motor safety, command timing) sees simulated time rather than the development machine's clock.
+ * 
+ * @author emiller
+ *
+ */
+public class SimulatedClock implements Timer.StaticInterface {
+
+	private volatile double time = 0;
+
+	/**
+	 * Use this clock for WPILib time, and turn off usage reporting, which needs robot hardware.
+	 * Call before creating any subsystems or commands.
+	 */
+	public void install() {
+		HLUsageReporting.SetImplementation(new HLUsageReporting.Null());
+		Timer.SetImplementation(this);
+	}
+
+	/**
+	 * @param time seconds
+	 */
+	public void setTime(double time) {
+		this.time = time;
+	}
+
+	/**
+	 * @param seconds time to add
+	 */
+	public void advance(double seconds) {
+		time += seconds;
+	}
+
+	@Override
+	public double getFPGATimestamp() {
+		return time;
+	}
+
+	@Override
+	public double getMatchTime() {
+		return -1.0;
+	}
+
+	/**
+	 * Simulated time only moves when set, so there is nothing to wait for
+	 */
+	@Override
+	public void delay(double seconds) {
+	}
+
+	@Override
+	public Timer.Interface newTimer() {
+		return new Timer.Interface() {
+			private double startTime = time;
+			private double accumulated = 0;
+			private boolean running = false;
+
+			public double get() {
+				return running ? accumulated + time - startTime : accumulated;
+			}
+
+			public void reset() {
+				accumulated = 0;
+				startTime = time;
+			}
+
+			public void start() {
+				startTime = time;
+				running = true;
+			}
+
+			public void stop() {
+				accumulated = get();
+				running = false;
+			}
+
+			public boolean hasPeriodPassed(double period) {
+				if (get() > period) {
+					// Advance start by period so the timer does not drift
+					startTime += period;
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+}
@@ -0,0 +1,331 @@
+package org.usfirst.frc.team2339.Barracuda.hal;
+
+import edu.wpi.first.wpilibj.SpeedController;
+
+/**
+ * In-process robot devices for running subsystems and commands on a development machine.
+ *
+ * Devices hold values rather than talking to hardware. Motors keep the last output set, sensors
+ * return whatever a simulation (or a log replay) last put in them. Devices are looked up by the
+ * channel they were created on, so a simulation can find them from RobotMap channel numbers.
+ *
+ * Creating one installs its {@link SimulatedClock} as WPILib time.
+ *
+ * @author emiller
+ *
+ */
+public class SimulatedHardware implements Hardware {
+
+	public static final int PWM_CHANNELS = 20;
+	public static final int DIO_CHANNELS = 26;
+	public static final int ANALOG_CHANNELS = 8;
+	public static final int JOYSTICK_PORTS = 6;
+	public static final int JOYSTICK_AXES = 6;
+	public static final int JOYSTICK_BUTTONS = 12;
+
+	private final SimulatedClock clock = new SimulatedClock();
+	private final SimulatedMotor motors[] = new SimulatedMotor[PWM_CHANNELS];
+	// By channel A
+	private final SimulatedEncoder encoders[] = new SimulatedEncoder[DIO_CHANNELS];
+	private final SimulatedGyro gyros[] = new SimulatedGyro[ANALOG_CHANNELS];
+	private final SimulatedSwitch switches[] = new SimulatedSwitch[DIO_CHANNELS];
+	private final SimulatedJoystick joysticks[] = new SimulatedJoystick[JOYSTICK_PORTS];
+	// DIO channels used by encoders and switches
+	private final boolean dioUsed[] = new boolean[DIO_CHANNELS];
+
+	/**
+	 * Motor controller. Keeps the last value set.
+	 */
+	public static class SimulatedMotor implements SpeedController {
+		private final int channel;
+		private volatile double value = 0;
+
+		public SimulatedMotor(int channel) {
+			this.channel = channel;
+		}
+
+		public int getChannel() {
+			return channel;
+		}
+
+		@Override
+		public double get() {
+			return value;
+		}
+
+		@Override
+		public void set(double speed, byte syncGroup) {
+			set(speed);
+		}
+
+		@Override
+		public void set(double speed) {
+			value = Math.max(-1.0, Math.min(1.0, speed));
+		}
+
+		@Override
+		public void disable() {
+			value = 0;
+		}
+
+		@Override
+		public void pidWrite(double output) {
+			set(output);
+		}
+	}
+
+	/**
+	 * Encoder whose distance and rate are set by the simulation. 
+	 * Like a real encoder, reset zeroes the reading but not the position being measured.
+	 */
+	public static class SimulatedEncoder implements EncoderInput {
+		private final double distancePerPulse;
+		// Distance from start, before reset offset
+		private volatile double distance = 0;
+		private volatile double offset = 0;
+		private volatile double rate = 0;
+
+		public SimulatedEncoder(double distancePerPulse) {
+			this.distancePerPulse = distancePerPulse;
+		}
+
+		public double getDistancePerPulse() {
+			return distancePerPulse;
+		}
+
+		/**
+		 * Set the encoder from a measured position. The reading is whole pulses, as counted by the FPGA.
+		 * @param position distance moved since the encoder was created
+		 */
+		public void setPosition(double position) {
+			this.distance = Math.floor(position / distancePerPulse) * distancePerPulse;
+		}
+
+		/**
+		 * Set the reading exactly, e.g. from a log
+		 * @param distance distance the encoder reads until next set or reset
+		 */
+		public void setDistance(double distance) {
+			this.distance = distance + offset;
+		}
+
+		/**
+		 * @param rate distance per second
+		 */
+		public void setRate(double rate) {
+			this.rate = rate;
+		}
+
+		@Override
+		public double getDistance() {
+			return distance - offset;
+		}
+
+		@Override
+		public double getRate() {
+			return rate;
+		}
+
+		@Override
+		public void reset() {
+			offset = distance;
+		}
+	}
+
+	/**
+	 * Gyro whose angle and rate are set by the simulation. Reset zeroes the reading, not the heading being measured.
+	 */
+	public static class SimulatedGyro implements GyroInput {
+		// Heading before reset offset
+		private volatile double angle = 0;
+		private volatile double offset = 0;
+		private volatile double rate = 0;
+
+		/**
+		 * @param angle heading in degrees clockwise since the gyro was created
+		 */
+		public void setAngle(double angle) {
+			this.angle = angle;
+		}
+
+		/**
+		 * @param rate degrees per second clockwise
+		 */
+		public void setRate(double rate) {
+			this.rate = rate;
+		}
+
+		@Override
+		public double getAngle() {
+			return angle - offset;
+		}
+
+		@Override
+		public double getRate() {
+			return rate;
+		}
+
+		@Override
+		public void reset() {
+			offset = angle;
+		}
+	}
+
+	/**
+	 * Digital input. Reads true, as an open switch on a pulled up input does, until set.
+	 */
+	public static class SimulatedSwitch implements SwitchInput {
+		private volatile boolean value = true;
+
+		public void set(boolean value) {
+			this.value = value;
+		}
+
+		@Override
+		public boolean get() {
+			return value;
+		}
+	}
+
+	/**
+	 * Joystick with axes and buttons set by the simulation
+	 */
+	public static class SimulatedJoystick implements JoystickInput {
+		private final double axes[] = new double[JOYSTICK_AXES];
+		private final boolean buttons[] = new boolean[JOYSTICK_BUTTONS];
+
+		/**
+		 * @param axis axis number, starting at 0
+		 * @param value axis value from -1 to 1
+		 */
+		public void setRawAxis(int axis, double value) {
+			axes[axis] = value;
+		}
+
+		/**
+		 * @param button button number, starting at 1
+		 * @param pressed true if pressed
+		 */
+		public void setRawButton(int button, boolean pressed) {
+			buttons[button - 1] = pressed;
+		}
+
+		@Override
+		public double getRawAxis(int axis) {
+			return axis < axes.length ? axes[axis] : 0.0;
+		}
+
+		@Override
+		public boolean getRawButton(int button) {
+			return button >= 1 && button <= buttons.length && buttons[button - 1];
+		}
+	}
+
+	public SimulatedHardware() {
+		clock.install();
+	}
+
+	public SimulatedClock getClock() {
+		return clock;
+	}
+
+	private static void checkChannel(String type, int channel, int channels) {
+		if (channel < 0 || channel >= channels) {
+			throw new IllegalArgumentException(type + " channel " + channel + " is out of range");
+		}
+	}
+
+	private void allocateDio(int channel) {
+		checkChannel("DIO", channel, DIO_CHANNELS);
+		if (dioUsed[channel]) {
+			throw new IllegalArgumentException("DIO channel " + channel + " is already allocated");
+		}
+		dioUsed[channel] = true;
+	}
+
+	@Override
+	public SimulatedMotor createMotor(int pwm) {
+		checkChannel("PWM", pwm, PWM_CHANNELS);
+		if (motors[pwm] != null) {
+			throw new IllegalArgumentException("PWM channel " + pwm + " is already allocated");
+		}
+		motors[pwm] = new SimulatedMotor(pwm);
+		return motors[pwm];
+	}
+
+	@Override
+	public SimulatedEncoder createEncoder(int channelA, int channelB, double distancePerPulse) {
+		allocateDio(channelA);
+		allocateDio(channelB);
+		encoders[channelA] = new SimulatedEncoder(distancePerPulse);
+		return encoders[channelA];
+	}
+
+	@Override
+	public SimulatedGyro createGyro(int channel) {
+		checkChannel("Analog", channel, ANALOG_CHANNELS);
+		if (gyros[channel] != null) {
+			throw new IllegalArgumentException("Analog channel " + channel + " is already allocated");
+		}
+		gyros[channel] = new SimulatedGyro();
+		return gyros[channel];
+	}
+
+	@Override
+	public SimulatedSwitch createSwitch(int channel) {
+		allocateDio(channel);
+		switches[channel] = new SimulatedSwitch();
+		return switches[channel];
+	}
+
+	@Override
+	public SimulatedJoystick createJoystick(int port) {
+		checkChannel("Joystick", port, JOYSTICK_PORTS);
+		// Several objects may read the same driver station port
+		if (joysticks[port] == null) {
+			joysticks[port] = new SimulatedJoystick();
+		}
+		return joysticks[port];
+	}
+
+	/**
+	 * @param pwm PWM channel
+	 * @return motor created on channel, null if none
+	 */
+	public SimulatedMotor getMotor(int pwm) {
+		return motors[pwm];
+	}
+
+	/**
+	 * @param channelA encoder's first DIO channel
+	 * @return encoder created on channel, null if none
+	 */
+	public SimulatedEncoder getEncoder(int channelA) {
+		return encoders[channelA];
+	}
+
+	/**
+	 * @param channel analog channel
+	 * @return gyro created on channel, null if none
+	 */
+	public SimulatedGyro getGyro(int channel) {
+		return gyros[channel];
+	}
+
+	/**
+	 * @param channel DIO channel
+	 * @return switch created on channel, null if none
+	 */
+	public SimulatedSwitch getSwitch(int channel) {
+		return switches[channel];
+	}
+
+	/**
+	 * @param port driver station port
+	 * @return joystick on port, created if none yet
+	 */
+	public SimulatedJoystick getJoystick(int port) {
+		return createJoystick(port);
+	}
+
+}
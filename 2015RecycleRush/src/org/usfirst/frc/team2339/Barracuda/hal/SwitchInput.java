@@ -0,0 +1,16 @@
+package org.usfirst.frc.team2339.Barracuda.hal;
+
+/**
+ * Digital input such as a limit switch
+ * 
+ * @author emiller
+ *
+ */
+public interface SwitchInput {
+
+	/**
+	 * @return input value. Switches wired to the roboRIO's pulled up inputs read false when closed.
+	 */
+	public boolean get();
+
+}
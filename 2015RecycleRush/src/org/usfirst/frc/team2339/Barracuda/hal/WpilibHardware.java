@@ -0,0 +1,68 @@
+package org.usfirst.frc.team2339.Barracuda.hal;
+
+import edu.wpi.first.wpilibj.DigitalInput;
+import edu.wpi.first.wpilibj.Encoder;
+import edu.wpi.first.wpilibj.Gyro;
+import edu.wpi.first.wpilibj.Joystick;
+import edu.wpi.first.wpilibj.SpeedController;
+import edu.wpi.first.wpilibj.Talon;
+
+/**
+ * Robot devices from WPILib. Only works on the roboRIO.
+ * 
+ * @author emiller
+ *
+ */
+public class WpilibHardware implements Hardware {
+
+	public static class EncoderDevice extends Encoder implements EncoderInput {
+		public EncoderDevice(int channelA, int channelB, double distancePerPulse) {
+			super(channelA, channelB);
+			this.setDistancePerPulse(distancePerPulse);
+		}
+	}
+
+	public static class GyroDevice extends Gyro implements GyroInput {
+		public GyroDevice(int channel) {
+			super(channel);
+		}
+	}
+
+	public static class SwitchDevice extends DigitalInput implements SwitchInput {
+		public SwitchDevice(int channel) {
+			super(channel);
+		}
+	}
+
+	public static class JoystickDevice extends Joystick implements JoystickInput {
+		public JoystickDevice(int port) {
+			super(port);
+		}
+	}
+
+	@Override
+	public SpeedController createMotor(int pwm) {
+		return new Talon(pwm);
+	}
+
+	@Override
+	public EncoderInput createEncoder(int channelA, int channelB, double distancePerPulse) {
+		return new EncoderDevice(channelA, channelB, distancePerPulse);
+	}
+
+	@Override
+	public GyroInput createGyro(int channel) {
+		return new GyroDevice(channel);
+	}
+
+	@Override
+	public SwitchInput createSwitch(int channel) {
+		return new SwitchDevice(channel);
+	}
+
+	@Override
+	public JoystickInput createJoystick(int port) {
+		return new JoystickDevice(port);
+	}
+
+}
@@ -0,0 +1,368 @@
+package org.usfirst.frc.team2339.Barracuda.replay;
+
+import org.usfirst.frc.team2339.Barracuda.OI;
+import org.usfirst.frc.team2339.Barracuda.RobotMap;
+import org.usfirst.frc.team2339.Barracuda.commands.TeleopDrive;
+import org.usfirst.frc.team2339.Barracuda.components.SwerveSteeringLoop;
+import org.usfirst.frc.team2339.Barracuda.hal.SimulatedClock;
+import org.usfirst.frc.team2339.Barracuda.hal.SimulatedHardware;
+import org.usfirst.frc.team2339.Barracuda.hal.SimulatedHardware.SimulatedEncoder;
+import org.usfirst.frc.team2339.Barracuda.hal.SimulatedHardware.SimulatedMotor;
+import org.usfirst.frc.team2339.Barracuda.subsystems.SwerveDrive;
+import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveWheel.RectangularCoordinates;
+import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveWheel.RobotMotion;
+import org.usfirst.frc.team2339.Barracuda.telemetry.FlightLog;
+import org.usfirst.frc.team2339.Barracuda.telemetry.FlightRecorder.Record;
+
+/**
+ * Replays a flight log through {@link TeleopDrive}, {@link SwerveDrive} and the swerve wheels,
+ * and compares the drive's outputs with the logged ones.
+ *
+ * The drive is built by {@link RobotMap#createRobotDrive} on {@link SimulatedHardware}.
+ * Its steering loop is never updated, the logged encoder angles stand in for the wheels.
+ * Each teleop record's joystick axes, buttons, gyro angle, pivot and steering encoder angles are fed in,
+ * then the commanded motion and each wheel's raw and delta (sent) speed and angle are compared.
+ * Records from other modes are skipped. Nothing waits on a clock, so replay runs as fast as the math.
+ *
+ * Drive state (wheel flip state, setpoint cache) depends on history. {@link #seek(double)} replays a
+ * preroll before the seek time without comparing, to rebuild it.
+ *
+ * Times are seconds from the first record. A log spanning robot restarts is made continuous by
+ * treating each jump back in time as one control loop period.
+ *
+ * @author emiller
+ *
+ */
+public class ReplayEngine {
+
+	public static final double DEFAULT_PREROLL = 1.0;
+	public static final double DEFAULT_SPEED_TOLERANCE = 0.01;
+	public static final double DEFAULT_ANGLE_TOLERANCE = 0.5;
+	// Wheel angles are not compared when both speeds are below this
+	private static final double MIN_ANGLE_SPEED = 0.01;
+
+	private final FlightLog.Reader reader;
+	private final double times[];
+	private final SimulatedHardware hardware;
+	private final SimulatedClock clock;
+	private final SimulatedEncoder steeringEncoders[];
+	private final SwerveSteeringLoop steering;
+	private final SwerveDrive drive;
+	private final TeleopDrive teleopDrive;
+	private final int numberOfWheels;
+
+	private final Record logged;
+	private final Record replayed;
+	private int index = 0;
+	private double preroll = DEFAULT_PREROLL;
+	private double speedTolerance = DEFAULT_SPEED_TOLERANCE;
+	private double angleTolerance = DEFAULT_ANGLE_TOLERANCE;
+	private final Result result = new Result();
+
+	/**
+	 * Differences since the last {@link #resetResult()}
+	 */
+	public static class Result {
+		public int records = 0;
+		// Teleop records compared
+		public int compared = 0;
+		public int mismatches = 0;
+		// Index of first mismatched record, -1 if none
+		public int firstMismatch = -1;
+		public double maxSpeedError = 0;
+		public double maxAngleError = 0;
+		public double maxMotionError = 0;
+	}
+
+	/**
+	 * Create simulated hardware, which installs its clock, and build a drive on it.
+	 * @param reader log to replay
+	 */
+	public ReplayEngine(FlightLog.Reader reader) {
+		this.reader = reader;
+		if (reader.getRecordFormat() != Record.FORMAT_VERSION) {
+			throw new IllegalArgumentException("Log record format is " + reader.getRecordFormat() + ", replay reads " +
+					Record.FORMAT_VERSION);
+		}
+		this.numberOfWheels = Record.numberOfWheels(reader.getPayloadSize());
+		if (numberOfWheels != RobotMap.Constants.NUMBER_OF_WHEELS) {
+			throw new IllegalArgumentException("Log has " + numberOfWheels + " wheels, robot has " +
+					RobotMap.Constants.NUMBER_OF_WHEELS);
+		}
+		this.logged = new Record(numberOfWheels);
+		this.replayed = new Record(numberOfWheels);
+		this.times = new double[reader.size()];
+		readTimes();
+
+		hardware = new SimulatedHardware();
+		clock = hardware.getClock();
+		steering = RobotMap.createSteeringLoop(hardware);
+		drive = RobotMap.createRobotDrive(hardware, steering);
+		drive.enableSteering(true);
+		steeringEncoders = new SimulatedEncoder[numberOfWheels];
+		for (int iiWheel = 0; iiWheel < numberOfWheels; iiWheel++) {
+			steeringEncoders[iiWheel] = hardware.getEncoder(RobotMap.DIO.STEERING_ENCODERS_A[iiWheel]);
+		}
+		// Joystick and gyro are not used, inputs come from the log
+		teleopDrive = new TeleopDrive("Replay drive", drive, null, null);
+	}
+
+	private void readTimes() {
+		double period = 1.0 / RobotMap.Constants.CONTROL_LOOP_FREQUENCY;
+		long previous = 0;
+		for (int iiRecord = 0; iiRecord < times.length; iiRecord++) {
+			long timestamp = reader.getPayload(iiRecord).getLong(0);
+			if (iiRecord == 0) {
+				times[iiRecord] = 0;
+			} else {
+				double step = (timestamp - previous) * 1e-9;
+				times[iiRecord] = times[iiRecord - 1] + (step >= 0 ? step : period);
+			}
+			previous = timestamp;
+		}
+	}
+
+	/**
+	 * @return number of records in log
+	 */
+	public int size() {
+		return times.length;
+	}
+
+	/**
+	 * @return index of next record to replay
+	 */
+	public int getIndex() {
+		return index;
+	}
+
+	/**
+	 * @param index record index
+	 * @return seconds from first record
+	 */
+	public double getTime(int index) {
+		return times[index];
+	}
+
+	/**
+	 * @return seconds from first record to last
+	 */
+	public double getDuration() {
+		return times.length > 0 ? times[times.length - 1] : 0;
+	}
+
+	/**
+	 * @param time seconds from first record
+	 * @return index of first record at or after time, {@link #size()} if none
+	 */
+	public int indexAt(double time) {
+		int low = 0;
+		int high = times.length;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (times[middle] < time) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Position replay at a time. Steering state is reset and the preroll before time is replayed
+	 * without comparing.
+	 * @param time seconds from first record
+	 */
+	public void seek(double time) {
+		int target = indexAt(time);
+		drive.resetSteering();
+		drive.enableSteering(true);
+		for (index = indexAt(time - preroll); index < target; index++) {
+			replay(index, false);
+		}
+	}
+
+	/**
+	 * Replay and compare next record
+	 * @return false if the record did not match the log
+	 */
+	public boolean step() {
+		return replay(index++, true);
+	}
+
+	/**
+	 * Replay and compare records up to a time
+	 * @param time seconds from first record, inclusive
+	 * @return result since last reset
+	 */
+	public Result run(double time) {
+		while (index < times.length && times[index] <= time) {
+			step();
+		}
+		return result;
+	}
+
+	/**
+	 * Replay and compare rest of log
+	 * @return result since last reset
+	 */
+	public Result runToEnd() {
+		while (index < times.length) {
+			step();
+		}
+		return result;
+	}
+
+	private boolean replay(int recordIndex, boolean compare) {
+		logged.read(reader.getPayload(recordIndex));
+		clock.setTime(times[recordIndex]);
+		if (compare) {
+			result.records++;
+		}
+		if (logged.mode != Record.MODE_TELEOP) {
+			return true;
+		}
+
+		RectangularCoordinates pivot = drive.getPivot();
+		if (pivot.x != logged.pivotX || pivot.y != logged.pivotY) {
+			drive.setPivot(new RectangularCoordinates(logged.pivotX, logged.pivotY));
+		}
+		for (int iiWheel = 0; iiWheel < numberOfWheels; iiWheel++) {
+			steeringEncoders[iiWheel].setDistance(logged.encoderAngles[iiWheel]);
+		}
+		teleopDrive.drive(logged.strafe, logged.frontBack, logged.rotate,
+				logged.getButton(OI.DRIVE_BUTTON_SPEED_SHIFT),
+				logged.getButton(OI.DRIVE_BUTTON_ABSOLUTE_GYRO_MODE),
+				logged.gyroAngle);
+		if (!compare) {
+			return true;
+		}
+		return compare(recordIndex);
+	}
+
+	private boolean compare(int recordIndex) {
+		RobotMotion motion = drive.getCommandedMotion();
+		drive.getWheelState(replayed.rawSpeeds, replayed.rawAngles,
+				replayed.deltaSpeeds, replayed.deltaAngles, replayed.encoderAngles);
+		double motionError = Math.max(difference(motion.strafe, logged.motionStrafe),
+				Math.max(difference(motion.frontBack, logged.motionFrontBack),
+						difference(motion.rotate, logged.motionRotate)));
+		double speedError = 0;
+		double angleError = 0;
+		for (int iiWheel = 0; iiWheel < numberOfWheels; iiWheel++) {
+			speedError = Math.max(speedError, Math.max(
+					difference(replayed.rawSpeeds[iiWheel], logged.rawSpeeds[iiWheel]),
+					difference(replayed.deltaSpeeds[iiWheel], logged.deltaSpeeds[iiWheel])));
+			angleError = Math.max(angleError, angleDifference(
+					replayed.rawSpeeds[iiWheel], replayed.rawAngles[iiWheel],
+					logged.rawSpeeds[iiWheel], logged.rawAngles[iiWheel]));
+			angleError = Math.max(angleError, angleDifference(
+					replayed.deltaSpeeds[iiWheel], replayed.deltaAngles[iiWheel],
+					logged.deltaSpeeds[iiWheel], logged.deltaAngles[iiWheel]));
+		}
+
+		result.compared++;
+		result.maxMotionError = Math.max(result.maxMotionError, motionError);
+		result.maxSpeedError = Math.max(result.maxSpeedError, speedError);
+		result.maxAngleError = Math.max(result.maxAngleError, angleError);
+		boolean matches = motionError <= speedTolerance && speedError <= speedTolerance &&
+				angleError <= angleTolerance;
+		if (!matches) {
+			result.mismatches++;
+			if (result.firstMismatch < 0) {
+				result.firstMismatch = recordIndex;
+			}
+		}
+		return matches;
+	}
+
+	/**
+	 * @return absolute difference, zero if both are NaN, infinite if only one is
+	 */
+	private static double difference(double a, double b) {
+		if (Double.isNaN(a) || Double.isNaN(b)) {
+			return Double.isNaN(a) && Double.isNaN(b) ? 0 : Double.POSITIVE_INFINITY;
+		}
+		return Math.abs(a - b);
+	}
+
+	/**
+	 * @return difference of wheel angles in degrees, zero if neither wheel is moving
+	 */
+	private static double angleDifference(double speedA, double angleA, double speedB, double angleB) {
+		if (Math.abs(speedA) < MIN_ANGLE_SPEED && Math.abs(speedB) < MIN_ANGLE_SPEED) {
+			return 0;
+		}
+		double difference = Math.abs(angleA - angleB) % 360.0;
+		return difference > 180.0 ? 360.0 - difference : difference;
+	}
+
+	public Result getResult() {
+		return result;
+	}
+
+	public void resetResult() {
+		result.records = 0;
+		result.compared = 0;
+		result.mismatches = 0;
+		result.firstMismatch = -1;
+		result.maxSpeedError = 0;
+		result.maxAngleError = 0;
+		result.maxMotionError = 0;
+	}
+
+	/**
+	 * @return record last read from the log
+	 */
+	public Record getLogged() {
+		return logged;
+	}
+
+	/**
+	 * @return drive being replayed through
+	 */
+	public SwerveDrive getDrive() {
+		return drive;
+	}
+
+	/**
+	 * @return simulated devices the drive is built on
+	 */
+	public SimulatedHardware getHardware() {
+		return hardware;
+	}
+
+	/**
+	 * @param wheelNumber wheel number
+	 * @return simulated drive motor, holds last speed sent
+	 */
+	public SimulatedMotor getDriveController(int wheelNumber) {
+		return hardware.getMotor(RobotMap.PWM.DRIVE_CONTROLLERS[wheelNumber]);
+	}
+
+	/**
+	 * @param wheelNumber wheel number
+	 * @return wheel's steering controller, holds last setpoint sent
+	 */
+	public SwerveSteeringLoop.Module getSteeringController(int wheelNumber) {
+		return steering.getModule(wheelNumber);
+	}
+
+	/**
+	 * @param preroll seconds replayed before a seek time to rebuild drive state
+	 */
+	public void setPreroll(double preroll) {
+		this.preroll = preroll;
+	}
+
+	/**
+	 * @param speedTolerance largest wheel speed or commanded motion difference that matches
+	 * @param angleTolerance largest wheel angle difference in degrees that matches
+	 */
+	public void setTolerance(double speedTolerance, double angleTolerance) {
+		this.speedTolerance = speedTolerance;
+		this.angleTolerance = angleTolerance;
+	}
+
+}
@@ -0,0 +1,307 @@
+package org.usfirst.frc.team2339.Barracuda.simulation;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.usfirst.frc.team2339.Barracuda.RobotMap;
+import org.usfirst.frc.team2339.Barracuda.components.SwerveSteeringLoop;
+import org.usfirst.frc.team2339.Barracuda.hal.EncoderInput;
+import org.usfirst.frc.team2339.Barracuda.hal.SimulatedHardware.SimulatedEncoder;
+import org.usfirst.frc.team2339.Barracuda.hal.SimulatedHardware.SimulatedMotor;
+import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveWheel;
+
+import edu.wpi.first.wpilibj.SpeedController;
+
+/**
+ * Searches steering PID gains against {@link SwerveModuleSimulation}.
+ *
+ * Each candidate runs a fixed test suite on its own simulated module, encoder and one wheel {@link SwerveSteeringLoop}:
+ * steps of 10, 45, 90 and -60 degrees, a 20 degree step across the -180/180 seam, and a 180 degree per second
+ * ramp. Steps are scored on settling time (to within {@link #SETTLE_BAND}), overshoot and steady state error
+ * (mean error over the last quarter second). The ramp is scored on RMS tracking error.
+ * Lower cost is better, see the WEIGHT constants.
+ *
+ * Gains are in the steering loop's form (PIDController gains for {@link SwerveSteeringLoop#GAIN_PERIOD},
+ * scaled to the controller period), so they go straight into RobotMap.
+ *
+ * Candidates are independent, so a grid is scored with fork-join across all cores. {@link #tune()} scores a
+ * coarse grid, then a finer grid around the best candidate.
+ *
+ * @author emiller
+ *
+ */
+public class SteeringPidTuner {
+
+	// Degrees. Steps are settled once error stays within this.
+	public static final double SETTLE_BAND = 2.0;
+	public static final double STEP_TIME = 1.5;
+	public static final double STEADY_STATE_TIME = 0.25;
+	public static final double RAMP_RATE = 180.0;
+	// Cost per degree of overshoot, steady state error and RMS ramp error, in seconds of settling time
+	public static final double OVERSHOOT_WEIGHT = 0.01;
+	public static final double STEADY_STATE_WEIGHT = 0.05;
+	public static final double RAMP_WEIGHT = 0.02;
+	// Candidates scored by one fork-join task
+	private static final int CANDIDATES_PER_TASK = 4;
+
+	private static final double STEP_STARTS[] = {0.0, 0.0, 0.0, 0.0, 170.0};
+	private static final double STEP_TARGETS[] = {10.0, 45.0, 90.0, -60.0, -170.0};
+
+	private final double dt;
+	private final double controllerPeriod;
+	private final ForkJoinPool pool;
+
+	/**
+	 * Gains and their test suite results
+	 */
+	public static class Score {
+		public final double p;
+		public final double i;
+		public final double d;
+		public double cost = 0;
+		// Step results summed over steps
+		public double settlingTime = 0;
+		public double overshoot = 0;
+		public double steadyStateError = 0;
+		// Steps that never settled
+		public int unsettled = 0;
+		public double rampError = 0;
+
+		public Score(double p, double i, double d) {
+			this.p = p;
+			this.i = i;
+			this.d = d;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("P %.4f I %.5f D %.4f: cost %.3f, settling %.2f s (%d unsettled), " +
+					"overshoot %.1f deg, steady state error %.2f deg, ramp RMS error %.1f deg",
+					p, i, d, cost, settlingTime, unsettled, overshoot, steadyStateError, rampError);
+		}
+	}
+
+	private static final Comparator<Score> BY_COST = new Comparator<Score>() {
+		public int compare(Score a, Score b) {
+			return Double.compare(a.cost, b.cost);
+		}
+	};
+
+	/**
+	 * Tune for the robot's steering as it runs now: 1 ms physics, control loop period, all cores
+	 */
+	public SteeringPidTuner() {
+		this(SwerveRobotSimulation.DEFAULT_TIME_STEP, SwerveRobotSimulation.CONTROLLER_PERIOD,
+				new ForkJoinPool(Runtime.getRuntime().availableProcessors()));
+	}
+
+	/**
+	 * @param dt physics time step in seconds
+	 * @param controllerPeriod seconds between PID calculations
+	 * @param pool pool candidates are scored on
+	 */
+	public SteeringPidTuner(double dt, double controllerPeriod, ForkJoinPool pool) {
+		this.dt = dt;
+		this.controllerPeriod = controllerPeriod;
+		this.pool = pool;
+	}
+
+	/**
+	 * One candidate's module, sensors and controller
+	 */
+	private class Rig {
+		final SwerveModuleSimulation module = new SwerveModuleSimulation(dt, RobotMap.Constants.MAX_WHEEL_SPEED);
+		final SimulatedEncoder encoder = new SimulatedEncoder(RobotMap.Constants.STEERING_ENC_DEGREES_PER_PULSE);
+		final SimulatedMotor motor = new SimulatedMotor(0);
+		final SwerveSteeringLoop steering;
+		final SwerveSteeringLoop.Module controller;
+		final int stepsPerUpdate = Math.max(1, (int) Math.round(controllerPeriod / dt));
+
+		Rig(Score score) {
+			steering = new SwerveSteeringLoop(new EncoderInput[] {encoder}, new SpeedController[] {motor},
+					score.p, score.i, score.d, controllerPeriod);
+			controller = steering.getModule(0);
+		}
+
+		void start(double angle, double setpoint) {
+			controller.reset();
+			module.reset(angle);
+			encoder.setPosition(angle);
+			controller.setSetpoint(setpoint);
+			controller.enable();
+		}
+
+		/**
+		 * @param iiStep physics step number since start
+		 * @return steering angle after step
+		 */
+		double step(int iiStep) {
+			if (iiStep % stepsPerUpdate == 0) {
+				steering.update(iiStep * dt);
+			}
+			module.step(motor.get(), 0.0);
+			encoder.setPosition(module.getSteeringAngle());
+			return module.getSteeringAngle();
+		}
+	}
+
+	/**
+	 * Run the test suite
+	 * @param p proportional gain
+	 * @param i integral gain
+	 * @param d derivative gain
+	 * @return score
+	 */
+	public Score evaluate(double p, double i, double d) {
+		Score score = new Score(p, i, d);
+		evaluate(score);
+		return score;
+	}
+
+	private void evaluate(Score score) {
+		Rig rig = new Rig(score);
+		int steps = (int) Math.round(STEP_TIME / dt);
+		int steadySteps = (int) Math.round(STEADY_STATE_TIME / dt);
+		for (int iiTest = 0; iiTest < STEP_STARTS.length; iiTest++) {
+			double start = STEP_STARTS[iiTest];
+			double target = STEP_TARGETS[iiTest];
+			// Shortest way round, as the continuous controller goes
+			double distance = SwerveWheel.wrapAngle(target - start);
+			double direction = Math.signum(distance);
+			double end = start + distance;
+			rig.start(start, target);
+			int lastOutside = -1;
+			double overshoot = 0;
+			double steadyError = 0;
+			for (int iiStep = 0; iiStep < steps; iiStep++) {
+				double angle = rig.step(iiStep);
+				double error = end - angle;
+				if (Math.abs(error) > SETTLE_BAND) {
+					lastOutside = iiStep;
+				}
+				overshoot = Math.max(overshoot, -error * direction);
+				if (iiStep >= steps - steadySteps) {
+					steadyError += Math.abs(error);
+				}
+			}
+			if (lastOutside == steps - 1) {
+				score.unsettled++;
+			}
+			score.settlingTime += (lastOutside + 1) * dt;
+			score.overshoot += overshoot;
+			score.steadyStateError += steadyError / steadySteps;
+		}
+
+		// Ramp from -90 to 90, setpoint updated at each PID calculation
+		int rampSteps = (int) Math.round(180.0 / RAMP_RATE / dt);
+		rig.start(-90.0, -90.0);
+		double sumSquares = 0;
+		for (int iiStep = 0; iiStep < rampSteps; iiStep++) {
+			double setpoint = -90.0 + RAMP_RATE * iiStep * dt;
+			if (iiStep % rig.stepsPerUpdate == 0) {
+				rig.controller.setSetpoint(setpoint);
+			}
+			double error = setpoint - rig.step(iiStep);
+			sumSquares += error * error;
+		}
+		score.rampError = Math.sqrt(sumSquares / rampSteps);
+
+		score.cost = score.settlingTime + OVERSHOOT_WEIGHT * score.overshoot +
+				STEADY_STATE_WEIGHT * score.steadyStateError + RAMP_WEIGHT * score.rampError;
+	}
+
+	private class ScoreTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final Score scores[];
+		private final int from;
+		private final int to;
+
+		ScoreTask(Score scores[], int from, int to) {
+			this.scores = scores;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= CANDIDATES_PER_TASK) {
+				for (int iiScore = from; iiScore < to; iiScore++) {
+					evaluate(scores[iiScore]);
+				}
+			} else {
+				int middle = (from + to) >>> 1;
+				invokeAll(new ScoreTask(scores, from, middle), new ScoreTask(scores, middle, to));
+			}
+		}
+	}
+
+	/**
+	 * Score every combination of gains
+	 * @param pValues proportional gains
+	 * @param iValues integral gains
+	 * @param dValues derivative gains
+	 * @return scores, best first
+	 */
+	public Score[] search(double pValues[], double iValues[], double dValues[]) {
+		Score scores[] = new Score[pValues.length * iValues.length * dValues.length];
+		int count = 0;
+		for (double p : pValues) {
+			for (double i : iValues) {
+				for (double d : dValues) {
+					scores[count++] = new Score(p, i, d);
+				}
+			}
+		}
+		pool.invoke(new ScoreTask(scores, 0, scores.length));
+		Arrays.sort(scores, BY_COST);
+		return scores;
+	}
+
+	/**
+	 * @return count values from first to last, evenly spaced on a log scale, with zero first if includeZero
+	 */
+	public static double[] logSpace(double first, double last, int count, boolean includeZero) {
+		int offset = includeZero ? 1 : 0;
+		double values[] = new double[count + offset];
+		for (int iiValue = 0; iiValue < count; iiValue++) {
+			values[iiValue + offset] = count > 1 ?
+					first * Math.pow(last / first, (double) iiValue / (count - 1)) : first;
+		}
+		return values;
+	}
+
+	/**
+	 * @return values around center spaced by factor, zero kept at zero
+	 */
+	private static double[] around(double center, double factor, double zeroNeighbor) {
+		if (center == 0) {
+			return new double[] {0, zeroNeighbor / factor, zeroNeighbor};
+		}
+		return new double[] {center / factor, center / Math.sqrt(factor), center,
+				center * Math.sqrt(factor), center * factor};
+	}
+
+	/**
+	 * Coarse log grid, then a finer grid around the best
+	 * @return scores of the fine grid, best first
+	 */
+	public Score[] tune() {
+		double pValues[] = logSpace(0.005, 0.2, 12, false);
+		double iValues[] = logSpace(0.0002, 0.01, 6, true);
+		double dValues[] = logSpace(0.005, 0.2, 6, true);
+		Score coarse = search(pValues, iValues, dValues)[0];
+		return search(around(coarse.p, 1.4, pValues[0]), around(coarse.i, 1.5, iValues[1]),
+				around(coarse.d, 1.5, dValues[1]));
+	}
+
+	public double getControllerPeriod() {
+		return controllerPeriod;
+	}
+
+	public ForkJoinPool getPool() {
+		return pool;
+	}
+
+}
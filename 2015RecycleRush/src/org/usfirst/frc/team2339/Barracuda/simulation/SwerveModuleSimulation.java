@@ -0,0 +1,145 @@
+package org.usfirst.frc.team2339.Barracuda.simulation;
+
+/**
+ * Physics of one swerve module, stepped at a fixed time step.
+ *
+ * Steering is a DC motor turning the module's inertia: motor torque falls linearly from stall torque at rest
+ * to zero at free speed, less Coulomb friction from the tire scrubbing on the floor. A module at rest stays
+ * at rest until motor torque overcomes friction, which is what leaves a proportional-only steering loop
+ * short of its setpoint.
+ *
+ * Drive wheel surface speed approaches output times max wheel speed with a first order lag,
+ * standing in for the drive motor accelerating its share of the robot's mass.
+ *
+ * Angles are degrees, same convention as wheel angles in SwerveKinematics. Speeds are distance units per second.
+ *
+ * @author emiller
+ *
+ */
+public class SwerveModuleSimulation {
+
+	/*
+	 * Estimated, not measured. AndyMark am-2971 (71:1 gearmotor, 75 rpm free) through 22:32 gears gives
+	 * about 310 degrees per second free speed. Stall torque and inertia are at the steering axis, inertia
+	 * is mostly the motor rotor reflected through the gearing.
+	 */
+	public static final double STEERING_STALL_TORQUE = 3.0;
+	public static final double STEERING_FREE_SPEED = 310.0;
+	public static final double STEERING_INERTIA = 0.02;
+	public static final double STEERING_FRICTION = 0.3;
+	// Seconds for drive wheel to reach 63% of a speed step
+	public static final double DRIVE_TIME_CONSTANT = 0.1;
+
+	private final double dt;
+	// Steering angular acceleration at stall, radians per second squared
+	private final double stallAcceleration;
+	private final double frictionAcceleration;
+	// Radians per second
+	private final double freeSpeed;
+	private final double maxWheelSpeed;
+	// Fraction of remaining speed error removed each step
+	private final double driveResponse;
+
+	// Radians and radians per second
+	private double steeringAngle = 0;
+	private double steeringRate = 0;
+	private double wheelSpeed = 0;
+	private double wheelDistance = 0;
+
+	/**
+	 * Module with the estimated constants above
+	 * @param dt time step in seconds
+	 * @param maxWheelSpeed wheel surface speed at full drive output, e.g. RobotMap MAX_WHEEL_SPEED
+	 */
+	public SwerveModuleSimulation(double dt, double maxWheelSpeed) {
+		this(dt, maxWheelSpeed, STEERING_STALL_TORQUE, STEERING_FREE_SPEED, STEERING_INERTIA,
+				STEERING_FRICTION, DRIVE_TIME_CONSTANT);
+	}
+
+	/**
+	 * @param dt time step in seconds
+	 * @param maxWheelSpeed wheel surface speed at full drive output
+	 * @param steeringStallTorque steering torque at full output and zero speed, newton meters
+	 * @param steeringFreeSpeed steering speed at full output and no load, degrees per second
+	 * @param steeringInertia moment of inertia about the steering axis, kilogram square meters
+	 * @param steeringFriction friction torque opposing steering, newton meters
+	 * @param driveTimeConstant drive speed response time constant, seconds
+	 */
+	public SwerveModuleSimulation(double dt, double maxWheelSpeed,
+			double steeringStallTorque, double steeringFreeSpeed, double steeringInertia,
+			double steeringFriction, double driveTimeConstant) {
+		this.dt = dt;
+		this.maxWheelSpeed = maxWheelSpeed;
+		this.stallAcceleration = steeringStallTorque / steeringInertia;
+		this.frictionAcceleration = steeringFriction / steeringInertia;
+		this.freeSpeed = Math.toRadians(steeringFreeSpeed);
+		this.driveResponse = 1.0 - Math.exp(-dt / driveTimeConstant);
+	}
+
+	/**
+	 * Advance one time step with motor outputs held
+	 * @param steeringOutput steering motor output, -1 to 1
+	 * @param driveOutput drive motor output, -1 to 1
+	 */
+	public void step(double steeringOutput, double driveOutput) {
+		double motorAcceleration = stallAcceleration * (steeringOutput - steeringRate / freeSpeed);
+		if (steeringRate == 0 && Math.abs(motorAcceleration) <= frictionAcceleration) {
+			// Static friction holds
+		} else {
+			double direction = steeringRate != 0 ? Math.signum(steeringRate) : Math.signum(motorAcceleration);
+			double newRate = steeringRate + (motorAcceleration - direction * frictionAcceleration) * dt;
+			if (newRate * direction < 0 && Math.abs(motorAcceleration) <= frictionAcceleration) {
+				// Friction stops the module, it does not reverse it
+				newRate = 0;
+			}
+			steeringRate = newRate;
+			steeringAngle += steeringRate * dt;
+		}
+
+		wheelSpeed += (driveOutput * maxWheelSpeed - wheelSpeed) * driveResponse;
+		wheelDistance += wheelSpeed * dt;
+	}
+
+	/**
+	 * Put module at rest at an angle
+	 * @param angle steering angle in degrees
+	 */
+	public void reset(double angle) {
+		steeringAngle = Math.toRadians(angle);
+		steeringRate = 0;
+		wheelSpeed = 0;
+	}
+
+	/**
+	 * @return steering angle in degrees. Not normalized, it counts turns as the encoder does.
+	 */
+	public double getSteeringAngle() {
+		return Math.toDegrees(steeringAngle);
+	}
+
+	/**
+	 * @return steering rate in degrees per second
+	 */
+	public double getSteeringRate() {
+		return Math.toDegrees(steeringRate);
+	}
+
+	/**
+	 * @return wheel surface speed, positive in the direction of the steering angle
+	 */
+	public double getWheelSpeed() {
+		return wheelSpeed;
+	}
+
+	/**
+	 * @return distance the wheel surface has rolled
+	 */
+	public double getWheelDistance() {
+		return wheelDistance;
+	}
+
+	public double getTimeStep() {
+		return dt;
+	}
+
+}
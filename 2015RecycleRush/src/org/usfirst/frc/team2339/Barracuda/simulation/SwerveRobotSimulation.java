@@ -0,0 +1,253 @@
+package org.usfirst.frc.team2339.Barracuda.simulation;
+
+import org.usfirst.frc.team2339.Barracuda.RobotMap;
+import org.usfirst.frc.team2339.Barracuda.components.SwerveSteeringLoop;
+import org.usfirst.frc.team2339.Barracuda.hal.SimulatedHardware;
+import org.usfirst.frc.team2339.Barracuda.hal.SimulatedHardware.SimulatedEncoder;
+import org.usfirst.frc.team2339.Barracuda.hal.SimulatedHardware.SimulatedGyro;
+import org.usfirst.frc.team2339.Barracuda.hal.SimulatedHardware.SimulatedMotor;
+import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveForwardKinematics;
+import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveKinematics;
+import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveModuleLayout;
+import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveOdometry;
+import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveTrig;
+
+/**
+ * Physics of the whole robot on {@link SimulatedHardware} built by RobotMap.
+ *
+ * Each step reads the simulated steering and drive motors, steps each {@link SwerveModuleSimulation},
+ * writes the steering encoders (in whole pulses of STEERING_ENC_DEGREES_PER_PULSE) and gyro,
+ * and advances the simulated clock. The steering loop is updated every {@link #CONTROLLER_PERIOD},
+ * as the control loop does on the robot. Motor outputs can reach the modules after a delay
+ * ({@link #setOutputDelay(double)}), as PWM and motor controllers take on the robot; none by default.
+ *
+ * The chassis is a rigid body that does not let the wheels slip, so its motion is the least squares fit
+ * to the module velocities, which is what {@link SwerveForwardKinematics} solves. Wheels that disagree
+ * (e.g. while steering) scrub rather than tear the robot apart. The pose is integrated at the heading
+ * midway through each step.
+ *
+ * Field coordinates match {@link SwerveOdometry}: x right, y forward, heading degrees clockwise. No allocation
+ * after construction.
+ *
+ * @author emiller
+ *
+ */
+public class SwerveRobotSimulation {
+
+	// Control loop period, seconds
+	public static final double CONTROLLER_PERIOD = 1.0 / RobotMap.Constants.CONTROL_LOOP_FREQUENCY;
+	// Default physics step, seconds
+	public static final double DEFAULT_TIME_STEP = 0.001;
+
+	private final SimulatedHardware hardware;
+	private final SwerveSteeringLoop steering;
+	private final double dt;
+	private final int numberOfWheels;
+	private final SwerveModuleSimulation modules[];
+	private final SimulatedMotor steeringMotors[];
+	private final SimulatedMotor driveMotors[];
+	private final SimulatedEncoder steeringEncoders[];
+	private final SimulatedGyro gyro;
+	private final SwerveOdometry chassis;
+	private final double maxWheelSpeed;
+	private final double speeds[];
+	private final double angles[];
+	private final int stepsPerControllerUpdate;
+	private int stepsToControllerUpdate = 0;
+	private double time = 0;
+	// Delay line of motor outputs, delaySteps + 1 per wheel
+	private int delaySteps = 0;
+	private double delayedSteering[];
+	private double delayedDrive[];
+	private int delayNext = 0;
+
+	/**
+	 * Simulate robot at RobotMap wheel positions and channels, with default time step and module constants
+	 * @param hardware hardware the robot was built on by RobotMap
+	 * @param steering steering loop RobotMap built, null to leave steering motors to the caller
+	 */
+	public SwerveRobotSimulation(SimulatedHardware hardware, SwerveSteeringLoop steering) {
+		this(hardware, steering, DEFAULT_TIME_STEP);
+	}
+
+	/**
+	 * @param hardware hardware the robot was built on by RobotMap
+	 * @param steering steering loop RobotMap built, null to leave steering motors to the caller
+	 * @param dt physics time step in seconds. Should divide {@link #CONTROLLER_PERIOD} evenly.
+	 */
+	public SwerveRobotSimulation(SimulatedHardware hardware, SwerveSteeringLoop steering, double dt) {
+		this.hardware = hardware;
+		this.steering = steering;
+		this.dt = dt;
+		this.maxWheelSpeed = RobotMap.Constants.MAX_WHEEL_SPEED;
+		numberOfWheels = RobotMap.Constants.NUMBER_OF_WHEELS;
+		modules = new SwerveModuleSimulation[numberOfWheels];
+		steeringMotors = new SimulatedMotor[numberOfWheels];
+		driveMotors = new SimulatedMotor[numberOfWheels];
+		steeringEncoders = new SimulatedEncoder[numberOfWheels];
+		for (int iiWheel = 0; iiWheel < numberOfWheels; iiWheel++) {
+			modules[iiWheel] = new SwerveModuleSimulation(dt, maxWheelSpeed);
+			steeringMotors[iiWheel] = hardware.getMotor(RobotMap.PWM.STEERING_CONTROLLERS[iiWheel]);
+			driveMotors[iiWheel] = hardware.getMotor(RobotMap.PWM.DRIVE_CONTROLLERS[iiWheel]);
+			steeringEncoders[iiWheel] = hardware.getEncoder(RobotMap.DIO.STEERING_ENCODERS_A[iiWheel]);
+			if (steeringMotors[iiWheel] == null || driveMotors[iiWheel] == null || steeringEncoders[iiWheel] == null) {
+				throw new IllegalStateException("Wheel " + iiWheel + " devices have not been created, call RobotMap first");
+			}
+		}
+		gyro = hardware.getGyro(RobotMap.Analog.GYRO);
+		SwerveKinematics kinematics = new SwerveKinematics(SwerveModuleLayout.rectangle(
+				RobotMap.Constants.WHEEL_BASE_LENGTH, RobotMap.Constants.WHEEL_BASE_WIDTH), SwerveTrig.STANDARD);
+		chassis = new SwerveOdometry(new SwerveForwardKinematics(
+				kinematics.getGeometry(), SwerveKinematics.PIVOT_CENTER, SwerveTrig.STANDARD), maxWheelSpeed);
+		speeds = new double[numberOfWheels];
+		angles = new double[numberOfWheels];
+		stepsPerControllerUpdate = Math.max(1, (int) Math.round(CONTROLLER_PERIOD / dt));
+		setOutputDelay(0.0);
+	}
+
+	/**
+	 * Delay motor outputs before they reach the modules. Outputs during the delay are zero.
+	 * @param seconds delay, rounded to whole physics steps
+	 */
+	public void setOutputDelay(double seconds) {
+		delaySteps = Math.max(0, (int) Math.round(seconds / dt));
+		delayedSteering = new double[numberOfWheels * (delaySteps + 1)];
+		delayedDrive = new double[numberOfWheels * (delaySteps + 1)];
+		delayNext = 0;
+	}
+
+	/**
+	 * @return motor output delay in seconds
+	 */
+	public double getOutputDelay() {
+		return delaySteps * dt;
+	}
+
+	/**
+	 * Advance one physics step
+	 */
+	public void step() {
+		if (stepsToControllerUpdate <= 0) {
+			if (steering != null) {
+				steering.update(time);
+			}
+			stepsToControllerUpdate = stepsPerControllerUpdate;
+		}
+		stepsToControllerUpdate--;
+
+		int length = delaySteps + 1;
+		int delayed = (delayNext + 1) % length;
+		for (int iiWheel = 0; iiWheel < numberOfWheels; iiWheel++) {
+			SwerveModuleSimulation module = modules[iiWheel];
+			int base = iiWheel * length;
+			delayedSteering[base + delayNext] = steeringMotors[iiWheel].get();
+			delayedDrive[base + delayNext] = driveMotors[iiWheel].get();
+			module.step(delayedSteering[base + delayed], delayedDrive[base + delayed]);
+			steeringEncoders[iiWheel].setPosition(module.getSteeringAngle());
+			steeringEncoders[iiWheel].setRate(module.getSteeringRate());
+			speeds[iiWheel] = module.getWheelSpeed() / maxWheelSpeed;
+			angles[iiWheel] = module.getSteeringAngle();
+		}
+		delayNext = delayed;
+		chassis.update(speeds, angles, dt);
+		if (gyro != null) {
+			gyro.setAngle(chassis.getHeading());
+			gyro.setRate(chassis.getHeadingRate());
+		}
+		time += dt;
+		hardware.getClock().setTime(time);
+	}
+
+	/**
+	 * Advance by whole steps
+	 * @param seconds time to simulate, rounded to a whole number of steps
+	 */
+	public void run(double seconds) {
+		int steps = (int) Math.round(seconds / dt);
+		for (int iiStep = 0; iiStep < steps; iiStep++) {
+			step();
+		}
+	}
+
+	/**
+	 * Put robot at rest at a pose, wheels at an angle
+	 * @param x field x
+	 * @param y field y
+	 * @param heading heading in degrees, clockwise
+	 * @param wheelAngle steering angle of every wheel, degrees
+	 */
+	public void reset(double x, double y, double heading, double wheelAngle) {
+		for (int iiWheel = 0; iiWheel < numberOfWheels; iiWheel++) {
+			modules[iiWheel].reset(wheelAngle);
+			steeringEncoders[iiWheel].setPosition(wheelAngle);
+			steeringEncoders[iiWheel].setRate(0);
+		}
+		chassis.reset(x, y, heading);
+		if (gyro != null) {
+			gyro.setAngle(heading);
+			gyro.setRate(0);
+		}
+	}
+
+	/**
+	 * @return simulated time, seconds
+	 */
+	public double getTime() {
+		return time;
+	}
+
+	public double getTimeStep() {
+		return dt;
+	}
+
+	public double getX() {
+		return chassis.getX();
+	}
+
+	public double getY() {
+		return chassis.getY();
+	}
+
+	/**
+	 * @return heading in degrees, clockwise
+	 */
+	public double getHeading() {
+		return chassis.getHeading();
+	}
+
+	public double getVelocityX() {
+		return chassis.getVelocityX();
+	}
+
+	public double getVelocityY() {
+		return chassis.getVelocityY();
+	}
+
+	/**
+	 * @return heading rate in degrees per second, clockwise
+	 */
+	public double getHeadingRate() {
+		return chassis.getHeadingRate();
+	}
+
+	public int getNumberOfWheels() {
+		return numberOfWheels;
+	}
+
+	/**
+	 * @param wheelNumber wheel number, RobotMap order
+	 * @return module state
+	 */
+	public SwerveModuleSimulation getModule(int wheelNumber) {
+		return modules[wheelNumber];
+	}
+
+	public SimulatedHardware getHardware() {
+		return hardware;
+	}
+
+	public SwerveSteeringLoop getSteering() {
+		return steering;
+	}
+
+}
@@ -1,20 +1,28 @@
 package org.usfirst.frc.team2339.Barracuda.subsystems;
 
-import edu.wpi.first.wpilibj.DigitalInput;
-import edu.wpi.first.wpilibj.Talon;
+import org.usfirst.frc.team2339.Barracuda.hal.SwitchInput;
+import org.usfirst.frc.team2339.Barracuda.telemetry.DashboardPublisher;
+
+import edu.wpi.first.wpilibj.SpeedController;
 import edu.wpi.first.wpilibj.command.Subsystem;
-import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 
 /**
  *
  */
 public class Lift extends Subsystem {
 
-    private final Talon liftMotor;
-    private final DigitalInput lowerLimitSwitch;
-	public Lift(int liftMotorNumber, int lowerLimitSwitchChannel) {
-		this.liftMotor = new Talon(liftMotorNumber);
-		this.lowerLimitSwitch = new DigitalInput(lowerLimitSwitchChannel);
+    private final SpeedController liftMotor;
+    private final SwitchInput lowerLimitSwitch;
+    private final int motorValueSlot = DashboardPublisher.register("Lift motor value ");
+    private double motorValue = 0;
+    
+    /**
+     * @param liftMotor lift winch motor
+     * @param lowerLimitSwitch lift lower limit switch, reads false when lift is down
+     */
+	public Lift(SpeedController liftMotor, SwitchInput lowerLimitSwitch) {
+		this.liftMotor = liftMotor;
+		this.lowerLimitSwitch = lowerLimitSwitch;
 	}
     
     // Put methods for controlling this subsystem
@@ -32,14 +40,23 @@ public class Lift extends Subsystem {
      */
     public void setLiftMotor(double value) {
         if (!lowerLimitSwitch.get() && value < 0.0) {
-            SmartDashboard.putNumber("Lift motor value ", 0);
+            DashboardPublisher.put(motorValueSlot, 0);
+            motorValue = 0.0;
         	liftMotor.set(0.0);
         } else {
-            SmartDashboard.putNumber("Lift motor value ", value);
+            DashboardPublisher.put(motorValueSlot, value);
+            motorValue = value;
         	liftMotor.set(value);
         }
     }
     
+    /**
+     * @return last value sent to lift motor, after the lower limit check
+     */
+    public double getLiftMotorValue() {
+        return motorValue;
+    }
+    
     /**
      * Stop the lift motor
      * 
@@ -1,18 +1,33 @@
 package org.usfirst.frc.team2339.Barracuda.subsystems;
 
+import java.io.File;
+
 /*
  * Add a swerve mode to RobotDrive
  * Code from Chief Delphi: http://www.chiefdelphi.com/forums/showthread.php?t=117099
  */
 
 
+import org.usfirst.frc.team2339.Barracuda.components.SwerveSteeringController;
 import org.usfirst.frc.team2339.Barracuda.smartdashboard.SendablePosition;
+import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveForwardKinematics;
+import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveKinematics;
+import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveKinematicsTable;
+import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveModuleLayout;
+import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveModuleOptimizer;
+import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveOdometry;
+import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveSetpointCache;
+import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveTrig;
 import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveWheel.RectangularCoordinates;
 import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveWheel.RobotMotion;
 import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveWheel.VelocityPolar;
+import org.usfirst.frc.team2339.Barracuda.telemetry.DashboardPublisher;
+import org.usfirst.frc.team2339.Barracuda.telemetry.LatencyHistogram;
+import org.usfirst.frc.team2339.Barracuda.telemetry.MetricsRegistry;
 
+import edu.wpi.first.wpilibj.SpeedController;
+import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.command.Subsystem;
-import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 
 /**
  *
@@ -37,12 +52,129 @@ public class SwerveDrive extends Subsystem {
 	// Distance of wheel farthest from pivot
     protected double maxWheelRadius = 1;
     
+    /*
+     * Kinematics and per-wheel buffers used every tick. 
+     * Allocated once so the drive path does not create garbage.
+     */
+    protected final SwerveKinematics kinematics;
+    protected final double rawSpeeds[];
+    protected final double rawAngles[];
+    protected final double currentAngles[];
+    protected final double deltaSpeeds[];
+    protected final double deltaAngles[];
+    private final int rawAngleSlots[];
+    private final int encoderAngleSlots[];
+    
+    protected final SwerveTrig trig;
+    
+    // Flip and speed scaling from current wheel angles. Keeps flip state per wheel.
+    protected final SwerveModuleOptimizer optimizer;
+    
+    /*
+     * Last commanded robot motion, in the frame it was given (field frame for absolute drive).
+     * NaN when wheels were commanded individually.
+     */
+    protected final RobotMotion commandedMotion = new RobotMotion(0, 0, 0);
+    
+    /*
+     * Wheel odometry. Wheel speeds are the last commanded speeds (no drive encoders), 
+     * wheel angles are read from the steering encoders.
+     */
+    protected final SwerveOdometry odometry;
+    protected final double commandedSpeeds[];
+    // FPGA time of last odometry update, seconds. Follows simulated time off-robot.
+    private double lastOdometryTime;
+    // Longer gaps (e.g. while disabled) are not integrated
+    private static final double MAX_ODOMETRY_STEP = 0.1;
+    
+    protected SwerveSetpointCache setpointCache = null;
+    
+    // Precomputed setpoints for one pivot, null to always calculate
+    protected SwerveKinematicsTable kinematicsTable = null;
+    
+    // Time for each drive call, from robot velocity to wheel outputs
+    private final LatencyHistogram driveLatency = MetricsRegistry.histogram("SwerveDrive drive");
+    
+    private static final int pivotYSlot = DashboardPublisher.register("Drive pivot y ");
+    private static final int cacheHitsSlot = DashboardPublisher.register("Setpoint cache hits ");
+    private static final int cacheMissesSlot = DashboardPublisher.register("Setpoint cache misses ");
+    private static final int odometryXSlot = DashboardPublisher.register("Odometry x ");
+    private static final int odometryYSlot = DashboardPublisher.register("Odometry y ");
+    private static final int odometryHeadingSlot = DashboardPublisher.register("Odometry heading ");
+    
     public SwerveDrive(SwerveWheelDrive wheels[]) {
+    	this(wheels, SwerveTrig.STANDARD);
+    }
+    
+    /**
+     * @param wheels swerve wheels
+     * @param trig trigonometry used by kinematics and field oriented drive
+     */
+    public SwerveDrive(SwerveWheelDrive wheels[], SwerveTrig trig) {
+    	this(wheels, trig, 1.0);
+    }
+    
+    /**
+     * @param wheels swerve wheels
+     * @param trig trigonometry used by kinematics and field oriented drive
+     * @param maxWheelSpeed wheel surface speed at full motor output, used for odometry. 
+     *                      Distance units per second, same distance units as wheel positions.
+     */
+    public SwerveDrive(SwerveWheelDrive wheels[], SwerveTrig trig, double maxWheelSpeed) {
+    	this.trig = trig;
     	this.wheels = new SwerveWheelDrive[wheels.length];
+    	RectangularCoordinates wheelPositions[] = new RectangularCoordinates[wheels.length];
+    	rawAngleSlots = new int[wheels.length];
+    	encoderAngleSlots = new int[wheels.length];
     	for (int iiWheel = 0; iiWheel < wheels.length; iiWheel++) {
     		this.wheels[iiWheel] = wheels[iiWheel];
+    		wheelPositions[iiWheel] = wheels[iiWheel].getWheelPosition();
+    		rawAngleSlots[iiWheel] = DashboardPublisher.register("Wheel " + iiWheel + " raw ");
+    		encoderAngleSlots[iiWheel] = DashboardPublisher.register("Wheel " + iiWheel + " encoder angle ");
+    	}
+    	kinematics = new SwerveKinematics(wheelPositions, trig);
+    	rawSpeeds = new double[wheels.length];
+    	rawAngles = new double[wheels.length];
+    	currentAngles = new double[wheels.length];
+    	deltaSpeeds = new double[wheels.length];
+    	deltaAngles = new double[wheels.length];
+        commandedSpeeds = new double[wheels.length];
+    	optimizer = new SwerveModuleOptimizer(wheels.length);
+    	odometry = new SwerveOdometry(new SwerveForwardKinematics(
+    			kinematics.getGeometry(), SwerveKinematics.PIVOT_CENTER, trig), maxWheelSpeed);
+    	lastOdometryTime = Timer.getFPGATimestamp();
+    	setPivot(SwerveKinematics.PIVOT_CENTER);
+    }
+    
+    /**
+     * Create wheels for swerve drive at arbitrary positions, e.g. from {@link SwerveModuleLayout}.
+     * Arrays must all be the same length, one entry per wheel.
+     * @param wheelPositions wheel positions
+     * @param driveControllers wheel drive controllers
+     * @param steeringControllers steering controllers
+     * @return wheels
+     */
+    public static SwerveWheelDrive[] createWheels(
+    		RectangularCoordinates wheelPositions[], 
+			SpeedController driveControllers[],
+			SwerveSteeringController steeringControllers[]) {
+    	if (driveControllers.length != wheelPositions.length || 
+    			steeringControllers.length != wheelPositions.length) {
+    		throw new IllegalArgumentException("Need one drive and steering controller per wheel");
     	}
-    	setPivot(new RectangularCoordinates(0, 0));
+		SwerveWheelDrive[] wheels = new SwerveWheelDrive[wheelPositions.length];
+		for (int iiWheel = 0; iiWheel < wheelPositions.length; iiWheel++) {
+			wheels[iiWheel] = new SwerveWheelDrive(
+					iiWheel, 
+					wheelPositions[iiWheel], 
+					driveControllers[iiWheel], 
+					steeringControllers[iiWheel]);
+		}
+		return wheels;
+    }
+    
+    public int getNumberOfWheels() {
+    	return wheels.length;
     }
     
     public double getMaxWheelRadius() {
@@ -50,30 +182,64 @@ public class SwerveDrive extends Subsystem {
 	}
 
 	public void setMaxWheelRadius() {
-		maxWheelRadius = 0;
-    	for (int iiWheel = 0; iiWheel < wheels.length; iiWheel++) {
-    		double radius = wheels[iiWheel].getWheelPosition().subtract(pivot).magnitude();
-    		if (radius > maxWheelRadius) {
-    			maxWheelRadius = radius;
-    		}
-    	}
+		maxWheelRadius = kinematics.getMaxWheelRadius();
 	}
 
     public RectangularCoordinates getPivot() {
     	//SmartDashboard.putData("Drive pivot ", new SendablePosition(pivot.x, pivot.y));
-    	SmartDashboard.putNumber("Drive pivot y ", pivot.y);
+    	DashboardPublisher.put(pivotYSlot, pivot.y);
 		return pivot;
 	}
 
 	public void setPivot(RectangularCoordinates pivot) {
-		this.pivot = pivot;
+		setPivot(registerPivot(pivot));
+	}
+	
+	/**
+	 * Register a pivot so that it can be selected quickly with {@link #setPivot(int)}.
+	 * Wheel geometry for the pivot is computed once here.
+	 * The center pivot and a pivot on each wheel are always registered.
+	 * 
+	 * @param pivot position of pivot
+	 * @return pivot id
+	 */
+	public int registerPivot(RectangularCoordinates pivot) {
+		return kinematics.registerPivot(pivot.x, pivot.y);
+	}
+	
+	/**
+	 * @param wheelNumber wheel number
+	 * @return pivot id of the pivot on top of a wheel
+	 */
+	public int getWheelPivot(int wheelNumber) {
+		return kinematics.getWheelPivot(wheelNumber);
+	}
+	
+	/**
+	 * @return id of selected pivot
+	 */
+	public int getPivotId() {
+		return kinematics.getGeometry().getSelected();
+	}
+	
+	/**
+	 * Select a registered pivot.
+	 * 
+	 * @param pivotId pivot id from {@link #registerPivot(RectangularCoordinates)}, 
+	 *                {@link #getWheelPivot(int)} or {@link SwerveKinematics#PIVOT_CENTER}.
+	 */
+	public void setPivot(int pivotId) {
+		kinematics.selectPivot(pivotId);
+		this.pivot = new RectangularCoordinates(kinematics.getPivotX(), kinematics.getPivotY());
 		setMaxWheelRadius();
+    	DashboardPublisher.put(pivotYSlot, pivot.y);
 	}
 	
 	public void resetSteering() {
     	for (int iiWheel = 0; iiWheel < wheels.length; iiWheel++) {
     		wheels[iiWheel].resetSteering();
     	}
+    	optimizer.reset();
 	}
 	
 	public void enableSteering(boolean enable) {
@@ -83,46 +249,53 @@ public class SwerveDrive extends Subsystem {
 	}
 	
 	public void stopRobot() {
+		updateOdometry();
+		setCommandedMotion(0, 0, 0);
     	for (int iiWheel = 0; iiWheel < wheels.length; iiWheel++) {
     		wheels[iiWheel].setWheelSpeed(0.0);
     	}
 	}
 	
     /**
-     * Drive in swerve mode with a given wheel speeds and directions.
-     * Driving parameters are assumed to be relative to the current robot angle.
-     * @param rawVelocities desired speed and direction vectors for each wheel.
+     * Drive wheels from the raw speed and angle buffers.
+     * Speeds are normalized, then adjusted for current wheel angles before being sent to the wheels.
      */
-    public void swerveDriveRobot(
-    		VelocityPolar rawVelocities[]) {
+    protected void driveRawVelocities() {
+    	SwerveKinematics.normalize(rawSpeeds, wheels.length);
     	
-    	double speedMax = 0;
     	for (int iiWheel = 0; iiWheel < wheels.length; iiWheel++) {
-    		if (Math.abs(rawVelocities[iiWheel].speed) > speedMax) {
-    			speedMax = rawVelocities[iiWheel].speed;
-    		}
+    		DashboardPublisher.put(rawAngleSlots[iiWheel], rawAngles[iiWheel]);
+    		currentAngles[iiWheel] = wheels[iiWheel].getSteeringAngle();
     	}
+    	updateOdometry(currentAngles);
     	
-    	if (speedMax > 1.0) {
-	    	// Normalize speeds to less than |1.0|
-	    	for (int iiWheel = 0; iiWheel < wheels.length; iiWheel++) {
-	    		rawVelocities[iiWheel].speed /= speedMax;
-	    	}
-    	}
+    	optimizer.optimize(wheels.length, currentAngles, 
+    			rawSpeeds, rawAngles, deltaSpeeds, deltaAngles);
     	
     	for (int iiWheel = 0; iiWheel < wheels.length; iiWheel++) {
-    		SmartDashboard.putNumber("Wheel " + iiWheel + " raw ", rawVelocities[iiWheel].angle);
+    		wheels[iiWheel].setWheel(deltaSpeeds[iiWheel], deltaAngles[iiWheel]);
     	}
     	
-    	
     	for (int iiWheel = 0; iiWheel < wheels.length; iiWheel++) {
-    		wheels[iiWheel].setWheelSanely(rawVelocities[iiWheel]);
+    		DashboardPublisher.put(encoderAngleSlots[iiWheel], wheels[iiWheel].getSteeringAngle());
     	}
-    	
+    }
+
+    /**
+     * Drive in swerve mode with a given wheel speeds and directions.
+     * Driving parameters are assumed to be relative to the current robot angle.
+     * @param rawVelocities desired speed and direction vectors for each wheel.
+     */
+    public void swerveDriveRobot(
+    		VelocityPolar rawVelocities[]) {
+    	long start = System.nanoTime();
+    	setCommandedMotion(Double.NaN, Double.NaN, Double.NaN);
     	for (int iiWheel = 0; iiWheel < wheels.length; iiWheel++) {
-    		SmartDashboard.putNumber("Wheel " + iiWheel + " encoder angle ", wheels[iiWheel].getSteeringAngle());
+    		rawSpeeds[iiWheel] = rawVelocities[iiWheel].speed;
+    		rawAngles[iiWheel] = rawVelocities[iiWheel].angle;
     	}
-    	
+    	driveRawVelocities();
+    	driveLatency.recordSince(start);
     }
 
     /**
@@ -133,13 +306,49 @@ public class SwerveDrive extends Subsystem {
      */
     public void swerveDriveRobot(
     		VelocityPolar robotVelocity) {
-    	
-    	VelocityPolar rawVelocities[] = new VelocityPolar[wheels.length];
+    	long start = System.nanoTime();
+    	// Angle is counter-clockwise from front, so left is positive
+    	setCommandedMotion(-robotVelocity.speed * Math.sin(Math.toRadians(robotVelocity.angle)), 
+    			robotVelocity.speed * Math.cos(Math.toRadians(robotVelocity.angle)), 0);
     	for (int iiWheel = 0; iiWheel < wheels.length; iiWheel++) {
-    		rawVelocities[iiWheel] = robotVelocity;
+    		rawSpeeds[iiWheel] = robotVelocity.speed;
+    		rawAngles[iiWheel] = robotVelocity.angle;
+    	}
+    	driveRawVelocities();
+    	driveLatency.recordSince(start);
+    }
+
+    /**
+     * Drive in swerve mode with a given speed and rotation.
+     * Driving parameters are assumed to be relative to the current robot angle.
+     * @param strafe sideways velocity. -1.0 = max motor speed left and 1.0 = max motor speed right.
+     * @param frontBack forward velocity. -1.0 = max motor speed backwards and 1.0 = max motor speed forward.
+     * @param rotate rotational velocity around pivot point.
+     */
+    public void swerveDriveRobot(
+    		double strafe, 
+    		double frontBack, 
+    		double rotate) {
+    	long start = System.nanoTime();
+    	setCommandedMotion(strafe, frontBack, rotate);
+    	calculateRawVelocities(strafe, frontBack, rotate);
+    	driveRawVelocities();
+    	driveLatency.recordSince(start);
+    }
+    
+    /**
+     * Calculate raw wheel speeds and angles into rawSpeeds and rawAngles.
+     * Uses the kinematics table if there is one for the selected pivot.
+     * @param strafe sideways velocity relative to robot
+     * @param frontBack forward velocity relative to robot
+     * @param rotate rotational velocity around pivot point
+     */
+    protected void calculateRawVelocities(double strafe, double frontBack, double rotate) {
+    	if (kinematicsTable != null && kinematicsTable.getPivotId() == getPivotId()) {
+    		kinematicsTable.lookup(strafe, frontBack, rotate, rawSpeeds, rawAngles);
+    	} else {
+    		kinematics.calculateWheelVelocities(strafe, frontBack, rotate, rawSpeeds, rawAngles);
     	}
-    	
-    	swerveDriveRobot(rawVelocities);
     }
 
     /**
@@ -149,13 +358,7 @@ public class SwerveDrive extends Subsystem {
      */
     public void swerveDriveRobot(
     		RobotMotion robotMotion) {
-    	
-    	VelocityPolar rawVelocities[] = new VelocityPolar[wheels.length];
-    	for (int iiWheel = 0; iiWheel < wheels.length; iiWheel++) {
-    		rawVelocities[iiWheel] = wheels[iiWheel].calculateWheelVelocity(getPivot(), maxWheelRadius, robotMotion);
-    	}
-    	
-    	swerveDriveRobot(rawVelocities);
+    	swerveDriveRobot(robotMotion.strafe, robotMotion.frontBack, robotMotion.rotate);
     }
 
     /**
@@ -168,136 +371,190 @@ public class SwerveDrive extends Subsystem {
     public void swerveDriveAbsolute(
     		RobotMotion robotMotion, 
     		double robotAngle) {
-    	double robotAngleRad = Math.toRadians(robotAngle);
-    	RobotMotion relativeMotion = new RobotMotion(
-    			robotMotion.strafe * Math.cos(robotAngleRad) - robotMotion.frontBack * Math.sin(robotAngleRad),
-    			robotMotion.strafe * Math.sin(robotAngleRad) + robotMotion.frontBack * Math.cos(robotAngleRad), 
-    			robotMotion.rotate);
-    	this.swerveDriveRobot(relativeMotion);
+    	swerveDriveAbsolute(robotMotion.strafe, robotMotion.frontBack, robotMotion.rotate, robotAngle);
     }
     
-	/**
-	 * Set speed and angle values when joystick in dead band
-	 */
-	public void setDeadBandValues() {
-    	for (int iiWheel = 0; iiWheel < wheels.length; iiWheel++) {
-    		// Keep current angle, set speed to zero
-        	wheels[iiWheel].maintainSteeringAngle();
-        	wheels[iiWheel].setWheelSpeed(0);
-    	}
-	}
-	
     /**
-     * Class to store angle and flip together
-     * @author emiller
-     *
+     * Drive in swerve mode with a given speed and rotation.
+     * Driving parameters are assumed to be absolute based on a fixed angle, e.g. the field.
+     * @param strafe sideways velocity relative to fixed angle.
+     * @param frontBack forward velocity relative to fixed angle.
+     * @param rotate rotational velocity around pivot point.
+     * @param robotAngle Angle (in degrees) of robot relative to fixed angle. 
+     *                   Positive is clockwise, negative counter-clockwise. This is probably taken from the gyro.
      */
-    public class AngleFlip {
-    	private double angle;
-    	private boolean flip;
-    	
-    	public AngleFlip() {
-    		setAngle(0);
-    		setFlip(false);
-    	}
-    	public AngleFlip(double angle) {
-    		this.setAngle(angle);
-    		setFlip(false);
+    public void swerveDriveAbsolute(
+    		double strafe, 
+    		double frontBack, 
+    		double rotate, 
+    		double robotAngle) {
+    	long start = System.nanoTime();
+    	setCommandedMotion(strafe, frontBack, rotate);
+    	if (setpointCache != null) {
+    		boolean hit = setpointCache.lookup(strafe, frontBack, rotate, robotAngle, getPivotId(), 
+    				rawSpeeds, rawAngles);
+    		DashboardPublisher.put(cacheHitsSlot, setpointCache.getHits());
+    		DashboardPublisher.put(cacheMissesSlot, setpointCache.getMisses());
+    		if (hit) {
+    			driveRawVelocities();
+    			driveLatency.recordSince(start);
+    			return;
+    		}
     	}
-    	public AngleFlip(double angle, boolean flip) {
-    		this.setAngle(angle);
-    		flip = false;
+    	
+    	double cosAngle = trig.cosDegrees(robotAngle);
+    	double sinAngle = trig.sinDegrees(robotAngle);
+    	calculateRawVelocities(
+    			strafe * cosAngle - frontBack * sinAngle,
+    			strafe * sinAngle + frontBack * cosAngle, 
+    			rotate);
+    	if (setpointCache != null) {
+    		SwerveKinematics.normalize(rawSpeeds, wheels.length);
+    		setpointCache.store(rawSpeeds, rawAngles);
     	}
-		/**
-		 * @return the angle
-		 */
-		public double getAngle() {
-			return angle;
-		}
-		/**
-		 * @param angle the angle to set
-		 */
-		public void setAngle(double angle) {
-			this.angle = angle;
-		}
-		/**
-		 * @return the flip
-		 */
-		public boolean isFlip() {
-			return flip;
-		}
-		/**
-		 * @param flip the flip to set
-		 */
-		public void setFlip(boolean flip) {
-			this.flip = flip;
-		}
-    };
+    	driveRawVelocities();
+    	driveLatency.recordSince(start);
+    }
     
-    /** 
-     * Normalizes an angle in degrees to (-180, 180].
-     * @param theta Angle to normalize
-     * @return Normalized angle
+    /**
+     * Use a cache of raw wheel setpoints for field oriented drive. 
+     * Steering encoder dependent (delta) calculation is always done.
+     * @param setpointCache cache, or null to always calculate
      */
-    public double normalizeAngle(double theta) {
-    	while (theta > 180) {
-    		theta -= 360;
-    	}
-    	while (theta < -180) {
-    		theta += 360;
+    public void setSetpointCache(SwerveSetpointCache setpointCache) {
+    	this.setpointCache = setpointCache;
+    }
+    
+    public SwerveSetpointCache getSetpointCache() {
+    	return setpointCache;
+    }
+    
+    /**
+     * Use precomputed setpoints while the table's pivot is selected. 
+     * Other pivots are calculated.
+     * @param kinematicsTable table for this drive's wheel geometry, or null to always calculate
+     */
+    public void setKinematicsTable(SwerveKinematicsTable kinematicsTable) {
+    	if (kinematicsTable != null && kinematicsTable.getNumberOfWheels() != wheels.length) {
+    		throw new IllegalArgumentException("Kinematics table is for " + 
+    				kinematicsTable.getNumberOfWheels() + " wheels");
     	}
-    	return theta;
+    	this.kinematicsTable = kinematicsTable;
     }
-
+    
+    public SwerveKinematicsTable getKinematicsTable() {
+    	return kinematicsTable;
+    }
+    
+    /**
+     * Load a kinematics table for the selected pivot from disk, or generate and save one.
+     * @param file table file
+     * @param pointsPerAxis grid points along each of strafe, front-back and rotate
+     */
+    public void loadKinematicsTable(File file, int pointsPerAxis) {
+    	// Field oriented drive can rotate a full diagonal stick to sqrt(2) on one axis
+    	setKinematicsTable(SwerveKinematicsTable.loadOrGenerate(file, kinematics, pointsPerAxis, Math.sqrt(2), 1.0));
+    }
+    
+    private void setCommandedMotion(double strafe, double frontBack, double rotate) {
+    	commandedMotion.strafe = strafe;
+    	commandedMotion.frontBack = frontBack;
+    	commandedMotion.rotate = rotate;
+    }
+    
+    /**
+     * @return last commanded robot motion. Do not modify. 
+     *         Field relative if last command was absolute, NaN if wheels were commanded individually.
+     */
+    public RobotMotion getCommandedMotion() {
+    	return commandedMotion;
+    }
+    
     /**
-     * Compute angle needed to turn and whether or not flip is needed
-     * @param currentAngle
-     * @param targetAngle
-     * @return new angle with flip
+     * Copy wheel setpoints from the last drive call and read the steering encoders.
+     * Arrays need at least one entry per wheel.
+     * @param rawSpeeds normalized wheel speeds before optimization
+     * @param rawAngles wheel angles before optimization
+     * @param deltaSpeeds wheel speeds sent to the wheels
+     * @param deltaAngles wheel angles sent to the wheels
+     * @param encoderAngles steering encoder angles now
      */
-    public AngleFlip computeTurnAngle(double currentAngle, double targetAngle) {
-    	AngleFlip turnAngle = new AngleFlip(targetAngle - currentAngle, false);
-    	if (Math.abs(turnAngle.getAngle()) > 90) {
-    		turnAngle.setAngle(normalizeAngle(turnAngle.getAngle() + 180));
-    		turnAngle.setFlip(true);
+    public void getWheelState(double rawSpeeds[], double rawAngles[], 
+    		double deltaSpeeds[], double deltaAngles[], double encoderAngles[]) {
+    	System.arraycopy(this.rawSpeeds, 0, rawSpeeds, 0, wheels.length);
+    	System.arraycopy(this.rawAngles, 0, rawAngles, 0, wheels.length);
+    	System.arraycopy(this.deltaSpeeds, 0, deltaSpeeds, 0, wheels.length);
+    	System.arraycopy(this.deltaAngles, 0, deltaAngles, 0, wheels.length);
+    	for (int iiWheel = 0; iiWheel < wheels.length; iiWheel++) {
+    		encoderAngles[iiWheel] = wheels[iiWheel].getSteeringAngle();
     	}
-    	return turnAngle;
     }
     
     /**
-     * Compute change angle to get from current to target angle.
-     * @param currentAngle Current angle
-     * @param targetAngle New angle to change to
-     * @return change angle
+     * Read what is driving the robot now, as used by odometry: last commanded wheel speeds and
+     * steering encoder angles. Speeds are commands, not measurements, since there are no drive encoders,
+     * so wheel slip and pushes do not show in them. Arrays need at least one entry per wheel.
+     * @param speeds commanded wheel speeds. Negative speed means wheel is driving backwards.
+     * @param angles steering encoder angles now
      */
-    public double computeChangeAngle(double currentAngle, double targetAngle) {
-    	return computeTurnAngle(currentAngle, targetAngle).getAngle();
+    public void getCommandedWheels(double speeds[], double angles[]) {
+        for (int iiWheel = 0; iiWheel < wheels.length; iiWheel++) {
+            speeds[iiWheel] = wheels[iiWheel].getCurrentVelocity().speed;
+            angles[iiWheel] = wheels[iiWheel].getSteeringAngle();
+        }
     }
     
     /**
-     * Scale drive speed based on how far wheel needs to turn
-     * @param turnAngle Angle wheel needs to turn (with flip value)
-     * @return speed scale factor in range [0, 1]
+     * @return wheel odometry. Pose starts at zero when robot code starts.
      */
-    public double driveScale(AngleFlip turnAngle) {
-    	double scale = 0;
-    	if (Math.abs(turnAngle.getAngle()) < 45) {
-    		/*
-    		 * Eric comment: I don't like the discontinuous nature of this scaling.
-    		 * Possible improvements:
-    		 *   1) Use cosine(2 * turnAngle)
-    		 *   2) Scale any angle < 90.
-    		 */
-    		scale = Math.cos(Math.toRadians(turnAngle.getAngle()));
-    	} else {
-    		scale = 0;
+    public SwerveOdometry getOdometry() {
+    	return odometry;
+    }
+    
+    /**
+     * Update odometry using steering encoder angles.
+     */
+    protected void updateOdometry() {
+    	for (int iiWheel = 0; iiWheel < wheels.length; iiWheel++) {
+    		currentAngles[iiWheel] = wheels[iiWheel].getSteeringAngle();
+    	}
+    	updateOdometry(currentAngles);
+    }
+    
+    /**
+     * Update odometry for the time since last update. 
+     * Must be called before new wheel speeds are set, since current speeds are what drove the robot.
+     * @param angles current wheel angles
+     */
+    protected void updateOdometry(double angles[]) {
+    	double now = Timer.getFPGATimestamp();
+    	double dt = now - lastOdometryTime;
+    	lastOdometryTime = now;
+    	if (dt > MAX_ODOMETRY_STEP || dt < 0) {
+    		dt = 0;
     	}
-    	if (turnAngle.isFlip()) {
-    		scale = -scale;
+    	for (int iiWheel = 0; iiWheel < wheels.length; iiWheel++) {
+            commandedSpeeds[iiWheel] = wheels[iiWheel].getCurrentVelocity().speed;
     	}
-    	return scale;
+        odometry.update(commandedSpeeds, angles, dt);
+    	DashboardPublisher.put(odometryXSlot, odometry.getX());
+    	DashboardPublisher.put(odometryYSlot, odometry.getY());
+    	DashboardPublisher.put(odometryHeadingSlot, odometry.getHeading());
     }
     
+	/**
+	 * Set speed and angle values when joystick in dead band
+	 */
+	public void setDeadBandValues() {
+		updateOdometry();
+		setCommandedMotion(0, 0, 0);
+    	for (int iiWheel = 0; iiWheel < wheels.length; iiWheel++) {
+    		// Keep current angle, set speed to zero
+        	wheels[iiWheel].maintainSteeringAngle();
+        	wheels[iiWheel].setWheelSpeed(0);
+    	}
+	}
+	
     public void initDefaultCommand() {
     }
 
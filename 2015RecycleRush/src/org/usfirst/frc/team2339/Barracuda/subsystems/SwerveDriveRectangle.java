@@ -1,7 +1,8 @@
 package org.usfirst.frc.team2339.Barracuda.subsystems;
 
-import org.usfirst.frc.team2339.Barracuda.components.SwerveSteeringPidController;
-import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveWheel.RectangularCoordinates;
+import org.usfirst.frc.team2339.Barracuda.components.SwerveSteeringController;
+import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveModuleLayout;
+import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveTrig;
 
 import edu.wpi.first.wpilibj.SpeedController;
 
@@ -23,6 +24,25 @@ public class SwerveDriveRectangle extends SwerveDrive {
 		super(wheels);
 	}
 
+	/**
+	 * 
+	 * @param wheels swerve wheels, usually from {@link #createWheels}
+	 * @param trig trigonometry used by kinematics and field oriented drive
+	 */
+	public SwerveDriveRectangle(SwerveWheelDrive[] wheels, SwerveTrig trig) {
+		super(wheels, trig);
+	}
+
+	/**
+	 * 
+	 * @param wheels swerve wheels, usually from {@link #createWheels}
+	 * @param trig trigonometry used by kinematics and field oriented drive
+	 * @param maxWheelSpeed wheel surface speed at full motor output, used for odometry
+	 */
+	public SwerveDriveRectangle(SwerveWheelDrive[] wheels, SwerveTrig trig, double maxWheelSpeed) {
+		super(wheels, trig, maxWheelSpeed);
+	}
+
 	/**
 	 * Create four wheels for swerve drive.
 	 * Wheels are on corners of a rectangle defined by the wheel base length and width.
@@ -30,45 +50,16 @@ public class SwerveDriveRectangle extends SwerveDrive {
 	 * @param length length of wheel base (front-back)
 	 * @param width width of wheel base (side-side)
 	 * @param driveControllers wheel drive controllers. Must be exactly four.
-	 * @param steeringControllers steering PID controllers. Must be exactly four.
+	 * @param steeringControllers steering controllers. Must be exactly four.
 	 * @return
 	 */
 	public static SwerveWheelDrive[] createWheels(
 			double length, 
 			double width,
 			SpeedController driveControllers[],
-			SwerveSteeringPidController steeringControllers[]) {
+			SwerveSteeringController steeringControllers[]) {
 		
-		SwerveWheelDrive[] wheels = new SwerveWheelDrive[4];
-		for (int iiWheel = 0; iiWheel < 4; iiWheel++) {
-			double x, y;
-			switch(iiWheel) {
-			case 0:
-			default:
-				x = width/2;
-				y = length/2;
-				break;
-			case 1:
-				x = -width/2;
-				y = length/2;
-				break;
-			case 2:
-				x = -width/2;
-				y = -length/2;
-				break;
-			case 3:
-				x = width/2;
-				y = -length/2;
-				break;
-				
-			}
-			wheels[iiWheel] = new SwerveWheelDrive(
-					iiWheel, 
-					new RectangularCoordinates(x, y), 
-					driveControllers[iiWheel], 
-					steeringControllers[iiWheel]);
-		}
-		return wheels;
+		return createWheels(SwerveModuleLayout.rectangle(length, width), driveControllers, steeringControllers);
 	}
 
 }
@@ -1,15 +1,16 @@
 package org.usfirst.frc.team2339.Barracuda.subsystems;
 
-import org.usfirst.frc.team2339.Barracuda.components.SwerveSteeringPidController;
+import org.usfirst.frc.team2339.Barracuda.components.SwerveSteeringController;
+import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveModuleOptimizer;
 import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveWheel;
 import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveWheel.RectangularCoordinates;
 import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveWheel.RobotMotion;
 import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveWheel.VelocityPolar;
+import org.usfirst.frc.team2339.Barracuda.telemetry.DashboardPublisher;
 
 import edu.wpi.first.wpilibj.MotorSafety;
 import edu.wpi.first.wpilibj.MotorSafetyHelper;
 import edu.wpi.first.wpilibj.SpeedController;
-import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 
 /**
  * Class to provide swerve drive control to one wheel.
@@ -27,28 +28,34 @@ public class SwerveWheelDrive implements MotorSafety {
     protected RectangularCoordinates wheelPosition;
     
 	protected SpeedController driveController;
-    protected SwerveSteeringPidController steeringController;
+    protected SwerveSteeringController steeringController;
     
     protected VelocityPolar currentVelocity;
     
+    // Flip state for setWheelSanely
+    protected final SwerveModuleOptimizer optimizer = new SwerveModuleOptimizer(1);
+    
+    private final int setAngleSlot;
+    
     /**
      * Construct swerve drive for a single wheel.
      * 
      * @param wheelNumber wheel number on robot. For information only.
      * @param wheelPosition position of wheel relative to robot.
      * @param driveController speed controller for wheel
-     * @param steeringController swerve steering PID controller for this wheel 
+     * @param steeringController swerve steering controller for this wheel 
      */
     SwerveWheelDrive(
     		int wheelNumber, 
     		RectangularCoordinates wheelPosition, 
     		SpeedController driveController, 
-    		SwerveSteeringPidController steeringController) {
+    		SwerveSteeringController steeringController) {
         this.wheelNumber = wheelNumber;
         this.wheelPosition = wheelPosition;
         this.driveController = driveController;
         this.steeringController = steeringController;
         this.currentVelocity = new VelocityPolar(0, 0);
+        this.setAngleSlot = DashboardPublisher.register("Wheel " + wheelNumber + " set angle ");
     	setupMotorSafety();
     }
 
@@ -114,7 +121,7 @@ public class SwerveWheelDrive implements MotorSafety {
     }
     
     public void setSteeringAngle(double angle) {
-		SmartDashboard.putNumber("Wheel " + wheelNumber + " set angle ", angle);
+		DashboardPublisher.put(setAngleSlot, angle);
         steeringController.setSetpoint(angle);
         setCurrentAngle(angle);
     }
@@ -131,8 +138,12 @@ public class SwerveWheelDrive implements MotorSafety {
     }
     
     public void setWheel(VelocityPolar velocity) {
-        setWheelSpeed(velocity.speed);
-        setSteeringAngle(velocity.angle);
+        setWheel(velocity.speed, velocity.angle);
+    }
+    
+    public void setWheel(double speed, double angle) {
+        setWheelSpeed(speed);
+        setSteeringAngle(angle);
     }
     
     /**
@@ -141,15 +152,14 @@ public class SwerveWheelDrive implements MotorSafety {
      * @param velocity desired wheel velocity 
      */
     public void setWheelSanely(VelocityPolar velocity) {
-    	setWheel(SwerveWheel.calculateDeltaWheelData(
-    			new VelocityPolar(0.0, steeringController.getSteeringAngle()), 
-    			velocity));
+    	setWheel(optimizer.optimize(0, steeringController.getSteeringAngle(), velocity));
     	//setWheel(velocity);
     }
     
     public void resetSteering() {
     	boolean isEnabled = steeringController.isEnable();
     	steeringController.reset();
+    	optimizer.reset();
     	enableSteering(isEnabled);
     }
     
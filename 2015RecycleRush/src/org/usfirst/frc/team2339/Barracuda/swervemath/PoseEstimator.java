@@ -0,0 +1,28 @@
+package org.usfirst.frc.team2339.Barracuda.swervemath;
+
+/**
+ * Field pose of the robot. x is to the right, y is forward, heading is in degrees, positive clockwise, like the gyro.
+ *
+ * @author emiller
+ *
+ */
+public interface PoseEstimator {
+
+	/**
+	 * Set current pose
+	 * @param x field x
+	 * @param y field y
+	 * @param heading heading in degrees, clockwise
+	 */
+	public void reset(double x, double y, double heading);
+
+	public double getX();
+
+	public double getY();
+
+	/**
+	 * @return heading in degrees, clockwise. Not normalized, so it keeps counting past one turn.
+	 */
+	public double getHeading();
+
+}
@@ -0,0 +1,146 @@
+package org.usfirst.frc.team2339.Barracuda.swervemath;
+
+/**
+ * Swerve forward kinematics. Recovers robot strafe, front-back and rotation from wheel speeds and angles.
+ *
+ * Inverse kinematics gives each wheel's velocity vector as
+ *   x = strafe - rotate * leverY
+ *   y = frontBack + rotate * leverX
+ * which is two linear equations per wheel in three unknowns.
+ * With more than one wheel this is over determined, so it is solved by least squares.
+ * The pseudo-inverse (A^T A)^-1 A^T only depends on wheel geometry and pivot,
+ * so it is computed once in the constructor and each solve is a small matrix multiply.
+ * @see http://www.chiefdelphi.com/media/papers/2426 (SwerveEther/swerveForwardKinematics.zip)
+ *
+ * Units match {@link SwerveKinematics}: speeds are fraction of max wheel speed,
+ * rotate is rotation speed of the wheel farthest from the pivot.
+ *
+ * @author emiller
+ *
+ */
+public class SwerveForwardKinematics {
+
+	private final int numberOfWheels;
+	private final double maxWheelRadius;
+	private final SwerveTrig trig;
+
+	// Pseudo-inverse rows. Column 2n is wheel n x, column 2n + 1 is wheel n y.
+	private final double strafeRow[];
+	private final double frontBackRow[];
+	private final double rotateRow[];
+
+	// Results of last solve
+	private double strafe = 0;
+	private double frontBack = 0;
+	private double rotate = 0;
+
+	/**
+	 * Create forward kinematics for a pivot.
+	 *
+	 * @param geometry wheel geometry
+	 * @param pivotId registered pivot robot motion is measured about
+	 * @param trig trigonometry used to convert wheel angles to vectors
+	 */
+	public SwerveForwardKinematics(SwervePivotGeometry geometry, int pivotId, SwerveTrig trig) {
+		this.trig = trig;
+		numberOfWheels = geometry.getNumberOfWheels();
+		maxWheelRadius = geometry.getMaxWheelRadius(pivotId);
+		double leverX[] = geometry.getLeverX(pivotId);
+		double leverY[] = geometry.getLeverY(pivotId);
+
+		/*
+		 * A^T A for rows [1, 0, -leverY] and [0, 1, leverX]
+		 */
+		double sumX = 0;
+		double sumY = 0;
+		double sumSquares = 0;
+		for (int iiWheel = 0; iiWheel < numberOfWheels; iiWheel++) {
+			sumX += leverX[iiWheel];
+			sumY += leverY[iiWheel];
+			sumSquares += leverX[iiWheel] * leverX[iiWheel] + leverY[iiWheel] * leverY[iiWheel];
+		}
+		double inverse[][] = invert3x3(new double[][] {
+				{numberOfWheels, 0, -sumY},
+				{0, numberOfWheels, sumX},
+				{-sumY, sumX, sumSquares}});
+
+		strafeRow = new double[2 * numberOfWheels];
+		frontBackRow = new double[2 * numberOfWheels];
+		rotateRow = new double[2 * numberOfWheels];
+		double rows[][] = {strafeRow, frontBackRow, rotateRow};
+		for (int iiRow = 0; iiRow < 3; iiRow++) {
+			for (int iiWheel = 0; iiWheel < numberOfWheels; iiWheel++) {
+				rows[iiRow][2 * iiWheel] = inverse[iiRow][0] - inverse[iiRow][2] * leverY[iiWheel];
+				rows[iiRow][2 * iiWheel + 1] = inverse[iiRow][1] + inverse[iiRow][2] * leverX[iiWheel];
+			}
+		}
+	}
+
+	private static double[][] invert3x3(double m[][]) {
+		double c00 = m[1][1] * m[2][2] - m[1][2] * m[2][1];
+		double c01 = m[1][2] * m[2][0] - m[1][0] * m[2][2];
+		double c02 = m[1][0] * m[2][1] - m[1][1] * m[2][0];
+		double determinant = m[0][0] * c00 + m[0][1] * c01 + m[0][2] * c02;
+		if (Math.abs(determinant) < 1e-12) {
+			throw new IllegalArgumentException("Wheel geometry can not resolve robot rotation");
+		}
+		return new double[][] {
+				{c00 / determinant,
+					(m[0][2] * m[2][1] - m[0][1] * m[2][2]) / determinant,
+					(m[0][1] * m[1][2] - m[0][2] * m[1][1]) / determinant},
+				{c01 / determinant,
+					(m[0][0] * m[2][2] - m[0][2] * m[2][0]) / determinant,
+					(m[0][2] * m[1][0] - m[0][0] * m[1][2]) / determinant},
+				{c02 / determinant,
+					(m[0][1] * m[2][0] - m[0][0] * m[2][1]) / determinant,
+					(m[0][0] * m[1][1] - m[0][1] * m[1][0]) / determinant}};
+	}
+
+	public int getNumberOfWheels() {
+		return numberOfWheels;
+	}
+
+	/**
+	 * @return distance of wheel farthest from pivot. Converts rotate to an angular speed.
+	 */
+	public double getMaxWheelRadius() {
+		return maxWheelRadius;
+	}
+
+	/**
+	 * Solve for robot motion. Results are read with {@link #getStrafe()},
+	 * {@link #getFrontBack()} and {@link #getRotate()}.
+	 *
+	 * @param speeds wheel speeds. Negative speed means wheel is driving backwards.
+	 * @param angles wheel angles in degrees, same convention as {@link SwerveKinematics}.
+	 */
+	public void solve(double speeds[], double angles[]) {
+		double solvedStrafe = 0;
+		double solvedFrontBack = 0;
+		double solvedRotate = 0;
+		for (int iiWheel = 0; iiWheel < numberOfWheels; iiWheel++) {
+			// Inverse of angle = atan2(-x, y)
+			double x = -speeds[iiWheel] * trig.sinDegrees(angles[iiWheel]);
+			double y = speeds[iiWheel] * trig.cosDegrees(angles[iiWheel]);
+			solvedStrafe += strafeRow[2 * iiWheel] * x + strafeRow[2 * iiWheel + 1] * y;
+			solvedFrontBack += frontBackRow[2 * iiWheel] * x + frontBackRow[2 * iiWheel + 1] * y;
+			solvedRotate += rotateRow[2 * iiWheel] * x + rotateRow[2 * iiWheel + 1] * y;
+		}
+		strafe = solvedStrafe;
+		frontBack = solvedFrontBack;
+		rotate = solvedRotate;
+	}
+
+	public double getStrafe() {
+		return strafe;
+	}
+
+	public double getFrontBack() {
+		return frontBack;
+	}
+
+	public double getRotate() {
+		return rotate;
+	}
+
+}
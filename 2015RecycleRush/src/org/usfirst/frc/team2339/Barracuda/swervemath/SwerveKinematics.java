@@ -0,0 +1,210 @@
+package org.usfirst.frc.team2339.Barracuda.swervemath;
+
+import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveWheel.RectangularCoordinates;
+
+/**
+ * Swerve inverse kinematics for the per-tick drive path.
+ *
+ * Computes the same wheel velocities as {@link SwerveWheel#calculateWheelVelocity},
+ * but writes wheel speeds and angles into caller owned primitive arrays (one entry per wheel)
+ * so that the control loop does not create any garbage.
+ * Wheel positions and pivot use the same coordinates as {@link SwerveWheel}:
+ * x is left-right, with right positive. y is front-back with front positive.
+ *
+ * @author emiller
+ *
+ */
+public class SwerveKinematics {
+
+	// Pivot id of the center of the wheel positions coordinate system. Always registered.
+	public static final int PIVOT_CENTER = 0;
+
+	private final SwervePivotGeometry geometry;
+	private final SwerveTrig trig;
+
+	// Wheel velocity vectors for the current calculation
+	private final double wheelVectorX[];
+	private final double wheelVectorY[];
+
+	/**
+	 * Create kinematics for a set of wheels using standard trigonometry.
+	 *
+	 * @param wheelPositions position of each wheel relative to robot.
+	 */
+	public SwerveKinematics(RectangularCoordinates wheelPositions[]) {
+		this(wheelPositions, SwerveTrig.STANDARD);
+	}
+
+	/**
+	 * Create kinematics for a set of wheels. 
+	 * Registers a pivot at the origin and one on top of each wheel. Pivot starts at the origin.
+	 *
+	 * @param wheelPositions position of each wheel relative to robot.
+	 * @param trig trigonometry to use for wheel speeds and angles
+	 */
+	public SwerveKinematics(RectangularCoordinates wheelPositions[], SwerveTrig trig) {
+		this.trig = trig;
+		geometry = new SwervePivotGeometry(wheelPositions);
+		wheelVectorX = new double[wheelPositions.length];
+		wheelVectorY = new double[wheelPositions.length];
+		geometry.register(0, 0);
+		geometry.registerWheelPivots();
+		geometry.select(PIVOT_CENTER);
+	}
+
+	public int getNumberOfWheels() {
+		return geometry.getNumberOfWheels();
+	}
+
+	public SwerveTrig getTrig() {
+		return trig;
+	}
+
+	public SwervePivotGeometry getGeometry() {
+		return geometry;
+	}
+
+	public double getPivotX() {
+		return geometry.getPivotX();
+	}
+
+	public double getPivotY() {
+		return geometry.getPivotY();
+	}
+
+	public double getMaxWheelRadius() {
+		return geometry.getMaxWheelRadius();
+	}
+
+	/**
+	 * Register a pivot so it can later be selected in constant time.
+	 *
+	 * @param x pivot x
+	 * @param y pivot y
+	 * @return pivot id
+	 */
+	public int registerPivot(double x, double y) {
+		return geometry.register(x, y);
+	}
+
+	/**
+	 * Get pivot id of pivot on top of a wheel
+	 *
+	 * @param wheelNumber wheel number
+	 * @return pivot id
+	 */
+	public int getWheelPivot(int wheelNumber) {
+		return geometry.findPivot(geometry.getWheelX(wheelNumber), geometry.getWheelY(wheelNumber));
+	}
+
+	/**
+	 * Select a registered pivot.
+	 *
+	 * @param pivotId pivot id
+	 */
+	public void selectPivot(int pivotId) {
+		geometry.select(pivotId);
+	}
+
+	/**
+	 * Set pivot to an arbitrary position. Registers the pivot if it is new.
+	 *
+	 * @param x pivot x
+	 * @param y pivot y
+	 */
+	public void setPivot(double x, double y) {
+		geometry.select(geometry.register(x, y));
+	}
+
+    /**
+     * Calculate raw wheel speeds and angles for the given robot motion around the current pivot.
+     * Angles are in the range [-180, 180]. Speeds are not normalized.
+     * Works for any number of wheels. Cost is linear in the number of wheels.
+     *
+     * @param strafe sideways velocity. -1.0 = max motor speed left and 1.0 = max motor speed right.
+     * @param frontBack forward velocity. -1.0 = max motor speed backwards and 1.0 = max motor speed forward.
+     * @param rotate rotational velocity around pivot.
+     * @param speeds output wheel speeds. Must hold at least one value per wheel.
+     * @param angles output wheel angles in degrees. Must hold at least one value per wheel.
+     */
+	public void calculateWheelVelocities(
+			double strafe,
+			double frontBack,
+			double rotate,
+			double speeds[],
+			double angles[]) {
+		calculateWheelVelocities(strafe, frontBack, rotate, speeds, angles, 0);
+	}
+
+    /**
+     * Calculate raw wheel speeds and angles for many robot motions at once.
+     * Results for motion n are at [n * number of wheels + wheel number] in the output arrays.
+     *
+     * @param strafe sideways velocities
+     * @param frontBack forward velocities
+     * @param rotate rotational velocities
+     * @param count number of motions
+     * @param speeds output wheel speeds. Must hold count * number of wheels values.
+     * @param angles output wheel angles in degrees. Must hold count * number of wheels values.
+     */
+	public void calculateWheelVelocities(
+			double strafe[],
+			double frontBack[],
+			double rotate[],
+			int count,
+			double speeds[],
+			double angles[]) {
+		int numberOfWheels = geometry.getNumberOfWheels();
+		for (int iiMotion = 0; iiMotion < count; iiMotion++) {
+			calculateWheelVelocities(strafe[iiMotion], frontBack[iiMotion], rotate[iiMotion], 
+					speeds, angles, iiMotion * numberOfWheels);
+		}
+	}
+
+	private void calculateWheelVelocities(
+			double strafe,
+			double frontBack,
+			double rotate,
+			double speeds[],
+			double angles[], 
+			int offset) {
+		int numberOfWheels = geometry.getNumberOfWheels();
+		double leverX[] = geometry.getLeverX();
+		double leverY[] = geometry.getLeverY();
+		/*
+		 * Two passes over contiguous arrays. 
+		 * The first is plain multiply-add, which the JIT can vectorize on the development machine.
+		 * The second does the trigonometry.
+		 */
+		for (int iiWheel = 0; iiWheel < numberOfWheels; iiWheel++) {
+			wheelVectorX[iiWheel] = strafe - rotate * leverY[iiWheel];
+			wheelVectorY[iiWheel] = frontBack + rotate * leverX[iiWheel];
+		}
+		for (int iiWheel = 0; iiWheel < numberOfWheels; iiWheel++) {
+			speeds[offset + iiWheel] = trig.magnitude(wheelVectorX[iiWheel], wheelVectorY[iiWheel]);
+			angles[offset + iiWheel] = trig.atan2Degrees(-wheelVectorX[iiWheel], wheelVectorY[iiWheel]);
+		}
+	}
+
+	/**
+	 * Scale speeds so that the largest magnitude is no more than 1.0
+	 *
+	 * @param speeds wheel speeds to normalize in place
+	 * @param count number of wheels
+	 */
+	public static void normalize(double speeds[], int count) {
+    	double maxSpeed = 0;
+    	for (int iiWheel = 0; iiWheel < count; iiWheel++) {
+    		if (Math.abs(speeds[iiWheel]) > maxSpeed) {
+    			maxSpeed = Math.abs(speeds[iiWheel]);
+    		}
+    	}
+
+    	if (maxSpeed > 1.0) {
+	    	for (int iiWheel = 0; iiWheel < count; iiWheel++) {
+	    		speeds[iiWheel] /= maxSpeed;
+	    	}
+    	}
+	}
+
+}
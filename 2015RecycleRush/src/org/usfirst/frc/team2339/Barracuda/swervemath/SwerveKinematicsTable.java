@@ -0,0 +1,433 @@
+package org.usfirst.frc.team2339.Barracuda.swervemath;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+
+import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveWheel.RectangularCoordinates;
+import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveWheel.RobotMotion;
+import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveWheel.VelocityPolar;
+
+/**
+ * Precomputed wheel setpoints over a grid of (strafe, frontBack, rotate) inputs for one wheel geometry and pivot.
+ *
+ * Each grid point holds every wheel's velocity vector after normalization.
+ * Lookups use trilinear interpolation between the eight surrounding grid points, so cost does not depend on
+ * the number of grid points, then convert the vector to speed and angle.
+ * Interpolating vectors rather than angles keeps wheels that pass through zero speed
+ * between grid points from swinging through the wrong side.
+ * The table is a flat float buffer that can be saved to disk and memory mapped back in at robot init.
+ *
+ * File format (native byte order, checked on load): header of ints and doubles described in {@link #writeHeader},
+ * then for each strafe, frontBack, rotate grid point (rotate varies fastest) and each wheel, x then y as floats.
+ *
+ * @author emiller
+ *
+ */
+public class SwerveKinematicsTable {
+
+	private static final int MAGIC = 0x53574b54; // "SWKT"
+	private static final int VERSION = 1;
+
+	private final int numberOfWheels;
+	private final int pointsPerAxis;
+	private final double translationRange;
+	private final double rotateRange;
+	private final int pivotId;
+	private final double pivotX;
+	private final double pivotY;
+	private final double wheelX[];
+	private final double wheelY[];
+
+	private final SwerveTrig trig;
+	private final ByteBuffer buffer;
+	private final FloatBuffer values;
+	// Floats between neighboring grid points along each axis
+	private final int pointStride;
+	private final int frontBackStride;
+	private final int strafeStride;
+
+	/**
+	 * Maximum deviation of table lookups from {@link SwerveWheel#calculateWheelVelocity}
+	 */
+	public static class Verification {
+		public int samples = 0;
+		public double maxSpeedError = 0;
+		// Angle error only counted where wheel speed is above this. Angle has no meaning at zero speed.
+		public double angleSpeedThreshold = 0;
+		public double maxAngleError = 0;
+
+		@Override
+		public String toString() {
+			return String.format("%d samples: max speed error %.5f, max angle error %.4f deg (speed > %.2f)",
+					samples, maxSpeedError, maxAngleError, angleSpeedThreshold);
+		}
+	}
+
+	private SwerveKinematicsTable(SwervePivotGeometry geometry, int pivotId, int pointsPerAxis,
+			double translationRange, double rotateRange, SwerveTrig trig, ByteBuffer buffer) {
+		this.numberOfWheels = geometry.getNumberOfWheels();
+		this.pointsPerAxis = pointsPerAxis;
+		this.translationRange = translationRange;
+		this.rotateRange = rotateRange;
+		this.pivotId = pivotId;
+		this.pivotX = geometry.getPivotX(pivotId);
+		this.pivotY = geometry.getPivotY(pivotId);
+		this.wheelX = new double[numberOfWheels];
+		this.wheelY = new double[numberOfWheels];
+		for (int iiWheel = 0; iiWheel < numberOfWheels; iiWheel++) {
+			wheelX[iiWheel] = geometry.getWheelX(iiWheel);
+			wheelY[iiWheel] = geometry.getWheelY(iiWheel);
+		}
+		this.trig = trig;
+		this.buffer = buffer;
+		buffer.position(headerSize(numberOfWheels));
+		this.values = buffer.slice().order(buffer.order()).asFloatBuffer();
+		buffer.position(0);
+		this.pointStride = 2 * numberOfWheels;
+		this.frontBackStride = pointsPerAxis * pointStride;
+		this.strafeStride = pointsPerAxis * frontBackStride;
+	}
+
+	private static int headerSize(int numberOfWheels) {
+		// magic, version, wheels, points, pivotId; ranges, pivot; wheel positions
+		return 5 * 4 + 4 * 8 + 2 * 8 * numberOfWheels;
+	}
+
+	private static int dataSize(int numberOfWheels, int pointsPerAxis) {
+		return pointsPerAxis * pointsPerAxis * pointsPerAxis * numberOfWheels * 2 * 4;
+	}
+
+	/**
+	 * Generate a table for the selected pivot of a kinematics.
+	 *
+	 * @param kinematics kinematics. Selected pivot and trigonometry are used.
+	 * @param pointsPerAxis grid points along each input axis. At least 2.
+	 * @param translationRange strafe and frontBack grid covers [-range, range].
+	 *                         Use sqrt(2) to cover field oriented drive of a full stick.
+	 * @param rotateRange rotate grid covers [-range, range]
+	 * @return new table in memory
+	 */
+	public static SwerveKinematicsTable generate(SwerveKinematics kinematics, int pointsPerAxis,
+			double translationRange, double rotateRange) {
+		if (pointsPerAxis < 2) {
+			throw new IllegalArgumentException("Table needs at least 2 points per axis");
+		}
+		SwervePivotGeometry geometry = kinematics.getGeometry();
+		int wheels = geometry.getNumberOfWheels();
+		ByteBuffer buffer = ByteBuffer.allocateDirect(headerSize(wheels) + dataSize(wheels, pointsPerAxis))
+				.order(ByteOrder.nativeOrder());
+		SwerveKinematicsTable table = new SwerveKinematicsTable(geometry, geometry.getSelected(),
+				pointsPerAxis, translationRange, rotateRange, kinematics.getTrig(), buffer);
+		table.writeHeader();
+
+		// Same wheel vectors as SwerveKinematics, kept as vectors
+		double leverX[] = geometry.getLeverX();
+		double leverY[] = geometry.getLeverY();
+		double x[] = new double[wheels];
+		double y[] = new double[wheels];
+		int index = 0;
+		for (int iiStrafe = 0; iiStrafe < pointsPerAxis; iiStrafe++) {
+			double strafe = table.gridValue(iiStrafe, translationRange);
+			for (int iiFrontBack = 0; iiFrontBack < pointsPerAxis; iiFrontBack++) {
+				double frontBack = table.gridValue(iiFrontBack, translationRange);
+				for (int iiRotate = 0; iiRotate < pointsPerAxis; iiRotate++) {
+					double rotate = table.gridValue(iiRotate, rotateRange);
+					double maxSpeed = 0;
+					for (int iiWheel = 0; iiWheel < wheels; iiWheel++) {
+						x[iiWheel] = strafe - rotate * leverY[iiWheel];
+						y[iiWheel] = frontBack + rotate * leverX[iiWheel];
+						maxSpeed = Math.max(maxSpeed, Math.hypot(x[iiWheel], y[iiWheel]));
+					}
+					double scale = maxSpeed > 1.0 ? 1.0 / maxSpeed : 1.0;
+					for (int iiWheel = 0; iiWheel < wheels; iiWheel++) {
+						table.values.put(index++, (float) (x[iiWheel] * scale));
+						table.values.put(index++, (float) (y[iiWheel] * scale));
+					}
+				}
+			}
+		}
+		return table;
+	}
+
+	/**
+	 * Memory map a table saved with {@link #save}. Table must match the selected pivot and wheel geometry,
+	 * and have been saved on a machine with the same byte order.
+	 *
+	 * @param file table file
+	 * @param kinematics kinematics the table must match
+	 * @return table backed by the mapped file
+	 * @throws IOException if file can not be read or does not match
+	 */
+	public static SwerveKinematicsTable load(File file, SwerveKinematics kinematics) throws IOException {
+		SwervePivotGeometry geometry = kinematics.getGeometry();
+		int wheels = geometry.getNumberOfWheels();
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+					.order(ByteOrder.nativeOrder());
+			if (buffer.capacity() < headerSize(wheels) ||
+					buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || buffer.getInt(8) != wheels) {
+				throw new IOException(file + " is not a kinematics table for " + wheels + " wheels");
+			}
+			int points = buffer.getInt(12);
+			int savedPivotId = buffer.getInt(16);
+			double translationRange = buffer.getDouble(20);
+			double rotateRange = buffer.getDouble(28);
+			if (points < 2 || buffer.capacity() != headerSize(wheels) + dataSize(wheels, points)) {
+				throw new IOException(file + " has wrong size");
+			}
+			if (savedPivotId < 0 || savedPivotId >= geometry.getPivotCount()) {
+				throw new IOException(file + " pivot " + savedPivotId + " is not registered");
+			}
+			SwerveKinematicsTable table = new SwerveKinematicsTable(geometry, savedPivotId, points,
+					translationRange, rotateRange, kinematics.getTrig(), buffer);
+			if (!table.matchesHeader(buffer) || savedPivotId != geometry.getSelected()) {
+				throw new IOException(file + " was generated for a different wheel geometry or pivot");
+			}
+			return table;
+		} finally {
+			// Mapping stays valid after the file is closed
+			raf.close();
+		}
+	}
+
+	/**
+	 * Load a table if a matching one is on disk, otherwise generate it and try to save it for next time.
+	 *
+	 * @param file table file
+	 * @param kinematics kinematics. Selected pivot is used.
+	 * @param pointsPerAxis grid points along each input axis, used if generating
+	 * @param translationRange strafe and frontBack range, used if generating
+	 * @param rotateRange rotate range, used if generating
+	 * @return table
+	 */
+	public static SwerveKinematicsTable loadOrGenerate(File file, SwerveKinematics kinematics,
+			int pointsPerAxis, double translationRange, double rotateRange) {
+		if (file.exists()) {
+			try {
+				SwerveKinematicsTable table = load(file, kinematics);
+				if (table.getPointsPerAxis() == pointsPerAxis &&
+						table.getTranslationRange() == translationRange &&
+						table.getRotateRange() == rotateRange) {
+					return table;
+				}
+			} catch (IOException e) {
+				System.out.println("Regenerating kinematics table: " + e.getMessage());
+			}
+		}
+		SwerveKinematicsTable table = generate(kinematics, pointsPerAxis, translationRange, rotateRange);
+		try {
+			table.save(file);
+		} catch (IOException e) {
+			System.out.println("Could not save kinematics table: " + e.getMessage());
+		}
+		return table;
+	}
+
+	/**
+	 * Write table to disk.
+	 *
+	 * @param file file to write
+	 * @throws IOException if file can not be written
+	 */
+	public void save(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.setLength(0);
+			ByteBuffer out = buffer.duplicate();
+			out.clear();
+			FileChannel channel = raf.getChannel();
+			while (out.hasRemaining()) {
+				channel.write(out);
+			}
+			channel.force(true);
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Header: magic, version, number of wheels, points per axis, pivot id (ints),
+	 * translation range, rotate range, pivot x, pivot y (doubles), then x and y of each wheel (doubles).
+	 */
+	private void writeHeader() {
+		buffer.putInt(0, MAGIC);
+		buffer.putInt(4, VERSION);
+		buffer.putInt(8, numberOfWheels);
+		buffer.putInt(12, pointsPerAxis);
+		buffer.putInt(16, pivotId);
+		buffer.putDouble(20, translationRange);
+		buffer.putDouble(28, rotateRange);
+		buffer.putDouble(36, pivotX);
+		buffer.putDouble(44, pivotY);
+		for (int iiWheel = 0; iiWheel < numberOfWheels; iiWheel++) {
+			buffer.putDouble(52 + 16 * iiWheel, wheelX[iiWheel]);
+			buffer.putDouble(60 + 16 * iiWheel, wheelY[iiWheel]);
+		}
+	}
+
+	private boolean matchesHeader(ByteBuffer saved) {
+		if (saved.getDouble(36) != pivotX || saved.getDouble(44) != pivotY) {
+			return false;
+		}
+		for (int iiWheel = 0; iiWheel < numberOfWheels; iiWheel++) {
+			if (saved.getDouble(52 + 16 * iiWheel) != wheelX[iiWheel] ||
+					saved.getDouble(60 + 16 * iiWheel) != wheelY[iiWheel]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private double gridValue(int index, double range) {
+		return -range + 2 * range * index / (pointsPerAxis - 1);
+	}
+
+	public int getPivotId() {
+		return pivotId;
+	}
+
+	public int getNumberOfWheels() {
+		return numberOfWheels;
+	}
+
+	public int getPointsPerAxis() {
+		return pointsPerAxis;
+	}
+
+	public double getTranslationRange() {
+		return translationRange;
+	}
+
+	public double getRotateRange() {
+		return rotateRange;
+	}
+
+	/**
+	 * Look up normalized wheel setpoints. Inputs outside the table range are clamped to it.
+	 *
+	 * @param strafe strafe
+	 * @param frontBack front-back
+	 * @param rotate rotate
+	 * @param speeds output wheel speeds
+	 * @param angles output wheel angles in degrees
+	 */
+	public void lookup(double strafe, double frontBack, double rotate, double speeds[], double angles[]) {
+		double positionStrafe = gridPosition(strafe, translationRange);
+		double positionFrontBack = gridPosition(frontBack, translationRange);
+		double positionRotate = gridPosition(rotate, rotateRange);
+		int iStrafe = cell(positionStrafe);
+		int iFrontBack = cell(positionFrontBack);
+		int iRotate = cell(positionRotate);
+		double fStrafe = positionStrafe - iStrafe;
+		double fFrontBack = positionFrontBack - iFrontBack;
+		double fRotate = positionRotate - iRotate;
+
+		// Weights of the eight corners, rotate varies fastest
+		double w00 = (1 - fStrafe) * (1 - fFrontBack);
+		double w01 = (1 - fStrafe) * fFrontBack;
+		double w10 = fStrafe * (1 - fFrontBack);
+		double w11 = fStrafe * fFrontBack;
+		double w000 = w00 * (1 - fRotate), w001 = w00 * fRotate;
+		double w010 = w01 * (1 - fRotate), w011 = w01 * fRotate;
+		double w100 = w10 * (1 - fRotate), w101 = w10 * fRotate;
+		double w110 = w11 * (1 - fRotate), w111 = w11 * fRotate;
+
+		int c000 = ((iStrafe * pointsPerAxis + iFrontBack) * pointsPerAxis + iRotate) * pointStride;
+		int c010 = c000 + frontBackStride;
+		int c100 = c000 + strafeStride;
+		int c110 = c100 + frontBackStride;
+		for (int iiWheel = 0; iiWheel < numberOfWheels; iiWheel++) {
+			int ix = 2 * iiWheel;
+			int iy = ix + 1;
+			double x = w000 * values.get(c000 + ix) + w001 * values.get(c000 + pointStride + ix) +
+					w010 * values.get(c010 + ix) + w011 * values.get(c010 + pointStride + ix) +
+					w100 * values.get(c100 + ix) + w101 * values.get(c100 + pointStride + ix) +
+					w110 * values.get(c110 + ix) + w111 * values.get(c110 + pointStride + ix);
+			double y = w000 * values.get(c000 + iy) + w001 * values.get(c000 + pointStride + iy) +
+					w010 * values.get(c010 + iy) + w011 * values.get(c010 + pointStride + iy) +
+					w100 * values.get(c100 + iy) + w101 * values.get(c100 + pointStride + iy) +
+					w110 * values.get(c110 + iy) + w111 * values.get(c110 + pointStride + iy);
+			speeds[iiWheel] = trig.magnitude(x, y);
+			angles[iiWheel] = trig.atan2Degrees(-x, y);
+		}
+	}
+
+	private double gridPosition(double value, double range) {
+		double position = (value + range) / (2 * range) * (pointsPerAxis - 1);
+		if (position < 0) {
+			return 0;
+		}
+		if (position > pointsPerAxis - 1) {
+			return pointsPerAxis - 1;
+		}
+		return position;
+	}
+
+	private int cell(double position) {
+		// Last grid point uses the cell below it with fraction 1
+		int cell = (int) position;
+		return cell < pointsPerAxis - 1 ? cell : pointsPerAxis - 2;
+	}
+
+	/**
+	 * Compare table against {@link SwerveWheel#calculateWheelVelocity} on a grid offset from the table grid.
+	 * Not for use on the control path.
+	 *
+	 * @param samplesPerAxis samples along each axis
+	 * @param angleSpeedThreshold only count angle errors where the exact wheel speed is above this
+	 * @return maximum deviations
+	 */
+	public Verification verify(int samplesPerAxis, double angleSpeedThreshold) {
+		Verification verification = new Verification();
+		verification.angleSpeedThreshold = angleSpeedThreshold;
+		RectangularCoordinates pivot = new RectangularCoordinates(pivotX, pivotY);
+		double maxWheelRadius = 0;
+		RectangularCoordinates wheelPositions[] = new RectangularCoordinates[numberOfWheels];
+		for (int iiWheel = 0; iiWheel < numberOfWheels; iiWheel++) {
+			wheelPositions[iiWheel] = new RectangularCoordinates(wheelX[iiWheel], wheelY[iiWheel]);
+			maxWheelRadius = Math.max(maxWheelRadius, wheelPositions[iiWheel].subtract(pivot).magnitude());
+		}
+		double speeds[] = new double[numberOfWheels];
+		double angles[] = new double[numberOfWheels];
+		VelocityPolar exact[] = new VelocityPolar[numberOfWheels];
+		for (int iiStrafe = 0; iiStrafe < samplesPerAxis; iiStrafe++) {
+			for (int iiFrontBack = 0; iiFrontBack < samplesPerAxis; iiFrontBack++) {
+				for (int iiRotate = 0; iiRotate < samplesPerAxis; iiRotate++) {
+					// Half step offset so samples fall between table grid points
+					RobotMotion motion = new RobotMotion(
+							sampleValue(iiStrafe, samplesPerAxis, translationRange),
+							sampleValue(iiFrontBack, samplesPerAxis, translationRange),
+							sampleValue(iiRotate, samplesPerAxis, rotateRange));
+					for (int iiWheel = 0; iiWheel < numberOfWheels; iiWheel++) {
+						exact[iiWheel] = SwerveWheel.calculateWheelVelocity(iiWheel, wheelPositions[iiWheel],
+								pivot, maxWheelRadius, motion);
+					}
+					SwerveWheel.normalize(exact);
+					lookup(motion.strafe, motion.frontBack, motion.rotate, speeds, angles);
+					for (int iiWheel = 0; iiWheel < numberOfWheels; iiWheel++) {
+						verification.maxSpeedError = Math.max(verification.maxSpeedError,
+								Math.abs(speeds[iiWheel] - exact[iiWheel].speed));
+						if (exact[iiWheel].speed > angleSpeedThreshold) {
+							verification.maxAngleError = Math.max(verification.maxAngleError,
+									Math.abs(SwerveWheel.normalizeAngle(angles[iiWheel] - exact[iiWheel].angle)));
+						}
+					}
+					verification.samples++;
+				}
+			}
+		}
+		return verification;
+	}
+
+	private static double sampleValue(int index, int samples, double range) {
+		return -range + 2 * range * (index + 0.5) / samples;
+	}
+
+}
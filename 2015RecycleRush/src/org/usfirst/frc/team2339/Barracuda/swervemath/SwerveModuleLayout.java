@@ -0,0 +1,53 @@
+package org.usfirst.frc.team2339.Barracuda.swervemath;
+
+import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveWheel.RectangularCoordinates;
+
+/**
+ * Wheel (module) positions for common swerve chassis shapes.
+ *
+ * Wheels are numbered in counter-clockwise order when viewed from top of robot,
+ * following Ether's derivation of swerve inverse kinematics.
+ * x is left-right, with right positive. y is front-back with front positive.
+ *
+ * @author emiller
+ *
+ */
+public class SwerveModuleLayout {
+
+	/**
+	 * Four wheels on corners of a rectangle.
+	 * Wheel 0 is front right, 1 front left, 2 rear left, 3 rear right.
+	 *
+	 * @param length length of wheel base (front-back)
+	 * @param width width of wheel base (side-side)
+	 * @return wheel positions
+	 */
+	public static RectangularCoordinates[] rectangle(double length, double width) {
+		return new RectangularCoordinates[] {
+				new RectangularCoordinates(width / 2, length / 2),
+				new RectangularCoordinates(-width / 2, length / 2),
+				new RectangularCoordinates(-width / 2, -length / 2),
+				new RectangularCoordinates(width / 2, -length / 2) };
+	}
+
+	/**
+	 * Wheels evenly spaced on a circle, e.g. 3 for a triangle chassis, 6 for a hexagon, 8 for an octagon.
+	 *
+	 * @param numberOfWheels number of wheels
+	 * @param radius distance of each wheel from center
+	 * @param firstAngle angle of wheel 0 in degrees, counter-clockwise from front.
+	 * @return wheel positions
+	 */
+	public static RectangularCoordinates[] regularPolygon(int numberOfWheels, double radius, double firstAngle) {
+		if (numberOfWheels < 2) {
+			throw new IllegalArgumentException("Swerve needs at least two wheels, not " + numberOfWheels);
+		}
+		RectangularCoordinates positions[] = new RectangularCoordinates[numberOfWheels];
+		for (int iiWheel = 0; iiWheel < numberOfWheels; iiWheel++) {
+			double angle = Math.toRadians(firstAngle + 360.0 * iiWheel / numberOfWheels);
+			positions[iiWheel] = new RectangularCoordinates(-radius * Math.sin(angle), radius * Math.cos(angle));
+		}
+		return positions;
+	}
+
+}
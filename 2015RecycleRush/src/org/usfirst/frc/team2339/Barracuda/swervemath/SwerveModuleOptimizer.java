@@ -0,0 +1,158 @@
+package org.usfirst.frc.team2339.Barracuda.swervemath;
+
+import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveWheel.VelocityPolar;
+
+/**
+ * Turns raw wheel velocities into steering setpoints and drive speeds given current wheel angles.
+ *
+ * A wheel can reach any direction by turning less than 90 degrees if it is allowed to drive backwards (flip).
+ * Flip state is kept per wheel. While a wheel is still turning to its last setpoint, flip state only changes
+ * once the turn needed past 90 degrees exceeds the hysteresis, so a noisy stick near the boundary does not make
+ * the wheels swing one way and then back the other. Once a wheel has settled within the hysteresis of its last
+ * setpoint it takes the shorter turn, so settled wheels never turn more than 90 degrees, and only a wheel
+ * already on its way can be asked to turn up to 90 + hysteresis degrees.
+ *
+ * Drive speed can be scaled by the cosine of the remaining turn, so the wheel pushes only by the amount that
+ * points in the wanted direction, and never pushes backwards. Scaling is continuous through the whole turn.
+ * It is off by default: in ModuleOptimizerSimulation it makes wheels slower to reach commanded motion and
+ * push against it more, since the wheel is still spinning up when the turn ends.
+ *
+ * No allocation in {@link #optimize(int, double[], double[], double[], double[], double[])},
+ * so it can run every control tick.
+ *
+ * @author emiller
+ *
+ */
+public class SwerveModuleOptimizer {
+
+	public static final double DEFAULT_FLIP_HYSTERESIS = 10;
+	public static final boolean DEFAULT_SCALE_SPEED = false;
+
+	private final double flipHysteresis;
+	private final boolean scaleSpeed;
+	private final boolean flipped[];
+	// Last steering setpoint per wheel, NaN if none since reset
+	private final double setpoints[];
+
+	// Results of last single wheel optimize
+	private double speed = 0;
+	private double angle = 0;
+
+	/**
+	 * Optimizer with default hysteresis and speed scaling
+	 * @param numberOfWheels number of wheels
+	 */
+	public SwerveModuleOptimizer(int numberOfWheels) {
+		this(numberOfWheels, DEFAULT_FLIP_HYSTERESIS, DEFAULT_SCALE_SPEED);
+	}
+
+	/**
+	 * @param numberOfWheels number of wheels
+	 * @param flipHysteresis degrees past 90 a turn must be before flip state of a turning wheel changes,
+	 *                       also how close to its setpoint a wheel counts as settled. Zero flips at exactly 90.
+	 * @param scaleSpeed true to scale drive speed by cosine of the remaining turn
+	 */
+	public SwerveModuleOptimizer(int numberOfWheels, double flipHysteresis, boolean scaleSpeed) {
+		if (flipHysteresis < 0 || flipHysteresis >= 90) {
+			throw new IllegalArgumentException("Flip hysteresis must be in [0, 90) degrees");
+		}
+		this.flipHysteresis = flipHysteresis;
+		this.scaleSpeed = scaleSpeed;
+		this.flipped = new boolean[numberOfWheels];
+		this.setpoints = new double[numberOfWheels];
+		reset();
+	}
+
+	public double getFlipHysteresis() {
+		return flipHysteresis;
+	}
+
+	public boolean isScaleSpeed() {
+		return scaleSpeed;
+	}
+
+	/**
+	 * @param wheelNumber wheel
+	 * @return true if wheel is driving backwards
+	 */
+	public boolean isFlipped(int wheelNumber) {
+		return flipped[wheelNumber];
+	}
+
+	/**
+	 * Forget flip state, e.g. after steering is reset.
+	 */
+	public void reset() {
+		for (int iiWheel = 0; iiWheel < flipped.length; iiWheel++) {
+			flipped[iiWheel] = false;
+			setpoints[iiWheel] = Double.NaN;
+		}
+	}
+
+	/**
+	 * Optimize all wheels.
+	 *
+	 * @param count number of wheels
+	 * @param currentAngles current wheel angles (usually from steering encoders)
+	 * @param rawSpeeds raw wheel speeds
+	 * @param rawAngles raw wheel angles
+	 * @param speeds output drive speeds. Negative when flipped.
+	 * @param angles output steering setpoints, normalized
+	 */
+	public void optimize(
+			int count,
+			double currentAngles[],
+			double rawSpeeds[],
+			double rawAngles[],
+			double speeds[],
+			double angles[]) {
+		for (int iiWheel = 0; iiWheel < count; iiWheel++) {
+			optimizeWheel(iiWheel, currentAngles[iiWheel], rawSpeeds[iiWheel], rawAngles[iiWheel]);
+			speeds[iiWheel] = speed;
+			angles[iiWheel] = angle;
+		}
+	}
+
+	/**
+	 * Optimize one wheel.
+	 *
+	 * @param wheelNumber wheel
+	 * @param currentAngle current wheel angle
+	 * @param rawVelocity raw wheel velocity
+	 * @return drive speed (negative when flipped) and steering setpoint
+	 */
+	public VelocityPolar optimize(int wheelNumber, double currentAngle, VelocityPolar rawVelocity) {
+		optimizeWheel(wheelNumber, currentAngle, rawVelocity.speed, rawVelocity.angle);
+		return new VelocityPolar(speed, angle);
+	}
+
+	private void optimizeWheel(int wheelNumber, double currentAngle, double rawSpeed, double rawAngle) {
+		double turnAngle = SwerveWheel.normalizeAngle(rawAngle - currentAngle);
+		double setpoint = setpoints[wheelNumber];
+		boolean settled = Double.isNaN(setpoint) ||
+				Math.abs(SwerveWheel.normalizeAngle(setpoint - currentAngle)) <= flipHysteresis;
+		// Turning wheels stay flipped until the forward turn is well under 90, and vice versa
+		double flipTurn = settled ? 90 : flipped[wheelNumber] ? 90 - flipHysteresis : 90 + flipHysteresis;
+		boolean flip = Math.abs(turnAngle) > flipTurn;
+		if (flip) {
+			turnAngle = SwerveWheel.normalizeAngle(turnAngle + 180);
+		}
+		flipped[wheelNumber] = flip;
+
+		double scale = scaleSpeed ? speedScale(turnAngle) : 1;
+		speed = flip ? -scale * rawSpeed : scale * rawSpeed;
+		angle = SwerveWheel.normalizeAngle(currentAngle + turnAngle);
+		setpoints[wheelNumber] = angle;
+	}
+
+	/**
+	 * Drive speed scale for a remaining turn
+	 * @param turnAngle degrees wheel still has to turn
+	 * @return cosine of turn, or zero past 90 degrees so the wheel never pushes the wrong way
+	 */
+	public static double speedScale(double turnAngle) {
+		double scale = Math.cos(Math.toRadians(turnAngle));
+		return scale > 0 ? scale : 0;
+	}
+
+}
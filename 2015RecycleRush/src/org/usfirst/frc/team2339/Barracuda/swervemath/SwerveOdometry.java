@@ -0,0 +1,141 @@
+package org.usfirst.frc.team2339.Barracuda.swervemath;
+
+/**
+ * Wheel odometry. Integrates robot motion from {@link SwerveForwardKinematics} into a field pose.
+ *
+ * Field coordinates match robot coordinates when heading is zero:
+ * x is to the right, y is forward. Heading is in degrees, positive clockwise, like the gyro.
+ * Distance units are those of maxWheelSpeed (inches per second on our robot).
+ * No allocation after construction, so it can run every control tick.
+ *
+ * @author emiller
+ *
+ */
+public class SwerveOdometry implements PoseEstimator {
+
+	private final SwerveForwardKinematics forwardKinematics;
+	private final double maxWheelSpeed;
+
+	private double x = 0;
+	private double y = 0;
+	private double heading = 0;
+
+	// Field relative velocity from last update
+	private double velocityX = 0;
+	private double velocityY = 0;
+	private double headingRate = 0;
+
+	/**
+	 * @param forwardKinematics forward kinematics about the point to track, usually robot center
+	 * @param maxWheelSpeed wheel surface speed at a wheel speed of 1.0, distance units per second
+	 */
+	public SwerveOdometry(SwerveForwardKinematics forwardKinematics, double maxWheelSpeed) {
+		this.forwardKinematics = forwardKinematics;
+		this.maxWheelSpeed = maxWheelSpeed;
+	}
+
+	public SwerveForwardKinematics getForwardKinematics() {
+		return forwardKinematics;
+	}
+
+	/**
+	 * Set current pose
+	 * @param x field x
+	 * @param y field y
+	 * @param heading heading in degrees, clockwise
+	 */
+	public void reset(double x, double y, double heading) {
+		this.x = x;
+		this.y = y;
+		this.heading = heading;
+		velocityX = 0;
+		velocityY = 0;
+		headingRate = 0;
+	}
+
+	/**
+	 * Calculate robot heading rate from wheels.
+	 * Solves forward kinematics, so call before reading robot relative motion.
+	 *
+	 * @param speeds wheel speeds
+	 * @param angles wheel angles in degrees
+	 * @return heading rate in degrees per second, clockwise
+	 */
+	public double calculateHeadingRate(double speeds[], double angles[]) {
+		forwardKinematics.solve(speeds, angles);
+		// Positive rotate turns robot counter-clockwise
+		return -Math.toDegrees(forwardKinematics.getRotate() * maxWheelSpeed / forwardKinematics.getMaxWheelRadius());
+	}
+
+	/**
+	 * Update pose using wheels for both translation and heading
+	 *
+	 * @param speeds wheel speeds. Negative speed means wheel is driving backwards.
+	 * @param angles wheel angles in degrees
+	 * @param dt time since last update in seconds
+	 */
+	public void update(double speeds[], double angles[], double dt) {
+		double rate = calculateHeadingRate(speeds, angles);
+		integrate(heading + rate * dt, rate, dt);
+	}
+
+	/**
+	 * Update pose using wheels for translation and an external heading, e.g. from the gyro.
+	 *
+	 * @param speeds wheel speeds. Negative speed means wheel is driving backwards.
+	 * @param angles wheel angles in degrees
+	 * @param dt time since last update in seconds
+	 * @param newHeading robot heading now, degrees clockwise
+	 */
+	public void update(double speeds[], double angles[], double dt, double newHeading) {
+		forwardKinematics.solve(speeds, angles);
+		integrate(newHeading, dt > 0 ? (newHeading - heading) / dt : 0, dt);
+	}
+
+	private void integrate(double newHeading, double rate, double dt) {
+		// Robot relative velocity, rotated to field using heading at middle of the step
+		double robotX = forwardKinematics.getStrafe() * maxWheelSpeed;
+		double robotY = forwardKinematics.getFrontBack() * maxWheelSpeed;
+		double midHeading = Math.toRadians(0.5 * (heading + newHeading));
+		double cosHeading = Math.cos(midHeading);
+		double sinHeading = Math.sin(midHeading);
+		velocityX = robotX * cosHeading + robotY * sinHeading;
+		velocityY = -robotX * sinHeading + robotY * cosHeading;
+		headingRate = rate;
+
+		x += velocityX * dt;
+		y += velocityY * dt;
+		heading = newHeading;
+	}
+
+	public double getX() {
+		return x;
+	}
+
+	public double getY() {
+		return y;
+	}
+
+	/**
+	 * @return heading in degrees, clockwise. Not normalized, so it keeps counting past one turn like the gyro.
+	 */
+	public double getHeading() {
+		return heading;
+	}
+
+	public double getVelocityX() {
+		return velocityX;
+	}
+
+	public double getVelocityY() {
+		return velocityY;
+	}
+
+	/**
+	 * @return heading rate in degrees per second, clockwise
+	 */
+	public double getHeadingRate() {
+		return headingRate;
+	}
+
+}
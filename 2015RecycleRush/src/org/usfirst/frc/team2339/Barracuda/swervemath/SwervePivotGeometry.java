@@ -0,0 +1,252 @@
+package org.usfirst.frc.team2339.Barracuda.swervemath;
+
+import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveWheel.RectangularCoordinates;
+
+/**
+ * Cache of wheel geometry for a set of registered pivot points.
+ *
+ * For each pivot this stores every wheel's position relative to the pivot,
+ * the rotation lever arm (relative position divided by the maximum wheel radius),
+ * and the maximum wheel radius itself.
+ * Registering a pivot does the math once. Selecting a registered pivot is a constant time lookup
+ * so the drive path only reads precomputed coefficients.
+ *
+ * @author emiller
+ *
+ */
+public class SwervePivotGeometry {
+
+	private final int numberOfWheels;
+	private final double wheelX[];
+	private final double wheelY[];
+
+	private int pivotCount = 0;
+	private double pivotX[] = new double[0];
+	private double pivotY[] = new double[0];
+	private double relativeX[][] = new double[0][];
+	private double relativeY[][] = new double[0][];
+	private double leverX[][] = new double[0][];
+	private double leverY[][] = new double[0][];
+	private double maxWheelRadius[] = new double[0];
+
+	// Currently selected pivot
+	private int selected = -1;
+
+	/**
+	 * Create geometry cache for a set of wheels.
+	 *
+	 * @param wheelPositions position of each wheel relative to robot.
+	 */
+	public SwervePivotGeometry(RectangularCoordinates wheelPositions[]) {
+		numberOfWheels = wheelPositions.length;
+		wheelX = new double[numberOfWheels];
+		wheelY = new double[numberOfWheels];
+		for (int iiWheel = 0; iiWheel < numberOfWheels; iiWheel++) {
+			wheelX[iiWheel] = wheelPositions[iiWheel].x;
+			wheelY[iiWheel] = wheelPositions[iiWheel].y;
+		}
+	}
+
+	public int getNumberOfWheels() {
+		return numberOfWheels;
+	}
+
+	public double getWheelX(int wheelNumber) {
+		return wheelX[wheelNumber];
+	}
+
+	public double getWheelY(int wheelNumber) {
+		return wheelY[wheelNumber];
+	}
+
+	public int getPivotCount() {
+		return pivotCount;
+	}
+
+	/**
+	 * Find a registered pivot at a position
+	 *
+	 * @param x pivot x
+	 * @param y pivot y
+	 * @return pivot id, or -1 if no pivot is registered at the position
+	 */
+	public int findPivot(double x, double y) {
+		for (int iiPivot = 0; iiPivot < pivotCount; iiPivot++) {
+			if (pivotX[iiPivot] == x && pivotY[iiPivot] == y) {
+				return iiPivot;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Register a pivot and precompute its wheel geometry.
+	 * If the pivot is already registered, its existing id is returned.
+	 * Not part of the per-tick path.
+	 *
+	 * @param x pivot x
+	 * @param y pivot y
+	 * @return pivot id to use with {@link #select(int)}
+	 */
+	public int register(double x, double y) {
+		int existing = findPivot(x, y);
+		if (existing >= 0) {
+			return existing;
+		}
+
+		int id = pivotCount;
+		grow(id + 1);
+		pivotX[id] = x;
+		pivotY[id] = y;
+		relativeX[id] = new double[numberOfWheels];
+		relativeY[id] = new double[numberOfWheels];
+		leverX[id] = new double[numberOfWheels];
+		leverY[id] = new double[numberOfWheels];
+
+		double maxRadius = 0;
+		for (int iiWheel = 0; iiWheel < numberOfWheels; iiWheel++) {
+			relativeX[id][iiWheel] = wheelX[iiWheel] - x;
+			relativeY[id][iiWheel] = wheelY[iiWheel] - y;
+			double radius = Math.sqrt(relativeX[id][iiWheel] * relativeX[id][iiWheel] +
+					relativeY[id][iiWheel] * relativeY[id][iiWheel]);
+			if (radius > maxRadius) {
+				maxRadius = radius;
+			}
+		}
+		// Guard against a pivot on top of a single wheel robot
+		maxWheelRadius[id] = maxRadius > 0 ? maxRadius : 1;
+		for (int iiWheel = 0; iiWheel < numberOfWheels; iiWheel++) {
+			leverX[id][iiWheel] = relativeX[id][iiWheel] / maxWheelRadius[id];
+			leverY[id][iiWheel] = relativeY[id][iiWheel] / maxWheelRadius[id];
+		}
+		pivotCount = id + 1;
+		return id;
+	}
+
+	/**
+	 * Register a pivot on top of each wheel.
+	 */
+	public void registerWheelPivots() {
+		for (int iiWheel = 0; iiWheel < numberOfWheels; iiWheel++) {
+			register(wheelX[iiWheel], wheelY[iiWheel]);
+		}
+	}
+
+	private void grow(int capacity) {
+		if (capacity <= pivotX.length) {
+			return;
+		}
+		int newLength = Math.max(capacity, 2 * pivotX.length);
+		pivotX = copyOf(pivotX, newLength);
+		pivotY = copyOf(pivotY, newLength);
+		maxWheelRadius = copyOf(maxWheelRadius, newLength);
+		relativeX = copyOf(relativeX, newLength);
+		relativeY = copyOf(relativeY, newLength);
+		leverX = copyOf(leverX, newLength);
+		leverY = copyOf(leverY, newLength);
+	}
+
+	private static double[] copyOf(double values[], int length) {
+		double copy[] = new double[length];
+		System.arraycopy(values, 0, copy, 0, values.length);
+		return copy;
+	}
+
+	private static double[][] copyOf(double values[][], int length) {
+		double copy[][] = new double[length][];
+		System.arraycopy(values, 0, copy, 0, values.length);
+		return copy;
+	}
+
+	/**
+	 * Select a registered pivot.
+	 *
+	 * @param pivotId id returned by {@link #register(double, double)}
+	 */
+	public void select(int pivotId) {
+		if (pivotId < 0 || pivotId >= pivotCount) {
+			throw new IllegalArgumentException("Pivot " + pivotId + " is not registered");
+		}
+		selected = pivotId;
+	}
+
+	public int getSelected() {
+		return selected;
+	}
+
+	public double getPivotX() {
+		return pivotX[selected];
+	}
+
+	public double getPivotY() {
+		return pivotY[selected];
+	}
+
+	public double getPivotX(int pivotId) {
+		return pivotX[pivotId];
+	}
+
+	public double getPivotY(int pivotId) {
+		return pivotY[pivotId];
+	}
+
+	/**
+	 * @return distance of wheel farthest from selected pivot
+	 */
+	public double getMaxWheelRadius() {
+		return maxWheelRadius[selected];
+	}
+
+	/**
+	 * @return wheel x positions relative to selected pivot. Do not modify.
+	 */
+	public double[] getRelativeX() {
+		return relativeX[selected];
+	}
+
+	/**
+	 * @return wheel y positions relative to selected pivot. Do not modify.
+	 */
+	public double[] getRelativeY() {
+		return relativeY[selected];
+	}
+
+	/**
+	 * @param pivotId pivot id
+	 * @return distance of wheel farthest from pivot
+	 */
+	public double getMaxWheelRadius(int pivotId) {
+		return maxWheelRadius[pivotId];
+	}
+
+	/**
+	 * @param pivotId pivot id
+	 * @return wheel x positions relative to pivot divided by max wheel radius. Do not modify.
+	 */
+	public double[] getLeverX(int pivotId) {
+		return leverX[pivotId];
+	}
+
+	/**
+	 * @param pivotId pivot id
+	 * @return wheel y positions relative to pivot divided by max wheel radius. Do not modify.
+	 */
+	public double[] getLeverY(int pivotId) {
+		return leverY[pivotId];
+	}
+
+	/**
+	 * @return wheel x positions relative to selected pivot divided by max wheel radius. Do not modify.
+	 */
+	public double[] getLeverX() {
+		return leverX[selected];
+	}
+
+	/**
+	 * @return wheel y positions relative to selected pivot divided by max wheel radius. Do not modify.
+	 */
+	public double[] getLeverY() {
+		return leverY[selected];
+	}
+
+}
@@ -0,0 +1,212 @@
+package org.usfirst.frc.team2339.Barracuda.swervemath;
+
+/**
+ * Pose estimate fusing the gyro with wheel odometry.
+ *
+ * Heading comes from a two state Kalman filter, heading and gyro bias (drift rate).
+ * The gyro angle change each update predicts heading, less bias times the time step, and the bias is
+ * modeled as a slow random walk. The measurement is the heading rate recovered from the wheel vectors
+ * by {@link SwerveForwardKinematics}, compared with the gyro rate less bias, so the wheels correct the
+ * bias the gyro can not see. Wheel speeds are commanded (there are no drive encoders), so they are trusted
+ * most once all have been zero long enough for the robot to coast to rest, since then it certainly is not
+ * turning. Bias is learned quickly while disabled or stopped and slowly while driving. A wheel rate that
+ * disagrees with the gyro by more than a gate of standard deviations is skipped, e.g. when the robot is pushed.
+ * Translation is wheel odometry rotated by the fused heading.
+ *
+ * State and covariance are a few doubles, no allocation after construction, so it can run every control tick.
+ * Units as {@link SwerveOdometry}: degrees clockwise, not wrapped, distance units of maxWheelSpeed.
+ *
+ * @author emiller
+ *
+ */
+public class SwervePoseEstimator implements PoseEstimator {
+
+	private final SwerveOdometry odometry;
+	// Process noise: gyro rate noise density, deg/s per root Hz, and bias random walk, deg/s per root second
+	private final double gyroNoise;
+	private final double biasDrift;
+	// Measurement noise of wheel heading rate, deg/s, while driving and when all wheels are stopped
+	private final double wheelRateNoise;
+	private final double stoppedRateNoise;
+	// Seconds wheels must have been stopped before the robot is taken to have stopped turning
+	private final double stoppedTime;
+	private final double gate;
+
+	// State
+	private double heading = 0;
+	private double bias = 0;
+	private double headingRate = 0;
+	// Covariance, symmetric so p10 is p01
+	private double p00 = 0;
+	private double p01 = 0;
+	private double p11;
+
+	// Gyro angle at last update, NaN until the first update after reset
+	private double lastGyroAngle = Double.NaN;
+	private double wheelRate = 0;
+	private double timeStopped = 0;
+	private boolean rejected = false;
+
+	/**
+	 * @param forwardKinematics forward kinematics about the point to track, usually robot center
+	 * @param maxWheelSpeed wheel surface speed at a wheel speed of 1.0, distance units per second
+	 * @param gyroNoise gyro rate noise density, degrees per second per root Hz
+	 * @param biasDrift gyro bias random walk, degrees per second per root second
+	 * @param initialBias standard deviation of gyro bias before any update, degrees per second
+	 * @param wheelRateNoise standard deviation of wheel heading rate while driving, degrees per second
+	 * @param stoppedRateNoise standard deviation of wheel heading rate with all wheels stopped, degrees per second
+	 * @param stoppedTime seconds all wheels must have been stopped to use stoppedRateNoise, for the robot to coast to rest
+	 * @param gate wheel rates more than this many standard deviations from the gyro are skipped
+	 */
+	public SwervePoseEstimator(SwerveForwardKinematics forwardKinematics, double maxWheelSpeed,
+			double gyroNoise, double biasDrift, double initialBias,
+			double wheelRateNoise, double stoppedRateNoise, double stoppedTime, double gate) {
+		if (!(wheelRateNoise > 0) || !(stoppedRateNoise > 0) || !(gate > 0)) {
+			throw new IllegalArgumentException("Wheel rate noise and gate must be positive");
+		}
+		this.odometry = new SwerveOdometry(forwardKinematics, maxWheelSpeed);
+		this.gyroNoise = gyroNoise;
+		this.biasDrift = biasDrift;
+		this.wheelRateNoise = wheelRateNoise;
+		this.stoppedRateNoise = stoppedRateNoise;
+		this.stoppedTime = stoppedTime;
+		this.gate = gate;
+		this.p11 = initialBias * initialBias;
+	}
+
+	/**
+	 * Set current pose. The gyro angle at the next update becomes the reference for this heading,
+	 * so the gyro itself may be reset too. Bias and its variance are kept.
+	 * @param x field x
+	 * @param y field y
+	 * @param heading heading in degrees, clockwise
+	 */
+	public void reset(double x, double y, double heading) {
+		odometry.reset(x, y, heading);
+		this.heading = heading;
+		headingRate = 0;
+		p00 = 0;
+		p01 = 0;
+		lastGyroAngle = Double.NaN;
+	}
+
+	/**
+	 * Update pose for one control tick.
+	 *
+	 * @param speeds wheel speeds since last update. Negative speed means wheel is driving backwards.
+	 * @param angles wheel angles in degrees
+	 * @param gyroAngle gyro angle now, degrees clockwise
+	 * @param dt time since last update in seconds. Zero after a gap: gyro turn is still counted,
+	 *           but the filter and translation are not updated.
+	 */
+	public void update(double speeds[], double angles[], double gyroAngle, double dt) {
+		double gyroDelta = Double.isNaN(lastGyroAngle) ? 0 : gyroAngle - lastGyroAngle;
+		lastGyroAngle = gyroAngle;
+		if (!(dt > 0)) {
+			heading += gyroDelta;
+			odometry.update(speeds, angles, 0, heading);
+			return;
+		}
+
+		// Predict. F = [1 -dt; 0 1], Q = diag(gyroNoise^2 dt, biasDrift^2 dt)
+		heading += gyroDelta - bias * dt;
+		p00 += dt * (dt * p11 - 2 * p01) + gyroNoise * gyroNoise * dt;
+		p01 -= dt * p11;
+		p11 += biasDrift * biasDrift * dt;
+
+		// Measure wheel rate against gyro rate less bias, H = [0 -1]
+		wheelRate = odometry.calculateHeadingRate(speeds, angles);
+		timeStopped = isStopped(speeds) ? timeStopped + dt : 0;
+		double noise = timeStopped >= stoppedTime ? stoppedRateNoise : wheelRateNoise;
+		double innovation = wheelRate - (gyroDelta / dt - bias);
+		double s = p11 + noise * noise;
+		rejected = innovation * innovation > gate * gate * s;
+		if (!rejected) {
+			double k0 = -p01 / s;
+			double k1 = -p11 / s;
+			heading += k0 * innovation;
+			bias += k1 * innovation;
+			p00 += k0 * p01;
+			p01 *= 1 + k1;
+			p11 *= 1 + k1;
+		}
+		headingRate = gyroDelta / dt - bias;
+
+		odometry.update(speeds, angles, dt, heading);
+	}
+
+	private static boolean isStopped(double speeds[]) {
+		for (int iiWheel = 0; iiWheel < speeds.length; iiWheel++) {
+			if (speeds[iiWheel] != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public double getX() {
+		return odometry.getX();
+	}
+
+	public double getY() {
+		return odometry.getY();
+	}
+
+	/**
+	 * @return fused heading in degrees, clockwise. Not normalized, so it keeps counting past one turn like the gyro.
+	 */
+	public double getHeading() {
+		return heading;
+	}
+
+	/**
+	 * @return gyro rate less estimated bias at last update, degrees per second clockwise
+	 */
+	public double getHeadingRate() {
+		return headingRate;
+	}
+
+	public double getVelocityX() {
+		return odometry.getVelocityX();
+	}
+
+	public double getVelocityY() {
+		return odometry.getVelocityY();
+	}
+
+	/**
+	 * @return estimated gyro bias, degrees per second clockwise
+	 */
+	public double getBias() {
+		return bias;
+	}
+
+	/**
+	 * @return variance of heading since last reset, degrees squared
+	 */
+	public double getHeadingVariance() {
+		return p00;
+	}
+
+	/**
+	 * @return variance of bias, (degrees per second) squared
+	 */
+	public double getBiasVariance() {
+		return p11;
+	}
+
+	/**
+	 * @return heading rate from the wheels at last update, degrees per second clockwise
+	 */
+	public double getWheelRate() {
+		return wheelRate;
+	}
+
+	/**
+	 * @return true if the wheel rate at last update was outside the gate and not used
+	 */
+	public boolean isWheelRateRejected() {
+		return rejected;
+	}
+
+}
@@ -0,0 +1,165 @@
+package org.usfirst.frc.team2339.Barracuda.swervemath;
+
+/**
+ * Small bounded cache of raw wheel setpoints keyed on quantized drive input.
+ *
+ * While the driver holds the stick steady the quantized input does not change,
+ * so the setpoints computed for the first tick are reused instead of redoing the field rotation,
+ * kinematics and normalization. Inputs are quantized to a configurable resolution,
+ * so a hit returns setpoints computed for an input in the same step, up to a full resolution
+ * step away on each axis (two inputs rounding to the same key can sit at either edge of it).
+ * Entries are evicted least recently used first.
+ * All storage is allocated in the constructor.
+ *
+ * @author emiller
+ *
+ */
+public class SwerveSetpointCache {
+
+	private final int capacity;
+	private final int numberOfWheels;
+	private final double resolution;
+	private final double angleResolution;
+
+	// Quantized keys per entry
+	private final int keyStrafe[];
+	private final int keyFrontBack[];
+	private final int keyRotate[];
+	private final int keyAngle[];
+	private final int keyPivot[];
+	private final long lastUsed[];
+	private int size = 0;
+
+	// Setpoints per entry, numberOfWheels values per entry
+	private final double speeds[];
+	private final double angles[];
+
+	// Key of last lookup, used by store
+	private int lastStrafe;
+	private int lastFrontBack;
+	private int lastRotate;
+	private int lastAngle;
+	private int lastPivot;
+
+	private long clock = 0;
+	private long hits = 0;
+	private long misses = 0;
+
+	/**
+	 * @param capacity maximum number of entries
+	 * @param numberOfWheels number of wheels
+	 * @param resolution quantization step of strafe, front-back and rotate
+	 * @param angleResolution quantization step of robot angle in degrees
+	 */
+	public SwerveSetpointCache(int capacity, int numberOfWheels, double resolution, double angleResolution) {
+		if (capacity < 1 || resolution <= 0 || angleResolution <= 0) {
+			throw new IllegalArgumentException("Cache needs positive capacity and resolution");
+		}
+		this.capacity = capacity;
+		this.numberOfWheels = numberOfWheels;
+		this.resolution = resolution;
+		this.angleResolution = angleResolution;
+		keyStrafe = new int[capacity];
+		keyFrontBack = new int[capacity];
+		keyRotate = new int[capacity];
+		keyAngle = new int[capacity];
+		keyPivot = new int[capacity];
+		lastUsed = new long[capacity];
+		speeds = new double[capacity * numberOfWheels];
+		angles = new double[capacity * numberOfWheels];
+	}
+
+	/**
+	 * Look up setpoints for a drive input. On a miss, call {@link #store} with the computed setpoints.
+	 *
+	 * @param strafe strafe
+	 * @param frontBack front-back
+	 * @param rotate rotate
+	 * @param robotAngle robot angle in degrees (field oriented drive)
+	 * @param pivotId selected pivot
+	 * @param speedsOut receives cached wheel speeds on a hit
+	 * @param anglesOut receives cached wheel angles on a hit
+	 * @return true on a hit
+	 */
+	public boolean lookup(double strafe, double frontBack, double rotate, double robotAngle, int pivotId,
+			double speedsOut[], double anglesOut[]) {
+		lastStrafe = (int) Math.round(strafe / resolution);
+		lastFrontBack = (int) Math.round(frontBack / resolution);
+		lastRotate = (int) Math.round(rotate / resolution);
+		lastAngle = (int) Math.round(SwerveWheel.normalizeAngle(robotAngle) / angleResolution);
+		lastPivot = pivotId;
+		clock++;
+
+		for (int iiEntry = 0; iiEntry < size; iiEntry++) {
+			if (keyStrafe[iiEntry] == lastStrafe &&
+					keyFrontBack[iiEntry] == lastFrontBack &&
+					keyRotate[iiEntry] == lastRotate &&
+					keyAngle[iiEntry] == lastAngle &&
+					keyPivot[iiEntry] == lastPivot) {
+				lastUsed[iiEntry] = clock;
+				System.arraycopy(speeds, iiEntry * numberOfWheels, speedsOut, 0, numberOfWheels);
+				System.arraycopy(angles, iiEntry * numberOfWheels, anglesOut, 0, numberOfWheels);
+				hits++;
+				return true;
+			}
+		}
+		misses++;
+		return false;
+	}
+
+	/**
+	 * Store setpoints for the input of the last {@link #lookup}, evicting the least recently used entry if full.
+	 *
+	 * @param speedsIn wheel speeds
+	 * @param anglesIn wheel angles
+	 */
+	public void store(double speedsIn[], double anglesIn[]) {
+		int entry;
+		if (size < capacity) {
+			entry = size++;
+		} else {
+			entry = 0;
+			for (int iiEntry = 1; iiEntry < capacity; iiEntry++) {
+				if (lastUsed[iiEntry] < lastUsed[entry]) {
+					entry = iiEntry;
+				}
+			}
+		}
+		keyStrafe[entry] = lastStrafe;
+		keyFrontBack[entry] = lastFrontBack;
+		keyRotate[entry] = lastRotate;
+		keyAngle[entry] = lastAngle;
+		keyPivot[entry] = lastPivot;
+		lastUsed[entry] = clock;
+		System.arraycopy(speedsIn, 0, speeds, entry * numberOfWheels, numberOfWheels);
+		System.arraycopy(anglesIn, 0, angles, entry * numberOfWheels, numberOfWheels);
+	}
+
+	/**
+	 * Remove all entries. Counters are kept.
+	 */
+	public void clear() {
+		size = 0;
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public long getHits() {
+		return hits;
+	}
+
+	public long getMisses() {
+		return misses;
+	}
+
+	public long getLookups() {
+		return hits + misses;
+	}
+
+}
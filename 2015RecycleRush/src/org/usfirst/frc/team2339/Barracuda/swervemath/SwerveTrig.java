@@ -0,0 +1,200 @@
+package org.usfirst.frc.team2339.Barracuda.swervemath;
+
+/**
+ * Trigonometry used by the swerve kinematics.
+ *
+ * {@link #STANDARD} uses java.lang.Math. {@link #FAST} uses a polynomial atan2,
+ * table sine and cosine, and a plain square root magnitude with the error bounds given below.
+ * Kinematics and drive classes take one of these at construction time.
+ * Angles are in degrees, matching the rest of the swerve code.
+ *
+ * @author emiller
+ *
+ */
+public abstract class SwerveTrig {
+
+	/**
+	 * Exact (java.lang.Math) trigonometry
+	 */
+	public static final SwerveTrig STANDARD = new StandardTrig();
+
+	/**
+	 * Fast trigonometry with bounded error
+	 */
+	public static final SwerveTrig FAST = new FastTrig();
+
+	/**
+	 * Angle of vector (x, y) from the x axis, same argument order as Math.atan2.
+	 * @param y y component
+	 * @param x x component
+	 * @return angle in degrees, range [-180, 180]
+	 */
+	public abstract double atan2Degrees(double y, double x);
+
+	/**
+	 * @param degrees angle in degrees
+	 * @return sine of angle
+	 */
+	public abstract double sinDegrees(double degrees);
+
+	/**
+	 * @param degrees angle in degrees
+	 * @return cosine of angle
+	 */
+	public abstract double cosDegrees(double degrees);
+
+	/**
+	 * @param x x component
+	 * @param y y component
+	 * @return length of vector (x, y)
+	 */
+	public abstract double magnitude(double x, double y);
+
+	/**
+	 * @return maximum absolute error of {@link #atan2Degrees} in degrees
+	 */
+	public abstract double getMaxAngleError();
+
+	/**
+	 * @return maximum absolute error of {@link #sinDegrees} and {@link #cosDegrees}
+	 */
+	public abstract double getMaxSinCosError();
+
+	/**
+	 * @return maximum relative error of {@link #magnitude}
+	 */
+	public abstract double getMaxMagnitudeError();
+
+	/**
+	 * java.lang.Math trigonometry. Errors are those of java.lang.Math (about one ulp).
+	 */
+	public static class StandardTrig extends SwerveTrig {
+
+		@Override
+		public double atan2Degrees(double y, double x) {
+			return Math.toDegrees(Math.atan2(y, x));
+		}
+
+		@Override
+		public double sinDegrees(double degrees) {
+			return Math.sin(Math.toRadians(degrees));
+		}
+
+		@Override
+		public double cosDegrees(double degrees) {
+			return Math.cos(Math.toRadians(degrees));
+		}
+
+		@Override
+		public double magnitude(double x, double y) {
+			return Math.hypot(x, y);
+		}
+
+		@Override
+		public double getMaxAngleError() {
+			return 1e-12;
+		}
+
+		@Override
+		public double getMaxSinCosError() {
+			return 1e-15;
+		}
+
+		@Override
+		public double getMaxMagnitudeError() {
+			return 1e-15;
+		}
+	}
+
+	/**
+	 * Fast trigonometry.
+	 *
+	 * atan2 uses a 6 term odd minimax polynomial for atan on [0, 1] with octant reduction.
+	 * Maximum error is 1e-4 degrees (measured 9.6e-5).
+	 *
+	 * sin and cos use linear interpolation between entries of a 4096 entry table over one turn.
+	 * Maximum error is h^2/8 for step h in radians, which is 3e-7.
+	 *
+	 * magnitude uses Math.sqrt(x * x + y * y). Error is about one ulp.
+	 * Unlike Math.hypot it does not guard against overflow, which can not happen for joystick sized values.
+	 */
+	public static class FastTrig extends SwerveTrig {
+
+		private static final int TABLE_BITS = 12;
+		private static final int TABLE_SIZE = 1 << TABLE_BITS;
+		private static final int TABLE_MASK = TABLE_SIZE - 1;
+		private static final double TABLE_STEPS_PER_DEGREE = TABLE_SIZE / 360.0;
+
+		// One extra entry so interpolation never wraps
+		private static final double SIN_TABLE[] = new double[TABLE_SIZE + 1];
+
+		static {
+			for (int ii = 0; ii <= TABLE_SIZE; ii++) {
+				SIN_TABLE[ii] = Math.sin(2 * Math.PI * ii / TABLE_SIZE);
+			}
+		}
+
+		// Minimax coefficients for atan(a) / a on [0, 1] in degrees
+		private static final double ATAN_C1 = Math.toDegrees(0.99997726);
+		private static final double ATAN_C3 = Math.toDegrees(-0.33262347);
+		private static final double ATAN_C5 = Math.toDegrees(0.19354346);
+		private static final double ATAN_C7 = Math.toDegrees(-0.11643287);
+		private static final double ATAN_C9 = Math.toDegrees(0.05265332);
+		private static final double ATAN_C11 = Math.toDegrees(-0.01172120);
+
+		@Override
+		public double atan2Degrees(double y, double x) {
+			double absX = Math.abs(x);
+			double absY = Math.abs(y);
+			if (absX == 0 && absY == 0) {
+				return 0;
+			}
+			boolean steep = absY > absX;
+			double a = steep ? absX / absY : absY / absX;
+			double s = a * a;
+			double angle = a * (ATAN_C1 + s * (ATAN_C3 + s * (ATAN_C5 + s * (ATAN_C7 + s * (ATAN_C9 + s * ATAN_C11)))));
+			if (steep) {
+				angle = 90 - angle;
+			}
+			if (x < 0) {
+				angle = 180 - angle;
+			}
+			return y < 0 ? -angle : angle;
+		}
+
+		@Override
+		public double sinDegrees(double degrees) {
+			double position = degrees * TABLE_STEPS_PER_DEGREE;
+			double floor = Math.floor(position);
+			int index = ((int) (long) floor) & TABLE_MASK;
+			double fraction = position - floor;
+			return SIN_TABLE[index] + fraction * (SIN_TABLE[index + 1] - SIN_TABLE[index]);
+		}
+
+		@Override
+		public double cosDegrees(double degrees) {
+			return sinDegrees(degrees + 90);
+		}
+
+		@Override
+		public double magnitude(double x, double y) {
+			return Math.sqrt(x * x + y * y);
+		}
+
+		@Override
+		public double getMaxAngleError() {
+			return 1e-4;
+		}
+
+		@Override
+		public double getMaxSinCosError() {
+			return 3e-7;
+		}
+
+		@Override
+		public double getMaxMagnitudeError() {
+			return 1e-15;
+		}
+	}
+
+}
@@ -1,13 +1,17 @@
 package org.usfirst.frc.team2339.Barracuda.swervemath;
 
 import org.usfirst.frc.team2339.Barracuda.smartdashboard.SendablePosition;
-
-import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import org.usfirst.frc.team2339.Barracuda.telemetry.DashboardPublisher;
 
 
 
 public class SwerveWheel {
 
+    private static final DashboardPublisher.IndexedKeys positionYKeys =
+    		new DashboardPublisher.IndexedKeys("Wheel ", " position y ");
+    private static final DashboardPublisher.IndexedKeys relativePositionYKeys =
+    		new DashboardPublisher.IndexedKeys("Wheel ", " rel posit y ");
+
 	/**
      * Store rectangular (x and y) coordinates
      * Can represent a position or a vector
@@ -69,53 +73,6 @@ public class SwerveWheel {
     	}
     }
     
-    /**
-     * Class to store angle and flip together
-     * @author emiller
-     *
-     */
-    public static class AngleFlip {
-    	private double angle;
-    	private boolean flip;
-    	
-    	public AngleFlip() {
-    		setAngle(0);
-    		setFlip(false);
-    	}
-    	public AngleFlip(double angle) {
-    		this.setAngle(angle);
-    		setFlip(false);
-    	}
-    	public AngleFlip(double angle, boolean flip) {
-    		this.setAngle(angle);
-    		flip = false;
-    	}
-		/**
-		 * @return the angle
-		 */
-		public double getAngle() {
-			return angle;
-		}
-		/**
-		 * @param angle the angle to set
-		 */
-		public void setAngle(double angle) {
-			this.angle = angle;
-		}
-		/**
-		 * @return the flip
-		 */
-		public boolean isFlip() {
-			return flip;
-		}
-		/**
-		 * @param flip the flip to set
-		 */
-		public void setFlip(boolean flip) {
-			this.flip = flip;
-		}
-    };
-    
 	public static double getRadialAngle(RectangularCoordinates wheelPosition) {
 		return Math.toDegrees(Math.atan2(wheelPosition.x, wheelPosition.y));
 	}
@@ -144,22 +101,46 @@ public class SwerveWheel {
     		RectangularCoordinates pivot,
     		double maxWheelRadius, 
     		RobotMotion robotMotion) {
+    	return calculateWheelVelocity(wheelNumber, wheelPosition, pivot, maxWheelRadius, robotMotion, 
+    			SwerveTrig.STANDARD);
+    }
+    
+    /**
+     * Calculate wheel velocity vector given wheel position and pivot location. 
+     * Same as {@link #calculateWheelVelocity(int, RectangularCoordinates, RectangularCoordinates, double, RobotMotion)}
+     * using the given trigonometry.
+     * 
+     * @param wheelNumber Wheel number (for putting info on Smartdashboard)
+     * @param wheelPosition Position of wheel. 
+     * @param pivot Position of pivot. 
+     * @param maxWheelRadius distance of furtherest wheel on robot from pivot.
+     * @param robotMotion desired motion of robot.
+     * @param trig trigonometry to use
+     * @return wheel polar velocity (speed and angle)
+     */
+    public static VelocityPolar calculateWheelVelocity(
+    		int wheelNumber, 
+    		RectangularCoordinates wheelPosition,
+    		RectangularCoordinates pivot,
+    		double maxWheelRadius, 
+    		RobotMotion robotMotion, 
+    		SwerveTrig trig) {
     	
     	/*SmartDashboard.putData("Wheel " + wheelNumber + " position ", 
     			new SendablePosition(wheelPosition.x, wheelPosition.y));*/
-    	SmartDashboard.putNumber("Wheel " + wheelNumber + " position y ", wheelPosition.y);
+    	positionYKeys.put(wheelNumber, wheelPosition.y);
     	RectangularCoordinates wheelRelativePosition = wheelPosition.subtract(pivot);
     	/*SmartDashboard.putData("Wheel " + wheelNumber + " rel posit ", 
     			new SendablePosition(wheelRelativePosition.x, wheelRelativePosition.y));*/
-    	SmartDashboard.putNumber("Wheel " + wheelNumber + " rel posit y ", wheelRelativePosition.y);
+    	relativePositionYKeys.put(wheelNumber, wheelRelativePosition.y);
     	double rotateSpeed = robotMotion.rotate / maxWheelRadius;
     	RectangularCoordinates wheelVectorRobotCoord = new RectangularCoordinates(
     			robotMotion.strafe - rotateSpeed * wheelRelativePosition.y,  
     			robotMotion.frontBack + rotateSpeed * wheelRelativePosition.x);
 
-    	double wheelSpeed = Math.hypot(wheelVectorRobotCoord.x, wheelVectorRobotCoord.y); 
+    	double wheelSpeed = trig.magnitude(wheelVectorRobotCoord.x, wheelVectorRobotCoord.y); 
     	// Clockwise
-    	double wheelAngle = Math.toDegrees(Math.atan2(-wheelVectorRobotCoord.x, wheelVectorRobotCoord.y));
+    	double wheelAngle = trig.atan2Degrees(-wheelVectorRobotCoord.x, wheelVectorRobotCoord.y);
     	// Counter clockwise
     	// double wheelAngle = Math.toDegrees(Math.atan2(-wheelVectorRobotCoord.x, wheelVectorRobotCoord.y));
     	
@@ -180,30 +161,10 @@ public class SwerveWheel {
     public static VelocityPolar[] calculateRectangularWheelVelocities(double length, double width, 
     		RobotMotion robotMotion, RectangularCoordinates pivot) {
     	
-    	VelocityPolar rawVelocities[] = new VelocityPolar[4];
-    	RectangularCoordinates wheelPosition = new RectangularCoordinates(0, 0);
-		for (int iiWheel = 0; iiWheel < 4; iiWheel++) {
-			switch(iiWheel) {
-			case 0:
-			default:
-				wheelPosition.x = width/2;
-				wheelPosition.y = length/2;
-				break;
-			case 1:
-				wheelPosition.x = -width/2;
-				wheelPosition.y = length/2;
-				break;
-			case 2:
-				wheelPosition.x = -width/2;
-				wheelPosition.y = -length/2;
-				break;
-			case 3:
-				wheelPosition.x = width/2;
-				wheelPosition.y = -length/2;
-				break;
-				
-			}
-    		rawVelocities[iiWheel] = calculateWheelVelocity(wheelPosition, pivot, 
+    	RectangularCoordinates wheelPositions[] = SwerveModuleLayout.rectangle(length, width);
+    	VelocityPolar rawVelocities[] = new VelocityPolar[wheelPositions.length];
+		for (int iiWheel = 0; iiWheel < wheelPositions.length; iiWheel++) {
+    		rawVelocities[iiWheel] = calculateWheelVelocity(wheelPositions[iiWheel], pivot, 
     				Math.hypot(width/2, length/2), robotMotion);
     	}
 		
@@ -233,55 +194,15 @@ public class SwerveWheel {
     }
 
     /**
-     * Compute angle needed to turn and whether or not flip is needed
-     * @param currentAngle
-     * @param targetAngle
-     * @return new angle with flip
-     */
-    public static AngleFlip computeTurnAngle(double currentAngle, double targetAngle) {
-    	AngleFlip turnAngle = new AngleFlip(targetAngle - currentAngle, false);
-    	if (Math.abs(turnAngle.getAngle()) > 90) {
-    		turnAngle.setAngle(normalizeAngle(turnAngle.getAngle() + 180));
-    		turnAngle.setFlip(true);
-    	}
-    	return turnAngle;
-    }
-    
-    /**
-     * Compute change angle to get from current to target angle.
-     * @param currentAngle Current angle
-     * @param targetAngle New angle to change to
-     * @return change angle
-     */
-    public static double computeChangeAngle(double currentAngle, double targetAngle) {
-    	return computeTurnAngle(currentAngle, targetAngle).getAngle();
-    }
-    
-    /**
-     * Scale drive speed based on how far wheel needs to turn
-     * @param turnAngle Angle wheel needs to turn (with flip value)
-     * @return speed scale factor in range [0, 1]
+     * Wraps an angle in degrees to [-180, 180), in constant time for control loops.
+     * Unlike {@link #normalizeAngle(double)}, 180 wraps to -180.
+     * @param theta Angle to wrap
+     * @return Wrapped angle
      */
-    public static double driveScale(AngleFlip turnAngle) {
-    	double scale = 0;
-    	if (Math.abs(turnAngle.getAngle()) <= 90) {
-    		/*
-    		 * Eric comment: I don't like the discontinuous nature of this scaling.
-    		 * Possible improvements:
-    		 *   1) Scale any angle < 90.
-    		 */
-    		scale = Math.cos(Math.toRadians(turnAngle.getAngle()));
-    	} else {
-    		scale = 0;
-    	}
-    	// Override above speed scaling.
-    	scale = 1;
-    	if (turnAngle.isFlip()) {
-    		scale = -scale;
-    	}
-    	return scale;
+    public static double wrapAngle(double theta) {
+    	return theta - 360.0 * Math.floor((theta + 180.0) / 360.0);
     }
-    
+
     public static void normalize(VelocityPolar velocities[]) {
     	double maxSpeed = 0;
     	for (int iiWheel = 0; iiWheel < velocities.length; iiWheel++) {
@@ -299,17 +220,14 @@ public class SwerveWheel {
     
     /**
      * Calculate wheel velocity change (delta) based on current data.
+     * Keeps no flip state between calls, so there is no flip hysteresis. 
+     * Use a {@link SwerveModuleOptimizer} when calling every tick.
+     * @param currentVelocity Current wheel data. Only angle is used.
      * @param rawVelocity Raw wheel change data
      * @return wheel change data (delta) based on current wheel values
      */
     public static VelocityPolar calculateDeltaWheelData(VelocityPolar currentVelocity, VelocityPolar rawVelocity) {
-    	VelocityPolar deltaVelocity = new VelocityPolar(0, 0);
-		// Compute turn angle from encoder value (pidGet) and raw target value
-		AngleFlip turnAngle = computeTurnAngle(currentVelocity.angle, rawVelocity.angle);
-		double targetAngle = normalizeAngle(currentVelocity.angle + turnAngle.getAngle()); 
-        deltaVelocity.angle = targetAngle;
-        deltaVelocity.speed = driveScale(turnAngle) * rawVelocity.speed;
-    	return deltaVelocity;
+        return new SwerveModuleOptimizer(1, 0, SwerveModuleOptimizer.DEFAULT_SCALE_SPEED).optimize(0, currentVelocity.angle, rawVelocity);
     }
     
 }
@@ -17,6 +17,8 @@ public class WorkingPalmdale {
     public static final int rearLeft = MotorType.kRearLeft.value;
     public static final int rearRight = MotorType.kRearRight.value;
     
+    private final SwerveModuleOptimizer optimizer = new SwerveModuleOptimizer(kMaxNumberOfMotors);
+    
     public static class WheelVelocityVector {
     	public double wheelSpeed = 0;
     	public double wheelAngle = 0;
@@ -209,63 +211,19 @@ public class WorkingPalmdale {
      */
     public WheelData calculateDeltaWheelData(WheelData currentWheelData, WheelData rawWheelData) {
     	WheelData deltaWheelData = new WheelData();
+    	// Compute turn angle from encoder value (pidGet) and raw target value
+    	optimizer.optimize(kMaxNumberOfMotors, currentWheelData.wheelAngles, 
+    			rawWheelData.wheelSpeeds, rawWheelData.wheelAngles, 
+    			deltaWheelData.wheelSpeeds, deltaWheelData.wheelAngles);
     	for (int iiWheel = 0; iiWheel < kMaxNumberOfMotors; iiWheel++) {
-    		// Compute turn angle from encoder value (pidGet) and raw target value
     		System.out.println("Wheel " + iiWheel + " current angle " + currentWheelData.wheelAngles[iiWheel]);
-    		AngleFlip turnAngle = computeTurnAngle(currentWheelData.wheelAngles[iiWheel], rawWheelData.wheelAngles[iiWheel]);
-            deltaWheelData.wheelAngles[iiWheel] = turnAngle.getAngle();
-            deltaWheelData.wheelSpeeds[iiWheel] = driveScale(turnAngle) * rawWheelData.wheelSpeeds[iiWheel];
+    		// Delta angles are the turn from current angle
+            deltaWheelData.wheelAngles[iiWheel] = normalizeAngle(
+            		deltaWheelData.wheelAngles[iiWheel] - currentWheelData.wheelAngles[iiWheel]);
     	}
     	return deltaWheelData;
     }
     
-    /**
-     * Class to store angle and flip together
-     * @author emiller
-     *
-     */
-    public static class AngleFlip {
-    	private double angle;
-    	private boolean flip;
-    	
-    	public AngleFlip() {
-    		setAngle(0);
-    		setFlip(false);
-    	}
-    	public AngleFlip(double angle) {
-    		this.setAngle(angle);
-    		setFlip(false);
-    	}
-    	public AngleFlip(double angle, boolean flip) {
-    		this.setAngle(angle);
-    		flip = false;
-    	}
-		/**
-		 * @return the angle
-		 */
-		public double getAngle() {
-			return angle;
-		}
-		/**
-		 * @param angle the angle to set
-		 */
-		public void setAngle(double angle) {
-			this.angle = angle;
-		}
-		/**
-		 * @return the flip
-		 */
-		public boolean isFlip() {
-			return flip;
-		}
-		/**
-		 * @param flip the flip to set
-		 */
-		public void setFlip(boolean flip) {
-			this.flip = flip;
-		}
-    };
-    
     /** 
      * Normalizes an angle in degrees to (-180, 180].
      * @param theta Angle to normalize
@@ -281,54 +239,4 @@ public class WorkingPalmdale {
     	return theta;
     }
 
-    /**
-     * Compute angle needed to turn and whether or not flip is needed
-     * @param currentAngle
-     * @param targetAngle
-     * @return new angle with flip
-     */
-    public static AngleFlip computeTurnAngle(double currentAngle, double targetAngle) {
-    	AngleFlip turnAngle = new AngleFlip(targetAngle - currentAngle, false);
-    	if (Math.abs(turnAngle.getAngle()) > 90) {
-    		turnAngle.setAngle(normalizeAngle(turnAngle.getAngle() + 180));
-    		turnAngle.setFlip(true);
-    	}
-    	return turnAngle;
-    }
-    
-    /**
-     * Compute change angle to get from current to target angle.
-     * @param currentAngle Current angle
-     * @param targetAngle New angle to change to
-     * @return change angle
-     */
-    public static double computeChangeAngle(double currentAngle, double targetAngle) {
-    	return computeTurnAngle(currentAngle, targetAngle).getAngle();
-    }
-    
-    /**
-     * Scale drive speed based on how far wheel needs to turn
-     * @param turnAngle Angle wheel needs to turn (with flip value)
-     * @return speed scale factor in range [0, 1]
-     */
-    public static double driveScale(AngleFlip turnAngle) {
-    	double scale = 0;
-    	if (Math.abs(turnAngle.getAngle()) < 45) {
-    		/*
-    		 * Eric comment: I don't like the discontinuous nature of this scaling.
-    		 * Possible improvements:
-    		 *   1) Use cosine(2 * turnAngle)
-    		 *   2) Scale any angle < 90.
-    		 */
-    		scale = Math.cos(Math.toRadians(turnAngle.getAngle()));
-    	} else {
-    		scale = 0;
-    	}
-    	if (turnAngle.isFlip()) {
-    		scale = -scale;
-    	}
-    	return scale;
-    }
-    
-
 }
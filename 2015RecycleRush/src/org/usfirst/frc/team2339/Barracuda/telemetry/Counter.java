@@ -0,0 +1,36 @@
+package org.usfirst.frc.team2339.Barracuda.telemetry;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free event counter. Get one from {@link MetricsRegistry#counter(String)}.
+ *
+ * @author emiller
+ *
+ */
+public class Counter {
+
+	private final String name;
+	private final AtomicLong count = new AtomicLong();
+
+	Counter(String name) {
+		this.name = name;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public void increment() {
+		count.incrementAndGet();
+	}
+
+	public void add(long amount) {
+		count.addAndGet(amount);
+	}
+
+	public long get() {
+		return count.get();
+	}
+
+}
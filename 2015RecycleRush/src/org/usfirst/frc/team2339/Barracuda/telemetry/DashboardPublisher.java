@@ -0,0 +1,202 @@
+package org.usfirst.frc.team2339.Barracuda.telemetry;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+
+/**
+ * Puts numbers on the SmartDashboard from a background thread, so control code never builds key strings
+ * or waits on NetworkTables.
+ *
+ * Register each key once (e.g. in a constructor) and keep the slot number. {@link #put(int, double)} only stores
+ * the value's bits in a primitive array. The publish thread sends values that changed since they were last sent,
+ * at most once per period. Values put more often than that are sampled, the latest one wins.
+ *
+ * Registering an existing key returns the same slot.
+ *
+ * @author emiller
+ *
+ */
+public class DashboardPublisher implements Runnable {
+
+	public static final int MAX_KEYS = 256;
+
+	// NaN with a payload no arithmetic produces, marks slots never put
+	private static final long UNSET = 0x7ff8dead0000beefL;
+
+	private static final String keys[] = new String[MAX_KEYS];
+	private static volatile int keyCount = 0;
+	private static final AtomicLongArray values = new AtomicLongArray(MAX_KEYS);
+	// Used by publish only
+	private static final long sent[] = new long[MAX_KEYS];
+	private static final Counter sends = MetricsRegistry.counter("Dashboard sends");
+	private static final LatencyHistogram publishLatency = MetricsRegistry.histogram("Dashboard publish");
+
+	private static DashboardPublisher publisher = null;
+
+	static {
+		for (int iiSlot = 0; iiSlot < MAX_KEYS; iiSlot++) {
+			values.set(iiSlot, UNSET);
+			sent[iiSlot] = UNSET;
+		}
+	}
+
+	private final long periodNanos;
+	private final Thread thread;
+	private volatile boolean running = false;
+
+	private DashboardPublisher(double frequency) {
+		this.periodNanos = Math.round(1e9 / frequency);
+		this.thread = new Thread(this, "Dashboard publisher");
+		thread.setDaemon(true);
+		thread.setPriority(Thread.MIN_PRIORITY);
+	}
+
+	/**
+	 * @param key dashboard key
+	 * @return slot to put values for key
+	 */
+	public static synchronized int register(String key) {
+		int count = keyCount;
+		for (int iiSlot = 0; iiSlot < count; iiSlot++) {
+			if (keys[iiSlot].equals(key)) {
+				return iiSlot;
+			}
+		}
+		if (count >= MAX_KEYS) {
+			throw new IllegalStateException("More than " + MAX_KEYS + " dashboard keys");
+		}
+		keys[count] = key.intern();
+		keyCount = count + 1;
+		return count;
+	}
+
+	/**
+	 * @param slot slot from {@link #register(String)}
+	 * @return key registered for slot
+	 */
+	public static String getKey(int slot) {
+		return keys[slot];
+	}
+
+	/**
+	 * Set value to publish. Never blocks or allocates.
+	 * @param slot slot from {@link #register(String)}
+	 * @param value value
+	 */
+	public static void put(int slot, double value) {
+		values.lazySet(slot, Double.doubleToRawLongBits(value));
+	}
+
+	/**
+	 * Start publish thread. Does nothing if already started.
+	 * @param frequency publishes per second
+	 */
+	public static synchronized void start(double frequency) {
+		if (publisher == null) {
+			publisher = new DashboardPublisher(frequency);
+			publisher.running = true;
+			publisher.thread.start();
+		}
+	}
+
+	/**
+	 * Stop publish thread after current publish
+	 */
+	public static synchronized void stop() {
+		if (publisher != null) {
+			publisher.running = false;
+			LockSupport.unpark(publisher.thread);
+			publisher = null;
+		}
+	}
+
+	/**
+	 * Send changed values to dashboard now. Called by publish thread.
+	 * @return number of values sent
+	 */
+	public static synchronized int publish() {
+		long start = System.nanoTime();
+		int count = keyCount;
+		int sentCount = 0;
+		for (int iiSlot = 0; iiSlot < count; iiSlot++) {
+			long bits = values.get(iiSlot);
+			if (bits != sent[iiSlot] && bits != UNSET) {
+				SmartDashboard.putNumber(keys[iiSlot], Double.longBitsToDouble(bits));
+				sent[iiSlot] = bits;
+				sentCount++;
+			}
+		}
+		sends.add(sentCount);
+		publishLatency.recordSince(start);
+		return sentCount;
+	}
+
+	@Override
+	public void run() {
+		long deadline = System.nanoTime();
+		while (running) {
+			publish();
+			deadline += periodNanos;
+			long now = System.nanoTime();
+			if (now - deadline >= periodNanos) {
+				deadline = now;
+			}
+			while (running && now < deadline) {
+				LockSupport.parkNanos(deadline - now);
+				now = System.nanoTime();
+			}
+		}
+	}
+
+	/**
+	 * Slots for a family of keys "prefix index suffix", e.g. one per wheel.
+	 * Slots are registered the first time an index is used.
+	 */
+	public static class IndexedKeys {
+		private final String prefix;
+		private final String suffix;
+		private volatile int slots[] = new int[0];
+
+		public IndexedKeys(String prefix, String suffix) {
+			this.prefix = prefix;
+			this.suffix = suffix;
+		}
+
+		/**
+		 * @param index index, e.g. wheel number
+		 * @return slot for key with index
+		 */
+		public int slot(int index) {
+			int current[] = slots;
+			if (index < current.length) {
+				return current[index];
+			}
+			return grow(index);
+		}
+
+		private synchronized int grow(int index) {
+			int current[] = slots;
+			if (index < current.length) {
+				return current[index];
+			}
+			int grown[] = new int[index + 1];
+			System.arraycopy(current, 0, grown, 0, current.length);
+			for (int iiIndex = current.length; iiIndex <= index; iiIndex++) {
+				grown[iiIndex] = register(prefix + iiIndex + suffix);
+			}
+			slots = grown;
+			return grown[index];
+		}
+
+		/**
+		 * @param index index, e.g. wheel number
+		 * @param value value
+		 */
+		public void put(int index, double value) {
+			DashboardPublisher.put(slot(index), value);
+		}
+	}
+
+}
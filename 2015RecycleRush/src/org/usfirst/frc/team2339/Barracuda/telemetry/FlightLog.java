@@ -0,0 +1,425 @@
+package org.usfirst.frc.team2339.Barracuda.telemetry;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Ring of fixed size binary records in memory mapped segment files.
+ *
+ * Record n goes in slot n modulo (segments * records per segment), so writing rotates through the segment files
+ * and overwrites the oldest records. All segments are mapped and paged in when the log is opened.
+ * After that, writing a record is plain memory writes: no allocation and no system calls.
+ * A background thread forces written pages to disk every flush period.
+ *
+ * Each slot is the record sequence number, the payload, then the sequence number again as a commit marker.
+ * Starting a record first clears the commit marker, so after a power loss only the record being written
+ * (or records not yet flushed) fail to read back. The {@link Reader} skips them.
+ *
+ * Segment file format (little endian, the roboRIO's order): header described in {@link #writeHeader},
+ * then the slots. The header carries a record format version from the writer, so a reader can tell payload
+ * layouts of the same size apart. A segment file left by a log with a different layout (record format,
+ * payload size, record or segment count, version) is never overwritten: it is renamed aside with the time
+ * it was found, so name-0.log becomes name.yyyyMMdd-HHmmss-0.log, and can still be read with that prefix.
+ *
+ * Only one thread may write.
+ *
+ * @author emiller
+ *
+ */
+public class FlightLog {
+
+	private static final int MAGIC = 0x464c4f47; // "FLOG"
+	// 2 added record format
+	private static final int VERSION = 2;
+	static final int HEADER_SIZE = 32;
+	private static final long NOT_COMMITTED = -1;
+
+	private final int recordFormat;
+	private final int payloadSize;
+	private final int slotSize;
+	private final int recordsPerSegment;
+	private final MappedByteBuffer segments[];
+	private long sequence;
+	private ByteBuffer current = null;
+	private int currentOffset;
+
+	private volatile boolean flushing = false;
+	private Thread flusher = null;
+
+	/**
+	 * Open log, continuing after the newest record already on disk.
+	 * Segment files that do not match the record layout are renamed aside and new ones started.
+	 *
+	 * @param directory directory for segment files, created if needed
+	 * @param name segment file name prefix
+	 * @param recordFormat version of the payload layout, changed whenever the writer's layout changes
+	 * @param payloadSize bytes of each record payload
+	 * @param recordsPerSegment records in each segment file
+	 * @param segmentCount number of segment files
+	 * @throws IOException if segment files can not be created or mapped
+	 */
+	public FlightLog(File directory, String name, int recordFormat, int payloadSize, int recordsPerSegment,
+			int segmentCount) throws IOException {
+		if (payloadSize <= 0 || recordsPerSegment <= 0 || segmentCount <= 0) {
+			throw new IllegalArgumentException("Flight log needs positive payload size and record count");
+		}
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Can not create " + directory);
+		}
+		this.recordFormat = recordFormat;
+		this.payloadSize = payloadSize;
+		this.slotSize = slotSize(payloadSize);
+		this.recordsPerSegment = recordsPerSegment;
+		this.segments = new MappedByteBuffer[segmentCount];
+		String archiveName = name + "." + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+		long newest = NOT_COMMITTED;
+		for (int iiSegment = 0; iiSegment < segmentCount; iiSegment++) {
+			File file = segmentFile(directory, name, iiSegment);
+			if (file.length() > 0 && !matches(file, iiSegment, segmentCount)) {
+				archive(file, directory, archiveName, iiSegment);
+			}
+			segments[iiSegment] = map(file, iiSegment, segmentCount);
+			newest = Math.max(newest, newestSequence(segments[iiSegment], slotSize, recordsPerSegment));
+		}
+		this.sequence = newest + 1;
+	}
+
+	/**
+	 * @param payloadSize bytes of record payload
+	 * @return bytes of a slot, payload plus sequence number and commit marker
+	 */
+	static int slotSize(int payloadSize) {
+		return payloadSize + 16;
+	}
+
+	static File segmentFile(File directory, String name, int segment) {
+		return new File(directory, name + "-" + segment + ".log");
+	}
+
+	private long segmentSize() {
+		return HEADER_SIZE + (long) slotSize * recordsPerSegment;
+	}
+
+	/**
+	 * @return true if an existing segment file has this log's size and header
+	 */
+	private boolean matches(File file, int segment, int segmentCount) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			if (raf.length() != segmentSize()) {
+				return false;
+			}
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			raf.getChannel().read(header, 0);
+			return headerMatches(header, segment, segmentCount);
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Rename a segment file that does not match aside, so its records are kept
+	 */
+	private static void archive(File file, File directory, String archiveName, int segment) throws IOException {
+		File archived = segmentFile(directory, archiveName, segment);
+		for (int iiTry = 1; archived.exists(); iiTry++) {
+			archived = segmentFile(directory, archiveName + "." + iiTry, segment);
+		}
+		if (!file.renameTo(archived)) {
+			throw new IOException("Can not move " + file + " to " + archived);
+		}
+		System.out.println("Flight log " + file + " does not match, moved to " + archived);
+	}
+
+	private MappedByteBuffer map(File file, int segment, int segmentCount) throws IOException {
+		long size = segmentSize();
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			// Anything else was moved aside, so a file not this size is new
+			boolean created = raf.length() != size;
+			if (created) {
+				raf.setLength(size);
+			}
+			MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+			if (created) {
+				for (int iiSlot = 0; iiSlot < recordsPerSegment; iiSlot++) {
+					int offset = HEADER_SIZE + iiSlot * slotSize;
+					buffer.putLong(offset, NOT_COMMITTED);
+					buffer.putLong(offset + slotSize - 8, NOT_COMMITTED);
+				}
+				writeHeader(buffer, segment, segmentCount);
+			}
+			// Fault pages in now rather than on the control loop
+			buffer.load();
+			return buffer;
+		} finally {
+			// Mapping stays valid after the file is closed
+			raf.close();
+		}
+	}
+
+	/**
+	 * Header: magic, version, payload size, records per segment, segment number, segment count,
+	 * record format (ints), then 4 reserved bytes.
+	 */
+	private void writeHeader(ByteBuffer buffer, int segment, int segmentCount) {
+		buffer.putInt(0, MAGIC);
+		buffer.putInt(4, VERSION);
+		buffer.putInt(8, payloadSize);
+		buffer.putInt(12, recordsPerSegment);
+		buffer.putInt(16, segment);
+		buffer.putInt(20, segmentCount);
+		buffer.putInt(24, recordFormat);
+		buffer.putInt(28, 0);
+	}
+
+	private boolean headerMatches(ByteBuffer buffer, int segment, int segmentCount) {
+		return buffer.getInt(0) == MAGIC && buffer.getInt(4) == VERSION &&
+				buffer.getInt(8) == payloadSize && buffer.getInt(12) == recordsPerSegment &&
+				buffer.getInt(16) == segment && buffer.getInt(20) == segmentCount &&
+				buffer.getInt(24) == recordFormat;
+	}
+
+	private static long newestSequence(ByteBuffer buffer, int slotSize, int records) {
+		long newest = NOT_COMMITTED;
+		for (int iiSlot = 0; iiSlot < records; iiSlot++) {
+			int offset = HEADER_SIZE + iiSlot * slotSize;
+			long start = buffer.getLong(offset);
+			if (start >= 0 && start == buffer.getLong(offset + slotSize - 8) && start > newest) {
+				newest = start;
+			}
+		}
+		return newest;
+	}
+
+	/**
+	 * Start next record. Write the payload with relative puts on the returned buffer, then call {@link #commit()}.
+	 * @return segment buffer, positioned at start of payload
+	 */
+	public ByteBuffer begin() {
+		long slot = sequence % ((long) segments.length * recordsPerSegment);
+		current = segments[(int) (slot / recordsPerSegment)];
+		currentOffset = HEADER_SIZE + (int) (slot % recordsPerSegment) * slotSize;
+		current.putLong(currentOffset + slotSize - 8, NOT_COMMITTED);
+		current.putLong(currentOffset, sequence);
+		current.position(currentOffset + 8);
+		return current;
+	}
+
+	/**
+	 * Mark record started by {@link #begin()} complete
+	 */
+	public void commit() {
+		if (current.position() > currentOffset + 8 + payloadSize) {
+			throw new IllegalStateException("Flight log record payload is over " + payloadSize + " bytes");
+		}
+		current.putLong(currentOffset + slotSize - 8, sequence);
+		current = null;
+		sequence++;
+	}
+
+	/**
+	 * @return sequence number the next record will get
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+
+	public int getPayloadSize() {
+		return payloadSize;
+	}
+
+	public int getRecordFormat() {
+		return recordFormat;
+	}
+
+	/**
+	 * Write mapped pages to disk now. Blocks, so never call from the control loop.
+	 */
+	public void force() {
+		for (MappedByteBuffer segment : segments) {
+			segment.force();
+		}
+	}
+
+	/**
+	 * Start a low priority thread that calls {@link #force()} periodically.
+	 * @param period seconds between flushes
+	 */
+	public synchronized void startFlusher(double period) {
+		if (flusher != null) {
+			return;
+		}
+		final long periodNanos = Math.round(period * 1e9);
+		flushing = true;
+		flusher = new Thread(new Runnable() {
+			public void run() {
+				while (flushing) {
+					LockSupport.parkNanos(periodNanos);
+					force();
+				}
+			}
+		}, "Flight log flusher");
+		flusher.setDaemon(true);
+		flusher.setPriority(Thread.MIN_PRIORITY);
+		flusher.start();
+	}
+
+	/**
+	 * Stop flush thread after a final flush
+	 */
+	public synchronized void stopFlusher() {
+		if (flusher != null) {
+			flushing = false;
+			LockSupport.unpark(flusher);
+			flusher = null;
+		}
+	}
+
+	/**
+	 * Committed records of a log on disk, oldest first. For analysis off the robot.
+	 */
+	public static class Reader {
+		private final int recordFormat;
+		private final int payloadSize;
+		private final List<ByteBuffer> segments = new ArrayList<ByteBuffer>();
+		private final long sequences[];
+		private final int segmentIndex[];
+		private final int offsets[];
+		private final int partialRecords;
+
+		/**
+		 * @param directory directory of segment files
+		 * @param name segment file name prefix
+		 * @throws IOException if there are no segment files or they do not match each other
+		 */
+		public Reader(File directory, String name) throws IOException {
+			int format = 0;
+			int payload = -1;
+			int records = 0;
+			int segmentCount = 0;
+			for (int iiSegment = 0; segmentFile(directory, name, iiSegment).exists(); iiSegment++) {
+				File file = segmentFile(directory, name, iiSegment);
+				RandomAccessFile raf = new RandomAccessFile(file, "r");
+				try {
+					FileChannel channel = raf.getChannel();
+					ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+							.order(ByteOrder.LITTLE_ENDIAN);
+					if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+						throw new IOException(file + " is not a flight log segment");
+					}
+					if (buffer.getInt(4) != VERSION) {
+						throw new IOException(file + " is flight log version " + buffer.getInt(4) + ", not " + VERSION);
+					}
+					if (payload < 0) {
+						format = buffer.getInt(24);
+						payload = buffer.getInt(8);
+						records = buffer.getInt(12);
+						segmentCount = buffer.getInt(20);
+					}
+					if (buffer.getInt(24) != format || buffer.getInt(8) != payload || buffer.getInt(12) != records ||
+							buffer.getInt(16) != iiSegment ||
+							buffer.capacity() != HEADER_SIZE + (long) slotSize(payload) * records) {
+						throw new IOException(file + " does not match other segments");
+					}
+					segments.add(buffer);
+				} finally {
+					raf.close();
+				}
+			}
+			if (segments.isEmpty() || segments.size() != segmentCount) {
+				throw new IOException("Missing flight log segments for " + name + " in " + directory);
+			}
+			this.recordFormat = format;
+			this.payloadSize = payload;
+
+			int slotSize = slotSize(payload);
+			int total = segments.size() * records;
+			long found[] = new long[total];
+			int count = 0;
+			int partial = 0;
+			for (int iiSegment = 0; iiSegment < segments.size(); iiSegment++) {
+				ByteBuffer buffer = segments.get(iiSegment);
+				for (int iiSlot = 0; iiSlot < records; iiSlot++) {
+					int offset = HEADER_SIZE + iiSlot * slotSize;
+					long start = buffer.getLong(offset);
+					long end = buffer.getLong(offset + slotSize - 8);
+					if (start >= 0 && start == end) {
+						// Sequence in high bits, slot in low bits, so sorting orders records
+						found[count++] = start * total + iiSegment * records + iiSlot;
+					} else if (start >= 0) {
+						partial++;
+					}
+				}
+			}
+			Arrays.sort(found, 0, count);
+			sequences = new long[count];
+			segmentIndex = new int[count];
+			offsets = new int[count];
+			for (int iiRecord = 0; iiRecord < count; iiRecord++) {
+				int slot = (int) (found[iiRecord] % total);
+				sequences[iiRecord] = found[iiRecord] / total;
+				segmentIndex[iiRecord] = slot / records;
+				offsets[iiRecord] = HEADER_SIZE + (slot % records) * slotSize + 8;
+			}
+			partialRecords = partial;
+		}
+
+		/**
+		 * @return number of committed records
+		 */
+		public int size() {
+			return sequences.length;
+		}
+
+		/**
+		 * @return number of records started but not committed, normally zero or one
+		 */
+		public int getPartialRecords() {
+			return partialRecords;
+		}
+
+		public int getPayloadSize() {
+			return payloadSize;
+		}
+
+		/**
+		 * @return record format version the log was written with
+		 */
+		public int getRecordFormat() {
+			return recordFormat;
+		}
+
+		/**
+		 * @param index record index, 0 is oldest
+		 * @return record sequence number
+		 */
+		public long getSequence(int index) {
+			return sequences[index];
+		}
+
+		/**
+		 * @param index record index, 0 is oldest
+		 * @return read only buffer holding just the record payload
+		 */
+		public ByteBuffer getPayload(int index) {
+			ByteBuffer payload = segments.get(segmentIndex[index]).duplicate().order(ByteOrder.LITTLE_ENDIAN);
+			payload.position(offsets[index]);
+			payload.limit(offsets[index] + payloadSize);
+			return payload.slice().order(ByteOrder.LITTLE_ENDIAN);
+		}
+	}
+
+}
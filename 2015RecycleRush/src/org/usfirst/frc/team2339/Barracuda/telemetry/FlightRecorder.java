@@ -0,0 +1,230 @@
+package org.usfirst.frc.team2339.Barracuda.telemetry;
+
+import java.nio.ByteBuffer;
+
+import org.usfirst.frc.team2339.Barracuda.control.InputSampler;
+import org.usfirst.frc.team2339.Barracuda.control.InputSnapshot;
+import org.usfirst.frc.team2339.Barracuda.hal.GyroInput;
+import org.usfirst.frc.team2339.Barracuda.subsystems.Lift;
+import org.usfirst.frc.team2339.Barracuda.subsystems.SwerveDrive;
+import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveWheel.RectangularCoordinates;
+import org.usfirst.frc.team2339.Barracuda.swervemath.SwerveWheel.RobotMotion;
+
+/**
+ * Writes one {@link FlightLog} record of drive inputs and outputs per control loop tick.
+ *
+ * The record is sampled into a reusable {@link Record}, then copied into the log,
+ * so recording allocates nothing. Call {@link #record()} from the control loop after the scheduler runs.
+ *
+ * @author emiller
+ *
+ */
+public class FlightRecorder {
+
+	// Drive joystick buttons 1 to this are recorded
+	public static final int RECORDED_BUTTONS = InputSampler.SAMPLED_BUTTONS;
+
+	private final FlightLog log;
+	private final InputSampler inputs;
+	private final GyroInput gyro;
+	private final SwerveDrive drive;
+	private final Lift lift;
+	private final Record record;
+	private volatile int mode = Record.MODE_DISABLED;
+	private final LatencyHistogram recordLatency = MetricsRegistry.histogram("Flight log record");
+
+	/**
+	 * One control tick. All angles in degrees.
+	 *
+	 * Payload layout (see {@link #write(ByteBuffer)}): timestamp (long), joystick strafe, frontBack, rotate (doubles),
+	 * buttons (int, bit n - 1 is button n), robot mode (int), gyro angle, pivot x, pivot y,
+	 * commanded strafe, frontBack, rotate (doubles), then for each wheel
+	 * raw speed, raw angle, delta speed, delta angle, encoder angle (doubles), then lift output (double).
+	 * Change {@link #FORMAT_VERSION} with any change to the layout.
+	 */
+	public static class Record {
+		// Record format in the flight log header. 2 added robot mode.
+		public static final int FORMAT_VERSION = 2;
+
+		public static final int MODE_DISABLED = 0;
+		public static final int MODE_AUTONOMOUS = 1;
+		public static final int MODE_TELEOP = 2;
+		public static final int MODE_TEST = 3;
+		
+		// System.nanoTime() when sampled
+		public long timestamp = 0;
+		public double strafe = 0;
+		public double frontBack = 0;
+		public double rotate = 0;
+		public int buttons = 0;
+		public int mode = MODE_DISABLED;
+		public double gyroAngle = 0;
+		public double pivotX = 0;
+		public double pivotY = 0;
+		public double motionStrafe = 0;
+		public double motionFrontBack = 0;
+		public double motionRotate = 0;
+		public final double rawSpeeds[];
+		public final double rawAngles[];
+		public final double deltaSpeeds[];
+		public final double deltaAngles[];
+		public final double encoderAngles[];
+		public double liftOutput = 0;
+
+		public Record(int numberOfWheels) {
+			rawSpeeds = new double[numberOfWheels];
+			rawAngles = new double[numberOfWheels];
+			deltaSpeeds = new double[numberOfWheels];
+			deltaAngles = new double[numberOfWheels];
+			encoderAngles = new double[numberOfWheels];
+		}
+
+		/**
+		 * @param numberOfWheels number of wheels
+		 * @return bytes of record payload
+		 */
+		public static int payloadSize(int numberOfWheels) {
+			return 8 + 3 * 8 + 4 + 4 + 6 * 8 + numberOfWheels * 5 * 8 + 8;
+		}
+
+		/**
+		 * @param payloadSize bytes of record payload, e.g. from {@link FlightLog.Reader#getPayloadSize()}
+		 * @return number of wheels in records of that size
+		 */
+		public static int numberOfWheels(int payloadSize) {
+			return (payloadSize - payloadSize(0)) / (5 * 8);
+		}
+
+		public int getNumberOfWheels() {
+			return rawSpeeds.length;
+		}
+
+		/**
+		 * @param button button number, starting at 1
+		 * @return true if button was pressed
+		 */
+		public boolean getButton(int button) {
+			return (buttons & (1 << (button - 1))) != 0;
+		}
+
+		/**
+		 * Put record at buffer position
+		 * @param buffer buffer
+		 */
+		public void write(ByteBuffer buffer) {
+			buffer.putLong(timestamp);
+			buffer.putDouble(strafe);
+			buffer.putDouble(frontBack);
+			buffer.putDouble(rotate);
+			buffer.putInt(buttons);
+			buffer.putInt(mode);
+			buffer.putDouble(gyroAngle);
+			buffer.putDouble(pivotX);
+			buffer.putDouble(pivotY);
+			buffer.putDouble(motionStrafe);
+			buffer.putDouble(motionFrontBack);
+			buffer.putDouble(motionRotate);
+			for (int iiWheel = 0; iiWheel < rawSpeeds.length; iiWheel++) {
+				buffer.putDouble(rawSpeeds[iiWheel]);
+				buffer.putDouble(rawAngles[iiWheel]);
+				buffer.putDouble(deltaSpeeds[iiWheel]);
+				buffer.putDouble(deltaAngles[iiWheel]);
+				buffer.putDouble(encoderAngles[iiWheel]);
+			}
+			buffer.putDouble(liftOutput);
+		}
+
+		/**
+		 * Get record from buffer position
+		 * @param buffer buffer, e.g. from {@link FlightLog.Reader#getPayload(int)}
+		 */
+		public void read(ByteBuffer buffer) {
+			timestamp = buffer.getLong();
+			strafe = buffer.getDouble();
+			frontBack = buffer.getDouble();
+			rotate = buffer.getDouble();
+			buttons = buffer.getInt();
+			mode = buffer.getInt();
+			gyroAngle = buffer.getDouble();
+			pivotX = buffer.getDouble();
+			pivotY = buffer.getDouble();
+			motionStrafe = buffer.getDouble();
+			motionFrontBack = buffer.getDouble();
+			motionRotate = buffer.getDouble();
+			for (int iiWheel = 0; iiWheel < rawSpeeds.length; iiWheel++) {
+				rawSpeeds[iiWheel] = buffer.getDouble();
+				rawAngles[iiWheel] = buffer.getDouble();
+				deltaSpeeds[iiWheel] = buffer.getDouble();
+				deltaAngles[iiWheel] = buffer.getDouble();
+				encoderAngles[iiWheel] = buffer.getDouble();
+			}
+			liftOutput = buffer.getDouble();
+		}
+	}
+
+	/**
+	 * @param log log with record format {@link Record#FORMAT_VERSION} and payload size
+	 *            {@link Record#payloadSize(int)} for the drive's wheels
+	 * @param inputs joystick samples, the drive joystick is recorded
+	 * @param gyro gyro
+	 * @param drive drive subsystem
+	 * @param lift lift subsystem
+	 */
+	public FlightRecorder(FlightLog log, InputSampler inputs, GyroInput gyro, SwerveDrive drive, Lift lift) {
+		if (log.getRecordFormat() != Record.FORMAT_VERSION) {
+			throw new IllegalArgumentException("Flight log record format is " + log.getRecordFormat() + ", not " +
+					Record.FORMAT_VERSION);
+		}
+		if (log.getPayloadSize() != Record.payloadSize(drive.getNumberOfWheels())) {
+			throw new IllegalArgumentException("Flight log records are not for " + drive.getNumberOfWheels() + " wheels");
+		}
+		this.log = log;
+		this.inputs = inputs;
+		this.gyro = gyro;
+		this.drive = drive;
+		this.lift = lift;
+		this.record = new Record(drive.getNumberOfWheels());
+	}
+
+	/**
+	 * Sample robot state and write a record
+	 */
+	public void record() {
+		long start = System.nanoTime();
+		record.timestamp = start;
+		// Same sample the commands used this tick
+		InputSnapshot sample = inputs.get();
+		record.strafe = sample.getStrafe();
+		record.frontBack = sample.getFrontBack();
+		record.rotate = sample.getRotate();
+		record.buttons = sample.getDriveButtons();
+		record.mode = mode;
+		record.gyroAngle = gyro.getAngle();
+		RectangularCoordinates pivot = drive.getPivot();
+		record.pivotX = pivot.x;
+		record.pivotY = pivot.y;
+		RobotMotion motion = drive.getCommandedMotion();
+		record.motionStrafe = motion.strafe;
+		record.motionFrontBack = motion.frontBack;
+		record.motionRotate = motion.rotate;
+		drive.getWheelState(record.rawSpeeds, record.rawAngles,
+				record.deltaSpeeds, record.deltaAngles, record.encoderAngles);
+		record.liftOutput = lift.getLiftMotorValue();
+
+		record.write(log.begin());
+		log.commit();
+		recordLatency.recordSince(start);
+	}
+
+	/**
+	 * @param mode robot mode for following records, one of the Record MODE constants
+	 */
+	public void setMode(int mode) {
+		this.mode = mode;
+	}
+	
+	public FlightLog getLog() {
+		return log;
+	}
+
+}
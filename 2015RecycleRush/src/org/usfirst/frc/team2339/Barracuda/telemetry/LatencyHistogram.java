@@ -0,0 +1,139 @@
+package org.usfirst.frc.team2339.Barracuda.telemetry;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with fixed log scale buckets. Get one from {@link MetricsRegistry#histogram(String)}.
+ *
+ * Each power of two is split into four buckets, so a percentile is reported to within 25%.
+ * Covers 1 ns to about a minute; longer samples go in the last bucket.
+ * Recording is a bucket calculation from the leading zero count and two atomic adds,
+ * plus an update of the maximum when it is exceeded.
+ *
+ * Any thread may record. Each {@link #drain(Summary)}
+ * covers the samples since the previous one.
+ *
+ * @author emiller
+ *
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 2;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	static final int BUCKETS = 36 * SUB_BUCKETS;
+
+	private final String name;
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final AtomicLong max = new AtomicLong();
+	private final AtomicLong total = new AtomicLong();
+	// Used by drain only
+	private final long drainCounts[] = new long[BUCKETS];
+
+	/**
+	 * Summary of samples between two drains. Times in nanoseconds.
+	 */
+	public static class Summary {
+		public long count = 0;
+		public long p50 = 0;
+		public long p99 = 0;
+		public long max = 0;
+		public long total = 0;
+	}
+
+	LatencyHistogram(String name) {
+		this.name = name;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Record a sample
+	 * @param nanos latency in nanoseconds, e.g. difference of two System.nanoTime() calls
+	 */
+	public void record(long nanos) {
+		if (nanos < 0) {
+			nanos = 0;
+		}
+		counts.incrementAndGet(bucket(nanos));
+		total.addAndGet(nanos);
+		long currentMax = max.get();
+		while (nanos > currentMax && !max.compareAndSet(currentMax, nanos)) {
+			currentMax = max.get();
+		}
+	}
+
+	/**
+	 * Record time since a start time
+	 * @param startNanos System.nanoTime() at start
+	 */
+	public void recordSince(long startNanos) {
+		record(System.nanoTime() - startNanos);
+	}
+
+	static int bucket(long nanos) {
+		if (nanos < SUB_BUCKETS) {
+			return (int) nanos;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+		int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		int bucket = (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+		return bucket < BUCKETS ? bucket : BUCKETS - 1;
+	}
+
+	/**
+	 * @param bucket bucket
+	 * @return largest value that goes in bucket
+	 */
+	static long bucketUpperBound(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int shift = bucket / SUB_BUCKETS - 1;
+		long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+		return lower + (1L << shift) - 1;
+	}
+
+	/**
+	 * Take summary of samples recorded since last drain and clear them.
+	 * Percentiles are bucket upper bounds, so never under the true value. Maximum is exact.
+	 * @param summary summary to fill in
+	 */
+	public synchronized void drain(Summary summary) {
+		long count = 0;
+		for (int iiBucket = 0; iiBucket < BUCKETS; iiBucket++) {
+			drainCounts[iiBucket] = counts.getAndSet(iiBucket, 0);
+			count += drainCounts[iiBucket];
+		}
+		summary.count = count;
+		summary.max = max.getAndSet(0);
+		summary.total = total.getAndSet(0);
+		summary.p50 = percentile(drainCounts, count, 0.50);
+		summary.p99 = percentile(drainCounts, count, 0.99);
+		// Samples recorded during drain can land on either side, keep summary consistent
+		if (summary.p50 > summary.max) {
+			summary.p50 = summary.max;
+		}
+		if (summary.p99 > summary.max) {
+			summary.p99 = summary.max;
+		}
+	}
+
+	private static long percentile(long bucketCounts[], long count, double fraction) {
+		if (count == 0) {
+			return 0;
+		}
+		long rank = (long) Math.ceil(fraction * count);
+		long seen = 0;
+		for (int iiBucket = 0; iiBucket < BUCKETS; iiBucket++) {
+			seen += bucketCounts[iiBucket];
+			if (seen >= rank) {
+				return bucketUpperBound(iiBucket);
+			}
+		}
+		return bucketUpperBound(BUCKETS - 1);
+	}
+
+}
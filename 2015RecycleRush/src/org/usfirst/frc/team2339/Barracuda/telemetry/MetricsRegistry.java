@@ -0,0 +1,83 @@
+package org.usfirst.frc.team2339.Barracuda.telemetry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+
+/**
+ * Named counters and latency histograms for the whole robot.
+ *
+ * Look a metric up once (e.g. in a constructor) and keep it. Asking for an existing name returns the same metric,
+ * so all instances of a command share one histogram.
+ * Recording never locks; only registering and publishing do.
+ *
+ * {@link #publish()} puts every metric on the SmartDashboard. Histograms show the samples since the last publish
+ * in microseconds, so call it at a low fixed rate.
+ *
+ * @author emiller
+ *
+ */
+public class MetricsRegistry {
+
+	private static final List<Counter> counters = new ArrayList<Counter>();
+	private static final List<LatencyHistogram> histograms = new ArrayList<LatencyHistogram>();
+	private static final List<String[]> histogramKeys = new ArrayList<String[]>();
+	private static final LatencyHistogram.Summary summary = new LatencyHistogram.Summary();
+
+	private MetricsRegistry() {
+	}
+
+	/**
+	 * @param name counter name, shown on dashboard
+	 * @return counter with name, created if needed
+	 */
+	public static synchronized Counter counter(String name) {
+		for (Counter counter : counters) {
+			if (counter.getName().equals(name)) {
+				return counter;
+			}
+		}
+		Counter counter = new Counter(name);
+		counters.add(counter);
+		return counter;
+	}
+
+	/**
+	 * @param name histogram name, shown on dashboard
+	 * @return histogram with name, created if needed
+	 */
+	public static synchronized LatencyHistogram histogram(String name) {
+		for (LatencyHistogram histogram : histograms) {
+			if (histogram.getName().equals(name)) {
+				return histogram;
+			}
+		}
+		LatencyHistogram histogram = new LatencyHistogram(name);
+		histograms.add(histogram);
+		histogramKeys.add(new String[] {
+				name + " count ",
+				name + " p50 us ",
+				name + " p99 us ",
+				name + " max us "});
+		return histogram;
+	}
+
+	/**
+	 * Put all metrics on dashboard. Histograms are drained.
+	 */
+	public static synchronized void publish() {
+		for (Counter counter : counters) {
+			SmartDashboard.putNumber(counter.getName() + " ", counter.get());
+		}
+		for (int iiHistogram = 0; iiHistogram < histograms.size(); iiHistogram++) {
+			histograms.get(iiHistogram).drain(summary);
+			String keys[] = histogramKeys.get(iiHistogram);
+			SmartDashboard.putNumber(keys[0], summary.count);
+			SmartDashboard.putNumber(keys[1], summary.p50 * 1e-3);
+			SmartDashboard.putNumber(keys[2], summary.p99 * 1e-3);
+			SmartDashboard.putNumber(keys[3], summary.max * 1e-3);
+		}
+	}
+
+}